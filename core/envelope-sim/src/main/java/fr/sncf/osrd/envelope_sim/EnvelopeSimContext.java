@@ -7,6 +7,8 @@ public final class EnvelopeSimContext {
     public final PhysicsPath path;
     public final double timeStep;
     public final RangeMap<Double, PhysicsRollingStock.TractiveEffortPoint[]> tractiveEffortCurveMap;
+    // tractiveEffortCurveMap flattened into arrays, built on first use
+    private volatile PrimitiveIntegrator.TractiveEffortCurves tractiveEffortCurves;
 
     /** Creates a context suitable to run simulations on envelopes */
     public EnvelopeSimContext(
@@ -21,6 +23,17 @@ public final class EnvelopeSimContext {
         this.tractiveEffortCurveMap = tractiveEffortCurveMap;
     }
 
+    /** Returns the tractive effort curve map as flat arrays, for {@link PrimitiveIntegrator} */
+    PrimitiveIntegrator.TractiveEffortCurves getTractiveEffortCurves() {
+        var res = tractiveEffortCurves;
+        if (res == null) {
+            // concurrent calls may build it twice, which is harmless
+            res = new PrimitiveIntegrator.TractiveEffortCurves(tractiveEffortCurveMap);
+            tractiveEffortCurves = res;
+        }
+        return res;
+    }
+
     public EnvelopeSimContext updateCurves(
             RangeMap<Double, PhysicsRollingStock.TractiveEffortPoint[]> tractiveEffortCurveMap) {
         return new EnvelopeSimContext(rollingStock, path, timeStep, tractiveEffortCurveMap);
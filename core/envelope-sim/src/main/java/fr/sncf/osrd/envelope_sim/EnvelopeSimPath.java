@@ -84,28 +84,77 @@ public final class EnvelopeSimPath implements PhysicsPath {
         return length;
     }
 
-    private double getCumGrade(double position) {
+    private double clampPosition(double position) {
         if (position > length && arePositionsEqual(position, length)) position = length;
         assert position <= length && position >= 0;
+        return position;
+    }
+
+    /** Returns the index of the last grade position before or at the given position */
+    private int findGradeRange(double position) {
         var pointIndex = Arrays.binarySearch(gradePositions, position);
-        if (pointIndex >= 0) return gradeCumSum[pointIndex];
+        if (pointIndex >= 0) return pointIndex;
 
         // when the position isn't found, binarySearch returns -(insertion point) - 1
         var insertionPoint = -(pointIndex + 1);
+        return insertionPoint - 1;
+    }
+
+    private boolean isInGradeRange(int gradeRangeIndex, double position) {
+        if (gradeRangeIndex < 0 || gradeRangeIndex >= gradePositions.length) return false;
+        if (position < gradePositions[gradeRangeIndex]) return false;
+        return gradeRangeIndex == gradePositions.length - 1 || position < gradePositions[gradeRangeIndex + 1];
+    }
+
+    private double getCumGrade(int gradeRangeIndex, double position) {
+        var gradeRangeStart = gradePositions[gradeRangeIndex];
+        if (position == gradeRangeStart) return gradeCumSum[gradeRangeIndex];
 
         // return the cumulative gradient at the point before the given position, plus the gradient
         // change since then
-        var gradeRangeIndex = insertionPoint - 1;
-        var gradeRangeStart = gradePositions[gradeRangeIndex];
         return gradeCumSum[gradeRangeIndex] + gradeValues[gradeRangeIndex] * (position - gradeRangeStart);
     }
 
+    private double getCumGrade(double position) {
+        position = clampPosition(position);
+        return getCumGrade(findGradeRange(position), position);
+    }
+
     @Override
     public double getAverageGrade(double begin, double end) {
         if (begin == end) return getCumGrade(begin);
         return (getCumGrade(end) - getCumGrade(begin)) / (end - begin);
     }
 
+    @Override
+    public GradeCursor gradeCursor() {
+        return new EnvelopeSimPathGradeCursor();
+    }
+
+    /** Remembers the grade ranges of the last query, which are usually the ones of the next query */
+    private final class EnvelopeSimPathGradeCursor implements GradeCursor {
+        private int beginRangeIndex = 0;
+        private int endRangeIndex = 0;
+
+        private int seek(int gradeRangeIndex, double position) {
+            if (isInGradeRange(gradeRangeIndex, position)) return gradeRangeIndex;
+            if (isInGradeRange(gradeRangeIndex + 1, position)) return gradeRangeIndex + 1;
+            if (isInGradeRange(gradeRangeIndex - 1, position)) return gradeRangeIndex - 1;
+            return findGradeRange(position);
+        }
+
+        @Override
+        public double getAverageGrade(double begin, double end) {
+            var clampedBegin = clampPosition(begin);
+            beginRangeIndex = seek(beginRangeIndex, clampedBegin);
+            var beginCumGrade = getCumGrade(beginRangeIndex, clampedBegin);
+            if (begin == end) return beginCumGrade;
+            var clampedEnd = clampPosition(end);
+            endRangeIndex = seek(endRangeIndex, clampedEnd);
+            return (getCumGrade(endRangeIndex, clampedEnd) - beginCumGrade) / (end - begin);
+        }
+    }
+
     private RangeMap<Double, Electrification> getModeAndProfileMap(
             String powerClass, Range<Double> range, boolean ignoreElectricalProfiles) {
         if (ignoreElectricalProfiles) powerClass = null;
@@ -6,4 +6,18 @@ public interface PhysicsPath {
 
     /** The average slope on a given range, in meters per kilometers */
     double getAverageGrade(double begin, double end);
+
+    /**
+     * Returns a cursor giving the same results as {@link #getAverageGrade}, which may be faster when consecutive
+     * queries are close to each other, as during integration.
+     */
+    default GradeCursor gradeCursor() {
+        return this::getAverageGrade;
+    }
+
+    /** Average grade queries on a path. Cursors may have mutable state, they must not be shared between threads. */
+    interface GradeCursor {
+        /** The average slope on a given range, in meters per kilometers */
+        double getAverageGrade(double begin, double end);
+    }
 }
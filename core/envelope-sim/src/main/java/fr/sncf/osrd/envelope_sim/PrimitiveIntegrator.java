@@ -0,0 +1,204 @@
+package fr.sncf.osrd.envelope_sim;
+
+import static fr.sncf.osrd.envelope_sim.TrainPhysicsIntegrator.POSITION_EPSILON;
+import static fr.sncf.osrd.envelope_sim.TrainPhysicsIntegrator.SPEED_EPSILON;
+import static fr.sncf.osrd.envelope_sim.TrainPhysicsIntegrator.areSpeedsEqual;
+import static fr.sncf.osrd.envelope_sim.TrainPhysicsIntegrator.computeAcceleration;
+
+import com.google.common.collect.BoundType;
+import com.google.common.collect.RangeMap;
+
+/**
+ * Same numerical integration as {@link TrainPhysicsIntegrator#step}, without allocating anything per step. An
+ * integrator is created once per simulated envelope part and reused for each step: the results of the last step are
+ * kept in its public fields.
+ *
+ * <p>The computations are the same, in the same order, so that results are bit for bit identical. Only lookups change:
+ * tractive effort curves are found in flat arrays, starting from the last curve used, grades are read using a path
+ * cursor, and the weight force is only computed again when the grade under the train changes.
+ *
+ * <p>Integrators have mutable state, they must not be shared between threads.
+ */
+public final class PrimitiveIntegrator {
+    private final PhysicsRollingStock rollingStock;
+    private final PhysicsPath path;
+    private final double timeStep;
+    private final TractiveEffortCurves tractiveEffortCurves;
+    private final PhysicsPath.GradeCursor gradeCursor;
+    // index of the last used tractive effort curve
+    private int curveIndex = 0;
+    // raw bits of the last grade, and the weight force it gives
+    private long lastGradeBits = Double.doubleToRawLongBits(Double.NaN);
+    private double lastWeightForce = Double.NaN;
+
+    /** Time spent during the last step */
+    public double timeDelta;
+    /** Position delta of the last step */
+    public double positionDelta;
+    /** Speed at the end of the last step */
+    public double endSpeed;
+    /** Acceleration during the last step */
+    public double acceleration;
+
+    /** Creates an integrator for the given context */
+    public PrimitiveIntegrator(EnvelopeSimContext context) {
+        this.rollingStock = context.rollingStock;
+        this.path = context.path;
+        this.timeStep = context.timeStep;
+        this.tractiveEffortCurves = context.getTractiveEffortCurves();
+        this.gradeCursor = context.path.gradeCursor();
+    }
+
+    /** Simulates train movement, storing the result into the fields of the integrator */
+    public void step(double initialLocation, double initialSpeed, Action action, double directionSign) {
+        var halfStep = timeStep / 2;
+        subStep(halfStep, initialLocation, initialSpeed, action, directionSign);
+        var acceleration1 = acceleration;
+        subStep(halfStep, initialLocation + positionDelta, endSpeed, action, directionSign);
+        var acceleration2 = acceleration;
+        subStep(timeStep, initialLocation + positionDelta, endSpeed, action, directionSign);
+        var acceleration3 = acceleration;
+        subStep(timeStep, initialLocation + positionDelta, endSpeed, action, directionSign);
+        var acceleration4 = acceleration;
+
+        var meanAcceleration = (acceleration1 + 2 * acceleration2 + 2 * acceleration3 + acceleration4) / 6.;
+        newtonStep(timeStep, initialSpeed, meanAcceleration, directionSign);
+    }
+
+    private void subStep(double timeStep, double position, double speed, Action action, double directionSign) {
+        double tractionForce = 0;
+        double brakingForce = 0;
+        var tractiveEffortCurve = getTractiveEffortCurve(Math.min(Math.max(0, position), path.getLength()));
+        assert tractiveEffortCurve != null;
+        double maxTractionForce = PhysicsRollingStock.getMaxEffort(speed, tractiveEffortCurve);
+        double rollingResistance = rollingStock.getRollingResistance(speed);
+        double weightForce = getWeightForce(position);
+
+        if (action == Action.ACCELERATE) tractionForce = maxTractionForce;
+
+        if (action == Action.BRAKE) brakingForce = rollingStock.getMaxBrakingForce(speed);
+
+        if (action == Action.MAINTAIN) {
+            tractionForce = rollingResistance - weightForce;
+            if (tractionForce <= maxTractionForce) {
+                newtonStep(timeStep, speed, 0, directionSign);
+                return;
+            } else tractionForce = maxTractionForce;
+        }
+
+        double acceleration = computeAcceleration(
+                rollingStock, rollingResistance, weightForce, speed, tractionForce, brakingForce, directionSign);
+        newtonStep(timeStep, speed, acceleration, directionSign);
+    }
+
+    /** Same as {@link TrainPhysicsIntegrator#getWeightForce}, with the trigonometry cached by grade */
+    private double getWeightForce(double headPosition) {
+        var tailPosition = Math.min(Math.max(0, headPosition - rollingStock.getLength()), path.getLength());
+        headPosition = Math.min(Math.max(0, headPosition), path.getLength());
+        var averageGrade = gradeCursor.getAverageGrade(tailPosition, headPosition);
+        var gradeBits = Double.doubleToRawLongBits(averageGrade);
+        if (gradeBits != lastGradeBits) {
+            var angle = Math.atan(averageGrade / 1000.0); // from m/km to m/m
+            lastWeightForce = -rollingStock.getMass() * 9.81 * Math.sin(angle);
+            lastGradeBits = gradeBits;
+        }
+        return lastWeightForce;
+    }
+
+    /** Same as {@link TrainPhysicsIntegrator#newtonStep} followed by {@link IntegrationStep#fromNaiveStep} */
+    private void newtonStep(double timeStep, double currentSpeed, double acceleration, double directionSign) {
+        var signedTimeStep = Math.copySign(timeStep, directionSign);
+        var newSpeed = currentSpeed + acceleration * signedTimeStep;
+        if (Math.abs(newSpeed) < SPEED_EPSILON) newSpeed = 0;
+
+        // dx = currentSpeed * dt + 1/2 * acceleration * dt * dt
+        var positionDelta = currentSpeed * signedTimeStep + 0.5 * acceleration * signedTimeStep * signedTimeStep;
+
+        if (Math.abs(positionDelta) < POSITION_EPSILON) positionDelta = 0;
+
+        var timeDelta = timeStep;
+        // if the end of the step dips below 0, cut the step in half
+        if (newSpeed < 0.0) {
+            assert directionSign * acceleration < 0.0;
+            newSpeed = 0.0;
+            timeDelta = -currentSpeed / (directionSign * acceleration);
+            positionDelta = currentSpeed * timeDelta + 0.5 * acceleration * timeDelta * timeDelta;
+            positionDelta = Math.copySign(positionDelta, directionSign);
+        }
+        assert areSpeedsEqual(newSpeed, (currentSpeed + directionSign * acceleration * timeDelta));
+        this.timeDelta = timeDelta;
+        this.positionDelta = positionDelta;
+        this.endSpeed = newSpeed;
+        this.acceleration = acceleration;
+    }
+
+    private PhysicsRollingStock.TractiveEffortPoint[] getTractiveEffortCurve(double position) {
+        var curves = tractiveEffortCurves;
+        // Steps mostly move forward or backward from one curve to the next
+        if (curves.contains(curveIndex, position)) return curves.curves[curveIndex];
+        if (curves.contains(curveIndex + 1, position)) return curves.curves[++curveIndex];
+        if (curves.contains(curveIndex - 1, position)) return curves.curves[--curveIndex];
+        var index = curves.find(position);
+        if (index < 0) return null;
+        curveIndex = index;
+        return curves.curves[index];
+    }
+
+    /** The ranges of a tractive effort curve map, flattened into arrays sorted by position */
+    static final class TractiveEffortCurves {
+        private final double[] lowerBounds;
+        private final boolean[] lowerClosed;
+        private final double[] upperBounds;
+        private final boolean[] upperClosed;
+        private final PhysicsRollingStock.TractiveEffortPoint[][] curves;
+
+        TractiveEffortCurves(RangeMap<Double, PhysicsRollingStock.TractiveEffortPoint[]> curveMap) {
+            var ranges = curveMap.asMapOfRanges();
+            var size = ranges.size();
+            lowerBounds = new double[size];
+            lowerClosed = new boolean[size];
+            upperBounds = new double[size];
+            upperClosed = new boolean[size];
+            curves = new PhysicsRollingStock.TractiveEffortPoint[size][];
+            int i = 0;
+            for (var entry : ranges.entrySet()) {
+                var range = entry.getKey();
+                // unbounded ranges get infinite bounds
+                lowerBounds[i] = range.hasLowerBound() ? range.lowerEndpoint() : Double.NEGATIVE_INFINITY;
+                lowerClosed[i] = !range.hasLowerBound() || range.lowerBoundType() == BoundType.CLOSED;
+                upperBounds[i] = range.hasUpperBound() ? range.upperEndpoint() : Double.POSITIVE_INFINITY;
+                upperClosed[i] = !range.hasUpperBound() || range.upperBoundType() == BoundType.CLOSED;
+                curves[i] = entry.getValue();
+                i++;
+            }
+        }
+
+        private boolean isAboveLower(int index, double position) {
+            var comparison = Double.compare(position, lowerBounds[index]);
+            return comparison > 0 || (comparison == 0 && lowerClosed[index]);
+        }
+
+        private boolean isBelowUpper(int index, double position) {
+            var comparison = Double.compare(position, upperBounds[index]);
+            return comparison < 0 || (comparison == 0 && upperClosed[index]);
+        }
+
+        boolean contains(int index, double position) {
+            if (index < 0 || index >= curves.length) return false;
+            return isAboveLower(index, position) && isBelowUpper(index, position);
+        }
+
+        /** Returns the index of the range containing the position, or -1 if there is none */
+        int find(double position) {
+            int left = 0;
+            int right = curves.length - 1;
+            while (left <= right) {
+                int mid = (left + right) >>> 1;
+                if (!isAboveLower(mid, position)) right = mid - 1;
+                else if (!isBelowUpper(mid, position)) left = mid + 1;
+                else return mid;
+            }
+            return -1;
+        }
+    }
+}
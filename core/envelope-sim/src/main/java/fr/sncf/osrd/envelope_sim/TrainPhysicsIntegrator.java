@@ -7,14 +7,17 @@ import com.google.common.collect.RangeMap;
  * simulating the train, and it is passed to speed controllers so they can take decisions about what
  * action to make. Once speed controllers took a decision, this same class is used to compute the
  * next position and speed of the train.
+ *
+ * <p>Overlays, which run many steps in a row, use {@link PrimitiveIntegrator} instead, which gives the
+ * same results without allocating.
  */
 public final class TrainPhysicsIntegrator {
     // A position delta lower than this value will be considered zero
     // Going back and forth with Distance and double (meters) often causes 1e-3 errors,
     // we need the tolerance to be higher than this
-    private static final double POSITION_EPSILON = 1E-2;
+    static final double POSITION_EPSILON = 1E-2;
     // A speed lower than this value will be considered zero
-    private static final double SPEED_EPSILON = 1E-5;
+    static final double SPEED_EPSILON = 1E-5;
     // An acceleration lower than this value will be considered zero
     private static final double ACCELERATION_EPSILON = 1E-5;
     private static final double TIME_EPSILON = 1E-2;
@@ -25,7 +25,8 @@ import fr.sncf.osrd.envelope_sim.allowances.utils.AllowanceRange;
 import fr.sncf.osrd.envelope_sim.allowances.utils.AllowanceValue;
 import fr.sncf.osrd.envelope_sim.overlays.EnvelopeAcceleration;
 import fr.sncf.osrd.envelope_sim.overlays.EnvelopeDeceleration;
-import fr.sncf.osrd.envelope_utils.DoubleBinarySearch;
+import fr.sncf.osrd.envelope_utils.DoubleSearch;
+import fr.sncf.osrd.envelope_utils.DoubleSecantSearch;
 import fr.sncf.osrd.reporting.exceptions.ErrorType;
 import fr.sncf.osrd.reporting.exceptions.OSRDError;
 import fr.sncf.osrd.utils.SelfTypeHolder;
@@ -68,6 +69,17 @@ public abstract class AbstractAllowanceWithRanges implements Allowance {
 
     protected abstract double computeInitialLowBound(Envelope envelopeSection);
 
+    /**
+     * Creates the search used to find the input of computeCore which gives the target time on a section. The output
+     * decreases when the input increases.
+     *
+     * @param initialGuess the input found for a neighbouring section, or NaN
+     */
+    protected DoubleSearch makeSearch(
+            double lowBound, double highBound, double initialGuess, double targetTime, double tolerance) {
+        return new DoubleSecantSearch(lowBound, highBound, initialGuess, targetTime, tolerance, true);
+    }
+
     public static final class CapacitySpeedLimit implements SelfTypeHolder {
         private CapacitySpeedLimit() {}
 
@@ -108,7 +120,7 @@ public abstract class AbstractAllowanceWithRanges implements Allowance {
         return res;
     }
 
-    private static RuntimeException makeError(DoubleBinarySearch search) {
+    private static RuntimeException makeError(DoubleSearch search) {
         if (!search.hasRaisedLowBound()) throw new OSRDError(ErrorType.AllowanceConvergenceTooMuchTime);
         else if (!search.hasLoweredHighBound()) throw new OSRDError(ErrorType.AllowanceConvergenceNotEnoughTime);
         else throw new OSRDError(ErrorType.AllowanceConvergenceDiscontinuity);
@@ -177,6 +189,9 @@ public abstract class AbstractAllowanceWithRanges implements Allowance {
 
     private record RangeBaseTime(AllowanceRange range, double baseTime) {}
 
+    /** An envelope with the allowance, and the last input of computeCore used to build it (NaN if none) */
+    private record AllowanceSolution(Envelope envelope, double input) {}
+
     /**
      * Apply the allowance to the region affected by the allowance. The region is split in ranges
      * asked by the user and independently computed. Ranges are computed in a specific order : from
@@ -220,50 +235,103 @@ public abstract class AbstractAllowanceWithRanges implements Allowance {
         for (var i = 0; i < ranges.size(); i++) rangeOrder[i] = i;
         Arrays.sort(rangeOrder, Comparator.comparingDouble(rangeIndex -> baseTimes[rangeIndex].baseTime));
 
-        var res = new Envelope[ranges.size()];
+        // slice the ranges beforehand: envelopes fill their caches lazily, and must not be shared
+        // between concurrent computations
+        var envelopeRanges = new Envelope[ranges.size()];
+        var tolerances = new double[ranges.size()];
+        for (var i = 0; i < ranges.size(); i++) {
+            var range = ranges.get(i);
+            envelopeRanges[i] = Envelope.make(envelopeRegion.slice(range.beginPos, range.endPos));
+            var rangeRatio = envelopeRanges[i].getTotalTime() / envelopeRegion.getTotalTime();
+            tolerances[i] = context.timeStep * rangeRatio;
+        }
 
-        // compute ranges one by one in the right order
+        // A range only depends on its neighbours computed before it, through the transition speeds.
+        // Ranges are grouped in waves: the ranges of a wave don't depend on each other, and are
+        // computed concurrently. Results are the same as when computing ranges one by one.
+        var waves = new ArrayList<List<Integer>>();
+        var rangeWaves = new int[ranges.size()];
+        Arrays.fill(rangeWaves, -1);
         for (var rangeIndex : rangeOrder) {
-            try {
-                var range = ranges.get(rangeIndex);
-                var envelopeRange = Envelope.make(envelopeRegion.slice(range.beginPos, range.endPos));
-                var imposedBeginSpeed = imposedTransitionSpeeds[rangeIndex];
-                var imposedEndSpeed = imposedTransitionSpeeds[rangeIndex + 1];
-                var rangeRatio = envelopeRange.getTotalTime() / envelopeRegion.getTotalTime();
-                var tolerance = context.timeStep * rangeRatio;
-                var allowanceRange = computeAllowanceRange(
-                        envelopeRange, context, range.value, imposedBeginSpeed, imposedEndSpeed, tolerance);
-                // memorize the beginning and end speeds
-                imposedTransitionSpeeds[rangeIndex] = allowanceRange.getBeginSpeed();
-                imposedTransitionSpeeds[rangeIndex + 1] = allowanceRange.getEndSpeed();
-                res[rangeIndex] = allowanceRange;
-            } catch (OSRDError e) {
-                e.context.put("allowance_range_index", rangeIndex);
-                throw e;
-            }
+            var wave = 0;
+            if (rangeIndex > 0 && rangeWaves[rangeIndex - 1] >= 0)
+                wave = Math.max(wave, rangeWaves[rangeIndex - 1] + 1);
+            if (rangeIndex < ranges.size() - 1 && rangeWaves[rangeIndex + 1] >= 0)
+                wave = Math.max(wave, rangeWaves[rangeIndex + 1] + 1);
+            rangeWaves[rangeIndex] = wave;
+            if (wave == waves.size()) waves.add(new ArrayList<>());
+            waves.get(wave).add(rangeIndex);
         }
 
+        var res = new Envelope[ranges.size()];
+        var errors = new OSRDError[ranges.size()];
+        // the solutions of computed ranges, used as initial guesses for their neighbours
+        var rangeInputs = new double[ranges.size()];
+        Arrays.fill(rangeInputs, NaN);
+        for (var waveRanges : waves) {
+            var stream = waveRanges.size() > 1 ? waveRanges.parallelStream() : waveRanges.stream();
+            stream.forEach(rangeIndex -> {
+                // skip ranges depending on a range which couldn't be computed
+                var prevIndex = rangeIndex - 1;
+                var nextIndex = rangeIndex + 1;
+                var wave = rangeWaves[rangeIndex];
+                if (prevIndex >= 0 && rangeWaves[prevIndex] < wave && res[prevIndex] == null) return;
+                if (nextIndex < ranges.size() && rangeWaves[nextIndex] < wave && res[nextIndex] == null) return;
+                // start from the solution of a neighbour computed before, which only depends on the waves
+                var initialGuess = NaN;
+                if (prevIndex >= 0 && rangeWaves[prevIndex] < wave) initialGuess = rangeInputs[prevIndex];
+                if (Double.isNaN(initialGuess) && nextIndex < ranges.size() && rangeWaves[nextIndex] < wave)
+                    initialGuess = rangeInputs[nextIndex];
+                try {
+                    var range = ranges.get(rangeIndex);
+                    var imposedBeginSpeed = imposedTransitionSpeeds[rangeIndex];
+                    var imposedEndSpeed = imposedTransitionSpeeds[rangeIndex + 1];
+                    var solution = computeAllowanceRange(
+                            envelopeRanges[rangeIndex],
+                            context,
+                            range.value,
+                            imposedBeginSpeed,
+                            imposedEndSpeed,
+                            tolerances[rangeIndex],
+                            initialGuess);
+                    var allowanceRange = solution.envelope;
+                    // memorize the beginning and end speeds
+                    imposedTransitionSpeeds[rangeIndex] = allowanceRange.getBeginSpeed();
+                    imposedTransitionSpeeds[rangeIndex + 1] = allowanceRange.getEndSpeed();
+                    rangeInputs[rangeIndex] = solution.input;
+                    res[rangeIndex] = allowanceRange;
+                } catch (OSRDError e) {
+                    e.context.put("allowance_range_index", rangeIndex);
+                    errors[rangeIndex] = e;
+                }
+            });
+        }
+
+        // report the error which would have been met first when computing ranges one by one
+        for (var rangeIndex : rangeOrder) if (errors[rangeIndex] != null) throw errors[rangeIndex];
         return res;
     }
 
     /**
      * Apply the allowance to the given range. Split the range into sections, separated by stops,
-     * which are independently computed.
+     * which are independently computed. The search on each section starts from the solution of the
+     * previous one.
      */
-    private Envelope computeAllowanceRange(
+    private AllowanceSolution computeAllowanceRange(
             Envelope envelopeRange,
             EnvelopeSimContext context,
             AllowanceValue value,
             double imposedRangeBeginSpeed,
             double imposedRangeEndSpeed,
-            double tolerance) {
+            double tolerance,
+            double initialGuess) {
         // compute the added time for all the allowance range
         var baseTime = envelopeRange.getTotalTime();
         var baseDistance = envelopeRange.getTotalDistance();
         var addedTime = value.getAllowanceTime(baseTime, baseDistance);
         // if no time is added, just return the base envelope without performing binary search
         if (areTimesEqual(0.0, addedTime)) {
-            return envelopeRange;
+            return new AllowanceSolution(envelopeRange, initialGuess);
         }
         assert addedTime > 0 : String.format("Adding negative time from allowance %s (%s seconds)", value, addedTime);
 
@@ -306,23 +374,32 @@ public abstract class AbstractAllowanceWithRanges implements Allowance {
             var imposedEndSpeed = sectionEndPos == rangeEndPos ? imposedRangeEndSpeed : NaN;
 
             var distributedTolerance = tolerance * sectionRatio;
-            var allowanceSection = computeAllowanceSection(
-                    section, context, targetTime, imposedBeginSpeed, imposedEndSpeed, distributedTolerance);
+            var solution = computeAllowanceSection(
+                    section,
+                    context,
+                    targetTime,
+                    imposedBeginSpeed,
+                    imposedEndSpeed,
+                    distributedTolerance,
+                    initialGuess);
+            var allowanceSection = solution.envelope;
             assert abs(allowanceSection.getTotalTime() - targetTime) <= context.timeStep;
             builder.addEnvelope(allowanceSection);
+            initialGuess = solution.input;
         }
-        return builder.build();
+        return new AllowanceSolution(builder.build(), initialGuess);
     }
 
     /** Iteratively apply the allowance on the given section, until the target time is reached */
-    private Envelope computeAllowanceSection(
+    private AllowanceSolution computeAllowanceSection(
             Envelope envelopeSection,
             EnvelopeSimContext context,
             double targetTime,
             double imposedBeginSpeed,
             double imposedEndSpeed,
-            double tolerance) {
-        // perform a binary search
+            double tolerance,
+            double initialGuess) {
+        // search for the input giving the target time
         var initialLowBound = computeInitialLowBound(envelopeSection);
         var initialHighBound = computeInitialHighBound(envelopeSection, context.rollingStock);
         if (initialLowBound > initialHighBound) {
@@ -332,13 +409,15 @@ public abstract class AbstractAllowanceWithRanges implements Allowance {
         }
 
         Envelope res = null;
+        double resInput = NaN;
         OSRDError lastError = null;
-        var search = new DoubleBinarySearch(initialLowBound, initialHighBound, targetTime, tolerance, true);
+        var search = makeSearch(initialLowBound, initialHighBound, initialGuess, targetTime, tolerance);
         double lastTime = 0.0;
         for (int i = 1; i < 30 && !search.complete(); i++) {
             var input = search.getInput();
             try {
                 res = computeIteration(envelopeSection, context, input, imposedBeginSpeed, imposedEndSpeed);
+                resInput = input;
                 lastTime = res.getTotalTime();
                 search.feedback(lastTime);
             } catch (OSRDError allowanceError) {
@@ -349,7 +428,7 @@ public abstract class AbstractAllowanceWithRanges implements Allowance {
                     search.feedback(Double.POSITIVE_INFINITY);
                 else if (allowanceError.osrdErrorType.equals(ErrorType.AllowanceConvergenceNotEnoughTime))
                     // Can't go fast enough to even build a valid envelope: we need to go slower
-                    search.feedback(0);
+                    search.feedback(Double.NEGATIVE_INFINITY);
                 else
                     // Internal error, can't be handled here, rethrown
                     throw allowanceError;
@@ -378,7 +457,8 @@ public abstract class AbstractAllowanceWithRanges implements Allowance {
                 }
             }
         }
-        return res;
+        logger.debug("    allowance section computed in {} iterations", search.getIterations());
+        return new AllowanceSolution(res, resInput);
     }
 
     /** Compute one iteration of the binary search */
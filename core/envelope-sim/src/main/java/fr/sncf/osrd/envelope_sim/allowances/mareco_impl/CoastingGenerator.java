@@ -51,16 +51,17 @@ public final class CoastingGenerator {
         var initInter = constrainedBuilder.initEnvelopePart(position, speed, -1);
         assert initInter;
         boolean reachedLowLimit = false;
+        var integrator = new PrimitiveIntegrator(context);
         while (true) {
-            var step = TrainPhysicsIntegrator.step(context, position, speed, Action.COAST, -1);
-            position += step.positionDelta;
-            speed = step.endSpeed;
+            integrator.step(position, speed, Action.COAST, -1);
+            position += integrator.positionDelta;
+            speed = integrator.endSpeed;
             if (!areSpeedsEqual(speed, lowSpeedLimit) && speed < lowSpeedLimit) {
                 speed = lowSpeedLimit;
                 reachedLowLimit = true;
             }
 
-            if (!constrainedBuilder.addStep(position, speed, step.timeDelta)) break;
+            if (!constrainedBuilder.addStep(position, speed, integrator.timeDelta)) break;
         }
 
         if (backwardPartBuilder.isEmpty()) return null;
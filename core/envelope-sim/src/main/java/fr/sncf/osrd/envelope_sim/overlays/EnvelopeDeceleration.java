@@ -3,7 +3,7 @@ package fr.sncf.osrd.envelope_sim.overlays;
 import fr.sncf.osrd.envelope.part.InteractiveEnvelopePartConsumer;
 import fr.sncf.osrd.envelope_sim.Action;
 import fr.sncf.osrd.envelope_sim.EnvelopeSimContext;
-import fr.sncf.osrd.envelope_sim.TrainPhysicsIntegrator;
+import fr.sncf.osrd.envelope_sim.PrimitiveIntegrator;
 
 public class EnvelopeDeceleration {
     /** Generate a deceleration curve overlay */
@@ -16,11 +16,12 @@ public class EnvelopeDeceleration {
         if (!consumer.initEnvelopePart(startPosition, startSpeed, direction)) return;
         double position = startPosition;
         double speed = startSpeed;
+        var integrator = new PrimitiveIntegrator(context);
         while (true) {
-            var step = TrainPhysicsIntegrator.step(context, position, speed, Action.BRAKE, direction);
-            position += step.positionDelta;
-            speed = step.endSpeed;
-            if (!consumer.addStep(position, speed, step.timeDelta)) break;
+            integrator.step(position, speed, Action.BRAKE, direction);
+            position += integrator.positionDelta;
+            speed = integrator.endSpeed;
+            if (!consumer.addStep(position, speed, integrator.timeDelta)) break;
         }
     }
 }
@@ -12,7 +12,7 @@ package fr.sncf.osrd.envelope_utils;
  *     }
  * </pre>
  */
-public final class DoubleBinarySearch {
+public final class DoubleBinarySearch implements DoubleSearch {
     /** The current low bound estimate */
     private double lowBound;
 
@@ -42,6 +42,9 @@ public final class DoubleBinarySearch {
     /** Whether we have raised the low bound at least once */
     private boolean hasRaisedLowBound;
 
+    /** The number of outputs fed back so far */
+    private int iterations;
+
     /**
      * Returns a binary search helper.
      *
@@ -69,26 +72,27 @@ public final class DoubleBinarySearch {
         return (lowBound + highBound) / 2;
     }
 
-    /** Returns true when the search is complete */
+    @Override
     public boolean complete() {
         return isComplete;
     }
 
-    /** Returns the next input of the binary search */
+    @Override
     public double getInput() {
         assert !isComplete;
         return input;
     }
 
-    /** Return the result of the binary search (the input which satisfied the goal) */
+    @Override
     public double getResult() {
         assert isComplete;
         return input;
     }
 
-    /** Feeds back the output of the tested function for the current input */
+    @Override
     public void feedback(double output) {
         assert !isComplete;
+        iterations++;
 
         var delta = output - target;
         if (Math.abs(delta) <= targetErrorMargin) {
@@ -107,13 +111,18 @@ public final class DoubleBinarySearch {
         this.input = estimateInput(lowBound, highBound);
     }
 
-    /** Returns true if we have lowered the high bound at least once */
+    @Override
     public boolean hasLoweredHighBound() {
         return hasLoweredHighBound;
     }
 
-    /** Returns true if we have raised the low bound at least once */
+    @Override
     public boolean hasRaisedLowBound() {
         return hasRaisedLowBound;
     }
+
+    @Override
+    public int getIterations() {
+        return iterations;
+    }
 }
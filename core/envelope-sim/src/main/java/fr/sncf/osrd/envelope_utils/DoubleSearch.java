@@ -0,0 +1,38 @@
+package fr.sncf.osrd.envelope_utils;
+
+/**
+ * Searches for the input of a monotonic function which gives a target output, within bounds. Searches are used as
+ * follows:
+ *
+ * <pre>
+ *     while (!search.complete()) {
+ *         var input = search.getInput();
+ *         search.feedback(f(input));
+ *     }
+ * </pre>
+ *
+ * <p>When the function can't be evaluated on an input, an infinite output can be fed back to tell on which side of
+ * the target it would be.
+ */
+public interface DoubleSearch {
+    /** Returns true when the search is complete */
+    boolean complete();
+
+    /** Returns the next input to evaluate */
+    double getInput();
+
+    /** Return the result of the search (the input which satisfied the goal) */
+    double getResult();
+
+    /** Feeds back the output of the tested function for the current input */
+    void feedback(double output);
+
+    /** Returns true if we have lowered the high bound at least once */
+    boolean hasLoweredHighBound();
+
+    /** Returns true if we have raised the low bound at least once */
+    boolean hasRaisedLowBound();
+
+    /** Returns the number of outputs fed back so far */
+    int getIterations();
+}
@@ -0,0 +1,171 @@
+package fr.sncf.osrd.envelope_utils;
+
+/**
+ * Same as {@link DoubleBinarySearch}, but the next input is estimated using the secant of the last two outputs when
+ * possible. It usually needs far fewer iterations, as long as the function is close to linear near the target.
+ *
+ * <p>Bounds are updated the same way as in a binary search, and secant estimates outside of the bounds are discarded.
+ * When the last secant step didn't at least halve the distance to the target, or when outputs are infinite, the
+ * search falls back to the middle of the bounds.
+ *
+ * <p>The search can start from an initial guess, such as the result of a similar search.
+ */
+public final class DoubleSecantSearch implements DoubleSearch {
+    /** Size of the step taken after the first input, relative to the initial bounds */
+    private static final double FIRST_STEP = 0.2;
+
+    /** Size of the step taken after an initial guess, which is expected to be close to the result */
+    private static final double INITIAL_GUESS_STEP = 0.02;
+
+    /** The current low bound estimate */
+    private double lowBound;
+
+    /** The current high bound estimate */
+    private double highBound;
+
+    /** The current input */
+    private double input;
+
+    /** The target output value */
+    public final double target;
+
+    /** The acceptable distance to the target */
+    public final double targetErrorMargin;
+
+    /** Positive if increasing, negative if decreasing */
+    private final double direction;
+
+    /** The size of the step taken after the first input */
+    private final double firstStep;
+
+    /** The previous input, and its distance to the target, NaN if it can't be used for a secant step */
+    private double lastInput = Double.NaN;
+
+    private double lastDelta = Double.NaN;
+
+    /** Whether the current input was estimated with a secant step */
+    private boolean isSecantStep;
+
+    /** Whether the search is complete */
+    private boolean isComplete;
+
+    /** Whether we have lowered the high bound at least once */
+    private boolean hasLoweredHighBound;
+
+    /** Whether we have raised the low bound at least once */
+    private boolean hasRaisedLowBound;
+
+    /** The number of outputs fed back so far */
+    private int iterations;
+
+    /**
+     * Returns a secant search helper.
+     *
+     * @param lowBound The low initial estimate
+     * @param highBound The high initial estimate
+     * @param initialGuess The first input to evaluate, NaN to start from the middle of the bounds
+     * @param target The target output value
+     * @param targetErrorMargin The acceptable error for stopping the search
+     * @param decreasing Whether the output decreases when the input increases
+     */
+    public DoubleSecantSearch(
+            double lowBound,
+            double highBound,
+            double initialGuess,
+            double target,
+            double targetErrorMargin,
+            boolean decreasing) {
+        this.lowBound = lowBound;
+        this.highBound = highBound;
+        this.target = target;
+        this.targetErrorMargin = targetErrorMargin;
+        this.direction = decreasing ? -1 : 1;
+        if (initialGuess > lowBound && initialGuess < highBound) {
+            this.input = initialGuess;
+            this.firstStep = (highBound - lowBound) * INITIAL_GUESS_STEP;
+        } else {
+            this.input = (lowBound + highBound) / 2;
+            this.firstStep = (highBound - lowBound) * FIRST_STEP;
+        }
+    }
+
+    @Override
+    public boolean complete() {
+        return isComplete;
+    }
+
+    @Override
+    public double getInput() {
+        assert !isComplete;
+        return input;
+    }
+
+    @Override
+    public double getResult() {
+        assert isComplete;
+        return input;
+    }
+
+    @Override
+    public void feedback(double output) {
+        assert !isComplete;
+        iterations++;
+
+        var delta = output - target;
+        if (Math.abs(delta) <= targetErrorMargin) {
+            isComplete = true;
+            return;
+        }
+
+        var raiseLowBound = DoubleUtils.conditionalNegate(delta, direction) < 0;
+        if (raiseLowBound) {
+            lowBound = input;
+            hasRaisedLowBound = true;
+        } else {
+            highBound = input;
+            hasLoweredHighBound = true;
+        }
+
+        var nextInput = Double.NaN;
+        var wasSecantStep = isSecantStep;
+        isSecantStep = false;
+        if (Double.isFinite(delta)) {
+            var isSlow = wasSecantStep && Math.abs(delta) > Math.abs(lastDelta) / 2;
+            if (!Double.isNaN(lastDelta) && delta != lastDelta && !isSlow) {
+                nextInput = input - delta * (input - lastInput) / (delta - lastDelta);
+                isSecantStep = true;
+            } else if (iterations == 1) {
+                // a single output gives the side of the target, but not the distance to it: take a
+                // small step towards the target, as the first input may be a close initial guess
+                nextInput = raiseLowBound ? input + firstStep : input - firstStep;
+            }
+            lastInput = input;
+            lastDelta = delta;
+        } else {
+            lastInput = Double.NaN;
+            lastDelta = Double.NaN;
+        }
+
+        if (nextInput > lowBound && nextInput < highBound) {
+            input = nextInput;
+        } else {
+            isSecantStep = false;
+            input = (lowBound + highBound) / 2;
+        }
+    }
+
+    @Override
+    public boolean hasLoweredHighBound() {
+        return hasLoweredHighBound;
+    }
+
+    @Override
+    public boolean hasRaisedLowBound() {
+        return hasRaisedLowBound;
+    }
+
+    @Override
+    public int getIterations() {
+        return iterations;
+    }
+}
@@ -121,6 +121,33 @@ public class AllowanceRangesTests {
         assertEquals(marecoEnvelope.getTotalTime(), targetTime1 + targetTime2 + targetTime3, testContext.timeStep);
     }
 
+    /** Test many ranges, some of which are computed concurrently */
+    @Test
+    public void testManyRanges() {
+        var length = 100_000;
+        var testContext = makeSimpleContext(length, 0);
+        var stops = new double[] {50000, length};
+        var maxEffortEnvelope = makeComplexMaxEffortEnvelope(testContext, stops);
+        var percentages = new double[] {5, 12, 3, 8, 15, 6, 10, 4, 9, 7};
+        var ranges = new ArrayList<AllowanceRange>();
+        var rangeLength = length / percentages.length;
+        for (int i = 0; i < percentages.length; i++)
+            ranges.add(new AllowanceRange(
+                    i * rangeLength, (i + 1) * rangeLength, new AllowanceValue.Percentage(percentages[i])));
+        var allowance = new MarecoAllowance(0, length, 30 / 3.6, ranges);
+        var marecoEnvelope = allowance.apply(maxEffortEnvelope, testContext);
+        assertTrue(marecoEnvelope.continuous);
+        for (var range : allowance.ranges) {
+            var baseTime = maxEffortEnvelope.getTimeBetween(range.beginPos, range.endPos);
+            var targetTime = baseTime + range.value.getAllowanceTime(baseTime, range.endPos - range.beginPos);
+            var marginTime = marecoEnvelope.getTimeBetween(range.beginPos, range.endPos);
+            assertEquals(targetTime, marginTime, testContext.timeStep);
+        }
+        // the same ranges give the same result
+        var otherEnvelope = allowance.apply(maxEffortEnvelope, testContext);
+        assertEquals(marecoEnvelope.getTotalTime(), otherEnvelope.getTotalTime());
+    }
+
     /** Test ranges with increasing values */
     @Test
     public void testRangesWithIncreasingValues() {
@@ -11,8 +11,12 @@ import com.google.common.collect.TreeRangeMap;
 import fr.sncf.osrd.envelope_sim.electrification.Electrification;
 import fr.sncf.osrd.envelope_sim.electrification.Electrified;
 import fr.sncf.osrd.envelope_sim.electrification.NonElectrified;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Random;
+import java.util.function.DoubleUnaryOperator;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.ValueSource;
@@ -39,6 +43,76 @@ public class EnvelopeSimPathTest {
         assertEquals(1, path.getAverageGrade(2, 4));
     }
 
+    @Test
+    void gradeCursorSameAsAverageGrade() {
+        var path = buildNonElectrified(10, new double[] {0, 3, 6, 9, 10}, new double[] {0, 2, -2, 0});
+        var cursor = path.gradeCursor();
+        // moving forward, backward, jumping, and on grade change positions
+        var queries = new double[][] {
+            {0, 0}, {0, 1.5}, {1, 2.5}, {2, 3}, {3, 4.2}, {3.5, 6.7}, {8, 10}, {0.5, 9.5}, {4, 4}, {6, 6}, {10, 10},
+            {2.5, 3.5}, {0, 10}
+        };
+        for (var query : queries)
+            assertEquals(path.getAverageGrade(query[0], query[1]), cursor.getAverageGrade(query[0], query[1]));
+    }
+
+    /** The average grade as computed before grade cursors, with a binary search for each position */
+    private static double binarySearchAverageGrade(double[] positions, double[] values, double begin, double end) {
+        var cumSum = new double[positions.length];
+        for (int i = 0; i < positions.length - 1; i++)
+            cumSum[i + 1] = cumSum[i] + values[i] * (positions[i + 1] - positions[i]);
+        DoubleUnaryOperator cumGrade = position -> {
+            var pointIndex = Arrays.binarySearch(positions, position);
+            if (pointIndex >= 0) return cumSum[pointIndex];
+            var rangeIndex = -(pointIndex + 1) - 1;
+            return cumSum[rangeIndex] + values[rangeIndex] * (position - positions[rangeIndex]);
+        };
+        if (begin == end) return cumGrade.applyAsDouble(begin);
+        return (cumGrade.applyAsDouble(end) - cumGrade.applyAsDouble(begin)) / (end - begin);
+    }
+
+    @Test
+    void gradeCursorSameAsBinarySearchOnManyGradeChanges() {
+        var random = new Random(42);
+        var gradeCount = 1000;
+        var positions = new double[gradeCount + 1];
+        var values = new double[gradeCount];
+        for (int i = 0; i < gradeCount; i++) {
+            positions[i + 1] = positions[i] + 1 + random.nextInt(200) + random.nextDouble();
+            values[i] = random.nextDouble() * 60 - 30;
+        }
+        var length = positions[gradeCount];
+        var path = new EnvelopeSimPath(
+                length, positions, values, ImmutableRangeMap.of(Range.closed(0.0, length), new NonElectrified()),
+                new HashMap<>());
+        var cursor = path.gradeCursor();
+
+        var queries = new ArrayList<double[]>();
+        // integration steps forward, then backward as when building braking curves, crossing many grade changes
+        for (double position = 0; position + 10 <= length; position += 7.3)
+            queries.add(new double[] {position, position + 10});
+        for (double position = length; position - 10 >= 0; position -= 7.3)
+            queries.add(new double[] {position - 10, position});
+        // queries starting or ending on grade changes, and random jumps in both directions
+        for (int i = 0; i < gradeCount; i++) {
+            queries.add(new double[] {positions[i], positions[i + 1]});
+            queries.add(new double[] {positions[i], positions[i]});
+        }
+        for (int i = 0; i < 10_000; i++) {
+            var begin = random.nextDouble() * length;
+            var end = begin + random.nextDouble() * Math.min(50, length - begin);
+            queries.add(new double[] {begin, end});
+        }
+        queries.add(new double[] {length, length});
+        queries.add(new double[] {0, length});
+
+        for (var query : queries) {
+            var expected = binarySearchAverageGrade(positions, values, query[0], query[1]);
+            assertEquals(expected, cursor.getAverageGrade(query[0], query[1]), "grade on " + Arrays.toString(query));
+            assertEquals(expected, path.getAverageGrade(query[0], query[1]));
+        }
+    }
+
     @Test
     void getElectrificationModeAndProfileOnlyModes() {
         var modes = TreeRangeMap.<Double, Electrification>create();
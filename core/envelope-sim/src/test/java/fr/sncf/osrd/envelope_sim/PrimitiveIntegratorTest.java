@@ -0,0 +1,63 @@
+package fr.sncf.osrd.envelope_sim;
+
+import static fr.sncf.osrd.envelope_sim.EnvelopeSimPathBuilder.buildNonElectrified;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.google.common.collect.ImmutableRangeMap;
+import com.google.common.collect.Range;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+public class PrimitiveIntegratorTest {
+    /** A path with varying grades, and tractive effort curves changing along the way */
+    private static EnvelopeSimContext makeContext(SimpleRollingStock rollingStock, double timeStep) {
+        var path = buildNonElectrified(
+                10_000, new double[] {0, 2_000, 2_500, 6_000, 10_000}, new double[] {0, 12.5, -8, 3});
+        var maxSpeed = 300 / 3.6;
+        var linearCurve = SimpleRollingStock.createEffortSpeedCurve(maxSpeed, SimpleRollingStock.CurveShape.LINEAR);
+        var hyperbolicCurve =
+                SimpleRollingStock.createEffortSpeedCurve(maxSpeed, SimpleRollingStock.CurveShape.HYPERBOLIC);
+        var curves = ImmutableRangeMap.<Double, PhysicsRollingStock.TractiveEffortPoint[]>builder()
+                .put(Range.lessThan(1_000.0), linearCurve)
+                .put(Range.closed(1_000.0, 4_000.0), hyperbolicCurve)
+                .put(Range.greaterThan(4_000.0), linearCurve)
+                .build();
+        return new EnvelopeSimContext(rollingStock, path, timeStep, curves);
+    }
+
+    /** Runs the same steps with both integrators, and checks that results are exactly the same */
+    private static void checkSameSteps(
+            EnvelopeSimContext context, double startPosition, double startSpeed, Action action, double direction) {
+        var integrator = new PrimitiveIntegrator(context);
+        var position = startPosition;
+        var speed = startSpeed;
+        for (int i = 0; i < 500; i++) {
+            if (position < 0 || position > context.path.getLength()) break;
+            var expected = TrainPhysicsIntegrator.step(context, position, speed, action, direction);
+            integrator.step(position, speed, action, direction);
+            assertEquals(expected.timeDelta, integrator.timeDelta);
+            assertEquals(expected.positionDelta, integrator.positionDelta);
+            assertEquals(expected.endSpeed, integrator.endSpeed);
+            assertEquals(expected.acceleration, integrator.acceleration);
+            position += expected.positionDelta;
+            speed = expected.endSpeed;
+        }
+    }
+
+    @Test
+    public void sameResultsAsTrainPhysicsIntegrator() {
+        var rollingStocks = List.of(
+                SimpleRollingStock.STANDARD_TRAIN, SimpleRollingStock.SHORT_TRAIN, SimpleRollingStock.MAX_DEC_TRAIN);
+        for (var rollingStock : rollingStocks) {
+            for (var timeStep : new double[] {0.5, 2, 4}) {
+                var context = makeContext(rollingStock, timeStep);
+                checkSameSteps(context, 0, 0, Action.ACCELERATE, 1);
+                checkSameSteps(context, 500, 30, Action.MAINTAIN, 1);
+                checkSameSteps(context, 1_500, 60, Action.COAST, 1);
+                checkSameSteps(context, 3_000, 50, Action.BRAKE, 1);
+                checkSameSteps(context, 9_500, 0, Action.BRAKE, -1);
+                checkSameSteps(context, 8_000, 40, Action.COAST, -1);
+            }
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package fr.sncf.osrd.envelope_utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.function.DoubleUnaryOperator;
+import org.junit.jupiter.api.Test;
+
+public class DoubleSecantSearchTest {
+    private static void run(DoubleSearch search, DoubleUnaryOperator function) {
+        for (int i = 0; i < 1000 && !search.complete(); i++) {
+            var input = search.getInput();
+            search.feedback(function.applyAsDouble(input));
+        }
+        assertTrue(search.complete());
+    }
+
+    @Test
+    public void increasingTest() {
+        var search = new DoubleSecantSearch(0, 10, Double.NaN, 4, 0.001, false);
+        run(search, input -> input * input * input);
+        assertEquals(1.59, search.getResult(), 0.01);
+    }
+
+    @Test
+    public void decreasingTest() {
+        var search = new DoubleSecantSearch(0, 10, Double.NaN, 0, 0.001, true);
+        run(search, input -> 4 - input * input * input);
+        assertEquals(1.59, search.getResult(), 0.01);
+    }
+
+    @Test
+    public void fewerIterationsThanBinarySearch() {
+        DoubleUnaryOperator travelTime = speed -> 1000 / speed;
+        var binarySearch = new DoubleBinarySearch(1, 100, 37, 0.01, true);
+        run(binarySearch, travelTime);
+        var secantSearch = new DoubleSecantSearch(1, 100, Double.NaN, 37, 0.01, true);
+        run(secantSearch, travelTime);
+        assertTrue(secantSearch.getIterations() < binarySearch.getIterations());
+        // starting close to the result is even faster
+        var warmSearch = new DoubleSecantSearch(1, 100, 27, 37, 0.01, true);
+        run(warmSearch, travelTime);
+        assertTrue(warmSearch.getIterations() < secantSearch.getIterations());
+    }
+
+    @Test
+    public void infiniteOutputs() {
+        // the function can't be evaluated below 2, but is known to be too high there
+        var search = new DoubleSecantSearch(0, 10, 1, 20, 0.001, true);
+        run(search, input -> input < 2 ? Double.POSITIVE_INFINITY : 100 / input);
+        assertEquals(5, search.getResult(), 0.01);
+        assertTrue(search.hasRaisedLowBound());
+    }
+}
@@ -0,0 +1,146 @@
+package fr.sncf.osrd
+
+import fr.sncf.osrd.utils.HeapSize
+
+/**
+ * Fingerprints of the railjson objects blocks are built from, used to find out which of them
+ * changed between two versions of an infra. Each fingerprint is a hash of the object, along with
+ * the track sections the object lies on. Only the length of track sections is fingerprinted: their
+ * geometry, slopes or curves don't change blocks.
+ */
+class RJSInfraFingerprint {
+    private class ObjectFingerprint(val hash: Long, val trackSections: List<String>)
+
+    private val objects = mutableMapOf<String, MutableMap<String, ObjectFingerprint>>()
+
+    /** Whether objects of this collection are fingerprinted */
+    fun covers(collection: RJSInfraCollection<*>): Boolean {
+        return collection in COLLECTIONS
+    }
+
+    /** Records a railjson object, given as a JSON value (maps, lists, strings, numbers) */
+    fun add(collection: RJSInfraCollection<*>, jsonValue: Any?) {
+        @Suppress("UNCHECKED_CAST") val rjsObject = jsonValue as Map<String, Any?>
+        val id = rjsObject["id"] as String
+        val fingerprint =
+            when (collection) {
+                RJSInfraCollection.TRACK_SECTIONS ->
+                    ObjectFingerprint(hash(listOf(id, rjsObject["length"])), listOf(id))
+                RJSInfraCollection.SWITCHES -> {
+                    @Suppress("UNCHECKED_CAST")
+                    val ports = rjsObject["ports"] as Map<String, Map<String, Any?>>? ?: mapOf()
+                    ObjectFingerprint(hash(rjsObject), ports.values.map { it["track"] as String })
+                }
+                else ->
+                    ObjectFingerprint(hash(rjsObject), listOfNotNull(rjsObject["track"] as String?))
+            }
+        objects.getOrPut(collection.jsonName) { mutableMapOf() }[id] = fingerprint
+    }
+
+    /** Lists the objects which were added, removed or modified since the [previous] version */
+    fun diff(previous: RJSInfraFingerprint): RJSInfraDelta {
+        val changedObjects = mutableMapOf<String, Set<String>>()
+        val affectedTrackSections = mutableSetOf<String>()
+        for (collection in COLLECTIONS) {
+            val current = objects[collection.jsonName] ?: mapOf()
+            val old = previous.objects[collection.jsonName] ?: mapOf()
+            val changed = mutableSetOf<String>()
+            for (id in current.keys union old.keys) {
+                val currentObject = current[id]
+                val oldObject = old[id]
+                if (currentObject?.hash == oldObject?.hash) continue
+                changed.add(id)
+                // Objects which moved affect both their old and new locations
+                currentObject?.let { affectedTrackSections.addAll(it.trackSections) }
+                oldObject?.let { affectedTrackSections.addAll(it.trackSections) }
+            }
+            if (changed.isNotEmpty()) changedObjects[collection.jsonName] = changed
+        }
+        return RJSInfraDelta(changedObjects, affectedTrackSections)
+    }
+
+    /** An estimation of the heap retained by the fingerprints, in bytes */
+    fun estimatedHeapSize(): Long {
+        var size = HeapSize.hashMap(objects.size)
+        for (collection in objects.values) {
+            size += HeapSize.hashMap(collection.size)
+            for ((id, fingerprint) in collection) {
+                size += HeapSize.string(id) + HeapSize.OBJECT_HEADER + 8 + HeapSize.REFERENCE
+                size += HeapSize.list(fingerprint.trackSections.size)
+            }
+        }
+        return size
+    }
+
+    companion object {
+        private val COLLECTIONS =
+            listOf(
+                RJSInfraCollection.DETECTORS,
+                RJSInfraCollection.BUFFER_STOPS,
+                RJSInfraCollection.TRACK_SECTIONS,
+                RJSInfraCollection.SWITCH_TYPES,
+                RJSInfraCollection.SWITCHES,
+                RJSInfraCollection.ROUTES,
+                RJSInfraCollection.SIGNALS,
+            )
+
+        /** A 64 bits hash of a JSON value, which doesn't depend on the order of object keys */
+        private fun hash(value: Any?): Long {
+            return when (value) {
+                null -> 0x3c6ef372fe94f82bL
+                is Map<*, *> ->
+                    value.entries.fold(0x5851f42d4c957f2dL) { acc, (k, v) ->
+                        acc + mix(hash(k) * 31 + hash(v))
+                    }
+                is List<*> -> value.fold(0x14057b7ef767814fL) { acc, v -> mix(acc * 31 + hash(v)) }
+                // FNV-1a
+                is String ->
+                    value.fold(-0x340d631b7bdddcdbL) { acc, c ->
+                        (acc xor c.code.toLong()) * 0x100000001b3L
+                    }
+                is Double -> mix(value.toRawBits())
+                else -> mix(value.hashCode().toLong())
+            }
+        }
+
+        /** The finalizer of splitmix64, which spreads the bits of its input */
+        private fun mix(value: Long): Long {
+            var z = value
+            z = (z xor (z ushr 30)) * -0x40a7b892e31b1a47L
+            z = (z xor (z ushr 27)) * -0x6b2fb644ecceee15L
+            return z xor (z ushr 31)
+        }
+    }
+}
+
+/**
+ * The railjson objects blocks are built from which changed between two versions of an infra: ids of
+ * the added, removed or modified objects of each collection, see [RJSInfraFingerprint].
+ */
+class RJSInfraDelta(
+    val changedObjects: Map<String, Set<String>>,
+    /** Track sections which changed, or hold a changed detector, buffer stop, signal or switch */
+    val affectedTrackSections: Set<String>,
+) {
+    /** Whether both versions have the same blocks */
+    val isEmpty: Boolean
+        get() = changedObjects.isEmpty()
+
+    /** The number of added, removed or modified objects */
+    val size: Int
+        get() = changedObjects.values.sumOf { it.size }
+
+    fun changed(collection: RJSInfraCollection<*>): Set<String> {
+        return changedObjects[collection.jsonName] ?: setOf()
+    }
+
+    val changedRoutes: Set<String>
+        get() = changed(RJSInfraCollection.ROUTES)
+
+    /**
+     * Whether the changes can be located on track sections. Switch types apply to any switch of
+     * their type, wherever it is.
+     */
+    val isLocal: Boolean
+        get() = changed(RJSInfraCollection.SWITCH_TYPES).isEmpty()
+}
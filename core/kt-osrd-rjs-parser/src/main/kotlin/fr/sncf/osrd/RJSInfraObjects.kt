@@ -0,0 +1,179 @@
+package fr.sncf.osrd
+
+import com.squareup.moshi.JsonReader
+import com.squareup.moshi.Moshi
+import fr.sncf.osrd.railjson.schema.common.ID
+import fr.sncf.osrd.railjson.schema.infra.*
+import fr.sncf.osrd.railjson.schema.infra.trackobjects.RJSBufferStop
+import fr.sncf.osrd.railjson.schema.infra.trackobjects.RJSSignal
+import fr.sncf.osrd.railjson.schema.infra.trackobjects.RJSTrainDetector
+import fr.sncf.osrd.railjson.schema.infra.trackranges.RJSElectrification
+import fr.sncf.osrd.railjson.schema.infra.trackranges.RJSNeutralSection
+import fr.sncf.osrd.railjson.schema.infra.trackranges.RJSSpeedSection
+import java.io.Closeable
+import okio.BufferedSource
+
+/** A top-level collection of objects of a railjson infra */
+class RJSInfraCollection<T>(
+    val jsonName: String,
+    val type: Class<T>,
+    val getter: (RJSInfra) -> Collection<T>?,
+) {
+    companion object {
+        val TRACK_SECTIONS =
+            RJSInfraCollection("track_sections", RJSTrackSection::class.java) { it.trackSections }
+        val SWITCHES = RJSInfraCollection("switches", RJSSwitch::class.java) { it.switches }
+        val OPERATIONAL_POINTS =
+            RJSInfraCollection("operational_points", RJSOperationalPoint::class.java) {
+                it.operationalPoints
+            }
+        val ROUTES = RJSInfraCollection("routes", RJSRoute::class.java) { it.routes }
+        val SWITCH_TYPES =
+            RJSInfraCollection("extended_switch_types", RJSSwitchType::class.java) {
+                it.switchTypes
+            }
+        val SIGNALS = RJSInfraCollection("signals", RJSSignal::class.java) { it.signals }
+        val BUFFER_STOPS =
+            RJSInfraCollection("buffer_stops", RJSBufferStop::class.java) { it.bufferStops }
+        val DETECTORS =
+            RJSInfraCollection("detectors", RJSTrainDetector::class.java) { it.detectors }
+        val SPEED_SECTIONS =
+            RJSInfraCollection("speed_sections", RJSSpeedSection::class.java) { it.speedSections }
+        val ELECTRIFICATIONS =
+            RJSInfraCollection("electrifications", RJSElectrification::class.java) {
+                it.electrifications
+            }
+        val NEUTRAL_SECTIONS =
+            RJSInfraCollection("neutral_sections", RJSNeutralSection::class.java) {
+                it.neutralSections
+            }
+
+        /**
+         * All collections, in the order they are parsed in. editoast emits railjson collections in
+         * this order, which lets them be parsed as they are read.
+         */
+        val ALL =
+            listOf(
+                DETECTORS,
+                BUFFER_STOPS,
+                TRACK_SECTIONS,
+                ELECTRIFICATIONS,
+                NEUTRAL_SECTIONS,
+                SPEED_SECTIONS,
+                OPERATIONAL_POINTS,
+                SWITCH_TYPES,
+                SWITCHES,
+                ROUTES,
+                SIGNALS,
+            )
+    }
+}
+
+/** Gives access to the objects of a railjson infra, one collection at a time */
+interface RJSInfraObjects {
+    fun <T> forEach(collection: RJSInfraCollection<T>, action: (T) -> Unit)
+}
+
+/** Reads the objects of an already deserialized railjson infra */
+class InMemoryRJSInfraObjects(private val rjsInfra: RJSInfra) : RJSInfraObjects {
+    override fun <T> forEach(collection: RJSInfraCollection<T>, action: (T) -> Unit) {
+        collection.getter(rjsInfra)?.forEach(action)
+    }
+}
+
+/**
+ * Reads the objects of a railjson infra straight from its JSON, in a single pass, without ever
+ * deserializing the whole infra at once: each object is handed over as soon as it is read, and can
+ * be collected once parsed.
+ *
+ * Parsing requires collections in dependency order (see [RJSInfraCollection.ALL]), which may
+ * differ from the order of the JSON. When a collection is requested, the document is read forward
+ * until its key: collections met on the way are deserialized and kept until they are requested,
+ * other keys are skipped. Each collection can thus only be visited once.
+ *
+ * Only JSON in dependency order, such as the railjson sent by editoast, is read without keeping any
+ * collection around.
+ *
+ * When a fingerprint is given, the objects it covers are recorded into it as they are read.
+ */
+class StreamingRJSInfraObjects
+@JvmOverloads
+constructor(
+    private val source: BufferedSource,
+    private val fingerprint: RJSInfraFingerprint? = null,
+) : RJSInfraObjects, Closeable {
+    private val reader = JsonReader.of(source)
+    private val pendingCollections = mutableMapOf<String, MutableList<Any>>()
+    private val visitedCollections = mutableSetOf<String>()
+    private var started = false
+    private var ended = false
+    private var pendingObjects = 0
+
+    /** The largest number of objects kept at once, waiting for their collection to be requested */
+    var peakPendingObjects = 0
+        private set
+
+    override fun <T> forEach(collection: RJSInfraCollection<T>, action: (T) -> Unit) {
+        check(visitedCollections.add(collection.jsonName)) {
+            "railjson collection ${collection.jsonName} was already read"
+        }
+        val pending = pendingCollections.remove(collection.jsonName)
+        if (pending != null) {
+            pendingObjects -= pending.size
+            for (obj in pending) action(collection.type.cast(obj))
+            return
+        }
+        if (!started) {
+            reader.beginObject()
+            started = true
+        }
+        while (!ended) {
+            if (!reader.hasNext()) {
+                reader.endObject()
+                ended = true
+                break
+            }
+            val name = reader.nextName()
+            val nextCollection = collectionsByName[name]
+            if (nextCollection == null || reader.peek() == JsonReader.Token.NULL) {
+                reader.skipValue()
+                continue
+            }
+            if (nextCollection == collection) {
+                readCollection(collection) { action(collection.type.cast(it)) }
+                return
+            }
+            // Keep collections which are needed later, releasing them once visited
+            val objects = mutableListOf<Any>()
+            readCollection(nextCollection) { objects.add(it) }
+            pendingCollections[name] = objects
+            pendingObjects += objects.size
+            peakPendingObjects = maxOf(peakPendingObjects, pendingObjects)
+        }
+    }
+
+    private fun readCollection(collection: RJSInfraCollection<*>, action: (Any) -> Unit) {
+        val adapter = moshi.adapter<Any>(collection.type)
+        val fingerprint = fingerprint?.takeIf { it.covers(collection) }
+        reader.beginArray()
+        while (reader.hasNext()) {
+            if (fingerprint == null) {
+                action(adapter.fromJson(reader)!!)
+                continue
+            }
+            val jsonValue = reader.readJsonValue()
+            fingerprint.add(collection, jsonValue)
+            action(adapter.fromJsonValue(jsonValue)!!)
+        }
+        reader.endArray()
+    }
+
+    override fun close() {
+        source.close()
+    }
+
+    companion object {
+        private val moshi = Moshi.Builder().add(ID.Adapter.FACTORY).build()
+        private val collectionsByName = RJSInfraCollection.ALL.associateBy { it.jsonName }
+    }
+}
@@ -37,6 +37,9 @@ import mu.KotlinLogging
 val logger = KotlinLogging.logger {}
 private const val SPEED_LIMIT_TAGS_RESOURCE_PATH = "speed_limit_tags.yml"
 
+// Bounds the number of railjson track sections held in memory while their chunks are computed
+private const val TRACK_SECTION_BATCH_SIZE = 1024
+
 private fun parseLineString(rjsLineString: RJSLineString?): LineString? {
     if (rjsLineString == null) return null
     val xs = ArrayList<Double>()
@@ -318,13 +321,34 @@ private fun buildZones(builder: RawInfraBuilder) {
     }
 }
 
-private fun parseRjsTrackSection(
-    builder: RawInfraBuilder,
+/** A track chunk, prepared independently from the rest of the infra */
+private class PreparedTrackChunk(
+    val geo: LineString,
+    val slopes: DirectionalMap<DistanceRangeMap<Double>>,
+    val curves: DirectionalMap<DistanceRangeMap<Double>>,
+    val gradients: DirectionalMap<DistanceRangeMap<Double>>,
+    val length: Length<TrackChunk>,
+    val offset: Offset<TrackSection>,
+    val blockedGauges: DistanceRangeMap<LoadingGaugeConstraint>,
+)
+
+/** A track section, ready to be added to the infra builder */
+private class PreparedTrackSection(
+    val name: String,
+    val chunks: List<PreparedTrackChunk>,
+    val chunkBoundariesDetectors: List<List<String>?>,
+)
+
+/**
+ * Computes the chunks of a track section. This does not touch the infra builder, and can thus run
+ * concurrently for several track sections.
+ */
+private fun prepareRjsTrackSection(
     rjsTrack: RJSTrackSection,
     trackSectionNameToDistanceSortedDetectors:
         Map<String, TreeMap<Offset<TrackSection>, MutableList<String>>>,
-) {
-    val trackSectionChunks = mutableStaticIdxArrayListOf<TrackChunk>()
+): PreparedTrackSection {
+    val trackSectionChunks = mutableListOf<PreparedTrackChunk>()
 
     val trackSectionLength = Offset<TrackSection>(rjsTrack.length.meters)
     val trackSectionGeo = parseLineString(rjsTrack.geo)!!
@@ -374,8 +398,8 @@ private fun parseRjsTrackSection(
 
         val chunkLength = chunkEndOffset - chunkStartOffset
 
-        val chunkIdx =
-            builder.trackChunk(
+        trackSectionChunks.add(
+            PreparedTrackChunk(
                 trackSectionGeo.slice(
                     chunkStartOffset.distance.millimeters.toDouble() /
                         trackSectionLength.distance.millimeters,
@@ -392,15 +416,64 @@ private fun parseRjsTrackSection(
                 chunkStartOffset,
                 chunkBlockedGauges
             )
+        )
+    }
+    return PreparedTrackSection(rjsTrack.id, trackSectionChunks, chunkBoundariesDetectors)
+}
+
+private fun addTrackSection(builder: RawInfraBuilder, trackSection: PreparedTrackSection) {
+    val trackSectionChunks = mutableStaticIdxArrayListOf<TrackChunk>()
+    for (chunk in trackSection.chunks) {
+        val chunkIdx =
+            builder.trackChunk(
+                chunk.geo,
+                chunk.slopes,
+                chunk.curves,
+                chunk.gradients,
+                chunk.length,
+                chunk.offset,
+                chunk.blockedGauges
+            )
         trackSectionChunks.add(chunkIdx)
     }
-    val trackSectionId = builder.trackSection(rjsTrack.id, trackSectionChunks)
+    val trackSectionId = builder.trackSection(trackSection.name, trackSectionChunks)
+    val chunkBoundariesDetectors = trackSection.chunkBoundariesDetectors
     for (chunkBoundaryIndex in 0 until chunkBoundariesDetectors.size) {
         val chunkBoundaryDetectorNames = chunkBoundariesDetectors[chunkBoundaryIndex] ?: continue
         builder.detector(chunkBoundaryDetectorNames, trackSectionId, chunkBoundaryIndex)
     }
 }
 
+/**
+ * Parses track sections by batches. The chunks of the track sections of a batch are computed in
+ * parallel, then added to the builder in their original order, so that the resulting infra does not
+ * depend on parallelism.
+ */
+private fun parseRjsTrackSections(
+    builder: RawInfraBuilder,
+    rjsInfra: RJSInfraObjects,
+    trackSectionNameToDistanceSortedDetectors:
+        Map<String, TreeMap<Offset<TrackSection>, MutableList<String>>>,
+    parallel: Boolean,
+) {
+    val batch = mutableListOf<RJSTrackSection>()
+    fun flushBatch() {
+        val stream = if (parallel) batch.parallelStream() else batch.stream()
+        val prepared =
+            stream
+                .map { prepareRjsTrackSection(it, trackSectionNameToDistanceSortedDetectors) }
+                .toList()
+        for (trackSection in prepared) addTrackSection(builder, trackSection)
+        batch.clear()
+    }
+
+    rjsInfra.forEach(RJSInfraCollection.TRACK_SECTIONS) { rjsTrack ->
+        batch.add(rjsTrack)
+        if (batch.size >= TRACK_SECTION_BATCH_SIZE) flushBatch()
+    }
+    flushBatch()
+}
+
 fun parseRjsElectrification(builder: RawInfraBuilder, electrification: RJSElectrification) {
     for (electrificationRange in electrification.trackRanges) {
         val applyElectrificationForChunkBetween =
@@ -728,20 +801,32 @@ fun parseSpeedLimitTags(builder: RawInfraBuilder) {
     }
 }
 
-fun parseRJSInfra(rjsInfra: RJSInfra): RawInfra {
+@JvmOverloads
+fun parseRJSInfra(rjsInfra: RJSInfra, parallel: Boolean = true): RawInfra {
+    return parseRJSInfra(InMemoryRJSInfraObjects(rjsInfra), parallel)
+}
+
+/**
+ * Parses a railjson infra, reading its objects collection by collection. Collections are visited in
+ * dependency order, which may differ from the order they appear in the railjson. When parallel is
+ * set, independent computations are spread over the common fork/join pool, without changing the
+ * result.
+ */
+@JvmOverloads
+fun parseRJSInfra(rjsInfra: RJSInfraObjects, parallel: Boolean = true): RawInfra {
     val builder = RawInfraBuilder()
 
     // Parse detectors and buffer-stops
     val trackSectionNameToDistanceSortedDetectors =
         mutableMapOf<String, TreeMap<Offset<TrackSection>, MutableList<String>>>()
 
-    for (detector in rjsInfra.detectors) {
+    rjsInfra.forEach(RJSInfraCollection.DETECTORS) { detector ->
         parseRjsRouteWaypoint(
             detector,
             trackSectionNameToDistanceSortedDetectors,
         )
     }
-    for (detector in rjsInfra.bufferStops) {
+    rjsInfra.forEach(RJSInfraCollection.BUFFER_STOPS) { detector ->
         parseRjsRouteWaypoint(
             detector,
             trackSectionNameToDistanceSortedDetectors,
@@ -749,16 +834,14 @@ fun parseRJSInfra(rjsInfra: RJSInfra): RawInfra {
     }
 
     // Parse track-sections
-    for (rjsTrack in rjsInfra.trackSections) {
-        parseRjsTrackSection(builder, rjsTrack, trackSectionNameToDistanceSortedDetectors)
-    }
+    parseRjsTrackSections(builder, rjsInfra, trackSectionNameToDistanceSortedDetectors, parallel)
 
     // Parse electrifications
-    for (electrification in rjsInfra.electrifications) {
+    rjsInfra.forEach(RJSInfraCollection.ELECTRIFICATIONS) { electrification ->
         parseRjsElectrification(builder, electrification)
     }
 
-    for (neutralSection in rjsInfra.neutralSections) {
+    rjsInfra.forEach(RJSInfraCollection.NEUTRAL_SECTIONS) { neutralSection ->
         parseNeutralRanges(builder, false, neutralSection)
 
         // FIXME: the current implementation of neutral section announcements breaks
@@ -766,56 +849,21 @@ fun parseRJSInfra(rjsInfra: RJSInfra): RawInfra {
         // parseNeutralRanges(builder, true, neutralSection)
     }
 
-    for (speedSection in rjsInfra.speedSections) {
+    rjsInfra.forEach(RJSInfraCollection.SPEED_SECTIONS) { speedSection ->
         parseSpeedSection(builder, speedSection)
     }
 
     // parse operational points
-    for (operationalPoint in rjsInfra.operationalPoints) {
-        val distinctParts = mutableSetOf<RJSOperationalPointPart>()
-        for (opPart in operationalPoint.parts) {
-            // ignore duplicates
-            if (distinctParts.contains(opPart)) continue
-            distinctParts.add(opPart)
-
-            val operationalPointId = operationalPoint.id
-            val trackSectionName = opPart.track
-            val trackSectionOffset = Offset<TrackSection>(opPart.position.meters)
-            val props = mutableMapOf<String, String>()
-            if (operationalPoint.extensions?.identifier != null) {
-                val identifier = operationalPoint.extensions!!.identifier!!
-                props["identifier"] = identifier.name
-                props["uic"] = identifier.uic.toString()
-            }
-            if (operationalPoint.extensions?.sncf != null) {
-                val sncf = operationalPoint.extensions!!.sncf!!
-                props["ci"] = sncf.ci.toString()
-                props["ch"] = sncf.ch
-                props["chShortLabel"] = sncf.chShortLabel
-                props["chLongLabel"] = sncf.chLongLabel
-                props["trigram"] = sncf.trigram
-            }
-            if (opPart.extensions?.sncf != null) props["kp"] = opPart.extensions!!.sncf!!.kp
-            val partId =
-                builder.operationalPointPart(
-                    operationalPointId,
-                    trackSectionName,
-                    trackSectionOffset,
-                    props
-                )
-            if (partId == null) {
-                // TODO: link warning to specific request (through response or tracing)
-                logger.warn(
-                    "Invalid Part on track $trackSectionName for Operational Point $operationalPointId"
-                )
-            }
-        }
+    rjsInfra.forEach(RJSInfraCollection.OPERATIONAL_POINTS) { operationalPoint ->
+        parseOperationalPoint(builder, operationalPoint)
     }
 
     // parse nodes
-    val switchTypes = (rjsInfra.switchTypes ?: listOf()) + RJSSwitchType.BUILTIN_NODE_TYPES_LIST
+    val switchTypes = mutableListOf<RJSSwitchType>()
+    rjsInfra.forEach(RJSInfraCollection.SWITCH_TYPES) { switchTypes.add(it) }
+    switchTypes.addAll(RJSSwitchType.BUILTIN_NODE_TYPES_LIST)
     val switchTypeMap = switchTypes.associateBy { it.id }
-    for (rjsNode in rjsInfra.switches) {
+    rjsInfra.forEach(RJSInfraCollection.SWITCHES) { rjsNode ->
         parseTrackNode(builder, switchTypeMap, rjsNode)
     }
 
@@ -823,16 +871,53 @@ fun parseRJSInfra(rjsInfra: RJSInfra): RawInfra {
     buildZones(builder)
 
     // parse routes
-    for (rjsRoute in rjsInfra.routes) {
-        parseRoute(builder, rjsRoute)
-    }
+    rjsInfra.forEach(RJSInfraCollection.ROUTES) { rjsRoute -> parseRoute(builder, rjsRoute) }
 
     // parse signals
-    for (rjsSignal in rjsInfra.signals) {
-        parseSignal(builder, rjsSignal)
-    }
+    rjsInfra.forEach(RJSInfraCollection.SIGNALS) { rjsSignal -> parseSignal(builder, rjsSignal) }
 
     parseSpeedLimitTags(builder)
 
     return builder.build()
 }
+
+private fun parseOperationalPoint(builder: RawInfraBuilder, operationalPoint: RJSOperationalPoint) {
+    val distinctParts = mutableSetOf<RJSOperationalPointPart>()
+    for (opPart in operationalPoint.parts) {
+        // ignore duplicates
+        if (distinctParts.contains(opPart)) continue
+        distinctParts.add(opPart)
+
+        val operationalPointId = operationalPoint.id
+        val trackSectionName = opPart.track
+        val trackSectionOffset = Offset<TrackSection>(opPart.position.meters)
+        val props = mutableMapOf<String, String>()
+        if (operationalPoint.extensions?.identifier != null) {
+            val identifier = operationalPoint.extensions!!.identifier!!
+            props["identifier"] = identifier.name
+            props["uic"] = identifier.uic.toString()
+        }
+        if (operationalPoint.extensions?.sncf != null) {
+            val sncf = operationalPoint.extensions!!.sncf!!
+            props["ci"] = sncf.ci.toString()
+            props["ch"] = sncf.ch
+            props["chShortLabel"] = sncf.chShortLabel
+            props["chLongLabel"] = sncf.chLongLabel
+            props["trigram"] = sncf.trigram
+        }
+        if (opPart.extensions?.sncf != null) props["kp"] = opPart.extensions!!.sncf!!.kp
+        val partId =
+            builder.operationalPointPart(
+                operationalPointId,
+                trackSectionName,
+                trackSectionOffset,
+                props
+            )
+        if (partId == null) {
+            // TODO: link warning to specific request (through response or tracing)
+            logger.warn(
+                "Invalid Part on track $trackSectionName for Operational Point $operationalPointId"
+            )
+        }
+    }
+}
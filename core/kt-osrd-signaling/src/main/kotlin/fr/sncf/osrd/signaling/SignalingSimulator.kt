@@ -62,6 +62,21 @@ interface SignalingSimulator {
         loadedSignalInfra: LoadedSignalInfra
     ): BlockInfra
 
+    /**
+     * Builds the blocks of a new version of an infra, from the blocks of its previous version. Only
+     * routes which changed, or go through a changed track section, are explored again: the blocks
+     * of other routes are carried over. Blocks are the same as those of [buildBlocks]. Returns null
+     * if the previous blocks weren't built route by route, and can't be carried over.
+     */
+    fun rebuildBlocks(
+        rawSignalingInfra: RawSignalingInfra,
+        loadedSignalInfra: LoadedSignalInfra,
+        previousRawInfra: RawSignalingInfra,
+        previousBlockInfra: BlockInfra,
+        changedTrackSections: Set<String>,
+        changedRoutes: Set<String>,
+    ): BlockInfra?
+
     fun evaluate(
         infra: RawInfra,
         loadedSignalInfra: LoadedSignalInfra,
@@ -2,9 +2,12 @@ package fr.sncf.osrd.signaling.impl
 
 import fr.sncf.osrd.sim_infra.api.*
 import fr.sncf.osrd.sim_infra.impl.BlockInfraBuilder
-import fr.sncf.osrd.sim_infra.impl.blockInfraBuilder
+import fr.sncf.osrd.sim_infra.impl.BlockInfraBuilderImpl
+import fr.sncf.osrd.sim_infra.impl.BlockInfraImpl
 import fr.sncf.osrd.utils.indexing.IdxMap
 import fr.sncf.osrd.utils.indexing.MutableStaticIdxArrayList
+import fr.sncf.osrd.utils.indexing.StaticIdxList
+import fr.sncf.osrd.utils.indexing.mutableStaticIdxArrayListOf
 import fr.sncf.osrd.utils.units.*
 import mu.KotlinLogging
 
@@ -13,91 +16,191 @@ private val logger = KotlinLogging.logger {}
 internal fun internalBuildBlocks(
     sigModuleManager: InfraSigSystemManager,
     rawSignalingInfra: RawSignalingInfra,
-    loadedSignalInfra: LoadedSignalInfra
+    loadedSignalInfra: LoadedSignalInfra,
+    parallel: Boolean = true,
 ): BlockInfra {
+    val routeBlocks =
+        buildRouteBlocks(sigModuleManager, rawSignalingInfra, loadedSignalInfra, parallel) { null }
+    return routeBlocks.blockInfra
+}
+
+/** Blocks built route by route, along with the blocks which were found by exploring routes */
+internal class RouteBlocks(
+    val blockInfra: BlockInfraImpl,
+    val exploredRoutes: Int,
+    val exploredBlocks: Set<BlockId>,
+)
+
+/**
+ * Builds blocks route by route. Routes for which `carriedOverBlocks` returns blocks aren't
+ * explored: the returned blocks are used instead. It may be called concurrently.
+ */
+internal fun buildRouteBlocks(
+    sigModuleManager: InfraSigSystemManager,
+    rawSignalingInfra: RawSignalingInfra,
+    loadedSignalInfra: LoadedSignalInfra,
+    parallel: Boolean,
+    carriedOverBlocks: (RouteId) -> List<RecordedBlock>?,
+): RouteBlocks {
     // Step 1) associate DirDetectorIds to a list of delimiting logical signals
     val signalDelimiters = findSignalDelimiters(rawSignalingInfra, loadedSignalInfra)
     val detectorEntrySignals = makeDetectorEntrySignals(loadedSignalInfra, signalDelimiters)
-    return blockInfraBuilder(loadedSignalInfra, rawSignalingInfra) {
-        // Step 2) iterate on zone paths along the route path.
-        //   - maintain a list of currently active blocks
-        //   - At each signal, add it to compatible current blocks.
-        //   - if the signal is delimiting, stop and create the block (deduplicate it too)
-        for (route in rawSignalingInfra.routes) {
-            val routeEntryDet = rawSignalingInfra.getRouteEntry(route)
-            val routeExitDet = rawSignalingInfra.getRouteExit(route)
-            val entrySignals = detectorEntrySignals[routeEntryDet]
-            var currentBlocks =
-                getInitPartialBlocks(
+
+    // Step 2) find the blocks along each route. Routes are independent from each other, and can be
+    // explored in parallel. Blocks are then added in route order, which keeps block ids identical
+    // to those of a sequential exploration.
+    val routes = rawSignalingInfra.routes.toList()
+    val routeStream = if (parallel) routes.parallelStream() else routes.stream()
+    val routeBlocks =
+        routeStream
+            .map { route ->
+                val carriedOver = carriedOverBlocks(route)
+                if (carriedOver != null) return@map RouteExploration(carriedOver, false)
+                val recorder = BlockRecorder()
+                recorder.exploreRoute(
                     sigModuleManager,
                     rawSignalingInfra,
                     loadedSignalInfra,
-                    entrySignals,
-                    routeEntryDet
+                    detectorEntrySignals,
+                    route
                 )
-            // while inside the route, we maintain a list of currently active blocks.
-            // each block either expect any signaling system (when starting from a buffer stop or
-            // wildcard
-            // signal),
-            // or expects a given signaling system. blocks can therefore tell whether a signal
-            // belongs
-            // there.
-            // if a signal is not part of a block, it is ignored
-            // if a signal delimits a block, it ends the block and starts a new ones, one per driver
-            // if a signal does not delimit a block and has a single driver, it continues the block
-            // if a signal does not delimit a block and has multiple drivers, it duplicates the
-            // block
-
-            for (zonePath in rawSignalingInfra.getRoutePath(route)) {
-                val zonePathLength = rawSignalingInfra.getZonePathLength(zonePath)
-                for (block in currentBlocks) block.addZonePath(zonePath, zonePathLength)
-
-                // iterate over signals which are between the block entry and the block exit
-                val signals = rawSignalingInfra.getSignals(zonePath)
-                val signalsPositions = rawSignalingInfra.getSignalPositions(zonePath)
-                for ((physicalSignal, position) in signals.zip(signalsPositions)) {
-                    val distanceToZonePathEnd = zonePathLength - position
-                    assert(distanceToZonePathEnd >= Distance.ZERO)
-                    assert(distanceToZonePathEnd <= zonePathLength.distance)
-                    for (signal in loadedSignalInfra.getLogicalSignals(physicalSignal)) {
-                        currentBlocks =
-                            updatePartialBlocks(
-                                sigModuleManager,
-                                currentBlocks,
-                                loadedSignalInfra,
-                                signal,
-                                distanceToZonePathEnd,
-                            )
-                    }
-                }
+                RouteExploration(recorder.blocks, true)
             }
+            .toList()
 
-            // when a route ends at a buffer stop, unterminated blocks are expected,
-            // as the buffer stop sort of acts as a closed signal. when a route does not
-            // end with a buffer stop, blocks are expected to end with the route.
-            // such blocks are not valid, and can be fixed by adding a delimiter signal
-            // right before the end of the route.
-            val routeEndsAtBufferStop = rawSignalingInfra.isBufferStop(routeExitDet.value)
-            for (curBlock in currentBlocks) {
-                if (curBlock.zonePaths.size == 0) continue
-                if (curBlock.signals.size == 0) continue
-
-                val lastZonePath = curBlock.zonePaths[curBlock.zonePaths.size - 1]
-                assert(routeExitDet == rawSignalingInfra.getZonePathExit(lastZonePath))
-                if (!routeEndsAtBufferStop)
-                    logger.debug {
-                        "unterminated block at end of route ${rawSignalingInfra.getRouteName(route)}"
-                    }
-                block(
-                    curBlock.startAtBufferStop,
-                    true,
-                    curBlock.zonePaths,
-                    curBlock.signals,
-                    curBlock.signalPositions
+    val builder = BlockInfraBuilderImpl(loadedSignalInfra, rawSignalingInfra)
+    val blockIds = mutableListOf<StaticIdxList<Block>>()
+    val exploredBlocks = mutableSetOf<BlockId>()
+    for (exploration in routeBlocks) {
+        val routeBlockIds = mutableStaticIdxArrayListOf<Block>()
+        for (recorded in exploration.blocks) {
+            val block =
+                builder.block(
+                    recorded.startAtBufferStop,
+                    recorded.stopsAtBufferStop,
+                    recorded.path,
+                    recorded.signals,
+                    recorded.signalsDistances
                 )
+            routeBlockIds.add(block)
+            if (exploration.explored) exploredBlocks.add(block)
+        }
+        blockIds.add(routeBlockIds)
+    }
+    val exploredRoutes = routeBlocks.count { it.explored }
+    return RouteBlocks(builder.build(blockIds), exploredRoutes, exploredBlocks)
+}
+
+private class RouteExploration(val blocks: List<RecordedBlock>, val explored: Boolean)
+
+internal class RecordedBlock(
+    val startAtBufferStop: Boolean,
+    val stopsAtBufferStop: Boolean,
+    val path: StaticIdxList<ZonePath>,
+    val signals: StaticIdxList<LogicalSignal>,
+    val signalsDistances: OffsetList<Block>,
+)
+
+/** Records the blocks found along a route, so that they can be added to the infra later on */
+private class BlockRecorder : BlockInfraBuilder {
+    val blocks = mutableListOf<RecordedBlock>()
+
+    /** The returned ids are only meaningful to the recorder, and can't be used anywhere else */
+    override fun block(
+        startAtBufferStop: Boolean,
+        stopsAtBufferStop: Boolean,
+        path: StaticIdxList<ZonePath>,
+        signals: StaticIdxList<LogicalSignal>,
+        signalsDistances: OffsetList<Block>,
+    ): BlockId {
+        blocks.add(
+            RecordedBlock(startAtBufferStop, stopsAtBufferStop, path, signals, signalsDistances)
+        )
+        return BlockId((blocks.size - 1).toUInt())
+    }
+}
+
+/**
+ * Iterate on zone paths along the route path.
+ * - maintain a list of currently active blocks
+ * - At each signal, add it to compatible current blocks.
+ * - if the signal is delimiting, stop and create the block (deduplicate it too)
+ */
+private fun BlockInfraBuilder.exploreRoute(
+    sigModuleManager: InfraSigSystemManager,
+    rawSignalingInfra: RawSignalingInfra,
+    loadedSignalInfra: LoadedSignalInfra,
+    detectorEntrySignals: IdxMap<DirDetectorId, IdxMap<SignalingSystemId, AssociatedSignal>>,
+    route: RouteId,
+) {
+    val routeEntryDet = rawSignalingInfra.getRouteEntry(route)
+    val routeExitDet = rawSignalingInfra.getRouteExit(route)
+    val entrySignals = detectorEntrySignals[routeEntryDet]
+    var currentBlocks =
+        getInitPartialBlocks(
+            sigModuleManager,
+            rawSignalingInfra,
+            loadedSignalInfra,
+            entrySignals,
+            routeEntryDet
+        )
+    // while inside the route, we maintain a list of currently active blocks.
+    // each block either expect any signaling system (when starting from a buffer stop or wildcard
+    // signal), or expects a given signaling system. blocks can therefore tell whether a signal
+    // belongs there.
+    // if a signal is not part of a block, it is ignored
+    // if a signal delimits a block, it ends the block and starts a new ones, one per driver
+    // if a signal does not delimit a block and has a single driver, it continues the block
+    // if a signal does not delimit a block and has multiple drivers, it duplicates the block
+
+    for (zonePath in rawSignalingInfra.getRoutePath(route)) {
+        val zonePathLength = rawSignalingInfra.getZonePathLength(zonePath)
+        for (block in currentBlocks) block.addZonePath(zonePath, zonePathLength)
+
+        // iterate over signals which are between the block entry and the block exit
+        val signals = rawSignalingInfra.getSignals(zonePath)
+        val signalsPositions = rawSignalingInfra.getSignalPositions(zonePath)
+        for ((physicalSignal, position) in signals.zip(signalsPositions)) {
+            val distanceToZonePathEnd = zonePathLength - position
+            assert(distanceToZonePathEnd >= Distance.ZERO)
+            assert(distanceToZonePathEnd <= zonePathLength.distance)
+            for (signal in loadedSignalInfra.getLogicalSignals(physicalSignal)) {
+                currentBlocks =
+                    updatePartialBlocks(
+                        sigModuleManager,
+                        currentBlocks,
+                        loadedSignalInfra,
+                        signal,
+                        distanceToZonePathEnd,
+                    )
             }
         }
     }
+
+    // when a route ends at a buffer stop, unterminated blocks are expected,
+    // as the buffer stop sort of acts as a closed signal. when a route does not
+    // end with a buffer stop, blocks are expected to end with the route.
+    // such blocks are not valid, and can be fixed by adding a delimiter signal
+    // right before the end of the route.
+    val routeEndsAtBufferStop = rawSignalingInfra.isBufferStop(routeExitDet.value)
+    for (curBlock in currentBlocks) {
+        if (curBlock.zonePaths.size == 0) continue
+        if (curBlock.signals.size == 0) continue
+
+        val lastZonePath = curBlock.zonePaths[curBlock.zonePaths.size - 1]
+        assert(routeExitDet == rawSignalingInfra.getZonePathExit(lastZonePath))
+        if (!routeEndsAtBufferStop)
+            logger.debug {
+                "unterminated block at end of route ${rawSignalingInfra.getRouteName(route)}"
+            }
+        block(
+            curBlock.startAtBufferStop,
+            true,
+            curBlock.zonePaths,
+            curBlock.signals,
+            curBlock.signalPositions
+        )
+    }
 }
 
 data class AssociatedDetector(val detector: DirDetectorId, val distance: Distance)
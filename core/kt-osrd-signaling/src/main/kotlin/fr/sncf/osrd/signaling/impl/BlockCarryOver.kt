@@ -0,0 +1,124 @@
+package fr.sncf.osrd.signaling.impl
+
+import fr.sncf.osrd.sim_infra.api.*
+import fr.sncf.osrd.sim_infra.impl.BlockInfraImpl
+import fr.sncf.osrd.utils.indexing.DirStaticIdx
+import fr.sncf.osrd.utils.indexing.mutableStaticIdxArrayListOf
+
+/**
+ * Carries the blocks of a previous version of an infra over to a new version, route by route.
+ *
+ * The blocks found along a route only depend on the zone paths of the route, on the zone paths
+ * which end where the route starts (where its entry signal is), and on the signals of these zone
+ * paths. When none of these zone paths go through a changed track section, and the route itself is
+ * unchanged, the route has the same blocks in both versions: they only need to be renumbered, as
+ * zone paths and signals may not have the same ids anymore.
+ */
+internal class BlockCarryOver(
+    private val previousInfra: RawSignalingInfra,
+    private val previousBlockInfra: BlockInfraImpl,
+    private val infra: RawSignalingInfra,
+    private val changedTrackSections: Set<String>,
+    private val changedRoutes: Set<String>,
+) {
+    private val previousRouteBlocks = previousBlockInfra.routeBlocks!!
+    private val previousRoutes = previousInfra.routes.associateBy { previousInfra.getRouteName(it) }
+    private val previousZonePathsByExit =
+        previousInfra.zonePaths.groupBy { previousInfra.getZonePathExit(it) }
+    private val zonePathsByExit = infra.zonePaths.groupBy { infra.getZonePathExit(it) }
+    private val detectors = infra.detectors.associateBy { infra.getDetectorName(it) }
+    private val trackNodes = infra.trackNodes.associateBy { infra.getTrackNodeName(it) }
+    private val physicalSignals =
+        infra.physicalSignals
+            .filter { infra.getPhysicalSignalName(it) != null }
+            .associateBy { infra.getPhysicalSignalName(it)!! }
+
+    /** Returns the blocks of a route of the new infra, or null if it has to be explored again */
+    fun getRouteBlocks(route: RouteId): List<RecordedBlock>? {
+        val routeName = infra.getRouteName(route)
+        if (routeName in changedRoutes) return null
+        val previousRoute = previousRoutes[routeName] ?: return null
+        if (!isUnchanged(infra, route, zonePathsByExit)) return null
+        if (!isUnchanged(previousInfra, previousRoute, previousZonePathsByExit)) return null
+
+        val blocks = mutableListOf<RecordedBlock>()
+        for (block in previousRouteBlocks[previousRoute.index.toInt()])
+            blocks.add(translateBlock(block) ?: return null)
+        return blocks
+    }
+
+    private fun isUnchanged(
+        routeInfra: RawSignalingInfra,
+        route: RouteId,
+        zonePathsByExit: Map<DirDetectorId, List<ZonePathId>>,
+    ): Boolean {
+        val entryZonePaths = zonePathsByExit[routeInfra.getRouteEntry(route)] ?: listOf()
+        for (zonePath in entryZonePaths) if (crossesChangedTrack(routeInfra, zonePath)) return false
+        for (zonePath in routeInfra.getRoutePath(route))
+            if (crossesChangedTrack(routeInfra, zonePath)) return false
+        return true
+    }
+
+    private fun crossesChangedTrack(routeInfra: RawSignalingInfra, zonePath: ZonePathId): Boolean {
+        for (chunk in routeInfra.getZonePathChunks(zonePath)) {
+            val track = routeInfra.getTrackFromChunk(chunk.value)
+            if (routeInfra.getTrackSectionName(track) in changedTrackSections) return true
+        }
+        return false
+    }
+
+    private fun translateBlock(block: BlockId): RecordedBlock? {
+        val path = mutableStaticIdxArrayListOf<ZonePath>()
+        for (zonePath in previousBlockInfra.getBlockPath(block))
+            path.add(translateZonePath(zonePath) ?: return null)
+        val signals = mutableStaticIdxArrayListOf<LogicalSignal>()
+        for (signal in previousBlockInfra.getBlockSignals(block))
+            signals.add(translateSignal(signal) ?: return null)
+        return RecordedBlock(
+            previousBlockInfra.blockStartAtBufferStop(block),
+            previousBlockInfra.blockStopAtBufferStop(block),
+            path,
+            signals,
+            previousBlockInfra.getSignalsPositions(block),
+        )
+    }
+
+    private fun translateZonePath(zonePath: ZonePathId): ZonePathId? {
+        val entry = translateDetector(previousInfra.getZonePathEntry(zonePath)) ?: return null
+        val exit = translateDetector(previousInfra.getZonePathExit(zonePath)) ?: return null
+        val previousMovableElements = previousInfra.getZonePathMovableElements(zonePath)
+        val previousConfigs = previousInfra.getZonePathMovableElementsConfigs(zonePath)
+        val movableElements = mutableStaticIdxArrayListOf<TrackNode>()
+        val configs = mutableStaticIdxArrayListOf<TrackNodeConfig>()
+        for (i in 0 until previousMovableElements.size) {
+            val previousNode = previousMovableElements[i]
+            val node = trackNodes[previousInfra.getTrackNodeName(previousNode)] ?: return null
+            val configName = previousInfra.getTrackNodeConfigName(previousNode, previousConfigs[i])
+            val config =
+                infra.getTrackNodeConfigs(node).firstOrNull {
+                    infra.getTrackNodeConfigName(node, it) == configName
+                } ?: return null
+            movableElements.add(node)
+            configs.add(config)
+        }
+        return infra.findZonePath(entry, exit, movableElements, configs)
+    }
+
+    private fun translateDetector(detector: DirDetectorId): DirDetectorId? {
+        val newDetector = detectors[previousInfra.getDetectorName(detector.value)] ?: return null
+        return DirStaticIdx(newDetector, detector.direction)
+    }
+
+    /** Logical signals are identified by their physical signal, and their rank within it */
+    private fun translateSignal(signal: LogicalSignalId): LogicalSignalId? {
+        val previousPhysicalSignal = previousInfra.getPhysicalSignal(signal)
+        val name = previousInfra.getPhysicalSignalName(previousPhysicalSignal) ?: return null
+        val physicalSignal = physicalSignals[name] ?: return null
+        val previousLogicalSignals = previousInfra.getLogicalSignals(previousPhysicalSignal)
+        val logicalSignals = infra.getLogicalSignals(physicalSignal)
+        if (previousLogicalSignals.size != logicalSignals.size) return null
+        for (i in 0 until previousLogicalSignals.size)
+            if (previousLogicalSignals[i] == signal) return logicalSignals[i]
+        return null
+    }
+}
@@ -2,6 +2,7 @@ package fr.sncf.osrd.signaling.impl
 
 import fr.sncf.osrd.signaling.*
 import fr.sncf.osrd.sim_infra.api.*
+import fr.sncf.osrd.sim_infra.impl.BlockInfraImpl
 import fr.sncf.osrd.sim_infra.impl.SignalParameters
 import fr.sncf.osrd.sim_infra.impl.loadedSignalInfra
 import fr.sncf.osrd.utils.indexing.*
@@ -25,7 +26,14 @@ fun ZoneStatus.toProtectionStatus(): ProtectionStatus {
     }
 }
 
-class SignalingSimulatorImpl(override val sigModuleManager: SigSystemManager) : SignalingSimulator {
+/**
+ * When parallel is set, building blocks spreads the exploration of routes and the signaling checks
+ * of blocks over the common fork/join pool, without changing the result.
+ */
+class SignalingSimulatorImpl(
+    override val sigModuleManager: SigSystemManager,
+    private val parallel: Boolean = true,
+) : SignalingSimulator {
     private fun loadSignalSetting(
         rawSettings: Map<String, String>,
         schema: SigSettingsSchema
@@ -82,76 +90,131 @@ class SignalingSimulatorImpl(override val sigModuleManager: SigSystemManager) :
         rawSignalingInfra: RawSignalingInfra,
         loadedSignalInfra: LoadedSignalInfra
     ): BlockInfra {
-        val blockInfra = internalBuildBlocks(sigModuleManager, rawSignalingInfra, loadedSignalInfra)
-        for (block in blockInfra.blocks) {
-            val sigSystem = blockInfra.getBlockSignalingSystem(block)
-            val path = blockInfra.getBlockPath(block)
-            val length =
-                Distance(
-                    path
-                        .map { rawSignalingInfra.getZonePathLength(it) }
-                        .sumOf { it.distance.millimeters }
-                )
-            val startAtBufferStop = blockInfra.blockStartAtBufferStop(block)
-            val stopAtBufferStop = blockInfra.blockStopAtBufferStop(block)
-            val signals = blockInfra.getBlockSignals(block)
-            val signalTypes = signals.map { rawSignalingInfra.getSignalingSystemId(it) }
-            val signalSettings = signals.map { loadedSignalInfra.getSettings(it) }
-            val signalsPositions = blockInfra.getSignalsPositions(block)
-            val sigBlock =
-                SigBlock(
-                    startAtBufferStop,
-                    stopAtBufferStop,
-                    signalTypes,
-                    signalSettings,
-                    signalsPositions,
-                    length
-                )
-            val reporter =
-                object : BlockDiagReporter {
-                    override fun reportBlock(errorType: String) {
-                        logger.debug {
-                            val entrySignal = rawSignalingInfra.getLogicalSignalName(signals[0])
-                            val exitSignal =
-                                rawSignalingInfra.getLogicalSignalName(signals[signals.size - 1])
-                            "error in block from $entrySignal to $exitSignal: $errorType"
-                        }
+        val blockInfra =
+            internalBuildBlocks(sigModuleManager, rawSignalingInfra, loadedSignalInfra, parallel)
+        checkBlocks(rawSignalingInfra, loadedSignalInfra, blockInfra, blockInfra.blocks.toList())
+        return blockInfra
+    }
+
+    override fun rebuildBlocks(
+        rawSignalingInfra: RawSignalingInfra,
+        loadedSignalInfra: LoadedSignalInfra,
+        previousRawInfra: RawSignalingInfra,
+        previousBlockInfra: BlockInfra,
+        changedTrackSections: Set<String>,
+        changedRoutes: Set<String>,
+    ): BlockInfra? {
+        if (previousBlockInfra !is BlockInfraImpl || previousBlockInfra.routeBlocks == null)
+            return null
+        val carryOver =
+            BlockCarryOver(
+                previousRawInfra,
+                previousBlockInfra,
+                rawSignalingInfra,
+                changedTrackSections,
+                changedRoutes
+            )
+        val routeBlocks =
+            buildRouteBlocks(
+                sigModuleManager,
+                rawSignalingInfra,
+                loadedSignalInfra,
+                parallel,
+                carryOver::getRouteBlocks
+            )
+        logger.info {
+            "explored ${routeBlocks.exploredRoutes} routes out of ${rawSignalingInfra.routes.size}"
+        }
+        // carried over blocks were already checked
+        val blockInfra = routeBlocks.blockInfra
+        checkBlocks(rawSignalingInfra, loadedSignalInfra, blockInfra, routeBlocks.exploredBlocks)
+        return blockInfra
+    }
+
+    private fun checkBlocks(
+        rawSignalingInfra: RawSignalingInfra,
+        loadedSignalInfra: LoadedSignalInfra,
+        blockInfra: BlockInfra,
+        blocks: Collection<BlockId>,
+    ) {
+        // checks only report diagnostics, and can run in any order
+        val blockStream = if (parallel) blocks.parallelStream() else blocks.stream()
+        blockStream.forEach { block ->
+            checkBlock(rawSignalingInfra, loadedSignalInfra, blockInfra, block)
+        }
+    }
+
+    private fun checkBlock(
+        rawSignalingInfra: RawSignalingInfra,
+        loadedSignalInfra: LoadedSignalInfra,
+        blockInfra: BlockInfra,
+        block: BlockId
+    ) {
+        val sigSystem = blockInfra.getBlockSignalingSystem(block)
+        val path = blockInfra.getBlockPath(block)
+        val length =
+            Distance(
+                path
+                    .map { rawSignalingInfra.getZonePathLength(it) }
+                    .sumOf { it.distance.millimeters }
+            )
+        val startAtBufferStop = blockInfra.blockStartAtBufferStop(block)
+        val stopAtBufferStop = blockInfra.blockStopAtBufferStop(block)
+        val signals = blockInfra.getBlockSignals(block)
+        val signalTypes = signals.map { rawSignalingInfra.getSignalingSystemId(it) }
+        val signalSettings = signals.map { loadedSignalInfra.getSettings(it) }
+        val signalsPositions = blockInfra.getSignalsPositions(block)
+        val sigBlock =
+            SigBlock(
+                startAtBufferStop,
+                stopAtBufferStop,
+                signalTypes,
+                signalSettings,
+                signalsPositions,
+                length
+            )
+        val reporter =
+            object : BlockDiagReporter {
+                override fun reportBlock(errorType: String) {
+                    logger.debug {
+                        val entrySignal = rawSignalingInfra.getLogicalSignalName(signals[0])
+                        val exitSignal =
+                            rawSignalingInfra.getLogicalSignalName(signals[signals.size - 1])
+                        "error in block from $entrySignal to $exitSignal: $errorType"
                     }
+                }
 
-                    override fun reportSignal(sigIndex: Int, errorType: String) {
-                        logger.debug {
-                            val signal = rawSignalingInfra.getLogicalSignalName(signals[sigIndex])
-                            "error at signal $signal: $errorType"
-                        }
+                override fun reportSignal(sigIndex: Int, errorType: String) {
+                    logger.debug {
+                        val signal = rawSignalingInfra.getLogicalSignalName(signals[sigIndex])
+                        "error at signal $signal: $errorType"
                     }
                 }
-            sigModuleManager.checkSignalingSystemBlock(reporter, sigSystem, sigBlock)
-            for ((signal, nextSignal) in signals.windowed(2)) {
-                val signalReporter =
-                    object : SignalDiagReporter {
-                        override fun report(errorType: String) {
-                            logger.debug {
-                                val signalName = rawSignalingInfra.getLogicalSignalName(signal)
-                                val nextSignalName =
-                                    rawSignalingInfra.getLogicalSignalName(nextSignal)
-                                "error at signal $signalName to $nextSignalName: $errorType"
-                            }
+            }
+        sigModuleManager.checkSignalingSystemBlock(reporter, sigSystem, sigBlock)
+        for ((signal, nextSignal) in signals.windowed(2)) {
+            val signalReporter =
+                object : SignalDiagReporter {
+                    override fun report(errorType: String) {
+                        logger.debug {
+                            val signalName = rawSignalingInfra.getLogicalSignalName(signal)
+                            val nextSignalName = rawSignalingInfra.getLogicalSignalName(nextSignal)
+                            "error at signal $signalName to $nextSignalName: $errorType"
                         }
                     }
-                val driver =
-                    sigModuleManager.findDriver(
-                        loadedSignalInfra.getSignalingSystem(signal),
-                        loadedSignalInfra.getSignalingSystem(nextSignal)
-                    )
-                sigModuleManager.checkSignal(
-                    signalReporter,
-                    driver,
-                    loadedSignalInfra.getSettings(signal),
-                    sigBlock
+                }
+            val driver =
+                sigModuleManager.findDriver(
+                    loadedSignalInfra.getSignalingSystem(signal),
+                    loadedSignalInfra.getSignalingSystem(nextSignal)
                 )
-            }
+            sigModuleManager.checkSignal(
+                signalReporter,
+                driver,
+                loadedSignalInfra.getSettings(signal),
+                sigBlock
+            )
         }
-        return blockInfra
     }
 
     override fun evaluate(
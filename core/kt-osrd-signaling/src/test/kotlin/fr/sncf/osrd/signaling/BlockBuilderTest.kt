@@ -6,28 +6,28 @@ import fr.sncf.osrd.railjson.builder.end
 import fr.sncf.osrd.railjson.schema.common.graph.EdgeDirection.STOP_TO_START
 import fr.sncf.osrd.signaling.impl.MockSigSystemManager
 import fr.sncf.osrd.signaling.impl.SignalingSimulatorImpl
+import fr.sncf.osrd.signaling.impl.internalBuildBlocks
 import fr.sncf.osrd.sim_infra.api.*
 import fr.sncf.osrd.sim_infra.impl.blockInfraBuilder
 import fr.sncf.osrd.utils.indexing.StaticIdxList
 import fr.sncf.osrd.utils.indexing.mutableStaticIdxArrayListOf
 import fr.sncf.osrd.utils.units.*
 import kotlin.test.Test
+import kotlin.test.assertEquals
 import kotlin.test.assertTrue
 
 class BlockBuilderTest {
-    @Test
-    fun testBlockBuilder() {
-        // All "I" mark the location of detectors, which delimit zones.
-        //
-        // u      v
-        // I---A--I-+
-        //           \
-        // w       x  \    y       z
-        // I---B---I---C---I---D---I
-        //             S
-        //  <-- reverse     normal -->
-
-        val infra = buildParseRJSInfra {
+    // All "I" mark the location of detectors, which delimit zones.
+    //
+    // u      v
+    // I---A--I-+
+    //           \
+    // w       x  \    y       z
+    // I---B---I---C---I---D---I
+    //             S
+    //  <-- reverse     normal -->
+    private fun makeSwitchInfra(): RawInfra {
+        return buildParseRJSInfra {
             val lowerLeftTrack = trackSection("lower_left", 15.0)
             val upperLeftTrack = trackSection("upper_left", 15.0)
             val rightTrack = trackSection("right", 15.0)
@@ -62,6 +62,21 @@ class BlockBuilderTest {
                 addSwitchDirection(switch, "A_B1")
             }
         }
+    }
+
+    private fun makeSimulator(): SignalingSimulatorImpl {
+        return SignalingSimulatorImpl(
+            MockSigSystemManager(
+                "BAL",
+                SigSettingsSchema { flag("Nf") },
+                SigParametersSchema { flag("jaune_cli") }
+            )
+        )
+    }
+
+    @Test
+    fun testBlockBuilder() {
+        val infra = makeSwitchInfra()
 
         val signals = infra.physicalSignals.associateBy { infra.getPhysicalSignalName(it) }
         val signalX = signals["X"]!!
@@ -98,14 +113,7 @@ class BlockBuilderTest {
                 mutableStaticIdxArrayListOf(switchLower)
             )!!
 
-        val simulator =
-            SignalingSimulatorImpl(
-                MockSigSystemManager(
-                    "BAL",
-                    SigSettingsSchema { flag("Nf") },
-                    SigParametersSchema { flag("jaune_cli") }
-                )
-            )
+        val simulator = makeSimulator()
         val loadedSignalInfra = simulator.loadSignals(infra)
         val blockInfra = simulator.buildBlocks(infra, loadedSignalInfra)
 
@@ -145,6 +153,24 @@ class BlockBuilderTest {
         assertTrue(blockInfraEquals(blockInfra, testResultBlockInfra))
     }
 
+    @Test
+    fun parallelBlockBuildingMatchesSequentialBuilding() {
+        val infra = makeSwitchInfra()
+        val simulator = makeSimulator()
+        val loadedSignalInfra = simulator.loadSignals(infra)
+        val sequential =
+            internalBuildBlocks(simulator.sigModuleManager, infra, loadedSignalInfra, false)
+        val parallel = internalBuildBlocks(simulator.sigModuleManager, infra, loadedSignalInfra, true)
+
+        // block ids must match too, not only the set of blocks
+        assertEquals(sequential.blocks.toList(), parallel.blocks.toList())
+        for (block in sequential.blocks) {
+            assertEquals(sequential.getBlockPath(block), parallel.getBlockPath(block))
+            assertEquals(sequential.getBlockSignals(block), parallel.getBlockSignals(block))
+            assertEquals(sequential.getSignalsPositions(block), parallel.getSignalsPositions(block))
+        }
+    }
+
     data class BlockDescriptor(
         val path: StaticIdxList<ZonePath>,
         val signals: StaticIdxList<LogicalSignal>
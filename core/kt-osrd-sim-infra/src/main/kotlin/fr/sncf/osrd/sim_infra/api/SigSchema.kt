@@ -157,7 +157,7 @@ interface SigDataBuilder {
     fun value(name: String, value: String)
 }
 
-data class SigData<MarkerT>(val schema: SigSchema<MarkerT>, private val data: IntArray) {
+data class SigData<MarkerT>(val schema: SigSchema<MarkerT>, internal val data: IntArray) {
     fun getFlag(fieldName: String): Boolean {
         val fieldIndex = schema.find(fieldName)
         if (fieldIndex == -1) throw OSRDError.newSigSchemaUnknownFieldError(fieldName)
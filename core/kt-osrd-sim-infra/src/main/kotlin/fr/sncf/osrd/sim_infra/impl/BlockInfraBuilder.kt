@@ -53,8 +53,8 @@ class BlockInfraBuilderImpl(val loadedSignalInfra: LoadedSignalInfra, val rawInf
         return blockSet.getOrPut(newBlock) { blockPool.add(newBlock) }
     }
 
-    fun build(): BlockInfra {
-        return BlockInfraImpl(blockPool, loadedSignalInfra, rawInfra)
+    fun build(routeBlocks: List<StaticIdxList<Block>>? = null): BlockInfraImpl {
+        return BlockInfraImpl(blockPool, loadedSignalInfra, rawInfra, routeBlocks)
     }
 }
 
@@ -38,9 +38,15 @@ class BlockDescriptor(
 }
 
 class BlockInfraImpl(
-    private val blockPool: StaticPool<Block, BlockDescriptor>,
+    internal val blockPool: StaticPool<Block, BlockDescriptor>,
     private val loadedSignalInfra: LoadedSignalInfra,
     rawInfra: RawInfra,
+    /**
+     * The blocks found along each route, indexed by route, in the order they were found in. It is
+     * used to carry blocks over to the next version of the infra, and is null when blocks were not
+     * built from routes, such as when read from a snapshot.
+     */
+    val routeBlocks: List<StaticIdxList<Block>>? = null,
 ) : BlockInfra {
     private val blockEntryDetectorMap = IdxMap<DirDetectorId, MutableStaticIdxList<Block>>()
     private val blockExitDetectorMap = IdxMap<DirDetectorId, MutableStaticIdxList<Block>>()
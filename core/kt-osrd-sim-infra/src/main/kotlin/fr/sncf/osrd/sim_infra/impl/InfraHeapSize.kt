@@ -0,0 +1,166 @@
+package fr.sncf.osrd.sim_infra.impl
+
+import fr.sncf.osrd.sim_infra.api.*
+import fr.sncf.osrd.utils.Direction
+import fr.sncf.osrd.utils.DirectionalMap
+import fr.sncf.osrd.utils.DistanceRangeMap
+import fr.sncf.osrd.utils.HeapSize
+import fr.sncf.osrd.utils.HeapSize.BOXED
+import fr.sncf.osrd.utils.HeapSize.OBJECT_HEADER
+import fr.sncf.osrd.utils.HeapSize.REFERENCE
+import fr.sncf.osrd.utils.indexing.StaticIdxCollection
+import fr.sncf.osrd.utils.units.OffsetList
+
+/**
+ * Estimates of the heap retained by loaded infras, computed from the number of objects of each
+ * type. Caches which infras compute when created are included.
+ */
+fun RawInfraImpl.estimatedHeapSize(): Long {
+    var size = 0L
+    for (node in trackNodePool) {
+        val descriptor = trackNodePool[node]
+        size += OBJECT_HEADER + HeapSize.string(descriptor.name)
+        size += HeapSize.primitiveList(descriptor.ports.size.toInt(), Int.SIZE_BYTES)
+        for (config in descriptor.configs) {
+            val portLinks = descriptor.configs[config].portLinks
+            size += OBJECT_HEADER + HeapSize.list(portLinks.size)
+            size += portLinks.size * (OBJECT_HEADER + 2 * BOXED)
+        }
+    }
+    for (track in trackSectionPool) {
+        val descriptor = trackSectionPool[track]
+        size += OBJECT_HEADER + HeapSize.string(descriptor.name)
+        size += idxList(descriptor.chunks) + idxList(descriptor.detectors)
+        // chunk bounds
+        size += HeapSize.primitiveList(descriptor.chunks.size + 1, Long.SIZE_BYTES)
+    }
+    for (chunk in trackChunkPool) {
+        val descriptor = trackChunkPool[chunk]
+        size += OBJECT_HEADER + 13 * REFERENCE
+        size += OBJECT_HEADER + HeapSize.primitiveList(descriptor.geo.points.size, 16)
+        size += directional(descriptor.slopes) { BOXED }
+        size += directional(descriptor.curves) { BOXED }
+        size += directional(descriptor.gradients) { BOXED }
+        size += 2 * (OBJECT_HEADER + 2 * REFERENCE)
+        for (dir in Direction.entries) size += idxList(descriptor.routes.get(dir))
+        size += idxList(descriptor.operationalPointParts)
+        size +=
+            HeapSize.rangeMap(descriptor.loadingGaugeConstraints) {
+                OBJECT_HEADER + idxList(it.blockedTypes)
+            }
+        // voltages are shared between chunks
+        size += HeapSize.rangeMap(descriptor.electrificationVoltage) { 0L }
+        size += directional(descriptor.neutralSections) { OBJECT_HEADER }
+        size +=
+            directional(descriptor.speedSections) {
+                OBJECT_HEADER + HeapSize.hashMap(it.speedByTrainTag.size + it.speedByRoute.size)
+            }
+        // chunk to zone map
+        size += HeapSize.HASH_MAP_ENTRY + 2 * BOXED
+    }
+    size += HeapSize.primitiveList(trackSectionPool.size.toInt() * 2, REFERENCE.toInt())
+    for (zone in zonePool) {
+        val descriptor = zonePool[zone]
+        size += OBJECT_HEADER + HeapSize.string(descriptor.name)
+        size += idxList(descriptor.movableElements)
+        // zone detectors and zone name map
+        size += HeapSize.list(4) + HeapSize.HASH_MAP_ENTRY + BOXED
+    }
+    for (detector in detectorPool) {
+        val descriptor = detectorPool[detector]
+        size += OBJECT_HEADER + HeapSize.list(descriptor.names.size)
+        size += descriptor.names.sumOf { HeapSize.string(it) }
+    }
+    size += HeapSize.primitiveList(detectorPool.size.toInt() * 2, REFERENCE.toInt())
+    for (route in routePool) {
+        val descriptor = routePool[route]
+        size += OBJECT_HEADER + HeapSize.string(descriptor.name)
+        size += idxList(descriptor.path) + HeapSize.primitiveList(descriptor.releaseZones.size, 4)
+        size += idxList(descriptor.speedLimits)
+        size += offsetList(descriptor.speedLimitStarts) + offsetList(descriptor.speedLimitEnds)
+        size += HeapSize.primitiveList(descriptor.chunks.size, Int.SIZE_BYTES)
+        // route name, entry and exit maps
+        size += 3 * (HeapSize.HASH_MAP_ENTRY + BOXED)
+    }
+    for (signal in logicalSignalPool) {
+        val descriptor = logicalSignalPool[signal]
+        size += OBJECT_HEADER + HeapSize.string(descriptor.signalingSystemId)
+        size += HeapSize.list(descriptor.nextSignalingSystemIds.size)
+        size += descriptor.nextSignalingSystemIds.sumOf { HeapSize.string(it) }
+        size += HeapSize.stringMap(descriptor.rawSettings)
+        size += HeapSize.stringMap(descriptor.rawParameters.default)
+        size += HeapSize.hashMap(descriptor.rawParameters.conditional.size)
+        size += descriptor.rawParameters.conditional.values.sumOf { HeapSize.stringMap(it) }
+    }
+    for (signal in physicalSignalPool) {
+        val descriptor = physicalSignalPool[signal]
+        size += OBJECT_HEADER + (descriptor.name?.let { HeapSize.string(it) } ?: 0L)
+        size += idxList(descriptor.logicalSignals)
+        // signals per chunk
+        size += OBJECT_HEADER + REFERENCE
+    }
+    for (zonePath in zonePathPool) {
+        val descriptor = zonePathPool[zonePath]
+        size += OBJECT_HEADER + idxList(descriptor.movableElements)
+        size += idxList(descriptor.movableElementsConfigs)
+        size += offsetList(descriptor.movableElementsPositions)
+        size += HeapSize.primitiveList(descriptor.chunks.size, Int.SIZE_BYTES)
+        // zone path map, and the length and signals of the zone path cache
+        size += HeapSize.HASH_MAP_ENTRY + BOXED + OBJECT_HEADER + 2 * HeapSize.list(0)
+    }
+    for (part in operationalPointPartPool) {
+        val descriptor = operationalPointPartPool[part]
+        size += OBJECT_HEADER + HeapSize.string(descriptor.operationalPointId)
+        size += HeapSize.stringMap(descriptor.props)
+    }
+    return size
+}
+
+fun LoadedSignalingInfraImpl.estimatedHeapSize(): Long {
+    var size = 0L
+    for (signal in physicalSignalPool) size += idxList(physicalSignalPool[signal])
+    for (signal in logicalSignalSpace) {
+        val settings = signalSettingsMap[signal]!!
+        size += 2 * (OBJECT_HEADER + HeapSize.primitiveList(settings.data.size, Int.SIZE_BYTES))
+        val parameters = signalParametersMap[signal]!!
+        size += OBJECT_HEADER + HeapSize.hashMap(parameters.conditional.size)
+        size += parameters.conditional.size * (OBJECT_HEADER + HeapSize.primitiveList(0, 4))
+        size += idxList(driverMap[signal]!!)
+        // signaling system, block delimiter and parent signal maps
+        size += 3 * (REFERENCE + BOXED)
+    }
+    return size
+}
+
+fun BlockInfraImpl.estimatedHeapSize(): Long {
+    var size = 0L
+    for (block in blockPool) {
+        val descriptor = blockPool[block]
+        size += OBJECT_HEADER + idxList(descriptor.path) + idxList(descriptor.signals)
+        size += offsetList(descriptor.signalsPositions)
+        // entry and exit maps, chunks of the block, name maps
+        size += 2 * HeapSize.list(1) + HeapSize.primitiveList(descriptor.path.size * 4, 4)
+        size += HeapSize.string(getBlockName(block)) + 2 * (HeapSize.HASH_MAP_ENTRY + BOXED)
+        // blocks of chunks and zones
+        size += descriptor.path.size * 2L * Int.SIZE_BYTES
+    }
+    for (blocks in routeBlocks ?: listOf()) size += REFERENCE + idxList(blocks)
+    return size
+}
+
+private fun idxList(list: StaticIdxCollection<*>): Long {
+    return HeapSize.primitiveList(list.size, Int.SIZE_BYTES)
+}
+
+private fun offsetList(list: OffsetList<*>): Long {
+    return HeapSize.primitiveList(list.size, Long.SIZE_BYTES)
+}
+
+private fun <T> directional(
+    maps: DirectionalMap<DistanceRangeMap<T>>,
+    valueSize: (T) -> Long
+): Long {
+    return OBJECT_HEADER +
+        2 * REFERENCE +
+        Direction.entries.sumOf { HeapSize.rangeMap(maps.get(it), valueSize) }
+}
@@ -0,0 +1,628 @@
+package fr.sncf.osrd.sim_infra.impl
+
+import fr.sncf.osrd.geom.LineString
+import fr.sncf.osrd.sim_infra.api.*
+import fr.sncf.osrd.utils.Direction
+import fr.sncf.osrd.utils.DirectionalMap
+import fr.sncf.osrd.utils.DistanceRangeMap
+import fr.sncf.osrd.utils.distanceRangeMapOf
+import fr.sncf.osrd.utils.indexing.*
+import fr.sncf.osrd.utils.units.*
+import java.io.DataInput
+import java.io.DataOutput
+import java.io.IOException
+import kotlin.time.Duration.Companion.nanoseconds
+
+/**
+ * Binary serialization of loaded infras. Reading a serialized infra skips railjson parsing, signal
+ * loading and block building: objects keep the identifiers they had when written, and only the
+ * caches infras compute on creation are built again.
+ *
+ * Identifiers of signaling systems and drivers are those of the signaling system manager, which
+ * must register the same systems in the same order when reading. Their names are written along
+ * the infra, and reading fails when they don't match.
+ */
+
+/** Must be incremented whenever the serialized layout of infras changes */
+const val INFRA_SERIALIZATION_VERSION = 1
+
+fun writeRawInfra(output: DataOutput, infra: RawInfraImpl) {
+    output.writeInt(INFRA_SERIALIZATION_VERSION)
+
+    output.writePool(infra.trackNodePool) { node ->
+        writeString(node.name)
+        writeLong(node.delay.inWholeNanoseconds)
+        writePool(node.ports) { writeInt(it.data.toInt()) }
+        writePool(node.configs) { config ->
+            writeString(config.name)
+            writeInt(config.portLinks.size)
+            for ((a, b) in config.portLinks) {
+                writeIdx(a)
+                writeIdx(b)
+            }
+        }
+    }
+    output.writePool(infra.trackSectionPool) { track ->
+        writeString(track.name)
+        writeIdxCollection(track.chunks)
+        writeIdxCollection(track.detectors)
+    }
+    output.writePool(infra.trackChunkPool) { chunk ->
+        writeIdx(chunk.track)
+        writeLong(chunk.offset.distance.millimeters)
+        writeLong(chunk.length.distance.millimeters)
+        writeLineString(chunk.geo)
+        writeDirectional(chunk.slopes) { writeRangeMap(it) { value -> writeDouble(value) } }
+        writeDirectional(chunk.curves) { writeRangeMap(it) { value -> writeDouble(value) } }
+        writeDirectional(chunk.gradients) { writeRangeMap(it) { value -> writeDouble(value) } }
+        writeDirectional(chunk.routes) { writeIdxCollection(it) }
+        writeIdxCollection(chunk.operationalPointParts)
+        writeRangeMap(chunk.loadingGaugeConstraints) { writeIdxCollection(it.blockedTypes) }
+        writeRangeMap(chunk.electrificationVoltage) { writeString(it) }
+        writeDirectional(chunk.neutralSections) {
+            writeRangeMap(it) { section ->
+                writeBoolean(section.lowerPantograph)
+                writeBoolean(section.isAnnouncement)
+            }
+        }
+        writeDirectional(chunk.speedSections) { writeRangeMap(it) { writeSpeedSection(it) } }
+    }
+    val trackEndpointCount = infra.trackSectionPool.size * 2u
+    for (i in 0u until trackEndpointCount) {
+        val node = infra.nodeAtEndpoint[EndpointStaticIdx(i)]
+        output.writeInt(node?.index?.toInt() ?: -1)
+    }
+    output.writePool(infra.zonePool) { zone -> writeIdxCollection(zone.movableElements) }
+    output.writePool(infra.detectorPool) { detector ->
+        writeIdx(detector.trackSection)
+        writeInt(detector.chunkBoundaryIndex)
+        writeStringList(detector.names)
+    }
+    val dirDetectorCount = infra.detectorPool.size * 2u
+    for (i in 0u until dirDetectorCount) {
+        val zone = infra.nextZones[DirStaticIdx(i)]
+        output.writeInt(zone?.index?.toInt() ?: -1)
+    }
+    output.writePool(infra.routePool) { route ->
+        writeString(route.name)
+        writeLong(route.length.distance.millimeters)
+        writeIdxCollection(route.path)
+        writeInt(route.releaseZones.size)
+        for (zone in route.releaseZones) writeInt(zone)
+        writeIdxCollection(route.speedLimits)
+        writeOffsets(route.speedLimitStarts)
+        writeOffsets(route.speedLimitEnds)
+        writeDirIdxList(route.chunks)
+    }
+    output.writePool(infra.logicalSignalPool) { signal ->
+        writeString(signal.signalingSystemId)
+        writeStringList(signal.nextSignalingSystemIds)
+        writeStringMap(signal.rawSettings)
+        writeStringMap(signal.rawParameters.default)
+        writeInt(signal.rawParameters.conditional.size)
+        for ((route, parameters) in signal.rawParameters.conditional) {
+            writeIdx(route)
+            writeStringMap(parameters)
+        }
+    }
+    output.writePool(infra.physicalSignalPool) { signal ->
+        writeNullableString(signal.name)
+        writeInt(signal.dirTrackSectionId.data.toInt())
+        writeLong(signal.undirectedTrackOffset.distance.millimeters)
+        writeIdxCollection(signal.logicalSignals)
+        writeLong(signal.sightDistance.millimeters)
+    }
+    output.writePool(infra.zonePathPool) { zonePath ->
+        writeInt(zonePath.entry.data.toInt())
+        writeInt(zonePath.exit.data.toInt())
+        writeIdxCollection(zonePath.movableElements)
+        writeIdxCollection(zonePath.movableElementsConfigs)
+        writeOffsets(zonePath.movableElementsPositions)
+        writeDirIdxList(zonePath.chunks)
+    }
+    output.writePool(infra.operationalPointPartPool) { part ->
+        writeString(part.operationalPointId)
+        writeLong(part.chunkOffset.distance.millimeters)
+        writeIdx(part.chunk)
+        writeStringMap(part.props)
+    }
+    output.writeInt(infra.speedLimitTagPool.size)
+    for ((tag, descriptor) in infra.speedLimitTagPool) {
+        output.writeString(tag)
+        output.writeStringList(descriptor.fallbackList)
+    }
+}
+
+fun readRawInfra(input: DataInput): RawInfraImpl {
+    input.checkVersion()
+
+    val trackNodePool =
+        input.readPool<TrackNode, TrackNodeDescriptor> {
+            TrackNodeDescriptor(
+                readString(),
+                readLong().nanoseconds,
+                readPool { EndpointStaticIdx(readInt().toUInt()) },
+                readPool {
+                    val name = readString()
+                    val portLinks = List(readInt()) { Pair(readIdx<TrackNodePort>(), readIdx()) }
+                    TrackNodeConfigDescriptor(name, portLinks)
+                },
+            )
+        }
+    val trackSectionPool =
+        input.readPool<TrackSection, TrackSectionDescriptor> {
+            TrackSectionDescriptor(readString(), readIdxList(), readIdxList())
+        }
+    val trackChunkPool =
+        input.readPool<TrackChunk, TrackChunkDescriptor> {
+            TrackChunkDescriptor(
+                readIdx(),
+                Offset(Distance(readLong())),
+                Length(Distance(readLong())),
+                readLineString(),
+                readDirectional { readRangeMap { readDouble() } },
+                readDirectional { readRangeMap { readDouble() } },
+                readDirectional { readRangeMap { readDouble() } },
+                readDirectional { readIdxList() },
+                readIdxList(),
+                readRangeMap { LoadingGaugeConstraint(readIdxSortedSet()) },
+                readRangeMap { readString() },
+                readDirectional { readRangeMap { NeutralSection(readBoolean(), readBoolean()) } },
+                readDirectional { readRangeMap { readSpeedSection() } },
+            )
+        }
+    val nodeAtEndpoint = IdxMap<EndpointTrackSectionId, TrackNodeId>()
+    for (i in 0u until trackSectionPool.size * 2u) {
+        val node = input.readInt()
+        if (node != -1) nodeAtEndpoint[EndpointStaticIdx(i)] = StaticIdx(node.toUInt())
+    }
+    val zonePool = input.readPool<Zone, ZoneDescriptor> { ZoneDescriptor(readIdxSortedSet()) }
+    val detectorPool =
+        input.readPool<Detector, DetectorDescriptor> {
+            DetectorDescriptor(readIdx(), readInt(), readStringList())
+        }
+    val nextZones = IdxMap<DirDetectorId, ZoneId>()
+    for (i in 0u until detectorPool.size * 2u) {
+        val zone = input.readInt()
+        if (zone != -1) nextZones[DirStaticIdx(i)] = StaticIdx(zone.toUInt())
+    }
+    val routePool =
+        input.readPool<Route, RouteDescriptor> {
+            RouteDescriptor(
+                readString(),
+                Length(Distance(readLong())),
+                readIdxList(),
+                IntArray(readInt()) { readInt() },
+                readIdxList(),
+                readOffsets(),
+                readOffsets(),
+                readDirIdxList(),
+            )
+        }
+    val logicalSignalPool =
+        input.readPool<LogicalSignal, LogicalSignalDescriptor> {
+            val signalingSystemId = readString()
+            val nextSignalingSystemIds = readStringList()
+            val rawSettings = readStringMap()
+            val defaultParameters = readStringMap()
+            val conditionalParameters = mutableMapOf<RouteId, Map<String, String>>()
+            repeat(readInt()) { conditionalParameters[readIdx()] = readStringMap() }
+            LogicalSignalDescriptor(
+                signalingSystemId,
+                nextSignalingSystemIds,
+                rawSettings,
+                RawSignalParameters(defaultParameters, conditionalParameters),
+            )
+        }
+    val physicalSignalPool =
+        input.readPool<PhysicalSignal, PhysicalSignalDescriptor> {
+            PhysicalSignalDescriptor(
+                readNullableString(),
+                DirStaticIdx(readInt().toUInt()),
+                Offset(Distance(readLong())),
+                readIdxList(),
+                Distance(readLong()),
+            )
+        }
+    val zonePathPool =
+        input.readPool<ZonePath, ZonePathDescriptor> {
+            ZonePathDescriptor(
+                DirStaticIdx(readInt().toUInt()),
+                DirStaticIdx(readInt().toUInt()),
+                readIdxList(),
+                readIdxList(),
+                readOffsets(),
+                readDirIdxList(),
+            )
+        }
+    val operationalPointPartPool =
+        input.readPool<OperationalPointPart, OperationalPointPartDescriptor> {
+            OperationalPointPartDescriptor(
+                readString(),
+                Offset(Distance(readLong())),
+                readIdx(),
+                readStringMap(),
+            )
+        }
+    val speedLimitTagPool = mutableMapOf<String, SpeedLimitTagDescriptor>()
+    repeat(input.readInt()) {
+        speedLimitTagPool[input.readString()] = SpeedLimitTagDescriptor(input.readStringList())
+    }
+
+    // Maps which can be derived from the pools aren't written
+    val zonePathMap = HashMap<ZonePathSpec, ZonePathId>()
+    for (zonePath in zonePathPool) zonePathMap[zonePathPool[zonePath]] = zonePath
+    val trackSectionNameMap = HashMap<String, TrackSectionId>()
+    for (track in trackSectionPool) trackSectionNameMap[trackSectionPool[track].name] = track
+    val routeNameMap = HashMap<String, RouteId>()
+    val routesByEntry = HashMap<DirDetectorId, MutableStaticIdxArrayList<Route>>()
+    val routesByExit = HashMap<DirDetectorId, MutableStaticIdxArrayList<Route>>()
+    for (route in routePool) {
+        val descriptor = routePool[route]
+        routeNameMap[descriptor.name] = route
+        val entry = zonePathPool[descriptor.path.first()].entry
+        val exit = zonePathPool[descriptor.path.last()].exit
+        routesByEntry.computeIfAbsent(entry) { mutableStaticIdxArrayListOf() }.add(route)
+        routesByExit.computeIfAbsent(exit) { mutableStaticIdxArrayListOf() }.add(route)
+    }
+
+    return RawInfraImpl(
+        trackNodePool,
+        trackSectionPool,
+        trackChunkPool,
+        nodeAtEndpoint,
+        zonePool,
+        detectorPool,
+        nextZones,
+        routePool,
+        logicalSignalPool,
+        physicalSignalPool,
+        zonePathPool,
+        zonePathMap,
+        operationalPointPartPool,
+        speedLimitTagPool,
+        trackSectionNameMap,
+        routeNameMap,
+        routesByEntry,
+        routesByExit,
+    )
+}
+
+fun writeLoadedSignalInfra(
+    output: DataOutput,
+    infra: LoadedSignalingInfraImpl,
+    sigSystemManager: InfraSigSystemManager,
+) {
+    output.writeInt(INFRA_SERIALIZATION_VERSION)
+    output.writeSigSystemManager(sigSystemManager)
+
+    output.writeInt(infra.logicalSignalSpace.size.toInt())
+    output.writePool(infra.physicalSignalPool) { writeIdxCollection(it) }
+    for (signal in infra.logicalSignalSpace) {
+        output.writeIdx(infra.signalingSystemMap[signal]!!)
+        output.writeSigData(infra.signalSettingsMap[signal]!!)
+        val parameters = infra.signalParametersMap[signal]!!
+        output.writeSigData(parameters.default)
+        output.writeInt(parameters.conditional.size)
+        for ((route, routeParameters) in parameters.conditional) {
+            output.writeIdx(route)
+            output.writeSigData(routeParameters)
+        }
+        output.writeIdxCollection(infra.driverMap[signal]!!)
+        output.writeBoolean(infra.blockDelimiterMap[signal]!!)
+    }
+}
+
+fun readLoadedSignalInfra(
+    input: DataInput,
+    sigSystemManager: InfraSigSystemManager,
+): LoadedSignalingInfraImpl {
+    input.checkVersion()
+    input.checkSigSystemManager(sigSystemManager)
+
+    val logicalSignalSpace = StaticIdxSpace<LogicalSignal>(input.readInt().toUInt())
+    val physicalSignalPool =
+        input.readPool<PhysicalSignal, StaticIdxList<LogicalSignal>> { readIdxList() }
+    val signalingSystemMap = IdxMap<LogicalSignalId, SignalingSystemId>()
+    val signalSettingsMap = IdxMap<LogicalSignalId, SigSettings>()
+    val signalParametersMap = IdxMap<LogicalSignalId, SignalParameters>()
+    val driverMap = IdxMap<LogicalSignalId, StaticIdxList<SignalDriver>>()
+    val blockDelimiterMap = IdxMap<LogicalSignalId, Boolean>()
+    for (signal in logicalSignalSpace) {
+        val sigSystem = input.readIdx<SignalingSystem>()
+        val settingsSchema = sigSystemManager.getSettingsSchema(sigSystem)
+        val parametersSchema = sigSystemManager.getParametersSchema(sigSystem)
+        signalingSystemMap[signal] = sigSystem
+        signalSettingsMap[signal] = input.readSigData(settingsSchema)
+        val defaultParameters = input.readSigData(parametersSchema)
+        val conditionalParameters = mutableMapOf<RouteId, SigParameters>()
+        repeat(input.readInt()) {
+            conditionalParameters[input.readIdx()] = input.readSigData(parametersSchema)
+        }
+        signalParametersMap[signal] = SignalParameters(defaultParameters, conditionalParameters)
+        driverMap[signal] = input.readIdxList()
+        blockDelimiterMap[signal] = input.readBoolean()
+    }
+    return LoadedSignalingInfraImpl(
+        logicalSignalSpace,
+        physicalSignalPool,
+        signalSettingsMap,
+        signalParametersMap,
+        signalingSystemMap,
+        driverMap,
+        blockDelimiterMap,
+    )
+}
+
+fun writeBlockInfra(output: DataOutput, infra: BlockInfraImpl) {
+    output.writeInt(INFRA_SERIALIZATION_VERSION)
+    output.writePool(infra.blockPool) { block ->
+        writeLong(block.length.distance.millimeters)
+        writeBoolean(block.startAtBufferStop)
+        writeBoolean(block.stopsAtBufferStop)
+        writeIdxCollection(block.path)
+        writeIdxCollection(block.signals)
+        writeOffsets(block.signalsPositions)
+    }
+}
+
+fun readBlockInfra(
+    input: DataInput,
+    rawInfra: RawInfra,
+    loadedSignalInfra: LoadedSignalInfra,
+): BlockInfraImpl {
+    input.checkVersion()
+    val blockPool =
+        input.readPool<Block, BlockDescriptor> {
+            BlockDescriptor(
+                Length(Distance(readLong())),
+                readBoolean(),
+                readBoolean(),
+                readIdxList(),
+                readIdxList(),
+                readOffsets(),
+            )
+        }
+    return BlockInfraImpl(blockPool, loadedSignalInfra, rawInfra)
+}
+
+private fun DataInput.checkVersion() {
+    val version = readInt()
+    if (version != INFRA_SERIALIZATION_VERSION)
+        throw IOException("unsupported infra serialization version $version")
+}
+
+private fun DataOutput.writeSigSystemManager(sigSystemManager: InfraSigSystemManager) {
+    writeInt(sigSystemManager.signalingSystems.size.toInt())
+    for (sigSystem in sigSystemManager.signalingSystems)
+        writeString(sigSystemManager.getName(sigSystem))
+    writeInt(sigSystemManager.drivers.size.toInt())
+    for (driver in sigSystemManager.drivers) {
+        writeIdx(sigSystemManager.getInputSignalingSystem(driver))
+        writeIdx(sigSystemManager.getOutputSignalingSystem(driver))
+    }
+}
+
+private fun DataInput.checkSigSystemManager(sigSystemManager: InfraSigSystemManager) {
+    val sigSystemCount = readInt()
+    val sameSystems =
+        sigSystemCount == sigSystemManager.signalingSystems.size.toInt() &&
+            sigSystemManager.signalingSystems.all { readString() == sigSystemManager.getName(it) }
+    if (!sameSystems) throw IOException("the infra was written with other signaling systems")
+    val driverCount = readInt()
+    val sameDrivers =
+        driverCount == sigSystemManager.drivers.size.toInt() &&
+            sigSystemManager.drivers.all {
+                val inputSystem = readIdx<SignalingSystem>()
+                val outputSystem = readIdx<SignalingSystem>()
+                inputSystem == sigSystemManager.getInputSignalingSystem(it) &&
+                    outputSystem == sigSystemManager.getOutputSignalingSystem(it)
+            }
+    if (!sameDrivers) throw IOException("the infra was written with other signal drivers")
+}
+
+private fun <MarkerT> DataOutput.writeSigData(data: SigData<MarkerT>) {
+    writeInt(data.data.size)
+    for (value in data.data) writeInt(value)
+}
+
+private fun <MarkerT> DataInput.readSigData(schema: SigSchema<MarkerT>): SigData<MarkerT> {
+    val data = IntArray(readInt()) { readInt() }
+    if (data.size != schema.fields.size)
+        throw IOException("signal data doesn't match the schema of its signaling system")
+    return SigData(schema, data)
+}
+
+private fun DataOutput.writeString(value: String) {
+    // writeUTF is limited to 64KiB
+    val bytes = value.toByteArray(Charsets.UTF_8)
+    writeInt(bytes.size)
+    write(bytes)
+}
+
+private fun DataInput.readString(): String {
+    val bytes = ByteArray(readInt())
+    readFully(bytes)
+    return String(bytes, Charsets.UTF_8)
+}
+
+private fun DataOutput.writeNullableString(value: String?) {
+    writeBoolean(value != null)
+    if (value != null) writeString(value)
+}
+
+private fun DataInput.readNullableString(): String? {
+    return if (readBoolean()) readString() else null
+}
+
+private fun DataOutput.writeStringList(values: List<String>) {
+    writeInt(values.size)
+    for (value in values) writeString(value)
+}
+
+private fun DataInput.readStringList(): List<String> {
+    return List(readInt()) { readString() }
+}
+
+private fun DataOutput.writeStringMap(values: Map<String, String>) {
+    writeInt(values.size)
+    for ((key, value) in values) {
+        writeString(key)
+        writeString(value)
+    }
+}
+
+private fun DataInput.readStringMap(): Map<String, String> {
+    val res = LinkedHashMap<String, String>()
+    repeat(readInt()) { res[readString()] = readString() }
+    return res
+}
+
+private fun DataOutput.writeIdx(idx: StaticIdx<*>) {
+    writeInt(idx.index.toInt())
+}
+
+private fun <T> DataInput.readIdx(): StaticIdx<T> {
+    return StaticIdx(readInt().toUInt())
+}
+
+private fun DataOutput.writeIdxCollection(values: StaticIdxCollection<*>) {
+    writeInt(values.size)
+    for (value in values) writeIdx(value)
+}
+
+private fun <T> DataInput.readIdxList(): MutableStaticIdxArrayList<T> {
+    val size = readInt()
+    val res = MutableStaticIdxArrayList<T>(size)
+    repeat(size) { res.add(readIdx()) }
+    return res
+}
+
+private fun <T> DataInput.readIdxSortedSet(): MutableStaticIdxArraySet<T> {
+    val size = readInt()
+    val res = MutableStaticIdxArraySet<T>(size)
+    repeat(size) { res.add(readIdx()) }
+    return res
+}
+
+private fun DataOutput.writeDirIdxList(values: DirStaticIdxList<*>) {
+    writeInt(values.size)
+    for (value in values) writeInt(value.data.toInt())
+}
+
+private fun <T> DataInput.readDirIdxList(): MutableDirStaticIdxArrayList<T> {
+    val size = readInt()
+    val res = MutableDirStaticIdxArrayList<T>(size)
+    repeat(size) { res.add(DirStaticIdx(readInt().toUInt())) }
+    return res
+}
+
+private fun DataOutput.writeOffsets(values: OffsetList<*>) {
+    writeInt(values.size)
+    for (value in values) writeLong(value.distance.millimeters)
+}
+
+private fun <T> DataInput.readOffsets(): MutableOffsetArrayList<T> {
+    val size = readInt()
+    val res = MutableOffsetArrayList<T>(size)
+    repeat(size) { res.add(Offset(Distance(readLong()))) }
+    return res
+}
+
+private fun <IndexT, ValueT> DataOutput.writePool(
+    pool: StaticPool<IndexT, ValueT>,
+    writeValue: DataOutput.(ValueT) -> Unit
+) {
+    writeInt(pool.size.toInt())
+    for (item in pool) writeValue(pool[item])
+}
+
+private fun <IndexT, ValueT> DataInput.readPool(
+    readValue: DataInput.() -> ValueT
+): StaticPool<IndexT, ValueT> {
+    val size = readInt()
+    val items = ArrayList<ValueT>(size)
+    repeat(size) { items.add(readValue()) }
+    return StaticPool(items)
+}
+
+private fun <T> DataOutput.writeDirectional(
+    values: DirectionalMap<T>,
+    writeValue: DataOutput.(T) -> Unit
+) {
+    writeValue(values.get(Direction.INCREASING))
+    writeValue(values.get(Direction.DECREASING))
+}
+
+private fun <T> DataInput.readDirectional(readValue: DataInput.() -> T): DirectionalMap<T> {
+    val forwards = readValue()
+    val backwards = readValue()
+    return DirectionalMap(forwards, backwards)
+}
+
+private fun <T> DataOutput.writeRangeMap(
+    values: DistanceRangeMap<T>,
+    writeValue: DataOutput.(T) -> Unit
+) {
+    val entries = values.asList()
+    writeInt(entries.size)
+    for (entry in entries) {
+        writeLong(entry.lower.millimeters)
+        writeLong(entry.upper.millimeters)
+        writeValue(entry.value)
+    }
+}
+
+private fun <T> DataInput.readRangeMap(readValue: DataInput.() -> T): DistanceRangeMap<T> {
+    val entries =
+        List(readInt()) {
+            val lower = Distance(readLong())
+            val upper = Distance(readLong())
+            DistanceRangeMap.RangeMapEntry(lower, upper, readValue())
+        }
+    return distanceRangeMapOf(entries)
+}
+
+private fun DataOutput.writeSpeedSection(section: SpeedSection) {
+    writeLong(section.default.millimetersPerSecond.toLong())
+    writeInt(section.speedByTrainTag.size)
+    for ((tag, speed) in section.speedByTrainTag) {
+        writeString(tag)
+        writeLong(speed.millimetersPerSecond.toLong())
+    }
+    writeInt(section.speedByRoute.size)
+    for ((route, speed) in section.speedByRoute) {
+        writeString(route)
+        writeLong(speed.millimetersPerSecond.toLong())
+    }
+}
+
+private fun DataInput.readSpeedSection(): SpeedSection {
+    val default = Speed(readLong().toULong())
+    val speedByTrainTag = LinkedHashMap<String, Speed>()
+    repeat(readInt()) { speedByTrainTag[readString()] = Speed(readLong().toULong()) }
+    val speedByRoute = LinkedHashMap<String, Speed>()
+    repeat(readInt()) { speedByRoute[readString()] = Speed(readLong().toULong()) }
+    return SpeedSection(default, speedByTrainTag, speedByRoute)
+}
+
+private fun DataOutput.writeLineString(lineString: LineString) {
+    val points = lineString.points
+    writeInt(points.size)
+    for (point in points) {
+        writeDouble(point.lat)
+        writeDouble(point.lon)
+    }
+}
+
+private fun DataInput.readLineString(): LineString {
+    val size = readInt()
+    val lat = DoubleArray(size)
+    val lon = DoubleArray(size)
+    for (i in 0 until size) {
+        lat[i] = readDouble()
+        lon[i] = readDouble()
+    }
+    // Cumulative lengths are computed from the points, as when the infra was parsed
+    return LineString.make(lat, lon)
+}
@@ -195,25 +195,25 @@ class DetectorDescriptor(
 )
 
 class RawInfraImpl(
-    private val trackNodePool: StaticPool<TrackNode, TrackNodeDescriptor>,
-    private val trackSectionPool: StaticPool<TrackSection, TrackSectionDescriptor>,
-    private val trackChunkPool: StaticPool<TrackChunk, TrackChunkDescriptor>,
-    private val nodeAtEndpoint: IdxMap<EndpointTrackSectionId, TrackNodeId>,
-    private val zonePool: StaticPool<Zone, ZoneDescriptor>,
-    private val detectorPool: StaticPool<Detector, DetectorDescriptor>,
-    private val nextZones: IdxMap<DirDetectorId, ZoneId>,
-    private val routePool: StaticPool<Route, RouteDescriptor>,
-    private val logicalSignalPool: StaticPool<LogicalSignal, LogicalSignalDescriptor>,
-    private val physicalSignalPool: StaticPool<PhysicalSignal, PhysicalSignalDescriptor>,
-    private val zonePathPool: StaticPool<ZonePath, ZonePathDescriptor>,
-    private val zonePathMap: Map<ZonePathSpec, ZonePathId>,
-    private val operationalPointPartPool:
+    internal val trackNodePool: StaticPool<TrackNode, TrackNodeDescriptor>,
+    internal val trackSectionPool: StaticPool<TrackSection, TrackSectionDescriptor>,
+    internal val trackChunkPool: StaticPool<TrackChunk, TrackChunkDescriptor>,
+    internal val nodeAtEndpoint: IdxMap<EndpointTrackSectionId, TrackNodeId>,
+    internal val zonePool: StaticPool<Zone, ZoneDescriptor>,
+    internal val detectorPool: StaticPool<Detector, DetectorDescriptor>,
+    internal val nextZones: IdxMap<DirDetectorId, ZoneId>,
+    internal val routePool: StaticPool<Route, RouteDescriptor>,
+    internal val logicalSignalPool: StaticPool<LogicalSignal, LogicalSignalDescriptor>,
+    internal val physicalSignalPool: StaticPool<PhysicalSignal, PhysicalSignalDescriptor>,
+    internal val zonePathPool: StaticPool<ZonePath, ZonePathDescriptor>,
+    internal val zonePathMap: Map<ZonePathSpec, ZonePathId>,
+    internal val operationalPointPartPool:
         StaticPool<OperationalPointPart, OperationalPointPartDescriptor>,
-    private val speedLimitTagPool: Map<String, SpeedLimitTagDescriptor>,
-    private val trackSectionNameMap: Map<String, TrackSectionId>,
-    private val routeNameMap: Map<String, RouteId>,
-    private val dirDetEntryToRouteMap: Map<DirDetectorId, StaticIdxList<Route>>,
-    private val dirDetExitToRouteMap: Map<DirDetectorId, StaticIdxList<Route>>,
+    internal val speedLimitTagPool: Map<String, SpeedLimitTagDescriptor>,
+    internal val trackSectionNameMap: Map<String, TrackSectionId>,
+    internal val routeNameMap: Map<String, RouteId>,
+    internal val dirDetEntryToRouteMap: Map<DirDetectorId, StaticIdxList<Route>>,
+    internal val dirDetExitToRouteMap: Map<DirDetectorId, StaticIdxList<Route>>,
 ) : RawInfra {
     private val zoneNameMap: HashMap<String, ZoneId> = HashMap()
     private val cachePerDirTrackChunk = IdxMap<DirTrackChunkId, MutableList<TrackChunkSignal>>()
@@ -1,56 +1,155 @@
 package fr.sncf.osrd.utils
 
+private const val HASH_BITS = 5
+private const val HASH_MASK = (1 shl HASH_BITS) - 1
+
 /**
- * Append-only map implementation. The internal structure is a linked list. Used to store data on
- * diverging paths while minimizing copies. See also `AppendOnlyLinkedList`. On duplicates, the
- * previous value is effectively replaced, but it still takes some space in the list.
+ * Append-only map implementation. The internal structure is a persistent hash trie (HAMT): nodes
+ * are never modified once created, adding a value copies the nodes on the path to its key. Used to
+ * store data on diverging paths while minimizing copies: copies share the whole structure, and
+ * lookups are O(log32(n)) regardless of when the key was added. On duplicates, the previous value
+ * is replaced.
  */
-class AppendOnlyMap<K, V>(
-    private val list: AppendOnlyLinkedList<Pair<K, V>>,
-    private val keyFilter: BloomFilter<K>,
-) {
+class AppendOnlyMap<K, V> private constructor(private var root: Node?, size: Int) {
+    /** Number of keys in the map */
+    var size = size
+        private set
+
+    constructor() : this(null, 0)
+
     /**
-     * Returns the value associated with the key. O(n) in worst case, O(1) if the value is near the
-     * end.
+     * Trie node, with one slot per set bit of `bitmap`. Slots are either an `Entry` or a `Node` for
+     * the next 5 bits of the hash.
      */
+    private class Node(val bitmap: Int, val slots: Array<Any>)
+
+    /** Key / value pair, linked to other entries with the same full hash */
+    private class Entry(val hash: Int, val key: Any?, val value: Any?, val next: Entry?)
+
+    /** Returns the value associated with the key. O(log32(n)). */
+    @Suppress("UNCHECKED_CAST")
     operator fun get(k: K): V? {
-        return list.findLast { it.first == k }?.second
+        return findEntry(k)?.value as V?
     }
 
-    /** Add the given pair of values to the map. O(1). */
+    /** Add the given pair of values to the map. O(log32(n)). */
     operator fun set(k: K, v: V) {
-        keyFilter.add(k)
-        list.add(Pair(k, v))
+        val hash = mixHash(k.hashCode())
+        val node = root
+        if (node == null) {
+            root = Node(1 shl (hash and HASH_MASK), arrayOf<Any>(Entry(hash, k, v, null)))
+            size++
+            return
+        }
+        root = insert(node, 0, hash, k, v)
     }
 
     /** Returns a copy of the map. The underlying structure is *not* copied. O(1). */
     fun shallowCopy(): AppendOnlyMap<K, V> {
-        return AppendOnlyMap(list.shallowCopy(), keyFilter.copy())
+        return AppendOnlyMap(root, size)
     }
 
-    /**
-     * Returns true if the key is in the key set. O(n) in worst case, O(1) if the value is near the
-     * end. Pre-filtered using a bloom filter.
-     */
+    /** Returns true if the key is in the key set. O(log32(n)). */
     fun containsKey(key: K): Boolean {
-        if (!keyFilter.mayContain(key)) return false
-        return list.findLast { it.first == key } != null
+        return findEntry(key) != null
     }
 
-    /**
-     * Generates a "normal" map from the current instance values. Θ(n) once, but operations on the
-     * resulting map should be O(1) (unlike operations on the `AppendOnlyMap` itself).
-     */
+    /** Generates a "normal" map from the current instance values. Θ(n). */
     fun toMap(): Map<K, V> {
-        return list.toList().toMap()
+        val res = HashMap<K, V>()
+        val node = root
+        if (node != null) addAll(node, res)
+        return res
     }
 
     override fun toString(): String {
         return toMap().toString()
     }
+
+    private fun findEntry(k: K): Entry? {
+        val hash = mixHash(k.hashCode())
+        var node = root ?: return null
+        var shift = 0
+        while (true) {
+            val bit = 1 shl ((hash ushr shift) and HASH_MASK)
+            if ((node.bitmap and bit) == 0) return null
+            when (val slot = node.slots[Integer.bitCount(node.bitmap and (bit - 1))]) {
+                is Node -> node = slot
+                else -> {
+                    var entry: Entry? = slot as Entry
+                    while (entry != null) {
+                        if (entry.hash == hash && entry.key == k) return entry
+                        entry = entry.next
+                    }
+                    return null
+                }
+            }
+            shift += HASH_BITS
+        }
+    }
+
+    /** Returns a copy of `node` (at the given depth) with the key set to the value */
+    @Suppress("UNCHECKED_CAST")
+    private fun insert(node: Node, shift: Int, hash: Int, k: K, v: V): Node {
+        val bit = 1 shl ((hash ushr shift) and HASH_MASK)
+        val index = Integer.bitCount(node.bitmap and (bit - 1))
+        if ((node.bitmap and bit) == 0) {
+            // Free slot
+            val slots = arrayOfNulls<Any>(node.slots.size + 1)
+            node.slots.copyInto(slots, 0, 0, index)
+            slots[index] = Entry(hash, k, v, null)
+            node.slots.copyInto(slots, index + 1, index)
+            size++
+            return Node(node.bitmap or bit, slots as Array<Any>)
+        }
+        val slots = node.slots.copyOf()
+        slots[index] =
+            when (val slot = slots[index]) {
+                is Node -> insert(slot, shift + HASH_BITS, hash, k, v)
+                else -> {
+                    val entry = slot as Entry
+                    if (entry.hash == hash) replaceInChain(entry, hash, k, v)
+                    else {
+                        // Both entries are moved one level down
+                        val subBit = 1 shl ((entry.hash ushr (shift + HASH_BITS)) and HASH_MASK)
+                        val subNode = Node(subBit, arrayOf<Any>(entry))
+                        insert(subNode, shift + HASH_BITS, hash, k, v)
+                    }
+                }
+            }
+        return Node(node.bitmap, slots)
+    }
+
+    /** Returns the chain of entries sharing the same full hash, with the key set to the value */
+    private fun replaceInChain(chain: Entry, hash: Int, k: K, v: V): Entry {
+        var res: Entry? = null
+        var replaced = false
+        var entry: Entry? = chain
+        while (entry != null) {
+            if (entry.key == k) replaced = true else res = Entry(hash, entry.key, entry.value, res)
+            entry = entry.next
+        }
+        if (!replaced) size++
+        return Entry(hash, k, v, res)
+    }
+
+    @Suppress("UNCHECKED_CAST")
+    private fun addAll(node: Node, res: MutableMap<K, V>) {
+        for (slot in node.slots) {
+            if (slot is Node) {
+                addAll(slot, res)
+                continue
+            }
+            var entry: Entry? = slot as Entry
+            while (entry != null) {
+                res[entry.key as K] = entry.value as V
+                entry = entry.next
+            }
+        }
+    }
 }
 
-/** Returns a new empty list */
+/** Returns a new empty map */
 fun <K, V> appendOnlyMapOf(): AppendOnlyMap<K, V> {
-    return AppendOnlyMap(appendOnlyLinkedListOf(), emptyBloomFilter())
+    return AppendOnlyMap()
 }
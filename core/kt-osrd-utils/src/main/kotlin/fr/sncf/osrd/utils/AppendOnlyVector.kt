@@ -0,0 +1,200 @@
+package fr.sncf.osrd.utils
+
+private const val BITS = 5
+private const val WIDTH = 1 shl BITS
+private const val MASK = WIDTH - 1
+
+/**
+ * Append-only persistent vector, with structural sharing between copies.
+ *
+ * The main use-case for this class is to store data about several diverging paths: copies are O(1)
+ * and share their elements, we can have several lists that diverge from some point without
+ * duplicating the shared elements. Unlike a linked list, indexed access is O(log32(n)), which is
+ * effectively constant.
+ *
+ * Elements are stored in leaves of 32 elements, in a trie of arrays that are never modified once
+ * they're shared. The last leaf (the tail) is filled in place: a copy can append to the shared tail
+ * as long as no other copy has appended to it first, otherwise the tail is copied. Copies sharing a
+ * structure must not be appended to concurrently.
+ */
+class AppendOnlyVector<T>
+private constructor(
+    // Trie containing all the full leaves before the tail. Its depth is given by `shift`.
+    private var root: Array<Any?>,
+    private var shift: Int,
+    private var tail: Tail,
+    size: Int,
+) {
+    /** Number of elements in the list */
+    var size = size
+        private set
+
+    constructor() : this(arrayOfNulls(WIDTH), BITS, Tail(arrayOfNulls(WIDTH), 0), 0)
+
+    /**
+     * Last leaf of the vector, possibly shared between copies. `used` is the number of elements
+     * written by any of the copies: copies with as many elements in their tail can append in place.
+     */
+    private class Tail(val elements: Array<Any?>, var used: Int)
+
+    /** Get the element at the given index. O(log32(n)). */
+    @Suppress("UNCHECKED_CAST")
+    operator fun get(index: Int): T {
+        if (index >= size || index < 0) throw IndexOutOfBoundsException()
+        return leafFor(index)[index and MASK] as T
+    }
+
+    fun isEmpty(): Boolean {
+        return size == 0
+    }
+
+    fun isNotEmpty(): Boolean {
+        return size != 0
+    }
+
+    /** Returns a copy of the list. The underlying structure is *not* copied. O(1). */
+    fun shallowCopy(): AppendOnlyVector<T> {
+        return AppendOnlyVector(root, shift, tail, size)
+    }
+
+    /** Add an element to the end of the list. Amortized O(1). */
+    fun add(element: T) {
+        val tailCount = size - tailOffset()
+        if (tailCount < WIDTH) {
+            if (tail.used != tailCount) {
+                // Another copy has appended to this tail, we can't write in it
+                val elements = arrayOfNulls<Any?>(WIDTH)
+                tail.elements.copyInto(elements, 0, 0, tailCount)
+                tail = Tail(elements, tailCount)
+            }
+            tail.elements[tailCount] = element
+            tail.used++
+            size++
+            return
+        }
+        // The tail is full, it's moved to the trie
+        if ((size ushr BITS) > (1 shl shift)) {
+            // The trie is full, we add a level
+            val newRoot = arrayOfNulls<Any?>(WIDTH)
+            newRoot[0] = root
+            newRoot[1] = newPath(shift, tail.elements)
+            root = newRoot
+            shift += BITS
+        } else {
+            root = pushTail(shift, root, tail.elements)
+        }
+        tail = Tail(arrayOfNulls(WIDTH), 1)
+        tail.elements[0] = element
+        size++
+    }
+
+    /** Add all elements to the end of the list, in order. */
+    fun addAll(elements: Iterable<T>) {
+        for (e in elements) add(e)
+    }
+
+    /** Converts the vector into a normal list. */
+    fun toList(): List<T> {
+        val res = ArrayList<T>(size)
+        forEach { res.add(it) }
+        return res
+    }
+
+    /** Converts the vector into a set. */
+    fun toSet(): Set<T> {
+        val res = mutableSetOf<T>()
+        forEach { res.add(it) }
+        return res
+    }
+
+    /** Calls the action on each element, in order */
+    inline fun forEach(action: (T) -> Unit) {
+        for (i in 0 until size) action(get(i))
+    }
+
+    /** Returns the last element of the list */
+    fun last(): T {
+        return get(size - 1)
+    }
+
+    /** Returns a sub list from 0 to untilIndex (excluded). O(log32(n)). */
+    fun subList(untilIndex: Int): AppendOnlyVector<T> {
+        if (untilIndex > size || untilIndex < 0) throw IndexOutOfBoundsException()
+        if (untilIndex == 0) return appendOnlyVectorOf()
+        // Leaves after the new tail are left in the trie, they're never read and are replaced by
+        // any further append. The new tail is marked as full, appending to it makes a copy.
+        val lastLeaf = leafFor(untilIndex - 1)
+        val newTail = if (lastLeaf === tail.elements) tail else Tail(lastLeaf, WIDTH)
+        return AppendOnlyVector(root, shift, newTail, untilIndex)
+    }
+
+    /**
+     * Iterate over the list backwards, returning the first seen element that fits the predicate.
+     */
+    fun findLast(predicate: (T) -> Boolean): T? {
+        for (i in size - 1 downTo 0) {
+            val element = get(i)
+            if (predicate.invoke(element)) return element
+        }
+        return null
+    }
+
+    /** Utility function for debugger views. */
+    override fun toString(): String {
+        return toList().toString()
+    }
+
+    /** Index of the first element of the tail */
+    private fun tailOffset(): Int {
+        if (size < WIDTH) return 0
+        return ((size - 1) ushr BITS) shl BITS
+    }
+
+    /** Returns the leaf array containing the given index */
+    @Suppress("UNCHECKED_CAST")
+    private fun leafFor(index: Int): Array<Any?> {
+        if (index >= tailOffset()) return tail.elements
+        var node = root
+        var level = shift
+        while (level > 0) {
+            node = node[(index ushr level) and MASK] as Array<Any?>
+            level -= BITS
+        }
+        return node
+    }
+
+    /** Returns a copy of `parent` with the full tail added to the trie */
+    @Suppress("UNCHECKED_CAST")
+    private fun pushTail(level: Int, parent: Array<Any?>, tailNode: Array<Any?>): Array<Any?> {
+        val subIndex = ((size - 1) ushr level) and MASK
+        val res = parent.copyOf()
+        res[subIndex] =
+            if (level == BITS) tailNode
+            else {
+                val child = parent[subIndex] as Array<Any?>?
+                if (child != null) pushTail(level - BITS, child, tailNode)
+                else newPath(level - BITS, tailNode)
+            }
+        return res
+    }
+
+    /** Returns a branch of the given depth, leading to the given leaf */
+    private fun newPath(level: Int, leaf: Array<Any?>): Array<Any?> {
+        if (level == 0) return leaf
+        val res = arrayOfNulls<Any?>(WIDTH)
+        res[0] = newPath(level - BITS, leaf)
+        return res
+    }
+}
+
+/** Returns a new empty list */
+fun <T> appendOnlyVectorOf(): AppendOnlyVector<T> {
+    return AppendOnlyVector()
+}
+
+/** Returns a new list with the given element */
+fun <T> appendOnlyVectorOf(element: T): AppendOnlyVector<T> {
+    val res = AppendOnlyVector<T>()
+    res.add(element)
+    return res
+}
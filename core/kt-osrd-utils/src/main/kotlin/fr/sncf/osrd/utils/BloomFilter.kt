@@ -1,16 +1,38 @@
 package fr.sncf.osrd.utils
 
-import java.util.BitSet
+import kotlin.math.ln
+import kotlin.math.max
+import kotlin.math.roundToInt
 
-/** Simple bloom filter implementation. */
-class BloomFilter<T>(private val bitField: BitSet, private val nHash: Int) {
+/**
+ * Bloom filter implementation. The `nHash` bit positions of a value are derived from its hash code,
+ * using two mixed hashes combined by double hashing: small consecutive ids (such as `StaticIdx`
+ * values) end up spread over the whole bit field. The number of bits is rounded up to a power of
+ * two.
+ */
+class BloomFilter<T> private constructor(private val bits: LongArray, private val nHash: Int) {
+
+    constructor(
+        bitCount: Int,
+        nHash: Int
+    ) : this(LongArray(max(1, ceilPowerOfTwo(bitCount) / Long.SIZE_BITS)), nHash)
+
+    init {
+        assert(nHash >= 1) { "bloom filters need at least one hash" }
+    }
+
+    /** Number of bits in the filter */
+    val bitCount: Int
+        get() = bits.size * Long.SIZE_BITS
 
     /** Add a value to the set. */
     fun add(value: T) {
-        var hash = value.hashCode()
-        for (i in 0..nHash) {
-            bitField.set(hash % bitField.size())
-            hash = hash.hashCode()
+        val h1 = mixHash(value.hashCode())
+        val h2 = mixHash(h1 xor SECOND_HASH_SEED) or 1
+        val mask = bitCount - 1
+        for (i in 0 until nHash) {
+            val bit = (h1 + i * h2) and mask
+            bits[bit ushr 6] = bits[bit ushr 6] or (1L shl bit)
         }
     }
 
@@ -19,19 +41,41 @@ class BloomFilter<T>(private val bitField: BitSet, private val nHash: Int) {
      * are not.
      */
     fun mayContain(value: T): Boolean {
-        var hash = value.hashCode()
-        for (i in 0..nHash) {
-            if (!bitField.get(hash % bitField.size())) return false
-            hash = hash.hashCode()
+        val h1 = mixHash(value.hashCode())
+        val h2 = mixHash(h1 xor SECOND_HASH_SEED) or 1
+        val mask = bitCount - 1
+        for (i in 0 until nHash) {
+            val bit = (h1 + i * h2) and mask
+            if ((bits[bit ushr 6] and (1L shl bit)) == 0L) return false
         }
         return true
     }
 
     fun copy(): BloomFilter<T> {
-        return BloomFilter(bitField.clone() as BitSet, nHash)
+        return BloomFilter(bits.copyOf(), nHash)
+    }
+
+    companion object {
+        private const val SECOND_HASH_SEED = -0x61c88647
+
+        private fun ceilPowerOfTwo(value: Int): Int {
+            if (value <= 1) return 1
+            return (value - 1).takeHighestOneBit() shl 1
+        }
     }
 }
 
-fun <T> emptyBloomFilter(bitsetSize: Int = 2048, nHash: Int = 2): BloomFilter<T> {
-    return BloomFilter(BitSet(bitsetSize), nHash)
+fun <T> emptyBloomFilter(bitsetSize: Int = 2048, nHash: Int = 3): BloomFilter<T> {
+    return BloomFilter(bitsetSize, nHash)
+}
+
+/**
+ * Returns an empty bloom filter sized for the given number of elements and false positive rate,
+ * using the optimal number of bits and hashes.
+ */
+fun <T> bloomFilterFor(expectedElements: Int, falsePositiveRate: Double): BloomFilter<T> {
+    assert(expectedElements > 0 && falsePositiveRate > 0 && falsePositiveRate < 1)
+    val bitCount = -expectedElements * ln(falsePositiveRate) / (ln(2.0) * ln(2.0))
+    val nHash = (bitCount / expectedElements * ln(2.0)).roundToInt()
+    return BloomFilter(bitCount.toInt(), max(1, nHash))
 }
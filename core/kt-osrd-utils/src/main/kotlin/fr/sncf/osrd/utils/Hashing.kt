@@ -0,0 +1,12 @@
+package fr.sncf.osrd.utils
+
+/** Murmur3 32 bits finalizer, every input bit affects every output bit */
+internal fun mixHash(value: Int): Int {
+    var h = value
+    h = h xor (h ushr 16)
+    h *= -0x7a143595
+    h = h xor (h ushr 13)
+    h *= -0x3d4d51cb
+    h = h xor (h ushr 16)
+    return h
+}
@@ -0,0 +1,53 @@
+package fr.sncf.osrd.utils
+
+/**
+ * Estimations of the heap retained by common structures, used to keep caches within a memory
+ * budget. They assume a 64-bit JVM with compressed references: objects and arrays have a header of
+ * 16 bytes including alignment, and references take 4 bytes.
+ */
+object HeapSize {
+    const val OBJECT_HEADER = 16L
+    const val ARRAY_HEADER = 16L
+    const val REFERENCE = 4L
+    /** A boxed primitive, such as a Double stored in a generic collection */
+    const val BOXED = 16L
+    /** An entry of a HashMap, excluding its key and value */
+    const val HASH_MAP_ENTRY = OBJECT_HEADER + 3 * REFERENCE + 4 + REFERENCE
+
+    /** A string of latin-1 characters */
+    fun string(value: String): Long {
+        return OBJECT_HEADER + 8 + ARRAY_HEADER + value.length
+    }
+
+    /** A list of references, excluding the referenced objects */
+    fun list(size: Int): Long {
+        return OBJECT_HEADER + 8 + ARRAY_HEADER + REFERENCE * size
+    }
+
+    /** A list of primitive values, such as the lists of indices of infras */
+    fun primitiveList(size: Int, elementBytes: Int): Long {
+        return OBJECT_HEADER + 8 + ARRAY_HEADER + elementBytes.toLong() * size
+    }
+
+    /** A hash map, excluding its keys and values */
+    fun hashMap(size: Int): Long {
+        // tables are resized to keep a load factor below 0.75
+        val tableSize = Integer.highestOneBit(maxOf(1, size * 4 / 3)) * 2
+        return OBJECT_HEADER + 32 + ARRAY_HEADER + REFERENCE * tableSize + HASH_MAP_ENTRY * size
+    }
+
+    /** A map of strings */
+    fun stringMap(map: Map<String, String>): Long {
+        return hashMap(map.size) + map.entries.sumOf { string(it.key) + string(it.value) }
+    }
+
+    /** A range map, given the size of each value, excluding shared values */
+    fun <T> rangeMap(map: DistanceRangeMap<T>, valueSize: (T) -> Long): Long {
+        val entries = map.asList()
+        return OBJECT_HEADER +
+            2 * REFERENCE +
+            primitiveList(entries.size + 1, Long.SIZE_BYTES) +
+            list(entries.size) +
+            entries.sumOf { valueSize(it.value) }
+    }
+}
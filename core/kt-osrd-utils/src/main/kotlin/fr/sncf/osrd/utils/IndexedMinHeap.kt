@@ -0,0 +1,115 @@
+package fr.sncf.osrd.utils
+
+/**
+ * Binary min-heap of int items in `[0, capacity)`, with long priorities. Each item is at most once
+ * in the heap: its position is tracked, so that its priority can be lowered in place. Everything is
+ * stored in primitive arrays allocated once, the heap can be cleared and used again for another
+ * search without allocating.
+ */
+class IndexedMinHeap(val capacity: Int) {
+    private val items = IntArray(capacity)
+    private val priorities = LongArray(capacity)
+    // Position of each item in `items`, or -1 when it isn't in the heap
+    private val positions = IntArray(capacity) { -1 }
+
+    /** Number of items in the heap */
+    var size = 0
+        private set
+
+    fun isEmpty(): Boolean {
+        return size == 0
+    }
+
+    operator fun contains(item: Int): Boolean {
+        return positions[item] >= 0
+    }
+
+    /** Returns the priority of an item in the heap */
+    fun getPriority(item: Int): Long {
+        assert(contains(item))
+        return priorities[positions[item]]
+    }
+
+    /**
+     * Adds the item with the given priority, or lowers its priority if it's already in the heap.
+     * Returns false if the item was already there with a priority lower or equal to the given one.
+     */
+    fun insertOrDecrease(item: Int, priority: Long): Boolean {
+        var position = positions[item]
+        if (position < 0) {
+            position = size++
+            items[position] = item
+            positions[item] = position
+        } else if (priorities[position] <= priority) {
+            return false
+        }
+        priorities[position] = priority
+        siftUp(position)
+        return true
+    }
+
+    /** Returns the priority of the item at the top of the heap */
+    fun peekPriority(): Long {
+        if (size == 0) throw NoSuchElementException()
+        return priorities[0]
+    }
+
+    /** Removes the item with the lowest priority and returns it */
+    fun poll(): Int {
+        if (size == 0) throw NoSuchElementException()
+        val res = items[0]
+        positions[res] = -1
+        size--
+        if (size > 0) {
+            move(size, 0)
+            siftDown(0)
+        }
+        return res
+    }
+
+    /** Removes all items. O(size). */
+    fun clear() {
+        for (i in 0 until size) positions[items[i]] = -1
+        size = 0
+    }
+
+    private fun siftUp(from: Int) {
+        val item = items[from]
+        val priority = priorities[from]
+        var position = from
+        while (position > 0) {
+            val parent = (position - 1) ushr 1
+            if (priorities[parent] <= priority) break
+            move(parent, position)
+            position = parent
+        }
+        place(item, priority, position)
+    }
+
+    private fun siftDown(from: Int) {
+        val item = items[from]
+        val priority = priorities[from]
+        var position = from
+        while (true) {
+            var child = 2 * position + 1
+            if (child >= size) break
+            if (child + 1 < size && priorities[child + 1] < priorities[child]) child++
+            if (priorities[child] >= priority) break
+            move(child, position)
+            position = child
+        }
+        place(item, priority, position)
+    }
+
+    private fun move(from: Int, to: Int) {
+        items[to] = items[from]
+        priorities[to] = priorities[from]
+        positions[items[to]] = to
+    }
+
+    private fun place(item: Int, priority: Long, position: Int) {
+        items[position] = item
+        priorities[position] = priority
+        positions[item] = position
+    }
+}
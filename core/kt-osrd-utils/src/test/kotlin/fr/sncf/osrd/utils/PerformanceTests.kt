@@ -0,0 +1,133 @@
+package fr.sncf.osrd.utils
+
+import fr.sncf.osrd.utils.indexing.StaticIdx
+import kotlin.system.measureNanoTime
+import kotlin.test.Ignore
+import kotlin.test.Test
+import kotlin.test.assertTrue
+
+/**
+ * Benchmarks of the structures used to store data along STDCM paths. STDCM paths reach a few
+ * thousand blocks, their ids are small consecutive integers, and paths are forked at each explored
+ * node.
+ */
+@Ignore(
+    "to be enabled when running profilers or benchmarks, not part of the tests to run by default"
+)
+internal class PerformanceTests {
+    private val pathLengths = listOf(100, 1_000, 10_000)
+
+    /** Runs the block a few times to warm the JIT up, then returns its median run time */
+    private fun medianNanoTime(block: () -> Unit): Long {
+        repeat(WARMUP_RUNS) { block() }
+        return List(MEASURED_RUNS) { measureNanoTime(block) }.sorted()[MEASURED_RUNS / 2]
+    }
+
+    /** The false positive rate of the filter, over ids which weren't added to it */
+    private fun falsePositiveRate(filter: BloomFilter<StaticIdx<Any>>, pathLength: Int): Double {
+        val lookups = 1_000_000
+        val falsePositives =
+            (pathLength until pathLength + lookups).count {
+                filter.mayContain(StaticIdx(it.toUInt()))
+            }
+        return falsePositives.toDouble() / lookups
+    }
+
+    @Test
+    fun bloomFilterFalsePositiveRate() {
+        for (pathLength in pathLengths) {
+            for (targetRate in listOf(0.01, 0.001)) {
+                val filter = bloomFilterFor<StaticIdx<Any>>(pathLength, targetRate)
+                val singleHash = BloomFilter<StaticIdx<Any>>(filter.bitCount, 1)
+                for (i in 0 until pathLength) {
+                    filter.add(StaticIdx(i.toUInt()))
+                    singleHash.add(StaticIdx(i.toUInt()))
+                }
+                val rate = falsePositiveRate(filter, pathLength)
+                var maybeFound = 0
+                val lookupTime = medianNanoTime {
+                    for (i in 0 until pathLength * 2) {
+                        if (filter.mayContain(StaticIdx(i.toUInt()))) maybeFound++
+                    }
+                }
+                println(
+                    "path length=$pathLength, target rate=$targetRate: " +
+                        "${filter.bitCount} bits, false positive rate=$rate " +
+                        "(${falsePositiveRate(singleHash, pathLength)} with a single hash), " +
+                        "${lookupTime / (pathLength * 2)}ns per lookup ($maybeFound found)"
+                )
+                assertTrue(rate < 2 * targetRate, "false positive rate too high: $rate")
+            }
+            val defaultFilter = emptyBloomFilter<StaticIdx<Any>>()
+            for (i in 0 until pathLength) defaultFilter.add(StaticIdx(i.toUInt()))
+            println(
+                "path length=$pathLength: default filter false positive rate=" +
+                    "${falsePositiveRate(defaultFilter, pathLength)}"
+            )
+        }
+    }
+
+    @Test
+    fun appendOnlyMapLookups() {
+        val lookups = 1_000_000
+        for (pathLength in pathLengths) {
+            val map = appendOnlyMapOf<StaticIdx<Any>, Int>()
+            val hashMap = HashMap<StaticIdx<Any>, Int>()
+            for (i in 0 until pathLength) {
+                map[StaticIdx(i.toUInt())] = i
+                hashMap[StaticIdx(i.toUInt())] = i
+            }
+            // Half of the lookups are misses
+            var found = 0
+            val mapTime = medianNanoTime {
+                for (i in 0 until lookups) {
+                    if (map.containsKey(StaticIdx((i % (2 * pathLength)).toUInt()))) found++
+                }
+            }
+            val hashMapTime = medianNanoTime {
+                for (i in 0 until lookups) {
+                    if (hashMap.containsKey(StaticIdx((i % (2 * pathLength)).toUInt()))) found++
+                }
+            }
+            println(
+                "path length=$pathLength: ${mapTime.toDouble() / lookups}ns per lookup " +
+                    "(${hashMapTime.toDouble() / lookups}ns with a HashMap), $found found"
+            )
+        }
+    }
+
+    @Test
+    fun appendOnlyMapForks() {
+        val forks = 10_000
+        for (pathLength in pathLengths) {
+            val map = appendOnlyMapOf<StaticIdx<Any>, Int>()
+            for (i in 0 until pathLength) map[StaticIdx(i.toUInt())] = i
+            val hashMap = map.toMap()
+            // Each explored node copies the path of its parent, and adds one block to it
+            var totalSize = 0
+            val mapTime = medianNanoTime {
+                for (i in 0 until forks) {
+                    val fork = map.shallowCopy()
+                    fork[StaticIdx((pathLength + i).toUInt())] = i
+                    totalSize += fork.size
+                }
+            }
+            val hashMapTime = medianNanoTime {
+                for (i in 0 until forks / 100) {
+                    val fork = HashMap(hashMap)
+                    fork[StaticIdx((pathLength + i).toUInt())] = i
+                    totalSize += fork.size
+                }
+            }
+            println(
+                "path length=$pathLength: ${mapTime / forks}ns per fork " +
+                    "(${hashMapTime / (forks / 100)}ns copying a HashMap), total size=$totalSize"
+            )
+        }
+    }
+
+    companion object {
+        private const val WARMUP_RUNS = 5
+        private const val MEASURED_RUNS = 9
+    }
+}
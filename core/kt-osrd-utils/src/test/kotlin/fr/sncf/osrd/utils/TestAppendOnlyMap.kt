@@ -0,0 +1,58 @@
+package fr.sncf.osrd.utils
+
+import kotlin.random.Random
+import kotlin.test.Test
+import kotlin.test.assertEquals
+import kotlin.test.assertFalse
+import kotlin.test.assertNull
+import kotlin.test.assertTrue
+
+internal class TestAppendOnlyMap {
+    /** Keys with a constant hash code, to test collisions */
+    private data class CollidingKey(val value: Int) {
+        override fun hashCode(): Int {
+            return 42
+        }
+    }
+
+    @Test
+    fun divergingCopies() {
+        val random = Random(42)
+        val maps = mutableListOf(appendOnlyMapOf<Int, Int>())
+        val expected = mutableListOf(mutableMapOf<Int, Int>())
+        for (step in 0 until 20_000) {
+            val i = random.nextInt(maps.size)
+            if (random.nextInt(10) == 0) {
+                maps.add(maps[i].shallowCopy())
+                expected.add(expected[i].toMutableMap())
+            } else {
+                val key = random.nextInt(5_000)
+                maps[i][key] = step
+                expected[i][key] = step
+            }
+        }
+        for ((map, values) in maps.zip(expected)) {
+            assertEquals(values, map.toMap())
+            assertEquals(values.size, map.size)
+            for (key in 0 until 5_000) {
+                assertEquals(values[key], map[key])
+                assertEquals(values.containsKey(key), map.containsKey(key))
+            }
+        }
+    }
+
+    @Test
+    fun collidingKeys() {
+        val map = appendOnlyMapOf<CollidingKey, String>()
+        for (i in 0 until 10) map[CollidingKey(i)] = "a$i"
+        val copy = map.shallowCopy()
+        map[CollidingKey(3)] = "b3"
+        assertEquals(10, map.size)
+        assertEquals("b3", map[CollidingKey(3)])
+        assertEquals("a3", copy[CollidingKey(3)])
+        assertEquals("a9", map[CollidingKey(9)])
+        assertNull(map[CollidingKey(10)])
+        assertFalse(copy.containsKey(CollidingKey(10)))
+        assertTrue(copy.containsKey(CollidingKey(0)))
+    }
+}
@@ -0,0 +1,69 @@
+package fr.sncf.osrd.utils
+
+import kotlin.random.Random
+import kotlin.test.Test
+import kotlin.test.assertEquals
+import kotlin.test.assertFailsWith
+import kotlin.test.assertNull
+
+internal class TestAppendOnlyVector {
+    @Test
+    fun addAndGet() {
+        val vector = appendOnlyVectorOf<Int>()
+        for (i in 0 until 5000) {
+            vector.add(i)
+            assertEquals(i, vector.last())
+        }
+        assertEquals(5000, vector.size)
+        for (i in 0 until 5000) assertEquals(i, vector[i])
+        assertEquals((0 until 5000).toList(), vector.toList())
+        assertFailsWith<IndexOutOfBoundsException> { vector[5000] }
+        assertFailsWith<IndexOutOfBoundsException> { vector[-1] }
+    }
+
+    @Test
+    fun divergingCopies() {
+        // Copies are made and extended in random order, each must keep its own elements
+        val random = Random(42)
+        val vectors = mutableListOf(appendOnlyVectorOf<Int>())
+        val expected = mutableListOf(mutableListOf<Int>())
+        for (step in 0 until 20_000) {
+            val i = random.nextInt(vectors.size)
+            if (random.nextInt(10) == 0) {
+                vectors.add(vectors[i].shallowCopy())
+                expected.add(expected[i].toMutableList())
+            } else {
+                vectors[i].add(step)
+                expected[i].add(step)
+            }
+        }
+        for ((vector, values) in vectors.zip(expected)) {
+            assertEquals(values, vector.toList())
+        }
+    }
+
+    @Test
+    fun subList() {
+        val vector = appendOnlyVectorOf<Int>()
+        for (i in 0 until 2000) vector.add(i)
+        for (until in listOf(0, 1, 31, 32, 33, 64, 1024, 1056, 1057, 2000)) {
+            val sub = vector.subList(until)
+            assertEquals((0 until until).toList(), sub.toList())
+            // Extending the sub list doesn't change the original one
+            for (i in 0 until 100) sub.add(-i)
+            assertEquals(until + 100, sub.size)
+            assertEquals(-99, sub.last())
+            assertEquals((0 until until).toList() + (0 until 100).map { -it }, sub.toList())
+        }
+        assertEquals((0 until 2000).toList(), vector.toList())
+    }
+
+    @Test
+    fun findLast() {
+        val vector = appendOnlyVectorOf<Int>()
+        vector.addAll(0 until 100)
+        assertEquals(99, vector.findLast { it % 3 == 0 })
+        assertEquals(5, vector.findLast { it < 6 })
+        assertNull(vector.findLast { it > 100 })
+    }
+}
@@ -0,0 +1,29 @@
+package fr.sncf.osrd.utils
+
+import fr.sncf.osrd.utils.indexing.StaticIdx
+import kotlin.test.Test
+import kotlin.test.assertTrue
+
+internal class TestBloomFilter {
+    @Test
+    fun falsePositiveRate() {
+        // Small consecutive ids, as stored in STDCM paths
+        val filter = bloomFilterFor<StaticIdx<Any>>(1_000, 0.01)
+        for (i in 0 until 1_000) filter.add(StaticIdx(i.toUInt()))
+        for (i in 0 until 1_000) assertTrue(filter.mayContain(StaticIdx(i.toUInt())))
+        val falsePositives =
+            (1_000 until 101_000).count { filter.mayContain(StaticIdx(it.toUInt())) }
+        assertTrue(falsePositives < 2_000, "false positive rate too high: $falsePositives / 100000")
+    }
+
+    @Test
+    fun copiesAreIndependent() {
+        val filter = emptyBloomFilter<Int>()
+        filter.add(1)
+        val copy = filter.copy()
+        copy.add(2)
+        assertTrue(copy.mayContain(1))
+        assertTrue(copy.mayContain(2))
+        assertTrue(filter.mayContain(1))
+    }
+}
@@ -0,0 +1,49 @@
+package fr.sncf.osrd.utils
+
+import kotlin.random.Random
+import kotlin.test.Test
+import kotlin.test.assertEquals
+import kotlin.test.assertFalse
+import kotlin.test.assertTrue
+
+internal class TestIndexedMinHeap {
+    @Test
+    fun pollsInPriorityOrder() {
+        val random = Random(42)
+        val heap = IndexedMinHeap(1000)
+        val expected = mutableMapOf<Int, Long>()
+        for (step in 0 until 5000) {
+            val item = random.nextInt(1000)
+            val priority = random.nextLong(1_000_000)
+            val previous = expected[item]
+            val decreased = heap.insertOrDecrease(item, priority)
+            assertEquals(previous == null || priority < previous, decreased)
+            if (decreased) expected[item] = priority
+        }
+        assertEquals(expected.size, heap.size)
+        var lastPriority = Long.MIN_VALUE
+        while (!heap.isEmpty()) {
+            val priority = heap.peekPriority()
+            val item = heap.poll()
+            assertEquals(expected.remove(item), priority)
+            assertTrue(priority >= lastPriority)
+            assertFalse(item in heap)
+            lastPriority = priority
+        }
+        assertTrue(expected.isEmpty())
+    }
+
+    @Test
+    fun clear() {
+        val heap = IndexedMinHeap(10)
+        for (i in 0 until 10) heap.insertOrDecrease(i, 10L - i)
+        heap.clear()
+        assertTrue(heap.isEmpty())
+        assertFalse(0 in heap)
+        heap.insertOrDecrease(3, 5)
+        heap.insertOrDecrease(3, 2)
+        assertEquals(2, heap.getPriority(3))
+        assertEquals(3, heap.poll())
+        assertTrue(heap.isEmpty())
+    }
+}
@@ -169,6 +169,11 @@ public enum ErrorType {
             "missing_route_from_chunk_path",
             "couldn't find a route matching the given chunk list",
             ErrorCause.INTERNAL),
+    TimetableUnknownVersion(
+            "timetable:unknown_version",
+            "This version of the timetable isn't held by core, the whole timetable must be sent",
+            ErrorCause.USER,
+            false),
     ;
 
     public final String type;
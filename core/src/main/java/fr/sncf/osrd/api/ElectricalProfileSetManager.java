@@ -85,6 +85,16 @@ public class ElectricalProfileSetManager extends APIClient {
         }
     }
 
+    /** Estimates the heap retained by the cached electrical profile sets. */
+    public long estimatedSize() {
+        long size = 0;
+        for (var cacheEntry : cache.values()) {
+            var mapping = cacheEntry.mapping;
+            if (mapping != null) size += mapping.estimatedHeapSize();
+        }
+        return size;
+    }
+
     @SuppressFBWarnings("UWF_FIELD_NOT_INITIALIZED_IN_CONSTRUCTOR")
     protected static class CacheEntry {
         protected CacheStatus status;
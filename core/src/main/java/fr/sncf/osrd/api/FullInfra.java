@@ -2,6 +2,7 @@ package fr.sncf.osrd.api;
 
 import static fr.sncf.osrd.RawInfraRJSParserKt.parseRJSInfra;
 
+import fr.sncf.osrd.api.pathfinding.constraints.BlockedRangesIndex;
 import fr.sncf.osrd.railjson.schema.infra.RJSInfra;
 import fr.sncf.osrd.signaling.SignalingSimulator;
 import fr.sncf.osrd.sim_infra.api.BlockInfra;
@@ -32,6 +33,8 @@ public record FullInfra(
         logger.info("building blocks");
         var blockInfra = signalingSimulator.buildBlocks(rawInfra, loadedSignalInfra);
 
-        return new FullInfra(rawInfra, loadedSignalInfra, blockInfra, signalingSimulator);
+        var infra = new FullInfra(rawInfra, loadedSignalInfra, blockInfra, signalingSimulator);
+        BlockedRangesIndex.enable(infra);
+        return infra;
     }
 }
@@ -69,13 +69,21 @@ public final class InfraCacheStatusEndpoint implements Take {
         @Json(name = "last_status")
         public InfraStatus lastStatus;
 
-        public SerializedInfraCache(InfraStatus status, InfraStatus lastStatus) {
+        /** The number of times the infra was evicted from the cache to stay within the memory budget */
+        public int evictions;
+
+        @Json(name = "estimated_size")
+        public long estimatedSize;
+
+        public SerializedInfraCache(InfraStatus status, InfraStatus lastStatus, int evictions, long estimatedSize) {
             this.status = status;
             this.lastStatus = lastStatus;
+            this.evictions = evictions;
+            this.estimatedSize = estimatedSize;
         }
 
         static SerializedInfraCache from(InfraCacheEntry entry) {
-            return new SerializedInfraCache(entry.status, entry.lastStatus);
+            return new SerializedInfraCache(entry.status, entry.lastStatus, entry.evictions, entry.estimatedSize);
         }
     }
 
@@ -2,18 +2,40 @@ package fr.sncf.osrd.api;
 
 import static fr.sncf.osrd.RawInfraRJSParserKt.parseRJSInfra;
 import static fr.sncf.osrd.api.SignalingSimulatorKt.makeSignalingSimulator;
+import static fr.sncf.osrd.sim_infra.impl.InfraHeapSizeKt.estimatedHeapSize;
+import static fr.sncf.osrd.sim_infra.impl.InfraSerializationKt.readBlockInfra;
+import static fr.sncf.osrd.sim_infra.impl.InfraSerializationKt.readLoadedSignalInfra;
+import static fr.sncf.osrd.sim_infra.impl.InfraSerializationKt.readRawInfra;
+import static fr.sncf.osrd.sim_infra.impl.InfraSerializationKt.writeBlockInfra;
+import static fr.sncf.osrd.sim_infra.impl.InfraSerializationKt.writeLoadedSignalInfra;
+import static fr.sncf.osrd.sim_infra.impl.InfraSerializationKt.writeRawInfra;
 
-import com.squareup.moshi.JsonDataException;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
-import fr.sncf.osrd.railjson.schema.infra.RJSInfra;
+import fr.sncf.osrd.RJSInfraFingerprint;
+import fr.sncf.osrd.StreamingRJSInfraObjects;
+import fr.sncf.osrd.api.pathfinding.UnconstrainedRouting;
+import fr.sncf.osrd.api.pathfinding.constraints.BlockedRangesIndex;
+import fr.sncf.osrd.graph.BlockGraph;
+import fr.sncf.osrd.graph.LandmarkDistances;
 import fr.sncf.osrd.reporting.exceptions.ErrorType;
 import fr.sncf.osrd.reporting.exceptions.OSRDError;
 import fr.sncf.osrd.reporting.warnings.DiagnosticRecorder;
 import fr.sncf.osrd.signaling.SignalingSimulator;
+import fr.sncf.osrd.sim_infra.api.BlockInfra;
+import fr.sncf.osrd.sim_infra.api.LoadedSignalInfra;
+import fr.sncf.osrd.sim_infra.api.RawInfra;
+import fr.sncf.osrd.sim_infra.impl.BlockInfraImpl;
+import fr.sncf.osrd.sim_infra.impl.LoadedSignalingInfraImpl;
+import fr.sncf.osrd.sim_infra.impl.RawInfraImpl;
 import fr.sncf.osrd.utils.jacoco.ExcludeFromGeneratedCodeCoverage;
 import java.io.IOException;
+import java.util.List;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.BiConsumer;
+import java.util.function.LongSupplier;
 import okhttp3.OkHttpClient;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -23,6 +45,19 @@ public class InfraManager extends APIClient {
 
     private final ConcurrentHashMap<String, InfraCacheEntry> infraCache = new ConcurrentHashMap<>();
     private final SignalingSimulator signalingSimulator = makeSignalingSimulator();
+    private final InfraSnapshotStore snapshotStore;
+
+    // name of the snapshot attachment holding pathfinding landmark distances
+    static final String LANDMARKS_ATTACHMENT = "landmarks";
+    // the maximum estimated size of cached infras, in bytes. 0 means unlimited
+    private volatile long cacheMemoryBudget = 0;
+    // other caches whose size is taken out of the memory budget, such as electrical profile sets
+    private final List<LongSupplier> sharedBudgetUsers = new CopyOnWriteArrayList<>();
+    // infras which are never evicted from the cache
+    private final Set<String> pinnedInfras = ConcurrentHashMap.newKeySet();
+    // orders cache accesses, to find the least recently used infras
+    private final AtomicLong accessClock = new AtomicLong();
+    private final Object evictionLock = new Object();
 
     public void forEach(BiConsumer<String, InfraCacheEntry> action) {
         infraCache.forEach(action);
@@ -36,6 +71,8 @@ public class InfraManager extends APIClient {
         LOADING_SIGNALS(false),
         BUILDING_BLOCKS(false),
         CACHED(true),
+        // dropped from the cache to stay within the memory budget, reloaded on the next use
+        EVICTED(false),
         // errors that are known to be temporary
         TRANSIENT_ERROR(false),
         ERROR(true);
@@ -48,7 +85,9 @@ public class InfraManager extends APIClient {
             LOADING_SIGNALS.transitions = new InfraStatus[] {BUILDING_BLOCKS, ERROR, TRANSIENT_ERROR};
             BUILDING_BLOCKS.transitions = new InfraStatus[] {CACHED, ERROR, TRANSIENT_ERROR};
             // if a new version appears
-            CACHED.transitions = new InfraStatus[] {DOWNLOADING};
+            CACHED.transitions = new InfraStatus[] {DOWNLOADING, EVICTED};
+            // when the infra gets used again
+            EVICTED.transitions = new InfraStatus[] {DOWNLOADING};
             // at the next try
             TRANSIENT_ERROR.transitions = new InfraStatus[] {DOWNLOADING};
             // if a new version appears
@@ -74,6 +113,16 @@ public class InfraManager extends APIClient {
         public Throwable lastError = null;
         public FullInfra infra = null;
         public String version = null;
+        /** An estimation of the heap retained by the cached infra, in bytes */
+        public long estimatedSize = 0;
+        /** The number of times this infra was evicted from the cache */
+        public int evictions = 0;
+
+        private volatile long lastAccess = 0;
+        // the entry of an obsolete version of the infra, whose blocks the next load can reuse
+        private volatile InfraCacheEntry previousVersion = null;
+        // the fingerprints of the railjson of the infra, null if it was loaded from a snapshot
+        private volatile RJSInfraFingerprint fingerprint = null;
 
         void transitionTo(InfraStatus newStatus) {
             transitionTo(newStatus, null);
@@ -88,7 +137,32 @@ public class InfraManager extends APIClient {
     }
 
     public InfraManager(String baseUrl, String authorizationToken, OkHttpClient httpClient) {
+        this(baseUrl, authorizationToken, httpClient, null);
+    }
+
+    /** Creates an infra manager which persists loaded infras in the given snapshot store, when not null */
+    public InfraManager(
+            String baseUrl, String authorizationToken, OkHttpClient httpClient, InfraSnapshotStore snapshotStore) {
         super(baseUrl, authorizationToken, httpClient);
+        this.snapshotStore = snapshotStore;
+    }
+
+    /**
+     * Sets the maximum estimated size of cached infras, in bytes. When loading an infra exceeds it, the least recently
+     * used infras are evicted. 0 means unlimited.
+     */
+    public void setCacheMemoryBudget(long cacheMemoryBudget) {
+        this.cacheMemoryBudget = cacheMemoryBudget;
+    }
+
+    /** Counts the estimated size of another cache, in bytes, against the memory budget of infras */
+    public void shareMemoryBudget(LongSupplier estimatedSize) {
+        sharedBudgetUsers.add(estimatedSize);
+    }
+
+    /** Prevents an infra from ever being evicted from the cache */
+    public void pinInfra(String infraId) {
+        pinnedInfras.add(infraId);
     }
 
     @ExcludeFromGeneratedCodeCoverage
@@ -97,47 +171,103 @@ public class InfraManager extends APIClient {
         "NP_NULL_ON_SOME_PATH_FROM_RETURN_VALUE",
         "DM_GC"
     })
-    private FullInfra downloadInfra(InfraCacheEntry cacheEntry, String infraId, DiagnosticRecorder diagnosticRecorder)
+    private FullInfra downloadInfra(
+            InfraCacheEntry cacheEntry,
+            String infraId,
+            String expectedVersion,
+            DiagnosticRecorder diagnosticRecorder)
             throws OSRDError {
         // create a request
         var endpointPath = String.format("infra/%s/railjson/", infraId);
         var request = buildRequest(endpointPath);
 
+        // the last loaded version of the infra, which blocks can be carried over from
+        var previousVersion = cacheEntry.status == InfraStatus.CACHED ? cacheEntry : cacheEntry.previousVersion;
+        var previousInfra = previousVersion == null ? null : previousVersion.infra;
+        var previousFingerprint = previousVersion == null ? null : previousVersion.fingerprint;
+        RJSInfraFingerprint fingerprint = null;
         try {
-            // use the client to send the request
-            logger.info("starting to download {}", request.url());
             cacheEntry.transitionTo(InfraStatus.DOWNLOADING);
 
-            RJSInfra rjsInfra;
-            String version;
-            try (var response = httpClient.newCall(request).execute()) {
-                if (!response.isSuccessful()) throw new UnexpectedHttpResponse(response);
+            // Snapshots are only trusted once their version is confirmed, either by the caller or by editoast
+            var version = expectedVersion;
+            var infra = version == null ? null : readInfraSnapshot(infraId, version);
+            var fromSnapshot = infra != null;
+            if (infra == null) {
+                // use the client to send the request
+                logger.info("starting to download {}", request.url());
+                try (var response = httpClient.newCall(request).execute()) {
+                    if (!response.isSuccessful()) throw new UnexpectedHttpResponse(response);
+                    version = response.header("x-infra-version");
+                    assert version != null : "missing x-infra-version header in railjson response";
+                    if (expectedVersion == null) infra = readInfraSnapshot(infraId, version);
+                    fromSnapshot = infra != null;
 
-                // Parse the response
-                logger.info("parsing the JSON of {}", request.url());
-                cacheEntry.transitionTo(InfraStatus.PARSING_JSON);
-                version = response.header("x-infra-version");
-                assert version != null : "missing x-infra-version header in railjson response";
-                rjsInfra = RJSInfra.adapter.fromJson(response.body().source());
+                    if (infra == null) {
+                        // Parse railjson into a proper infra, as it gets downloaded. editoast sends collections in
+                        // the order they are parsed in: the JSON is deserialized as the infra gets built, without
+                        // ever holding a full RJSInfra in memory.
+                        logger.info("parsing the infra of {}", request.url());
+                        cacheEntry.transitionTo(InfraStatus.PARSING_JSON);
+                        cacheEntry.transitionTo(InfraStatus.PARSING_INFRA);
+                        RawInfra rawInfra;
+                        fingerprint = new RJSInfraFingerprint();
+                        try (var railjsonObjects =
+                                new StreamingRJSInfraObjects(response.body().source(), fingerprint)) {
+                            rawInfra = parseRJSInfra(railjsonObjects);
+                        }
+
+                        cacheEntry.transitionTo(InfraStatus.LOADING_SIGNALS);
+                        logger.info("loading signals of {}", request.url());
+                        var loadedSignalInfra = signalingSimulator.loadSignals(rawInfra);
+                        cacheEntry.transitionTo(InfraStatus.BUILDING_BLOCKS);
+                        BlockInfra blockInfra = null;
+                        if (previousInfra != null && previousFingerprint != null) {
+                            var delta = fingerprint.diff(previousFingerprint);
+                            if (delta.isLocal()) {
+                                logger.info(
+                                        "rebuilding the blocks of {} around {} changed railjson objects",
+                                        request.url(),
+                                        delta.getSize());
+                                blockInfra = signalingSimulator.rebuildBlocks(
+                                        rawInfra,
+                                        loadedSignalInfra,
+                                        previousInfra.rawInfra(),
+                                        previousInfra.blockInfra(),
+                                        delta.getAffectedTrackSections(),
+                                        delta.getChangedRoutes());
+                            }
+                        }
+                        if (blockInfra == null) {
+                            logger.info("building blocks of {}", request.url());
+                            blockInfra = signalingSimulator.buildBlocks(rawInfra, loadedSignalInfra);
+                        }
+                        infra = new FullInfra(rawInfra, loadedSignalInfra, blockInfra, signalingSimulator);
+                    }
+                }
             }
 
-            if (rjsInfra == null) throw new JsonDataException("RJSInfra is null");
+            if (fromSnapshot) {
+                logger.info("loaded infra {} from its snapshot", infraId);
+                cacheEntry.transitionTo(InfraStatus.PARSING_JSON);
+                cacheEntry.transitionTo(InfraStatus.PARSING_INFRA);
+                cacheEntry.transitionTo(InfraStatus.LOADING_SIGNALS);
+                cacheEntry.transitionTo(InfraStatus.BUILDING_BLOCKS);
+            }
+            var landmarkDistances = loadLandmarkDistances(infraId, version, infra);
+            BlockedRangesIndex.enable(infra);
+            UnconstrainedRouting.buildInBackground(infraId, infra);
 
-            // Parse railjson into a proper infra
-            logger.info("parsing the infra of {}", request.url());
-            cacheEntry.transitionTo(InfraStatus.PARSING_INFRA);
-            var rawInfra = parseRJSInfra(rjsInfra);
-            logger.info("loading signals of {}", request.url());
-            cacheEntry.transitionTo(InfraStatus.LOADING_SIGNALS);
-            var loadedSignalInfra = signalingSimulator.loadSignals(rawInfra);
-            logger.info("building blocks of {}", request.url());
-            cacheEntry.transitionTo(InfraStatus.BUILDING_BLOCKS);
-            var blockInfra = signalingSimulator.buildBlocks(rawInfra, loadedSignalInfra);
+            // Only keep snapshots of infras which could be loaded
+            if (!fromSnapshot) writeInfraSnapshot(infraId, version, infra);
 
             // Cache the infra
             logger.info("successfully cached {}", request.url());
-            cacheEntry.infra = new FullInfra(rawInfra, loadedSignalInfra, blockInfra, signalingSimulator);
+            cacheEntry.infra = infra;
             cacheEntry.version = version;
+            cacheEntry.fingerprint = fingerprint;
+            cacheEntry.estimatedSize = estimateRetainedSize(infra) + landmarkDistances.estimatedHeapSize();
+            if (fingerprint != null) cacheEntry.estimatedSize += fingerprint.estimatedHeapSize();
             cacheEntry.transitionTo(InfraStatus.CACHED);
             return cacheEntry.infra;
         } catch (IOException | UnexpectedHttpResponse | VirtualMachineError e) {
@@ -146,9 +276,63 @@ public class InfraManager extends APIClient {
         } catch (Throwable e) {
             cacheEntry.transitionTo(InfraStatus.ERROR, e);
             throw OSRDError.newInfraLoadingError(ErrorType.InfraHardLoadingError, cacheEntry.lastStatus.name(), e);
+        } finally {
+            cacheEntry.previousVersion = null;
         }
     }
 
+    /** Estimates the heap retained by an infra, from the number of objects of each type it holds */
+    static long estimateRetainedSize(FullInfra infra) {
+        return estimatedHeapSize((RawInfraImpl) infra.rawInfra())
+                + estimatedHeapSize((LoadedSignalingInfraImpl) infra.loadedSignalInfra())
+                + estimatedHeapSize((BlockInfraImpl) infra.blockInfra());
+    }
+
+    /** Reads the snapshot of an infra version, returns null if there is none */
+    private FullInfra readInfraSnapshot(String infraId, String version) {
+        if (snapshotStore == null) return null;
+        return snapshotStore.readSnapshot(infraId, version, input -> {
+            var rawInfra = readRawInfra(input);
+            var loadedSignalInfra = readLoadedSignalInfra(input, signalingSimulator.getSigModuleManager());
+            var blockInfra = readBlockInfra(input, rawInfra, loadedSignalInfra);
+            return new FullInfra(rawInfra, loadedSignalInfra, blockInfra, signalingSimulator);
+        });
+    }
+
+    /** Stores the built infra, so that the next load of this version skips parsing and building it */
+    private void writeInfraSnapshot(String infraId, String version, FullInfra infra) {
+        if (snapshotStore == null) return;
+        logger.info("saving a snapshot of infra {}", infraId);
+        snapshotStore.writeSnapshot(infraId, version, output -> {
+            writeRawInfra(output, (RawInfraImpl) infra.rawInfra());
+            writeLoadedSignalInfra(
+                    output,
+                    (LoadedSignalingInfraImpl) infra.loadedSignalInfra(),
+                    signalingSimulator.getSigModuleManager());
+            writeBlockInfra(output, (BlockInfraImpl) infra.blockInfra());
+        });
+    }
+
+    /**
+     * Registers the pathfinding landmark distances of a new block infra. They're read from the snapshot store when
+     * available, computed and stored otherwise.
+     */
+    private LandmarkDistances loadLandmarkDistances(String infraId, String version, FullInfra infra) {
+        var graph = BlockGraph.from(infra.blockInfra(), infra.rawInfra());
+        LandmarkDistances landmarkDistances = null;
+        if (snapshotStore != null)
+            landmarkDistances = snapshotStore.readAttachment(
+                    infraId, version, LANDMARKS_ATTACHMENT, input -> LandmarkDistances.read(input, graph));
+        if (landmarkDistances == null) {
+            logger.info("computing the landmark distances of infra {}", infraId);
+            landmarkDistances = LandmarkDistances.build(graph);
+            if (snapshotStore != null)
+                snapshotStore.writeAttachment(infraId, version, LANDMARKS_ATTACHMENT, landmarkDistances::write);
+        }
+        LandmarkDistances.register(infra.blockInfra(), landmarkDistances);
+        return landmarkDistances;
+    }
+
     /** Load an infra given an id. Cache infra for optimized future call */
     @ExcludeFromGeneratedCodeCoverage
     @SuppressFBWarnings({"REC_CATCH_EXCEPTION"})
@@ -157,7 +341,9 @@ public class InfraManager extends APIClient {
         try {
             infraCache.putIfAbsent(infraId, new InfraCacheEntry());
             var cacheEntry = infraCache.get(infraId);
+            cacheEntry.lastAccess = accessClock.incrementAndGet();
 
+            FullInfra infra;
             // /!\ the cache entry lock is held while a download / parse process is in progress
             synchronized (cacheEntry) {
                 // try downloading the infra again if:
@@ -165,22 +351,81 @@ public class InfraManager extends APIClient {
                 //  - we don't have the right version
                 var obsoleteVersion = expectedVersion != null && !expectedVersion.equals(cacheEntry.version);
                 if (!cacheEntry.status.isStable || obsoleteVersion)
-                    return downloadInfra(cacheEntry, infraId, diagnosticRecorder);
-
-                // otherwise, wait for the infra to reach a stable state
-                if (cacheEntry.status == InfraStatus.CACHED) return cacheEntry.infra;
-                if (cacheEntry.status == InfraStatus.ERROR)
-                    throw OSRDError.newInfraLoadingError(
-                            ErrorType.InfraLoadingCacheException, cacheEntry.lastStatus.name(), cacheEntry.lastError);
-                throw OSRDError.newInfraLoadingError(
-                        ErrorType.InfraInvalidStatusWhileWaitingStable, cacheEntry.status.name());
+                    infra = downloadInfra(cacheEntry, infraId, expectedVersion, diagnosticRecorder);
+                else infra = getStableInfra(cacheEntry);
             }
+            // evict other infras once the entry lock is released, as eviction locks the evicted entries
+            enforceCacheMemoryBudget(infraId);
+            return infra;
         } catch (Exception e) {
             logger.error("exception while loading infra", e);
             throw e;
         }
     }
 
+    private static FullInfra getStableInfra(InfraCacheEntry cacheEntry) throws OSRDError {
+        if (cacheEntry.status == InfraStatus.CACHED) return cacheEntry.infra;
+        if (cacheEntry.status == InfraStatus.ERROR)
+            throw OSRDError.newInfraLoadingError(
+                    ErrorType.InfraLoadingCacheException, cacheEntry.lastStatus.name(), cacheEntry.lastError);
+        throw OSRDError.newInfraLoadingError(ErrorType.InfraInvalidStatusWhileWaitingStable, cacheEntry.status.name());
+    }
+
+    /**
+     * Evicts the least recently used infras until the estimated size of cached infras fits in the memory budget.
+     * Obsolete versions kept for reloads, and the caches sharing the budget, count towards it. Obsolete versions are
+     * dropped first. Pinned infras and the infra which was just loaded are never evicted. Evicted entries are kept in
+     * the cache with the EVICTED status, so that evictions show up in the cache status.
+     */
+    private void enforceCacheMemoryBudget(String loadedInfraId) {
+        var budget = cacheMemoryBudget;
+        if (budget <= 0) return;
+        synchronized (evictionLock) {
+            while (true) {
+                long cachedSize = 0;
+                for (var sharedBudgetUser : sharedBudgetUsers) cachedSize += sharedBudgetUser.getAsLong();
+                String victimId = null;
+                InfraCacheEntry victim = null;
+                InfraCacheEntry obsoleteHolder = null;
+                for (var cacheItem : infraCache.entrySet()) {
+                    var entry = cacheItem.getValue();
+                    var previousVersion = entry.previousVersion;
+                    if (previousVersion != null) {
+                        cachedSize += previousVersion.estimatedSize;
+                        obsoleteHolder = entry;
+                    }
+                    if (entry.status != InfraStatus.CACHED) continue;
+                    cachedSize += entry.estimatedSize;
+                    var infraId = cacheItem.getKey();
+                    if (infraId.equals(loadedInfraId) || pinnedInfras.contains(infraId)) continue;
+                    if (victim == null || entry.lastAccess < victim.lastAccess) {
+                        victimId = infraId;
+                        victim = entry;
+                    }
+                }
+                if (cachedSize <= budget) return;
+                if (obsoleteHolder != null) {
+                    logger.info("dropping an obsolete infra version ({} bytes cached)", cachedSize);
+                    obsoleteHolder.previousVersion = null;
+                    continue;
+                }
+                if (victim == null) return;
+                synchronized (victim) {
+                    // the entry may have been reloaded or dropped in the meantime
+                    if (victim.status != InfraStatus.CACHED) continue;
+                    logger.info(
+                            "evicting infra {} from the cache ({} bytes cached, budget of {} bytes)",
+                            victimId,
+                            cachedSize,
+                            budget);
+                    victim.infra = null;
+                    victim.evictions++;
+                    victim.transitionTo(InfraStatus.EVICTED);
+                }
+            }
+        }
+    }
+
     public InfraCacheEntry getInfraCache(String infraId) {
         return infraCache.get(infraId);
     }
@@ -194,13 +439,17 @@ public class InfraManager extends APIClient {
             throws OSRDError, InterruptedException {
         try {
             var cacheEntry = infraCache.get(infraId);
+            if (cacheEntry != null) cacheEntry.lastAccess = accessClock.incrementAndGet();
             if (cacheEntry == null || !cacheEntry.status.isStable) {
                 // download the infra
                 return load(infraId, expectedVersion, diagnosticRecorder);
             }
             var obsoleteVersion = expectedVersion != null && !expectedVersion.equals(cacheEntry.version);
             if (obsoleteVersion) {
-                deleteFromInfraCache(infraId);
+                // keep the obsolete infra until the next load, which may reuse its signals and blocks
+                var reloadEntry = new InfraCacheEntry();
+                reloadEntry.previousVersion = cacheEntry;
+                infraCache.replace(infraId, cacheEntry, reloadEntry);
                 throw new OSRDError(ErrorType.InfraInvalidVersionException);
             }
             if (cacheEntry.status == InfraStatus.CACHED) return cacheEntry.infra;
@@ -0,0 +1,178 @@
+package fr.sncf.osrd.api;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.Arrays;
+import java.util.Objects;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Stores on disk the successfully loaded infras, keyed by infra id and version, so that restarted
+ * workers can load their infra without downloading, parsing and building it again.
+ *
+ * <p>A snapshot file is made of a header followed by the serialized infra, which extends until the
+ * end of the file:
+ *
+ * <ul>
+ *   <li>the {@link #MAGIC} bytes
+ *   <li>the format version, as an int
+ *   <li>the infra id and the infra version, as modified UTF-8 strings
+ * </ul>
+ *
+ * Files are written to a temporary file, and only moved in place once complete. Snapshots are read
+ * by memory mapping the file.
+ *
+ * <p>Data derived from a loaded infra, which is too slow to compute again on each load, can be
+ * stored next to the snapshot as named attachments. Attachments have the same header as snapshots.
+ *
+ * <p>Snapshots and attachments are only ever read for a given infra version, which callers must
+ * have confirmed to be the current one.
+ */
+public final class InfraSnapshotStore {
+    static final Logger logger = LoggerFactory.getLogger(InfraSnapshotStore.class);
+
+    static final byte[] MAGIC = "OSRDINFR".getBytes(StandardCharsets.US_ASCII);
+
+    /** Must be incremented whenever the layout of snapshot files changes */
+    static final int FORMAT_VERSION = 2;
+
+    private final Path directory;
+
+    public InfraSnapshotStore(Path directory) throws IOException {
+        this.directory = directory;
+        Files.createDirectories(directory);
+    }
+
+    private static String snapshotFileName(String infraId) {
+        return String.format("infra-%s.snapshot", infraId);
+    }
+
+    private static String attachmentFileName(String infraId, String name) {
+        return String.format("infra-%s.%s", infraId, name);
+    }
+
+    /** Writes the payload of a snapshot or attachment */
+    @FunctionalInterface
+    public interface PayloadWriter {
+        void write(DataOutputStream output) throws IOException;
+    }
+
+    /** Reads the payload of a snapshot or attachment, returns null if it can't be used */
+    @FunctionalInterface
+    public interface PayloadReader<T> {
+        T read(DataInputStream input) throws IOException;
+    }
+
+    /**
+     * Stores the snapshot of the given infra version, replacing any older snapshot of the same
+     * infra. Failures are logged, as the infra can always be loaded from editoast.
+     */
+    public void writeSnapshot(String infraId, String infraVersion, PayloadWriter writer) {
+        write(infraId, infraVersion, snapshotFileName(infraId), writer);
+    }
+
+    /**
+     * Reads the snapshot of the given infra version. Returns null if there is no usable snapshot, or
+     * if the reader rejects it.
+     */
+    public <T> T readSnapshot(String infraId, String infraVersion, PayloadReader<T> reader) {
+        return read(infraId, infraVersion, snapshotFileName(infraId), reader);
+    }
+
+    /**
+     * Stores an attachment of the given infra version, replacing any previous attachment with the
+     * same name. Failures are logged, attachments can always be computed again.
+     */
+    public void writeAttachment(String infraId, String infraVersion, String name, PayloadWriter writer) {
+        write(infraId, infraVersion, attachmentFileName(infraId, name), writer);
+    }
+
+    /**
+     * Reads an attachment of the given infra version. Returns null if there is no usable attachment,
+     * or if the reader rejects it.
+     */
+    public <T> T readAttachment(String infraId, String infraVersion, String name, PayloadReader<T> reader) {
+        return read(infraId, infraVersion, attachmentFileName(infraId, name), reader);
+    }
+
+    private void write(String infraId, String infraVersion, String fileName, PayloadWriter writer) {
+        Path tmpPath = null;
+        try {
+            tmpPath = Files.createTempFile(directory, fileName, ".tmp");
+            try (var output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmpPath)))) {
+                output.write(MAGIC);
+                output.writeInt(FORMAT_VERSION);
+                output.writeUTF(infraId);
+                output.writeUTF(infraVersion);
+                writer.write(output);
+            }
+            Files.move(
+                    tmpPath,
+                    directory.resolve(fileName),
+                    StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            logger.warn("failed to write {} of infra {}", fileName, infraId, e);
+            try {
+                if (tmpPath != null) Files.deleteIfExists(tmpPath);
+            } catch (IOException cleanupError) {
+                logger.warn("failed to clean up {}", tmpPath, cleanupError);
+            }
+        }
+    }
+
+    private <T> T read(String infraId, String infraVersion, String fileName, PayloadReader<T> reader) {
+        Objects.requireNonNull(infraVersion, "the version of stored infras must be known to read them");
+        var path = directory.resolve(fileName);
+        if (!Files.isRegularFile(path)) return null;
+        try (var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            var content = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            var input = new DataInputStream(new ByteBufferInputStream(content));
+            var magic = input.readNBytes(MAGIC.length);
+            if (!Arrays.equals(magic, MAGIC) || input.readInt() != FORMAT_VERSION) {
+                logger.info("ignoring {}: invalid header or format version", path);
+                return null;
+            }
+            if (!input.readUTF().equals(infraId) || !input.readUTF().equals(infraVersion)) {
+                logger.info("ignoring {}: it belongs to another infra version", path);
+                return null;
+            }
+            return reader.read(input);
+        } catch (IOException | RuntimeException e) {
+            // corrupted files are ignored, as the infra can always be loaded again
+            logger.warn("failed to read {}", path, e);
+            return null;
+        }
+    }
+
+    private static final class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            if (!buffer.hasRemaining()) return -1;
+            return buffer.get() & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) {
+            if (!buffer.hasRemaining()) return -1;
+            length = Math.min(length, buffer.remaining());
+            buffer.get(bytes, offset, length);
+            return length;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+}
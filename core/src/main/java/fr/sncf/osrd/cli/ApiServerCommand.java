@@ -7,8 +7,12 @@ import fr.sncf.osrd.api.api_v2.conflicts.ConflictDetectionEndpointV2;
 import fr.sncf.osrd.api.api_v2.path_properties.PathPropEndpoint;
 import fr.sncf.osrd.api.api_v2.pathfinding.PathfindingBlocksEndpointV2;
 import fr.sncf.osrd.api.api_v2.project_signals.SignalProjectionEndpointV2;
+import fr.sncf.osrd.api.api_v2.standalone_sim.SimulationBatchEndpoint;
 import fr.sncf.osrd.api.api_v2.standalone_sim.SimulationEndpoint;
+import fr.sncf.osrd.api.api_v2.stdcm.STDCMBatchEndpoint;
 import fr.sncf.osrd.api.api_v2.stdcm.STDCMEndpointV2;
+import fr.sncf.osrd.api.api_v2.timetable.TimetableStore;
+import fr.sncf.osrd.api.api_v2.timetable.TimetableUpdateEndpoint;
 import fr.sncf.osrd.api.pathfinding.PathfindingBlocksEndpoint;
 import fr.sncf.osrd.api.stdcm.STDCMEndpoint;
 import java.io.IOException;
@@ -71,6 +75,7 @@ public final class ApiServerCommand implements CliCommand {
         var infraManager = new InfraManager(editoastUrl, editoastAuthorization, httpClient);
         var electricalProfileSetManager =
                 new ElectricalProfileSetManager(editoastUrl, editoastAuthorization, httpClient);
+        var timetableStore = new TimetableStore();
 
         var maxMemory = String.format("%.2f", Runtime.getRuntime().maxMemory() / (double) (1 << 30));
         logger.info("starting the API server with max {}Gi of java heap", maxMemory);
@@ -87,14 +92,20 @@ public final class ApiServerCommand implements CliCommand {
                     new FkRegex(
                             "/v2/standalone_simulation",
                             new SimulationEndpoint(infraManager, electricalProfileSetManager)),
+                    new FkRegex(
+                            "/v2/standalone_simulation/batch",
+                            new SimulationBatchEndpoint(infraManager, electricalProfileSetManager)),
                     new FkRegex("/project_signals", new SignalProjectionEndpoint(infraManager)),
                     new FkRegex("/v2/signal_projection", new SignalProjectionEndpointV2(infraManager)),
                     new FkRegex("/detect_conflicts", new ConflictDetectionEndpoint()),
-                    new FkRegex("/v2/conflict_detection", new ConflictDetectionEndpointV2(infraManager)),
+                    new FkRegex(
+                            "/v2/conflict_detection", new ConflictDetectionEndpointV2(infraManager, timetableStore)),
+                    new FkRegex("/v2/timetable_requirements", new TimetableUpdateEndpoint(timetableStore)),
                     new FkRegex("/cache_status", new InfraCacheStatusEndpoint(infraManager)),
                     new FkRegex("/version", new VersionEndpoint()),
                     new FkRegex("/stdcm", new STDCMEndpoint(infraManager)),
-                    new FkRegex("/v2/stdcm", new STDCMEndpointV2(infraManager)),
+                    new FkRegex("/v2/stdcm", new STDCMEndpointV2(infraManager, timetableStore)),
+                    new FkRegex("/v2/stdcm/batch", new STDCMBatchEndpoint(infraManager, timetableStore)),
                     new FkRegex("/infra_load", new InfraLoadEndpoint(infraManager)));
             var monitoringType = System.getenv("CORE_MONITOR_TYPE");
             Take monitoredRoutes = routes;
@@ -0,0 +1,56 @@
+package fr.sncf.osrd.cli
+
+/**
+ * Tracks the amount of memory held by requests which are currently being processed. Acquiring
+ * blocks while the budget is exhausted, which stalls the AMQP consumer thread: no more messages are
+ * dispatched to this worker until some in-flight requests complete.
+ *
+ * A request is always let through when nothing else is in flight, so that a single request larger
+ * than the budget cannot deadlock the worker.
+ */
+class InFlightBudget(private val budgetBytes: Long) {
+    private val lock = Object()
+    private var inFlightBytes = 0L
+    private var inFlightRequests = 0
+
+    fun acquire(bytes: Long) {
+        synchronized(lock) {
+            while (
+                budgetBytes > 0 && inFlightRequests > 0 && inFlightBytes + bytes > budgetBytes
+            ) {
+                lock.wait()
+            }
+            inFlightBytes += bytes
+            inFlightRequests++
+        }
+    }
+
+    /**
+     * Acquires `bytes` from the budget and returns a task running `action`, which gives them back
+     * once it completes, even if it fails
+     */
+    fun reserve(bytes: Long, action: () -> Unit): Runnable {
+        acquire(bytes)
+        return Runnable {
+            try {
+                action()
+            } finally {
+                release(bytes)
+            }
+        }
+    }
+
+    fun release(bytes: Long) {
+        synchronized(lock) {
+            inFlightBytes -= bytes
+            inFlightRequests--
+            lock.notifyAll()
+        }
+    }
+
+    fun inFlightBytes(): Long {
+        synchronized(lock) {
+            return inFlightBytes
+        }
+    }
+}
@@ -8,6 +8,7 @@ import com.beust.jcommander.Parameters;
 import fr.sncf.osrd.railjson.parser.RJSParser;
 import fr.sncf.osrd.reporting.warnings.DiagnosticRecorderImpl;
 import fr.sncf.osrd.signaling.SignalingSimulator;
+import fr.sncf.osrd.sim_infra.api.RawInfra;
 import fr.sncf.osrd.utils.jacoco.ExcludeFromGeneratedCodeCoverage;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -27,10 +28,11 @@ public class ValidateInfra implements CliCommand {
     public int run() {
         var recorder = new DiagnosticRecorderImpl(false);
         try {
-            logger.info("parsing json");
-            var rjs = RJSParser.parseRailJSONFromFile(infraPath);
             logger.info("parsing RailJSON");
-            var rawInfra = parseRJSInfra(rjs);
+            RawInfra rawInfra;
+            try (var railjson = RJSParser.streamRailJSONFromFile(infraPath)) {
+                rawInfra = parseRJSInfra(railjson);
+            }
 
             logger.info("loading signals");
             SignalingSimulator signalingSimulator = makeSignalingSimulator();
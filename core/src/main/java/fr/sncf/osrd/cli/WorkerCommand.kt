@@ -6,25 +6,37 @@ import com.rabbitmq.client.AMQP
 import com.rabbitmq.client.Channel
 import com.rabbitmq.client.ConnectionFactory
 import com.rabbitmq.client.DeliverCallback
+import com.rabbitmq.client.Delivery
 import fr.sncf.osrd.api.*
 import fr.sncf.osrd.api.api_v2.conflicts.ConflictDetectionEndpointV2
 import fr.sncf.osrd.api.api_v2.path_properties.PathPropEndpoint
 import fr.sncf.osrd.api.api_v2.pathfinding.PathfindingBlocksEndpointV2
 import fr.sncf.osrd.api.api_v2.project_signals.SignalProjectionEndpointV2
+import fr.sncf.osrd.api.api_v2.standalone_sim.SimulationBatchEndpoint
 import fr.sncf.osrd.api.api_v2.standalone_sim.SimulationEndpoint
+import fr.sncf.osrd.api.api_v2.stdcm.STDCMBatchEndpoint
 import fr.sncf.osrd.api.api_v2.stdcm.STDCMEndpointV2
+import fr.sncf.osrd.api.api_v2.timetable.TimetableStore
+import fr.sncf.osrd.api.api_v2.timetable.TimetableUpdateEndpoint
 import fr.sncf.osrd.api.pathfinding.PathfindingBlocksEndpoint
 import fr.sncf.osrd.api.stdcm.STDCMEndpoint
 import fr.sncf.osrd.reporting.warnings.DiagnosticRecorderImpl
 import io.opentelemetry.api.GlobalOpenTelemetry
+import io.opentelemetry.api.trace.Tracer
 import io.opentelemetry.context.Context
 import io.opentelemetry.context.propagation.TextMapGetter
 import java.io.InputStream
+import java.nio.file.Path
+import java.util.concurrent.Executors
+import java.util.concurrent.ThreadFactory
 import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
 import okhttp3.OkHttpClient
 import org.slf4j.Logger
 import org.slf4j.LoggerFactory
 import org.takes.Request
+import org.takes.Response
+import org.takes.Take
 
 @Parameters(commandDescription = "RabbitMQ worker mode")
 class WorkerCommand : CliCommand {
@@ -41,6 +53,12 @@ class WorkerCommand : CliCommand {
     )
     private var editoastAuthorization: String = "x-osrd-core"
 
+    @Parameter(
+        names = ["--infra-snapshot-dir"],
+        description = "A directory where loaded infras are saved, to speed up the next worker start"
+    )
+    private var infraSnapshotDir: String? = null
+
     val WORKER_ID: String?
     val WORKER_ID_USE_HOSTNAME: Boolean
     val WORKER_KEY: String?
@@ -49,6 +67,11 @@ class WorkerCommand : CliCommand {
     val WORKER_REQUESTS_QUEUE: String
     val WORKER_ACTIVITY_EXCHANGE: String
     val ALL_INFRA: Boolean
+    val WORKER_THREADS: Int
+    val WORKER_PREFETCH: Int
+    val WORKER_INFLIGHT_MEMORY_MB: Long
+    val WORKER_REQUEST_MEMORY_EXPANSION: Long
+    val WORKER_INFRA_CACHE_MEMORY_MB: Long
 
     init {
         WORKER_ID_USE_HOSTNAME = getBooleanEnvvar("WORKER_ID_USE_HOSTNAME")
@@ -61,6 +84,16 @@ class WorkerCommand : CliCommand {
             System.getenv("WORKER_REQUESTS_QUEUE") ?: "$WORKER_POOL-req-$WORKER_KEY"
         WORKER_ACTIVITY_EXCHANGE =
             System.getenv("WORKER_ACTIVITY_EXCHANGE") ?: "$WORKER_POOL-activity-xchg"
+        WORKER_THREADS = System.getenv("WORKER_THREADS")?.toIntOrNull() ?: 1
+        // by default, let each processing thread have one message waiting in line
+        WORKER_PREFETCH =
+            parsePrefetch(System.getenv("WORKER_PREFETCH")?.toIntOrNull(), WORKER_THREADS * 2)
+        WORKER_INFLIGHT_MEMORY_MB = System.getenv("WORKER_INFLIGHT_MEMORY_MB")?.toLongOrNull() ?: 0
+        WORKER_REQUEST_MEMORY_EXPANSION =
+            System.getenv("WORKER_REQUEST_MEMORY_EXPANSION")?.toLongOrNull()
+                ?: DEFAULT_REQUEST_MEMORY_EXPANSION
+        WORKER_INFRA_CACHE_MEMORY_MB =
+            System.getenv("WORKER_INFRA_CACHE_MEMORY_MB")?.toLongOrNull() ?: 0
 
         WORKER_ID =
             if (WORKER_ID_USE_HOSTNAME) {
@@ -91,9 +124,16 @@ class WorkerCommand : CliCommand {
 
         val infraId = WORKER_KEY
         val diagnosticRecorder = DiagnosticRecorderImpl(false)
-        val infraManager = InfraManager(editoastUrl, editoastAuthorization, httpClient)
+        val snapshotStore = infraSnapshotDir?.let { InfraSnapshotStore(Path.of(it)) }
+        val infraManager =
+            InfraManager(editoastUrl, editoastAuthorization, httpClient, snapshotStore)
+        infraManager.setCacheMemoryBudget(WORKER_INFRA_CACHE_MEMORY_MB * 1024 * 1024)
+        // a dedicated worker always keeps its own infra loaded
+        if (!ALL_INFRA) infraManager.pinInfra(infraId)
         val electricalProfileSetManager =
             ElectricalProfileSetManager(editoastUrl, editoastAuthorization, httpClient)
+        infraManager.shareMemoryBudget(electricalProfileSetManager::estimatedSize)
+        val timetableStore = TimetableStore()
 
         val monitoringType = System.getenv("CORE_MONITOR_TYPE")
         if (monitoringType != null) {
@@ -112,14 +152,19 @@ class WorkerCommand : CliCommand {
                     StandaloneSimulationEndpoint(infraManager, electricalProfileSetManager),
                 "/v2/standalone_simulation" to
                     SimulationEndpoint(infraManager, electricalProfileSetManager),
+                "/v2/standalone_simulation/batch" to
+                    SimulationBatchEndpoint(infraManager, electricalProfileSetManager),
                 "/project_signals" to SignalProjectionEndpoint(infraManager),
                 "/v2/signal_projection" to SignalProjectionEndpointV2(infraManager),
                 "/detect_conflicts" to ConflictDetectionEndpoint(),
-                "/v2/conflict_detection" to ConflictDetectionEndpointV2(infraManager),
+                "/v2/conflict_detection" to
+                    ConflictDetectionEndpointV2(infraManager, timetableStore),
+                "/v2/timetable_requirements" to TimetableUpdateEndpoint(timetableStore),
                 "/cache_status" to InfraCacheStatusEndpoint(infraManager),
                 "/version" to VersionEndpoint(),
                 "/stdcm" to STDCMEndpoint(infraManager),
-                "/v2/stdcm" to STDCMEndpointV2(infraManager),
+                "/v2/stdcm" to STDCMEndpointV2(infraManager, timetableStore),
+                "/v2/stdcm/batch" to STDCMBatchEndpoint(infraManager, timetableStore),
                 "/infra_load" to InfraLoadEndpoint(infraManager),
             )
 
@@ -137,6 +182,18 @@ class WorkerCommand : CliCommand {
 
         val activityChannel = connection.createChannel()
         val channel = connection.createChannel()
+        channel.basicQos(WORKER_PREFETCH)
+
+        // The infra cache is shared between requests, and loaded infras are read-only: requests
+        // can be processed concurrently. When WORKER_THREADS is 1, requests are processed on the
+        // consumer thread, one at a time.
+        val executor =
+            if (WORKER_THREADS > 1) {
+                logger.info("processing up to {} requests concurrently", WORKER_THREADS)
+                Executors.newFixedThreadPool(WORKER_THREADS, WorkerThreadFactory())
+            } else null
+        val inFlightBudget = InFlightBudget(WORKER_INFLIGHT_MEMORY_MB * (1L shl 20))
+
         channel.basicConsume(
             WORKER_REQUESTS_QUEUE,
             false,
@@ -144,109 +201,163 @@ class WorkerCommand : CliCommand {
             DeliverCallback { consumerTag, message ->
                 reportActivity(activityChannel, "request-received")
 
-                val replyTo = message.properties.replyTo
-                val correlationId = message.properties.correlationId
-                val body = message.body
-                val path =
-                    (message.properties.headers["x-rpc-path"] as ByteArray?)?.decodeToString()
-                if (path == null) {
-                    logger.error("missing x-rpc-path header")
-                    channel.basicReject(message.envelope.deliveryTag, false)
-                    if (replyTo != null) {
-                        // TODO: response format to handle protocol error
-                        channel.basicPublish(
-                            "",
-                            replyTo,
-                            null,
-                            "missing x-rpc-path header".toByteArray()
-                        )
+                // Blocking here stops the consumer, and thus the delivery of more messages
+                val requestMemory = message.body.size.toLong() * WORKER_REQUEST_MEMORY_EXPANSION
+                val task =
+                    inFlightBudget.reserve(requestMemory) {
+                        processMessage(channel, message, endpoints, tracer)
                     }
+                if (executor != null) executor.execute(task) else task.run()
+            },
+            { _ -> logger.error("consumer cancelled") },
+            { consumerTag, e -> logger.info("consume shutdown: {}, {}", consumerTag, e.toString()) }
+        )
 
-                    return@DeliverCallback
-                }
-                logger.info("received request for path {}", path)
-
-                val endpoint = endpoints[path]
-                if (endpoint == null) {
-                    logger.error("unknown path {}", path)
-                    channel.basicReject(message.envelope.deliveryTag, false)
-                    if (replyTo != null) {
-                        // TODO: response format to handle protocol error
-                        channel.basicPublish("", replyTo, null, "unknown path $path".toByteArray())
-                    }
+        logger.info("consume ended")
 
-                    return@DeliverCallback
-                }
+        while (true) {
+            Thread.sleep(100)
+            if (!channel.isOpen()) break
+        }
 
-                class RabbitMQTextMapGetter : TextMapGetter<Map<String, Any>> {
-                    override fun keys(carrier: Map<String, Any>): Iterable<String> {
-                        return carrier.keys
-                    }
+        executor?.shutdown()
+        return 0
+    }
 
-                    override fun get(carrier: Map<String, Any>?, key: String): String? {
-                        return (carrier?.get(key) as ByteArray?)?.decodeToString()
-                    }
+    private fun processMessage(
+        channel: Channel,
+        message: Delivery,
+        endpoints: Map<String, Take>,
+        tracer: Tracer
+    ) {
+        val replyTo = message.properties.replyTo
+        val correlationId = message.properties.correlationId
+        val body = message.body
+        val path = (message.properties.headers["x-rpc-path"] as ByteArray?)?.decodeToString()
+        if (path == null) {
+            logger.error("missing x-rpc-path header")
+            synchronized(channel) {
+                channel.basicReject(message.envelope.deliveryTag, false)
+                if (replyTo != null) {
+                    // TODO: response format to handle protocol error
+                    channel.basicPublish(
+                        "",
+                        replyTo,
+                        null,
+                        "missing x-rpc-path header".toByteArray()
+                    )
                 }
+            }
 
-                val context =
-                    GlobalOpenTelemetry.getPropagators()
-                        .textMapPropagator
-                        .extract(
-                            Context.current(),
-                            message.properties.headers,
-                            RabbitMQTextMapGetter()
-                        )
-                val span = tracer.spanBuilder(path).setParent(context).startSpan()
-
-                var payload: ByteArray
-                var status: ByteArray
-                try {
-                    span.makeCurrent().use { scope ->
-                        val response = endpoint.act(MQRequest(path, body))
-                        payload =
-                            response
-                                .body()
-                                .readAllBytes() // TODO: check the response code too to catch
-                        val httpHeader = response.head().first()
-                        val statusCode = httpHeader.split(" ")[1]
-                        status =
-                            (if (statusCode[0] == '2') "ok" else "core_error").encodeToByteArray()
-                    }
-                } catch (t: Throwable) {
-                    span.recordException(t)
-                    payload =
-                        "ERROR, exception received"
-                            .toByteArray() // TODO: have a valid payload for uncaught exceptions
-                    status = "core_error".encodeToByteArray()
-                } finally {
-                    span.end()
-                }
+            return
+        }
+        logger.info("received request for path {}", path)
 
+        val endpoint = endpoints[path]
+        if (endpoint == null) {
+            logger.error("unknown path {}", path)
+            synchronized(channel) {
+                channel.basicReject(message.envelope.deliveryTag, false)
                 if (replyTo != null) {
-                    val properties =
-                        AMQP.BasicProperties()
-                            .builder()
-                            .correlationId(correlationId)
-                            .headers(mapOf("x-status" to status))
-                            .build()
-                    channel.basicPublish("", replyTo, properties, payload)
+                    // TODO: response format to handle protocol error
+                    channel.basicPublish("", replyTo, null, "unknown path $path".toByteArray())
                 }
+            }
 
-                channel.basicAck(message.envelope.deliveryTag, false)
-                logger.info("request for path {} processed", path)
-            },
-            { _ -> logger.error("consumer cancelled") },
-            { consumerTag, e -> logger.info("consume shutdown: {}, {}", consumerTag, e.toString()) }
-        )
+            return
+        }
 
-        logger.info("consume ended")
+        class RabbitMQTextMapGetter : TextMapGetter<Map<String, Any>> {
+            override fun keys(carrier: Map<String, Any>): Iterable<String> {
+                return carrier.keys
+            }
 
-        while (true) {
-            Thread.sleep(100)
-            if (!channel.isOpen()) break
+            override fun get(carrier: Map<String, Any>?, key: String): String? {
+                return (carrier?.get(key) as ByteArray?)?.decodeToString()
+            }
         }
 
-        return 0
+        val context =
+            GlobalOpenTelemetry.getPropagators()
+                .textMapPropagator
+                .extract(Context.current(), message.properties.headers, RabbitMQTextMapGetter())
+        val span = tracer.spanBuilder(path).setParent(context).startSpan()
+
+        var payload: ByteArray
+        var status: ByteArray
+        var streamed = false
+        try {
+            span.makeCurrent().use { scope ->
+                val response = endpoint.act(MQRequest(path, body))
+                val httpHeader = response.head().first()
+                val statusCode = httpHeader.split(" ")[1]
+                val responseStatus =
+                    (if (statusCode[0] == '2') "ok" else "core_error").encodeToByteArray()
+                status = responseStatus
+                if (replyTo != null && isJsonLines(response)) {
+                    // Each line is sent as soon as it is available, an empty message ends the reply
+                    streamed = true
+                    response.body().bufferedReader().forEachLine { line ->
+                        publishReply(channel, replyTo, correlationId, responseStatus, line)
+                    }
+                    payload = ByteArray(0)
+                } else {
+                    payload =
+                        response
+                            .body()
+                            .readAllBytes() // TODO: check the response code too to catch
+                }
+            }
+        } catch (t: Throwable) {
+            span.recordException(t)
+            payload =
+                "ERROR, exception received"
+                    .toByteArray() // TODO: have a valid payload for uncaught exceptions
+            status = "core_error".encodeToByteArray()
+        } finally {
+            span.end()
+        }
+
+        // channels must not be used concurrently by several threads
+        synchronized(channel) {
+            if (replyTo != null) {
+                val headers = mutableMapOf<String, Any>("x-status" to status)
+                if (streamed) headers["x-stream"] = STREAM_END
+                val properties =
+                    AMQP.BasicProperties()
+                        .builder()
+                        .correlationId(correlationId)
+                        .headers(headers)
+                        .build()
+                channel.basicPublish("", replyTo, properties, payload)
+            }
+
+            channel.basicAck(message.envelope.deliveryTag, false)
+        }
+        logger.info("request for path {} processed", path)
+    }
+
+    /** Returns true if the body of the response is made of JSON lines, sent as they're produced */
+    private fun isJsonLines(response: Response): Boolean {
+        return response.head().any { it.equals("Content-Type: application/x-ndjson", true) }
+    }
+
+    /** Sends a line of a streamed reply, see `isJsonLines` */
+    private fun publishReply(
+        channel: Channel,
+        replyTo: String,
+        correlationId: String?,
+        status: ByteArray,
+        line: String
+    ) {
+        val properties =
+            AMQP.BasicProperties()
+                .builder()
+                .correlationId(correlationId)
+                .headers(mapOf("x-status" to status, "x-stream" to STREAM_LINE))
+                .build()
+        // channels must not be used concurrently by several threads
+        synchronized(channel) { channel.basicPublish("", replyTo, properties, line.toByteArray()) }
     }
 
     private fun reportActivity(activityChannel: Channel, event: String) {
@@ -268,7 +379,53 @@ class WorkerCommand : CliCommand {
         }
     }
 
+    private class WorkerThreadFactory : ThreadFactory {
+        private val threadCount = AtomicInteger()
+
+        override fun newThread(runnable: Runnable): Thread {
+            val thread = Thread(runnable, "worker-request-${threadCount.getAndIncrement()}")
+            thread.isDaemon = true
+            return thread
+        }
+    }
+
     companion object {
         val logger: Logger = LoggerFactory.getLogger(WorkerCommand::class.java)
+
+        /**
+         * Values of the `x-stream` header of streamed replies: each line of the body is sent as a
+         * message, then an empty message ends the reply. Other replies are a single message.
+         */
+        const val STREAM_LINE = "line"
+        const val STREAM_END = "end"
+
+        /**
+         * Decoded requests take much more memory than their JSON payload, and this factor is used
+         * to estimate the memory held by in-flight requests from the size of their body. It can be
+         * overridden with WORKER_REQUEST_MEMORY_EXPANSION.
+         *
+         * Large request bodies are mostly lists of numbers, such as positions and times in train
+         * requirements or paths. A number takes 6 to 10 bytes of JSON text, and becomes a boxed
+         * value (16 to 24 bytes) referenced from a list (4 to 8 bytes), and often an intermediate
+         * copy while being converted: about 4 times its size, plus the body itself, which is kept
+         * until the response is sent. Strings double in size once decoded to UTF-16. The default
+         * factor adds some margin for the working memory of the endpoint, which doesn't depend on
+         * the size of the request.
+         */
+        const val DEFAULT_REQUEST_MEMORY_EXPANSION = 10L
+
+        /**
+         * Returns the AMQP prefetch count to use. A prefetch count of 0 means no limit to RabbitMQ,
+         * which would let an unbounded number of messages pile up on a single worker: invalid
+         * values fall back to the default.
+         */
+        fun parsePrefetch(prefetch: Int?, default: Int): Int {
+            if (prefetch == null) return default
+            if (prefetch <= 0) {
+                logger.warn("ignoring WORKER_PREFETCH={}, it must be positive", prefetch)
+                return default
+            }
+            return prefetch
+        }
     }
 }
@@ -69,13 +69,22 @@ fun detectConflicts(trainRequirements: List<TrainRequirements>): List<Conflict>
     return detectRequirementConflicts(convertTrainRequirements(trainRequirements))
 }
 
-fun detectRequirementConflicts(requirements: List<Requirements>): List<Conflict> {
-    val res = incrementalConflictDetectorFromRequirements(requirements).checkConflicts()
-    return mergeConflicts(res)
+/**
+ * Detect all conflicts between the given requirements. The result does not depend on the parallel
+ * flag, which only controls whether zones and conflict groups are processed on the common pool.
+ */
+@JvmOverloads
+fun detectRequirementConflicts(
+    requirements: List<Requirements>,
+    parallel: Boolean = true
+): List<Conflict> {
+    val res = incrementalConflictDetectorFromRequirements(requirements).checkConflicts(parallel)
+    return mergeConflicts(res, parallel)
 }
 
 interface IncrementalConflictDetector {
-    fun checkConflicts(): List<Conflict>
+    /** Check all scheduled requirements against each other. Zones are checked in parallel if set */
+    fun checkConflicts(parallel: Boolean = true): List<Conflict>
 
     fun checkConflicts(
         spacingRequirements: List<SpacingRequirement>,
@@ -123,14 +132,21 @@ fun incrementalConflictDetectorFromRequirements(
 
 class IncrementalConflictDetectorImpl(requirements: List<Requirements>) :
     IncrementalConflictDetector {
-    private val spacingZoneRequirements =
-        mutableMapOf<String, MutableList<SpacingZoneRequirement>>()
-    private val routingZoneRequirements =
-        mutableMapOf<String, MutableList<RoutingZoneRequirement>>()
+    // requirements are indexed by zone name, then by time
+    private val spacingZoneRequirements:
+        Map<String, RequirementIntervalIndex<SpacingZoneRequirement>>
+    private val routingZoneRequirements:
+        Map<String, RequirementIntervalIndex<RoutingZoneRequirement>>
 
     init {
-        generateSpacingRequirements(requirements)
-        generateRoutingRequirements(requirements)
+        spacingZoneRequirements =
+            generateSpacingRequirements(requirements).mapValues {
+                RequirementIntervalIndex(it.value)
+            }
+        routingZoneRequirements =
+            generateRoutingRequirements(requirements).mapValues {
+                RequirementIntervalIndex(it.value)
+            }
     }
 
     data class SpacingZoneRequirement(
@@ -139,8 +155,11 @@ class IncrementalConflictDetectorImpl(requirements: List<Requirements>) :
         override val endTime: Double,
     ) : ResourceRequirement
 
-    private fun generateSpacingRequirements(requirements: List<Requirements>) {
+    private fun generateSpacingRequirements(
+        requirements: List<Requirements>
+    ): Map<String, List<SpacingZoneRequirement>> {
         // organize requirements by zone
+        val spacingZoneRequirements = mutableMapOf<String, MutableList<SpacingZoneRequirement>>()
         for (req in requirements) {
             for (spacingReq in req.spacingRequirements) {
                 val zoneReq =
@@ -148,6 +167,7 @@ class IncrementalConflictDetectorImpl(requirements: List<Requirements>) :
                 spacingZoneRequirements.getOrPut(spacingReq.zone!!) { mutableListOf() }.add(zoneReq)
             }
         }
+        return spacingZoneRequirements
     }
 
     data class RoutingZoneConfig(
@@ -164,8 +184,11 @@ class IncrementalConflictDetectorImpl(requirements: List<Requirements>) :
         val config: RoutingZoneConfig,
     ) : ResourceRequirement
 
-    private fun generateRoutingRequirements(requirements: List<Requirements>) {
+    private fun generateRoutingRequirements(
+        requirements: List<Requirements>
+    ): Map<String, List<RoutingZoneRequirement>> {
         // reorganize requirements by zone
+        val routingZoneRequirements = mutableMapOf<String, MutableList<RoutingZoneRequirement>>()
         for (trainRequirements in requirements) {
             val trainId = trainRequirements.id.id
             for (routeRequirements in trainRequirements.routingRequirements) {
@@ -189,63 +212,81 @@ class IncrementalConflictDetectorImpl(requirements: List<Requirements>) :
                 }
             }
         }
+        return routingZoneRequirements
     }
 
-    override fun checkConflicts(): List<Conflict> {
+    override fun checkConflicts(parallel: Boolean): List<Conflict> {
         val res = mutableListOf<Conflict>()
-        res.addAll(detectSpacingConflicts())
-        res.addAll(detectRoutingConflicts())
+        res.addAll(detectZoneConflicts(spacingZoneRequirements, parallel, ::detectSpacingConflicts))
+        res.addAll(detectZoneConflicts(routingZoneRequirements, parallel, ::detectRoutingConflicts))
         return res
     }
 
-    private fun detectSpacingConflicts(): List<Conflict> {
+    /**
+     * Zones are independent from one another, so each zone is swept separately. When parallel is
+     * set, zones are swept on the common fork/join pool, and results are concatenated in zone order
+     * so that the output is identical to a sequential sweep.
+     */
+    private fun <ReqT : ResourceRequirement> detectZoneConflicts(
+        zoneRequirements: Map<String, RequirementIntervalIndex<ReqT>>,
+        parallel: Boolean,
+        detectZone: (String, RequirementIntervalIndex<ReqT>) -> List<Conflict>
+    ): List<Conflict> {
+        val zones = zoneRequirements.entries.toList()
+        val stream = if (parallel) zones.parallelStream() else zones.stream()
+        return stream.map { detectZone(it.key, it.value) }.toList().flatten()
+    }
+
+    private fun detectSpacingConflicts(
+        zone: String,
+        requirements: RequirementIntervalIndex<SpacingZoneRequirement>
+    ): List<Conflict> {
         // look for requirement times overlaps.
         // as spacing requirements are exclusive, any overlap is a conflict
         val res = mutableListOf<Conflict>()
-        for (entry in spacingZoneRequirements) {
-            for (conflictGroup in detectRequirementConflicts(entry.value) { _, _ -> true }) {
-                val beginTime = conflictGroup.minBy { it.beginTime }.beginTime
-                val endTime = conflictGroup.maxBy { it.endTime }.endTime
-                // If there are only conflicting work schedules, skip conflict group
-                if (conflictGroup.all { it.id.type == RequirementType.WORK_SCHEDULE }) {
-                    continue
-                }
-                val trains =
-                    conflictGroup.filter { it.id.type == RequirementType.TRAIN }.map { it.id.id }
-                val workSchedules =
-                    conflictGroup
-                        .filter { it.id.type == RequirementType.WORK_SCHEDULE }
-                        .map { it.id.id }
-                val conflictReq = ConflictRequirement(entry.key, beginTime, endTime)
-                res.add(
-                    Conflict(
-                        trains,
-                        workSchedules,
-                        beginTime,
-                        endTime,
-                        ConflictType.SPACING,
-                        listOf(conflictReq)
-                    )
-                )
+        val zoneRequirements = requirements.sortedRequirements.toMutableList()
+        for (conflictGroup in detectRequirementConflicts(zoneRequirements) { _, _ -> true }) {
+            val beginTime = conflictGroup.minBy { it.beginTime }.beginTime
+            val endTime = conflictGroup.maxBy { it.endTime }.endTime
+            // If there are only conflicting work schedules, skip conflict group
+            if (conflictGroup.all { it.id.type == RequirementType.WORK_SCHEDULE }) {
+                continue
             }
+            val trains =
+                conflictGroup.filter { it.id.type == RequirementType.TRAIN }.map { it.id.id }
+            val workSchedules =
+                conflictGroup
+                    .filter { it.id.type == RequirementType.WORK_SCHEDULE }
+                    .map { it.id.id }
+            val conflictReq = ConflictRequirement(zone, beginTime, endTime)
+            res.add(
+                Conflict(
+                    trains,
+                    workSchedules,
+                    beginTime,
+                    endTime,
+                    ConflictType.SPACING,
+                    listOf(conflictReq)
+                )
+            )
         }
         return res
     }
 
-    private fun detectRoutingConflicts(): List<Conflict> {
-        // for each zone, check compatibility of overlapping requirements
+    private fun detectRoutingConflicts(
+        zone: String,
+        requirements: RequirementIntervalIndex<RoutingZoneRequirement>
+    ): List<Conflict> {
+        // check compatibility of overlapping requirements
         val res = mutableListOf<Conflict>()
-        for (entry in routingZoneRequirements) {
-            for (conflictGroup in
-                detectRequirementConflicts(entry.value) { a, b -> a.config != b.config }) {
-                val trains = conflictGroup.map { it.trainId }
-                val beginTime = conflictGroup.minBy { it.beginTime }.beginTime
-                val endTime = conflictGroup.maxBy { it.endTime }.endTime
-                val conflictReq = ConflictRequirement(entry.key, beginTime, endTime)
-                res.add(
-                    Conflict(trains, beginTime, endTime, ConflictType.ROUTING, listOf(conflictReq))
-                )
-            }
+        val zoneRequirements = requirements.sortedRequirements.toMutableList()
+        for (conflictGroup in
+            detectRequirementConflicts(zoneRequirements) { a, b -> a.config != b.config }) {
+            val trains = conflictGroup.map { it.trainId }
+            val beginTime = conflictGroup.minBy { it.beginTime }.beginTime
+            val endTime = conflictGroup.maxBy { it.endTime }.endTime
+            val conflictReq = ConflictRequirement(zone, beginTime, endTime)
+            res.add(Conflict(trains, beginTime, endTime, ConflictType.ROUTING, listOf(conflictReq)))
         }
         return res
     }
@@ -268,7 +309,7 @@ class IncrementalConflictDetectorImpl(requirements: List<Requirements>) :
         val requirements = spacingZoneRequirements[req.zone] ?: return listOf()
 
         val res = mutableListOf<Conflict>()
-        for (otherReq in requirements) {
+        for (otherReq in requirements.overlapping(req.beginTime, req.endTime)) {
             val beginTime = max(req.beginTime, otherReq.beginTime)
             val endTime = min(req.endTime, otherReq.endTime)
             if (beginTime < endTime) {
@@ -301,7 +342,7 @@ class IncrementalConflictDetectorImpl(requirements: List<Requirements>) :
                 RoutingZoneConfig(zoneReq.entryDetector, zoneReq.exitDetector, zoneReq.switches!!)
             val requirements = routingZoneRequirements[zoneReq.zone!!] ?: continue
 
-            for (otherReq in requirements) {
+            for (otherReq in requirements.overlapping(req.beginTime, zoneReq.endTime)) {
                 if (otherReq.config == zoneReqConfig) continue
                 val beginTime = max(req.beginTime, otherReq.beginTime)
                 val endTime = min(zoneReq.endTime, otherReq.endTime)
@@ -333,33 +374,31 @@ class IncrementalConflictDetectorImpl(requirements: List<Requirements>) :
             var maxDelay = Double.POSITIVE_INFINITY
             var timeOfNextConflict = Double.POSITIVE_INFINITY
             for (spacingRequirement in spacingRequirements) {
-                if (spacingZoneRequirements[spacingRequirement.zone!!] != null) {
-                    val endTime = spacingRequirement.endTime
-                    for (requirement in spacingZoneRequirements[spacingRequirement.zone!!]!!) {
-                        if (endTime <= requirement.beginTime) {
-                            maxDelay = min(maxDelay, requirement.beginTime - endTime)
-                            timeOfNextConflict = min(timeOfNextConflict, requirement.beginTime)
-                        }
-                    }
-                }
+                val zoneRequirements =
+                    spacingZoneRequirements[spacingRequirement.zone!!] ?: continue
+                val endTime = spacingRequirement.endTime
+                // requirements are sorted by begin time: the first one after the end is the closest
+                val requirement =
+                    zoneRequirements.beginningAtOrAfter(endTime).firstOrNull() ?: continue
+                maxDelay = min(maxDelay, requirement.beginTime - endTime)
+                timeOfNextConflict = min(timeOfNextConflict, requirement.beginTime)
             }
             for (routingRequirement in routingRequirements) {
                 for (zoneReq in routingRequirement.zones) {
-                    if (routingZoneRequirements[zoneReq.zone!!] != null) {
-                        val endTime = zoneReq.endTime
-                        val config =
-                            RoutingZoneConfig(
-                                zoneReq.entryDetector,
-                                zoneReq.exitDetector,
-                                zoneReq.switches!!
-                            )
-                        for (requirement in routingZoneRequirements[zoneReq.zone!!]!!) {
-                            if (endTime <= requirement.beginTime && config != requirement.config) {
-                                maxDelay = min(maxDelay, requirement.beginTime - endTime)
-                                timeOfNextConflict = min(timeOfNextConflict, requirement.beginTime)
-                            }
-                        }
-                    }
+                    val zoneRequirements = routingZoneRequirements[zoneReq.zone!!] ?: continue
+                    val endTime = zoneReq.endTime
+                    val config =
+                        RoutingZoneConfig(
+                            zoneReq.entryDetector,
+                            zoneReq.exitDetector,
+                            zoneReq.switches!!
+                        )
+                    val requirement =
+                        zoneRequirements.beginningAtOrAfter(endTime).firstOrNull {
+                            config != it.config
+                        } ?: continue
+                    maxDelay = min(maxDelay, requirement.beginTime - endTime)
+                    timeOfNextConflict = min(timeOfNextConflict, requirement.beginTime)
                 }
             }
             return ConflictProperties(minDelayWithoutConflicts, maxDelay, timeOfNextConflict)
@@ -374,36 +413,34 @@ class IncrementalConflictDetectorImpl(requirements: List<Requirements>) :
         while (globalMinDelay.isFinite()) {
             var minDelay = 0.0
             for (spacingRequirement in spacingRequirements) {
-                if (spacingZoneRequirements[spacingRequirement.zone!!] != null) {
-                    val conflictingRequirements =
-                        spacingZoneRequirements[spacingRequirement.zone!!]!!.filter {
-                            !(spacingRequirement.beginTime >= it.endTime ||
-                                spacingRequirement.endTime <= it.beginTime)
-                        }
-                    if (conflictingRequirements.isNotEmpty()) {
-                        val latestEndTime = conflictingRequirements.maxOf { it.endTime }
-                        minDelay = max(minDelay, latestEndTime - spacingRequirement.beginTime)
-                    }
+                val zoneRequirements =
+                    spacingZoneRequirements[spacingRequirement.zone!!] ?: continue
+                val conflictingRequirements =
+                    zoneRequirements.overlapping(
+                        spacingRequirement.beginTime,
+                        spacingRequirement.endTime
+                    )
+                if (conflictingRequirements.isNotEmpty()) {
+                    val latestEndTime = conflictingRequirements.maxOf { it.endTime }
+                    minDelay = max(minDelay, latestEndTime - spacingRequirement.beginTime)
                 }
             }
             for (routingRequirement in routingRequirements) {
                 for (zoneReq in routingRequirement.zones) {
-                    if (routingZoneRequirements[zoneReq.zone!!] != null) {
-                        val config =
-                            RoutingZoneConfig(
-                                zoneReq.entryDetector,
-                                zoneReq.exitDetector,
-                                zoneReq.switches!!
-                            )
-                        val conflictingRequirements =
-                            routingZoneRequirements[zoneReq.zone!!]!!.filter {
-                                !(routingRequirement.beginTime >= it.endTime ||
-                                    zoneReq.endTime <= it.beginTime) && config != it.config
-                            }
-                        if (conflictingRequirements.isNotEmpty()) {
-                            val latestEndTime = conflictingRequirements.maxOf { it.endTime }
-                            minDelay = max(minDelay, latestEndTime - routingRequirement.beginTime)
-                        }
+                    val zoneRequirements = routingZoneRequirements[zoneReq.zone!!] ?: continue
+                    val config =
+                        RoutingZoneConfig(
+                            zoneReq.entryDetector,
+                            zoneReq.exitDetector,
+                            zoneReq.switches!!
+                        )
+                    val conflictingRequirements =
+                        zoneRequirements
+                            .overlapping(routingRequirement.beginTime, zoneReq.endTime)
+                            .filter { config != it.config }
+                    if (conflictingRequirements.isNotEmpty()) {
+                        val latestEndTime = conflictingRequirements.maxOf { it.endTime }
+                        minDelay = max(minDelay, latestEndTime - routingRequirement.beginTime)
                     }
                 }
             }
@@ -513,42 +550,53 @@ class Event(
 
 fun mergeMap(
     resources: HashMap<ConflictingGroupKey, MutableList<Conflict>>,
-    conflictType: ConflictType
+    conflictType: ConflictType,
+    parallel: Boolean = true
 ): MutableList<Conflict> {
+    // groups are merged independently, and concatenated in map iteration order
+    val groups = resources.entries.toList()
+    val stream = if (parallel) groups.parallelStream() else groups.stream()
+    val merged = stream.map { mergeGroup(it.key, it.value, conflictType) }.toList()
+    return merged.flatten().toMutableList()
+}
+
+private fun mergeGroup(
+    key: ConflictingGroupKey,
+    conflicts: List<Conflict>,
+    conflictType: ConflictType
+): List<Conflict> {
     // sort and merge conflicts with overlapping time ranges
     val newConflicts = mutableListOf<Conflict>()
-    for ((key, conflicts) in resources) {
-        // create an event list and sort it
-        val events = mutableListOf<Event>()
-        for (conflict in conflicts) {
-            events.add(Event(EventType.BEGIN, conflict.startTime, conflict.requirements))
-            events.add(Event(EventType.END, conflict.endTime, conflict.requirements))
-        }
+    // create an event list and sort it
+    val events = mutableListOf<Event>()
+    for (conflict in conflicts) {
+        events.add(Event(EventType.BEGIN, conflict.startTime, conflict.requirements))
+        events.add(Event(EventType.END, conflict.endTime, conflict.requirements))
+    }
 
-        events.sort()
-        var eventCount = 0
-        var eventBeginning = 0.0
-        var conflictReqs = mutableListOf<ConflictRequirement>()
-        for (event in events) {
-            when (event.eventType) {
-                EventType.BEGIN -> {
-                    if (++eventCount == 1) eventBeginning = event.time
-                    conflictReqs.addAll(event.requirements)
-                }
-                EventType.END -> {
-                    if (--eventCount > 0) continue
-                    newConflicts.add(
-                        Conflict(
-                            key.trainIds.toMutableList(),
-                            key.workScheduleIds.toMutableList(),
-                            eventBeginning,
-                            event.time,
-                            conflictType,
-                            conflictReqs
-                        )
+    events.sort()
+    var eventCount = 0
+    var eventBeginning = 0.0
+    var conflictReqs = mutableListOf<ConflictRequirement>()
+    for (event in events) {
+        when (event.eventType) {
+            EventType.BEGIN -> {
+                if (++eventCount == 1) eventBeginning = event.time
+                conflictReqs.addAll(event.requirements)
+            }
+            EventType.END -> {
+                if (--eventCount > 0) continue
+                newConflicts.add(
+                    Conflict(
+                        key.trainIds.toMutableList(),
+                        key.workScheduleIds.toMutableList(),
+                        eventBeginning,
+                        event.time,
+                        conflictType,
+                        conflictReqs
                     )
-                    conflictReqs = mutableListOf()
-                }
+                )
+                conflictReqs = mutableListOf()
             }
         }
     }
@@ -557,7 +605,7 @@ fun mergeMap(
 
 data class ConflictingGroupKey(val trainIds: Set<Long>, val workScheduleIds: Set<Long>)
 
-fun mergeConflicts(conflicts: List<Conflict>): List<Conflict> {
+fun mergeConflicts(conflicts: List<Conflict>, parallel: Boolean = true): List<Conflict> {
     // group conflicts by sets of conflicting trains
     val spacingResources = hashMapOf<ConflictingGroupKey, MutableList<Conflict>>()
     val routingResources = hashMapOf<ConflictingGroupKey, MutableList<Conflict>>()
@@ -575,8 +623,8 @@ fun mergeConflicts(conflicts: List<Conflict>): List<Conflict> {
         conflictingMap[conflictingGroupKey] = conflictList
     }
 
-    val mergedConflicts = mergeMap(spacingResources, ConflictType.SPACING)
-    mergedConflicts += mergeMap(routingResources, ConflictType.ROUTING)
+    val mergedConflicts = mergeMap(spacingResources, ConflictType.SPACING, parallel)
+    mergedConflicts += mergeMap(routingResources, ConflictType.ROUTING, parallel)
 
     return mergedConflicts
 }
@@ -4,8 +4,8 @@ import fr.sncf.osrd.railjson.schema.schedule.RJSTrainStop.RJSReceptionSignal
 import fr.sncf.osrd.sim_infra.api.*
 import fr.sncf.osrd.sim_infra.utils.getBlockEntry
 import fr.sncf.osrd.sim_infra.utils.getBlockExit
-import fr.sncf.osrd.utils.AppendOnlyLinkedList
-import fr.sncf.osrd.utils.appendOnlyLinkedListOf
+import fr.sncf.osrd.utils.AppendOnlyVector
+import fr.sncf.osrd.utils.appendOnlyVectorOf
 import fr.sncf.osrd.utils.indexing.StaticIdxList
 import fr.sncf.osrd.utils.units.Distance
 import fr.sncf.osrd.utils.units.Offset
@@ -56,7 +56,7 @@ interface IncrementalPath {
     val routeCount: Int
     val stopCount: Int
 
-    val routes: AppendOnlyLinkedList<RouteId>
+    val routes: AppendOnlyVector<RouteId>
 
     fun getBlock(blockIndex: Int): BlockId
 
@@ -120,18 +120,18 @@ private class IncrementalPathImpl(
     private val blockInfra: BlockInfra,
 
     // objects
-    private var zonePaths: AppendOnlyLinkedList<ZonePathId> = appendOnlyLinkedListOf(),
-    override var routes: AppendOnlyLinkedList<RouteId> = appendOnlyLinkedListOf(),
-    private var blocks: AppendOnlyLinkedList<BlockId> = appendOnlyLinkedListOf(),
-    private var stops: AppendOnlyLinkedList<IncrementalStop> = appendOnlyLinkedListOf(),
+    private var zonePaths: AppendOnlyVector<ZonePathId> = appendOnlyVectorOf(),
+    override var routes: AppendOnlyVector<RouteId> = appendOnlyVectorOf(),
+    private var blocks: AppendOnlyVector<BlockId> = appendOnlyVectorOf(),
+    private var stops: AppendOnlyVector<IncrementalStop> = appendOnlyVectorOf(),
 
     // lookup tables from blocks and routes to zone path bounds
-    private val blockZoneBounds: AppendOnlyLinkedList<Int> = appendOnlyLinkedListOf(),
-    private val routeZoneBounds: AppendOnlyLinkedList<Int> = appendOnlyLinkedListOf(0),
+    private val blockZoneBounds: AppendOnlyVector<Int> = appendOnlyVectorOf(),
+    private val routeZoneBounds: AppendOnlyVector<Int> = appendOnlyVectorOf(0),
 
     // a lookup table from zone index to zone start path offset
-    private var zonePathBounds: AppendOnlyLinkedList<Offset<Path>> =
-        appendOnlyLinkedListOf(Offset(0.meters)),
+    private var zonePathBounds: AppendOnlyVector<Offset<Path>> =
+        appendOnlyVectorOf(Offset(0.meters)),
     override var travelledPathBegin: Offset<Path> = Offset((-1).meters),
     override var travelledPathEnd: Offset<Path> = Offset((-1).meters),
 ) : IncrementalPath {
@@ -189,9 +189,8 @@ private class IncrementalPathImpl(
             val firstBlock = fragment.blocks[0]
             val firstBlockZonePath = blockInfra.getBlockPath(firstBlock)[0]
             var firstBlockZonePathIndex = -1
-            val zonePathList = zonePaths.toList()
-            for (zonePathIndex in zonePathList.indices) {
-                val zonePath = zonePathList[zonePathIndex]
+            for (zonePathIndex in 0 until zonePaths.size) {
+                val zonePath = zonePaths[zonePathIndex]
                 if (zonePath == firstBlockZonePath) {
                     firstBlockZonePathIndex = zonePathIndex
                     break
@@ -0,0 +1,86 @@
+package fr.sncf.osrd.conflicts
+
+import kotlin.math.max
+
+/**
+ * A static index of the requirements of a resource, which finds the requirements overlapping a time
+ * range in O(log n + k).
+ *
+ * Requirements are sorted by begin time, and a segment tree keeps the latest end time of each range
+ * of sorted requirements: the requirements overlapping a time range are the ones which begin before
+ * its end, among which subtrees ending before its beginning can be skipped.
+ */
+class RequirementIntervalIndex<ReqT : ResourceRequirement>(requirements: List<ReqT>) {
+    /** The indexed requirements, sorted by begin time */
+    val sortedRequirements: List<ReqT>
+    // the position of each sorted requirement in the list the index was built from
+    private val insertionIndices: IntArray
+    private val beginTimes: DoubleArray
+    // the segment tree: node 1 is the root, the children of node n are 2n and 2n + 1
+    private val leafCount: Int
+    private val maxEndTimes: DoubleArray
+
+    init {
+        val order = requirements.indices.sortedBy { requirements[it].beginTime }
+        sortedRequirements = order.map { requirements[it] }
+        insertionIndices = order.toIntArray()
+        beginTimes = DoubleArray(order.size) { sortedRequirements[it].beginTime }
+
+        var leafCount = 1
+        while (leafCount < order.size) leafCount *= 2
+        this.leafCount = leafCount
+        maxEndTimes = DoubleArray(2 * leafCount) { Double.NEGATIVE_INFINITY }
+        for (i in sortedRequirements.indices) {
+            maxEndTimes[leafCount + i] = sortedRequirements[i].endTime
+        }
+        for (node in leafCount - 1 downTo 1) {
+            maxEndTimes[node] = max(maxEndTimes[2 * node], maxEndTimes[2 * node + 1])
+        }
+    }
+
+    /**
+     * Returns the requirements which overlap the given time range, excluding the ones which only
+     * touch its bounds, in the order the index was built from.
+     */
+    fun overlapping(beginTime: Double, endTime: Double): List<ReqT> {
+        val found = mutableListOf<Int>()
+        collectOverlapping(1, 0, leafCount, firstBeginningAtOrAfter(endTime), beginTime, found)
+        found.sortBy { insertionIndices[it] }
+        return found.map { sortedRequirements[it] }
+    }
+
+    /** Returns the requirements which begin at or after the given time, sorted by begin time */
+    fun beginningAtOrAfter(time: Double): List<ReqT> {
+        return sortedRequirements.subList(firstBeginningAtOrAfter(time), sortedRequirements.size)
+    }
+
+    /** Collects the requirements of the subtree of the given node which end after [beginTime] */
+    private fun collectOverlapping(
+        node: Int,
+        nodeStart: Int,
+        nodeEnd: Int,
+        limit: Int,
+        beginTime: Double,
+        found: MutableList<Int>,
+    ) {
+        if (nodeStart >= limit || maxEndTimes[node] <= beginTime) return
+        if (node >= leafCount) {
+            found.add(nodeStart)
+            return
+        }
+        val middle = (nodeStart + nodeEnd) / 2
+        collectOverlapping(2 * node, nodeStart, middle, limit, beginTime, found)
+        collectOverlapping(2 * node + 1, middle, nodeEnd, limit, beginTime, found)
+    }
+
+    /** The index of the first sorted requirement which begins at or after the given time */
+    private fun firstBeginningAtOrAfter(time: Double): Int {
+        var low = 0
+        var high = beginTimes.size
+        while (low < high) {
+            val middle = (low + high) ushr 1
+            if (beginTimes[middle] < time) low = middle + 1 else high = middle
+        }
+        return low
+    }
+}
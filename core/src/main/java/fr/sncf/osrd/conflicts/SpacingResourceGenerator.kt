@@ -460,14 +460,25 @@ class SpacingRequirementAutomaton(
     }
 
     fun clone(): SpacingRequirementAutomaton {
+        return clone(callbacks.clone(), incrementalPath.clone())
+    }
+
+    /**
+     * Copies the state of the automaton, with the given callbacks and path. Avoids cloning the
+     * current ones when they're about to be replaced.
+     */
+    fun clone(
+        callbacks: IncrementalRequirementCallbacks,
+        incrementalPath: IncrementalPath
+    ): SpacingRequirementAutomaton {
         val res =
             SpacingRequirementAutomaton(
                 this.rawInfra,
                 this.loadedSignalInfra,
                 this.blockInfra,
                 this.simulator,
-                this.callbacks.clone(),
-                this.incrementalPath.clone()
+                callbacks,
+                incrementalPath
             )
         res.nextProcessedBlock = nextProcessedBlock
         res.lastEmittedZone = lastEmittedZone
@@ -1,6 +1,7 @@
 package fr.sncf.osrd.railjson.parser;
 
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import fr.sncf.osrd.StreamingRJSInfraObjects;
 import fr.sncf.osrd.railjson.schema.infra.RJSInfra;
 import java.io.IOException;
 import java.nio.file.Path;
@@ -17,4 +18,12 @@ public class RJSParser {
             return rjsRoot;
         }
     }
+
+    /**
+     * Reads the objects of the RailJSON file at the given Path as they get parsed, without loading it all at once. The
+     * returned objects must be closed once parsed.
+     */
+    public static StreamingRJSInfraObjects streamRailJSONFromFile(String path) throws IOException {
+        return new StreamingRJSInfraObjects(Okio.buffer(Okio.source(Path.of(path))));
+    }
 }
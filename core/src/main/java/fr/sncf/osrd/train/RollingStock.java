@@ -13,8 +13,12 @@ import fr.sncf.osrd.envelope_sim.electrification.Neutral;
 import fr.sncf.osrd.envelope_sim.electrification.NonElectrified;
 import fr.sncf.osrd.railjson.schema.rollingstock.Comfort;
 import fr.sncf.osrd.railjson.schema.rollingstock.RJSLoadingGaugeType;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
 
 /**
  * The immutable characteristics of a specific train. There must be a RollingStock instance per
@@ -278,6 +282,41 @@ public final class RollingStock implements PhysicsRollingStock {
         return modes.values().stream().anyMatch(ModeEffortCurves::isElectric);
     }
 
+    /**
+     * Returns a value that is equal for rolling stocks with the same physical behavior, regardless of
+     * their identifiers. Loading gauge and signaling systems aren't included, they don't change
+     * simulations.
+     */
+    public List<Object> getSimulationKey() {
+        var modeKeys = new TreeMap<String, List<Object>>();
+        for (var entry : modes.entrySet()) {
+            var mode = entry.getValue();
+            var curveKeys = new ArrayList<Object>();
+            for (var curve : mode.curves()) curveKeys.add(List.of(curve.cond(), List.of(curve.curve())));
+            modeKeys.put(entry.getKey(), List.of(mode.isElectric(), List.of(mode.defaultCurve()), curveKeys));
+        }
+        return Arrays.asList(
+                A,
+                B,
+                C,
+                gammaType,
+                gamma,
+                length,
+                maxSpeed,
+                startUpTime,
+                startUpAcceleration,
+                comfortAcceleration,
+                mass,
+                inertia,
+                inertiaCoefficient,
+                modeKeys,
+                defaultMode,
+                basePowerClass,
+                powerRestrictions,
+                electricalPowerStartUpTime,
+                raisePantographTime);
+    }
+
     /** Creates a new rolling stock (a physical train inventory item). */
     public RollingStock(
             String id,
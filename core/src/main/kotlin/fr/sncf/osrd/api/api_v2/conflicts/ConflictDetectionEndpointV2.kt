@@ -5,7 +5,7 @@ import fr.sncf.osrd.api.ExceptionHandler
 import fr.sncf.osrd.api.InfraManager
 import fr.sncf.osrd.api.api_v2.parseTrainsRequirements
 import fr.sncf.osrd.api.api_v2.parseWorkSchedulesRequest
-import fr.sncf.osrd.conflicts.Requirements
+import fr.sncf.osrd.api.api_v2.timetable.TimetableStore
 import fr.sncf.osrd.conflicts.detectRequirementConflicts
 import fr.sncf.osrd.reporting.warnings.DiagnosticRecorderImpl
 import java.time.Duration
@@ -19,7 +19,10 @@ import org.takes.rs.RsText
 import org.takes.rs.RsWithBody
 import org.takes.rs.RsWithStatus
 
-class ConflictDetectionEndpointV2(private val infraManager: InfraManager) : Take {
+class ConflictDetectionEndpointV2(
+    private val infraManager: InfraManager,
+    private val timetableStore: TimetableStore,
+) : Take {
     override fun act(req: Request?): Response {
         val recorder = DiagnosticRecorderImpl(false)
         return try {
@@ -28,7 +31,13 @@ class ConflictDetectionEndpointV2(private val infraManager: InfraManager) : Take
                 conflictRequestAdapter.fromJson(body)
                     ?: return RsWithStatus(RsText("missing request body"), 400)
 
-            if (request.trainsRequirements.isEmpty()) {
+            // timetable requirements and conflicts are converted once per version, and shared
+            val timetable =
+                request.timetableId?.let {
+                    timetableStore.get(it, request.timetableVersion).converted
+                }
+            val requestTrains = request.trainsRequirements
+            if (timetable?.referenceTime == null && requestTrains.isEmpty()) {
                 return RsJson(
                     RsWithBody(conflictResponseAdapter.toJson(ConflictDetectionResponse(listOf())))
                 )
@@ -36,19 +45,26 @@ class ConflictDetectionEndpointV2(private val infraManager: InfraManager) : Take
 
             val infra = infraManager.getInfra(request.infra, request.expectedVersion, recorder)
 
-            var minStartTime = request.trainsRequirements.values.minBy { it.startTime }.startTime
-            val requirements = mutableListOf<Requirements>()
-            if (request.workSchedules != null) {
-                minStartTime = minOf(minStartTime, request.workSchedules.startTime)
-                val convertedWorkSchedules =
-                    parseWorkSchedulesRequest(infra.rawInfra, request.workSchedules, minStartTime)
-                requirements.addAll(convertedWorkSchedules)
-            }
-            val trainRequirements =
-                parseTrainsRequirements(request.trainsRequirements, minStartTime)
-            requirements.addAll(trainRequirements)
-            val conflicts = detectRequirementConflicts(requirements)
-            val res = makeConflictDetectionResponse(conflicts, minStartTime)
+            // times of the shared timetable requirements are relative to its reference time
+            val startTime = timetable?.referenceTime ?: requestStartTime(request)
+            val conflicts =
+                if (timetable != null && requestTrains.isEmpty() && request.workSchedules == null) {
+                    timetable.conflicts
+                } else {
+                    // trains sent with the request take precedence over the timetable
+                    val requirements =
+                        timetable?.requirements?.filter { it.id.id !in requestTrains }
+                            ?.toMutableList() ?: mutableListOf()
+                    if (request.workSchedules != null) {
+                        val workSchedules = request.workSchedules
+                        requirements.addAll(
+                            parseWorkSchedulesRequest(infra.rawInfra, workSchedules, startTime)
+                        )
+                    }
+                    requirements.addAll(parseTrainsRequirements(requestTrains, startTime))
+                    detectRequirementConflicts(requirements)
+                }
+            val res = makeConflictDetectionResponse(conflicts, startTime)
 
             RsJson(RsWithBody(conflictResponseAdapter.toJson(res)))
         } catch (ex: Throwable) {
@@ -57,6 +73,13 @@ class ConflictDetectionEndpointV2(private val infraManager: InfraManager) : Take
     }
 }
 
+/** Returns the earliest start time of the trains and work schedules sent with a request */
+private fun requestStartTime(request: ConflictDetectionRequest): ZonedDateTime {
+    val startTime = request.trainsRequirements.values.minBy { it.startTime }.startTime
+    if (request.workSchedules == null) return startTime
+    return minOf(startTime, request.workSchedules.startTime)
+}
+
 private fun makeConflictDetectionResponse(
     conflicts: Collection<ConflictDetectionResult.Conflict>,
     startTime: ZonedDateTime
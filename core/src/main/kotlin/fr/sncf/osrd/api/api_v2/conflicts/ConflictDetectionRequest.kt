@@ -19,7 +19,15 @@ class ConflictDetectionRequest(
      * Map of train id -> train requirements. The train requirements should be generated by the
      * simulation endpoint.
      */
-    @Json(name = "trains_requirements") val trainsRequirements: Map<Long, TrainRequirementsRequest>,
+    @Json(name = "trains_requirements")
+    val trainsRequirements: Map<Long, TrainRequirementsRequest> = mapOf(),
+    /**
+     * Timetable held by core whose trains are checked along with [trainsRequirements], if any. See
+     * the timetable update endpoint.
+     */
+    @Json(name = "timetable_id") val timetableId: Long? = null,
+    /** Version of the timetable, required along with the timetable id. */
+    @Json(name = "timetable_version") val timetableVersion: String? = null,
     /** Work schedules, if any. */
     @Json(name = "work_schedules") val workSchedules: WorkSchedulesRequest? = null,
 )
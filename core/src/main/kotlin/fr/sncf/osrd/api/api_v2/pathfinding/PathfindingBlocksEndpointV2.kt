@@ -8,14 +8,11 @@ import fr.sncf.osrd.api.pathfinding.*
 import fr.sncf.osrd.api.pathfinding.constraints.*
 import fr.sncf.osrd.graph.*
 import fr.sncf.osrd.graph.Pathfinding.EdgeLocation
-import fr.sncf.osrd.graph.Pathfinding.EdgeRange
 import fr.sncf.osrd.railjson.schema.rollingstock.RJSLoadingGaugeType
 import fr.sncf.osrd.reporting.exceptions.ErrorType
 import fr.sncf.osrd.reporting.exceptions.OSRDError
 import fr.sncf.osrd.reporting.warnings.DiagnosticRecorderImpl
 import fr.sncf.osrd.sim_infra.api.*
-import fr.sncf.osrd.stdcm.graph.extendLookaheadUntil
-import fr.sncf.osrd.stdcm.infra_exploration.initInfraExplorer
 import fr.sncf.osrd.utils.*
 import fr.sncf.osrd.utils.indexing.*
 import fr.sncf.osrd.utils.units.Length
@@ -100,11 +97,16 @@ fun runPathfinding(
             request.rollingStockSupportedSignalingSystems,
         )
 
-    val heuristics =
-        makeHeuristicsForPathfindingEdges(infra, waypoints, request.rollingStockMaximumSpeed)
+    // Without any effective constraint, the contraction hierarchy gives the same shortest paths
+    val routing = UnconstrainedRouting.get(infra)
+    if (routing != null && routing.isUnconstrained(constraints)) {
+        val mrspBuilder = CachedBlockMRSPBuilder(infra.rawInfra, infra.blockInfra, null)
+        val path = routing.findPath(waypoints, mrspBuilder)
+        if (path != null) return runPathfindingPostProcessing(infra, request, path)
+    }
 
     // Compute the paths from the entry waypoint to the exit waypoint
-    val path = computePaths(infra, waypoints, constraints, heuristics, request, request.timeout)
+    val path = computePaths(infra, waypoints, constraints, request, request.timeout)
     return runPathfindingPostProcessing(infra, request, path)
 }
 
@@ -139,7 +141,6 @@ private fun computePaths(
     infra: FullInfra,
     waypoints: ArrayList<Collection<PathfindingEdgeLocationId<Block>>>,
     constraints: List<PathfindingConstraint<Block>>,
-    remainingDistanceEstimators: List<AStarHeuristic<PathfindingEdge, Block>>,
     initialRequest: PathfindingBlockRequest,
     timeout: Double?,
 ): PathfindingResultId<Block> {
@@ -151,29 +152,19 @@ private fun computePaths(
             initialRequest.rollingStockMaximumSpeed,
             initialRequest.rollingStockLength
         )
-    val constraintCombiner = ConstraintCombiner(constraints.toMutableList())
     val pathFound =
-        Pathfinding(PathfindingGraph())
-            .setTimeout(timeout)
-            .setEdgeToLength { edge -> Offset(edge.length.distance) }
-            .setRangeCost { range ->
-                mrspBuilder.getBlockTime(range.edge.block, Offset(range.end.distance)) -
-                    mrspBuilder.getBlockTime(range.edge.block, Offset(range.start.distance))
-            }
-            .setRemainingDistanceEstimator(remainingDistanceEstimators)
-            .runPathfinding(
-                getStartLocations(
-                    infra.rawInfra,
-                    infra.blockInfra,
-                    waypoints,
-                    listOf(constraintCombiner)
-                ),
-                getTargetsOnEdges(waypoints)
+        RoutePathfinding(
+                RouteBlockGraph.from(infra.blockInfra, infra.rawInfra),
+                mrspBuilder,
+                constraints,
+                initialRequest.rollingStockMaximumSpeed,
+                timeout ?: Pathfinding.TIMEOUT
             )
+            .runPathfinding(waypoints)
 
     if (pathFound != null) {
         pathfindingLogger.info("Path found, start postprocessing")
-        return makeBlockPath(pathFound)!!
+        return pathFound
     }
 
     // Handling errors
@@ -185,75 +176,33 @@ private fun computePaths(
         waypoints,
         constraints,
         mrspBuilder,
-        remainingDistanceEstimators,
         initialRequest,
         timeout?.minus(elapsedSeconds)
     )
 }
 
-private fun getStartLocations(
-    rawInfra: RawSignalingInfra,
-    blockInfra: BlockInfra,
-    waypoints: ArrayList<Collection<PathfindingEdgeLocationId<Block>>>,
-    constraints: List<PathfindingConstraint<Block>>,
-): Collection<EdgeLocation<PathfindingEdge, Block>> {
-    val res = mutableListOf<EdgeLocation<PathfindingEdge, Block>>()
-    val firstStep = waypoints[0]
-    val stops = listOf(waypoints.last())
-    for (location in firstStep) {
-        val infraExplorers = initInfraExplorer(rawInfra, blockInfra, location, stops, constraints)
-        val extended = infraExplorers.flatMap { extendLookaheadUntil(it, 1) }
-        for (explorer in extended) {
-            val edge = PathfindingEdge(explorer)
-            res.add(EdgeLocation(edge, location.offset))
-        }
-    }
-    return res
-}
-
-private fun getTargetsOnEdges(
-    waypoints: ArrayList<Collection<PathfindingEdgeLocationId<Block>>>,
-): List<TargetsOnEdge<PathfindingEdge, Block>> {
-    val targetsOnEdges = ArrayList<TargetsOnEdge<PathfindingEdge, Block>>()
-    for (i in 1 until waypoints.size) {
-        targetsOnEdges.add { edge: PathfindingEdge ->
-            val res = HashSet<EdgeLocation<PathfindingEdge, Block>>()
-            for (target in waypoints[i]) {
-                if (target.edge == edge.block) res.add(EdgeLocation(edge, target.offset))
-            }
-            res
-        }
-    }
-    return targetsOnEdges
-}
-
 private fun throwNoPathFoundException(
     infra: FullInfra,
     waypoints: ArrayList<Collection<PathfindingEdgeLocationId<Block>>>,
     constraints: Collection<PathfindingConstraint<Block>>,
     mrspBuilder: CachedBlockMRSPBuilder,
-    remainingDistanceEstimators: List<AStarHeuristic<PathfindingEdge, Block>>,
     initialRequest: PathfindingBlockRequest,
     timeout: Double?
 ): Nothing {
     try {
         val possiblePathWithoutErrorNoConstraints =
-            Pathfinding(PathfindingGraph())
-                .setTimeout(timeout)
-                .setEdgeToLength { edge -> Offset(edge.length.distance) }
-                .setRangeCost { range ->
-                    mrspBuilder.getBlockTime(range.edge.block, Offset(range.end.distance)) -
-                        mrspBuilder.getBlockTime(range.edge.block, Offset(range.start.distance))
-                }
-                .setRemainingDistanceEstimator(remainingDistanceEstimators)
-                .runPathfinding(
-                    getStartLocations(infra.rawInfra, infra.blockInfra, waypoints, listOf()),
-                    getTargetsOnEdges(waypoints)
+            RoutePathfinding(
+                    RouteBlockGraph.from(infra.blockInfra, infra.rawInfra),
+                    mrspBuilder,
+                    listOf(),
+                    initialRequest.rollingStockMaximumSpeed,
+                    timeout ?: Pathfinding.TIMEOUT
                 )
+                .runPathfinding(waypoints)
         val incompatibleConstraintsResponse =
             buildIncompatibleConstraintsResponse(
                 infra,
-                makeBlockPath(possiblePathWithoutErrorNoConstraints),
+                possiblePathWithoutErrorNoConstraints,
                 constraints,
                 initialRequest
             )
@@ -270,16 +219,6 @@ private fun throwNoPathFoundException(
     throw NoPathFoundException(NotFoundInBlocks(listOf(), Length(0.meters)))
 }
 
-private fun makeBlockPath(
-    path: Pathfinding.Result<PathfindingEdge, Block>?
-): PathfindingResultId<Block>? {
-    if (path == null) return null
-    return Pathfinding.Result(
-        path.ranges.map { EdgeRange(it.edge.block, it.start, it.end) },
-        path.waypoints.map { EdgeLocation(it.edge.block, it.offset) }
-    )
-}
-
 /**
  * Returns all the EdgeLocations of a waypoint.
  *
@@ -0,0 +1,243 @@
+package fr.sncf.osrd.api.api_v2.standalone_sim
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder
+import com.squareup.moshi.JsonDataException
+import fr.sncf.osrd.api.ElectricalProfileSetManager
+import fr.sncf.osrd.api.ExceptionHandler
+import fr.sncf.osrd.api.FullInfra
+import fr.sncf.osrd.api.InfraManager
+import fr.sncf.osrd.api.api_v2.parseRawSimulationScheduleItems
+import fr.sncf.osrd.api.pathfinding.makeChunkPath
+import fr.sncf.osrd.external_generated_inputs.ElectricalProfileMapping
+import fr.sncf.osrd.reporting.exceptions.OSRDError
+import fr.sncf.osrd.reporting.warnings.DiagnosticRecorderImpl
+import fr.sncf.osrd.sim_infra.api.makePathProperties
+import fr.sncf.osrd.standalone_sim.SharedSimulationPath
+import fr.sncf.osrd.standalone_sim.runStandaloneSimulation
+import fr.sncf.osrd.standalone_sim.standaloneSimLogger
+import fr.sncf.osrd.train.RollingStock
+import java.io.InputStream
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.CompletionException
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.LinkedBlockingQueue
+import kotlin.math.min
+import org.takes.Request
+import org.takes.Response
+import org.takes.Take
+import org.takes.rq.RqPrint
+import org.takes.rs.RsText
+import org.takes.rs.RsWithStatus
+
+/**
+ * Simulates many trains at once, such as a whole timetable. Each path is only prepared once, and
+ * its MRSPs are computed once per rolling stock and schedule constraints. Each rolling stock is
+ * only parsed once. Trains are simulated in parallel, and their results are streamed as soon as
+ * they are available, one JSON object per line. If an unexpected error interrupts the batch, it is
+ * reported on the last line.
+ */
+class SimulationBatchEndpoint(
+    private val infraManager: InfraManager,
+    private val electricalProfileSetManager: ElectricalProfileSetManager
+) : Take {
+    override fun act(req: Request): Response {
+        val recorder = DiagnosticRecorderImpl(false)
+        try {
+            // Parse request input
+            val body = RqPrint(req).printBody()
+            val request =
+                try {
+                    simulationBatchRequestAdapter.fromJson(body)
+                        ?: return RsWithStatus(RsText("missing request body"), 400)
+                } catch (ex: JsonDataException) {
+                    // Such as an explicit null for a field with a default value, like the time step
+                    return RsWithStatus(RsText(ex.message ?: "invalid request body"), 400)
+                }
+            standaloneSimLogger.info("Simulation batch received: ${request.trains.size} trains")
+            for (train in request.trains) {
+                if (train.path !in request.paths)
+                    return RsWithStatus(RsText("unknown path ${train.path}"), 400)
+                if (train.rollingStock !in request.rollingStocks)
+                    return RsWithStatus(RsText("unknown rolling stock ${train.rollingStock}"), 400)
+            }
+            val infra = infraManager.getInfra(request.infra, request.expectedVersion, recorder)
+            val electricalProfileMap =
+                electricalProfileSetManager.getProfileMap(request.electricalProfileSetId)
+            val context =
+                SimulationBatchContext.make(
+                    infra,
+                    request,
+                    request.timeStep.seconds,
+                    electricalProfileMap
+                )
+
+            val response = RsJsonLines()
+            val simulations =
+                request.trains.indices.map { index ->
+                    CompletableFuture.runAsync(
+                        {
+                            val result = simulateTrain(context, request.trains[index])
+                            val line = SimulationBatchResult(index, result)
+                            response.add(simulationBatchResultAdapter.toJson(line))
+                        },
+                        executor
+                    )
+                }
+            CompletableFuture.allOf(*simulations.toTypedArray()).whenComplete { _, error ->
+                try {
+                    if (error != null) response.add(makeErrorLine(error))
+                } finally {
+                    response.close()
+                }
+            }
+            return response
+        } catch (ex: Throwable) {
+            return ExceptionHandler.handle(ex)
+        }
+    }
+
+    /** Describes an error which escaped the simulation of a train, to be sent as a line */
+    private fun makeErrorLine(error: Throwable): String {
+        val cause = if (error is CompletionException) error.cause ?: error else error
+        standaloneSimLogger.error("Simulation batch interrupted", cause)
+        val line = SimulationBatchError(OSRDError.newUnknownError(cause))
+        return simulationBatchErrorAdapter.toJson(line)
+    }
+
+    /** Simulates a single train of the batch. Errors only fail the train they come from. */
+    private fun simulateTrain(
+        context: SimulationBatchContext,
+        train: SimulationBatchTrain
+    ): SimulationResponse {
+        return try {
+            runStandaloneSimulation(
+                context.paths[train.path]!!.value,
+                context.rollingStocks[train.rollingStock]!!,
+                train.comfort,
+                train.constraintDistribution.toRJS(),
+                train.speedLimitTag,
+                parsePowerRestrictions(train.powerRestrictions),
+                train.options.useElectricalProfiles,
+                context.timeStep,
+                parseRawSimulationScheduleItems(train.schedule),
+                train.initialSpeed,
+                train.margins,
+                context.request.paths[train.path]!!.pathItemPositions,
+            )
+        } catch (error: OSRDError) {
+            if (error.osrdErrorType.isCacheable) SimulationFailed(error)
+            else SimulationTrainFailed(error)
+        } catch (ex: AssertionError) {
+            SimulationTrainFailed(OSRDError.newAssertionWrapper(ex))
+        } catch (ex: Exception) {
+            SimulationTrainFailed(OSRDError.newUnknownError(ex))
+        }
+    }
+
+    companion object {
+        // Trains are simulated on dedicated threads, so that batches don't hold up the common pool
+        private val executor: ExecutorService =
+            Executors.newFixedThreadPool(
+                Runtime.getRuntime().availableProcessors(),
+                ThreadFactoryBuilder().setDaemon(true).setNameFormat("simulation-batch-%d").build()
+            )
+    }
+}
+
+/**
+ * Inputs shared by the trains of a batch. Paths are prepared when a train first uses them, rolling
+ * stocks are parsed beforehand.
+ */
+private class SimulationBatchContext(
+    val request: SimulationBatchRequest,
+    val paths: Map<String, Lazy<SharedSimulationPath>>,
+    val rollingStocks: Map<String, RollingStock>,
+    val timeStep: Double,
+) {
+    companion object {
+        fun make(
+            infra: FullInfra,
+            request: SimulationBatchRequest,
+            timeStep: Double,
+            electricalProfileMap: ElectricalProfileMapping?
+        ): SimulationBatchContext {
+            val paths =
+                request.paths.mapValues { (_, path) ->
+                    lazy {
+                        val chunkPath = makeChunkPath(infra.rawInfra, path.trackSectionRanges)
+                        val routePath = convertRoutePath(infra.rawInfra, path.routes)
+                        val pathProps =
+                            makePathProperties(infra.rawInfra, chunkPath, routePath.toList())
+                        SharedSimulationPath(
+                            infra,
+                            pathProps,
+                            chunkPath,
+                            routePath,
+                            electricalProfileMap
+                        )
+                    }
+                }
+            val rollingStocks = request.rollingStocks.mapValues { parseRawRollingStock(it.value) }
+            return SimulationBatchContext(request, paths, rollingStocks, timeStep)
+        }
+    }
+}
+
+/**
+ * A JSON lines response, whose body is sent while lines are added. The body ends once the
+ * response is closed.
+ */
+private class RsJsonLines : Response {
+    private val lines = LinkedBlockingQueue<ByteArray>()
+
+    /** Adds a line to the body, it must not contain any line break */
+    fun add(line: String) {
+        lines.put((line + "\n").toByteArray())
+    }
+
+    /** Ends the body */
+    fun close() {
+        lines.put(END)
+    }
+
+    override fun head(): Iterable<String> {
+        return listOf("HTTP/1.1 200 OK", "Content-Type: application/x-ndjson", "Connection: close")
+    }
+
+    override fun body(): InputStream {
+        return object : InputStream() {
+            private var line = ByteArray(0)
+            private var position = 0
+            private var ended = false
+
+            override fun read(): Int {
+                val buffer = ByteArray(1)
+                if (read(buffer, 0, 1) < 0) return -1
+                return buffer[0].toInt() and 0xff
+            }
+
+            override fun read(buffer: ByteArray, offset: Int, length: Int): Int {
+                if (length == 0) return 0
+                while (position == line.size) {
+                    if (ended) return -1
+                    val next = lines.take()
+                    if (next === END) {
+                        ended = true
+                        return -1
+                    }
+                    line = next
+                    position = 0
+                }
+                val count = min(length, line.size - position)
+                System.arraycopy(line, position, buffer, offset, count)
+                position += count
+                return count
+            }
+        }
+    }
+
+    companion object {
+        private val END = ByteArray(0)
+    }
+}
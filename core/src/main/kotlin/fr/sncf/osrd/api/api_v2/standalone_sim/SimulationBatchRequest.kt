@@ -0,0 +1,54 @@
+package fr.sncf.osrd.api.api_v2.standalone_sim
+
+import com.squareup.moshi.Json
+import com.squareup.moshi.JsonAdapter
+import com.squareup.moshi.Moshi
+import com.squareup.moshi.kotlin.reflect.KotlinJsonAdapterFactory
+import fr.sncf.osrd.api.api_v2.RangeValues
+import fr.sncf.osrd.railjson.schema.rollingstock.Comfort
+import fr.sncf.osrd.railjson.schema.rollingstock.RJSRollingResistance
+import fr.sncf.osrd.utils.json.UnitAdapterFactory
+import fr.sncf.osrd.utils.units.Duration
+import fr.sncf.osrd.utils.units.seconds
+
+/**
+ * Simulations of many trains on the same infra, such as a whole timetable. Paths and rolling stocks
+ * are given once, and trains refer to them by key: they are only parsed and prepared once.
+ */
+class SimulationBatchRequest(
+    val infra: String,
+    @Json(name = "expected_version") val expectedVersion: String,
+    @Json(name = "electrical_profile_set_id") val electricalProfileSetId: String?,
+    /// Paths of the trains, by key
+    val paths: Map<String, SimulationPath>,
+    /// Rolling stocks of the trains, by key
+    @Json(name = "rolling_stocks") val rollingStocks: Map<String, PhysicsRollingStockModel>,
+    /// Numerical integration time step. Defaults to 2s.
+    @Json(name = "time_step") val timeStep: Duration = 2.seconds,
+    val trains: List<SimulationBatchTrain>,
+)
+
+/** The part of a simulation request which is specific to a single train of a batch */
+class SimulationBatchTrain(
+    /// Key of the path of the train
+    val path: String,
+    /// Key of the rolling stock of the train
+    @Json(name = "rolling_stock") val rollingStock: String,
+    val schedule: List<SimulationScheduleItem>,
+    val margins: RangeValues<MarginValue>,
+    @Json(name = "initial_speed") val initialSpeed: Double,
+    val comfort: Comfort,
+    @Json(name = "constraint_distribution") val constraintDistribution: AllowanceDistribution,
+    @Json(name = "speed_limit_tag") val speedLimitTag: String?,
+    @Json(name = "power_restrictions") val powerRestrictions: List<SimulationPowerRestrictionItem>,
+    val options: TrainScheduleOptions,
+)
+
+val simulationBatchRequestAdapter: JsonAdapter<SimulationBatchRequest> =
+    Moshi.Builder()
+        .add(MarginValueAdapter())
+        .add(RJSRollingResistance.adapter)
+        .addLast(UnitAdapterFactory())
+        .addLast(KotlinJsonAdapterFactory())
+        .build()
+        .adapter(SimulationBatchRequest::class.java)
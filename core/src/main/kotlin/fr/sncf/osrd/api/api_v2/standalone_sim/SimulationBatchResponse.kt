@@ -0,0 +1,55 @@
+package fr.sncf.osrd.api.api_v2.standalone_sim
+
+import com.squareup.moshi.Json
+import com.squareup.moshi.JsonAdapter
+import com.squareup.moshi.Moshi
+import com.squareup.moshi.adapters.PolymorphicJsonAdapterFactory
+import com.squareup.moshi.kotlin.reflect.KotlinJsonAdapterFactory
+import fr.sncf.osrd.reporting.exceptions.OSRDError
+import fr.sncf.osrd.utils.json.UnitAdapterFactory
+
+/**
+ * The result of a train of a batch. Results are sent as soon as trains are simulated, one per line,
+ * in any order: the index is the position of the train in the request.
+ */
+class SimulationBatchResult(val index: Int, val result: SimulationResponse)
+
+/**
+ * The simulation of a train of a batch failed because of an error which doesn't only depend on the
+ * inputs, unlike SimulationFailed. The other trains are unaffected.
+ */
+class SimulationTrainFailed(
+    @Json(name = "core_error") val coreError: OSRDError,
+) : SimulationResponse
+
+/**
+ * Sent as the last line of the body when an unexpected error escapes the simulation of a train. The
+ * trains without a result line failed because of it.
+ */
+class SimulationBatchError(
+    @Json(name = "core_error") val coreError: OSRDError,
+)
+
+val polymorphicSimulationBatchResultAdapter: PolymorphicJsonAdapterFactory<SimulationResponse> =
+    polymorphicSimulationResponseAdapter.withSubtype(
+        SimulationTrainFailed::class.java,
+        "train_failed"
+    )
+
+val simulationBatchResultAdapter: JsonAdapter<SimulationBatchResult> =
+    Moshi.Builder()
+        .add(OSRDError::class.java, OSRDError.adapter)
+        .add(polymorphicSimulationBatchResultAdapter)
+        .add(polymorphicElectricalProfileAdapter)
+        .add(polymorphicSpeedLimitSourceAdapter)
+        .addLast(UnitAdapterFactory())
+        .addLast(KotlinJsonAdapterFactory())
+        .build()
+        .adapter(SimulationBatchResult::class.java)
+
+val simulationBatchErrorAdapter: JsonAdapter<SimulationBatchError> =
+    Moshi.Builder()
+        .add(OSRDError::class.java, OSRDError.adapter)
+        .addLast(KotlinJsonAdapterFactory())
+        .build()
+        .adapter(SimulationBatchError::class.java)
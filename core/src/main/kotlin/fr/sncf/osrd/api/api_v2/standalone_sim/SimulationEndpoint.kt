@@ -83,21 +83,21 @@ class SimulationEndpoint(
             return ExceptionHandler.handle(ex)
         }
     }
+}
 
-    private fun parsePowerRestrictions(
-        powerRestrictions: List<SimulationPowerRestrictionItem>
-    ): DistanceRangeMap<String> {
-        val res = distanceRangeMapOf<String>()
-        for (entry in powerRestrictions) {
-            res.put(entry.from.distance, entry.to.distance, entry.value)
-        }
-        return res
+fun parsePowerRestrictions(
+    powerRestrictions: List<SimulationPowerRestrictionItem>
+): DistanceRangeMap<String> {
+    val res = distanceRangeMapOf<String>()
+    for (entry in powerRestrictions) {
+        res.put(entry.from.distance, entry.to.distance, entry.value)
     }
+    return res
+}
 
-    /** Convert a list of route names into a route id list */
-    private fun convertRoutePath(infra: RawInfra, routes: List<String>): StaticIdxList<Route> {
-        val res = mutableStaticIdxArrayListOf<Route>()
-        for (route in routes) res.add(infra.getRouteFromName(route))
-        return res
-    }
+/** Convert a list of route names into a route id list */
+fun convertRoutePath(infra: RawInfra, routes: List<String>): StaticIdxList<Route> {
+    val res = mutableStaticIdxArrayListOf<Route>()
+    for (route in routes) res.add(infra.getRouteFromName(route))
+    return res
 }
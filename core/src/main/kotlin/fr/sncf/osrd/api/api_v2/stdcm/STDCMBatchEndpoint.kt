@@ -0,0 +1,173 @@
+package fr.sncf.osrd.api.api_v2.stdcm
+
+import fr.sncf.osrd.api.ExceptionHandler
+import fr.sncf.osrd.api.FullInfra
+import fr.sncf.osrd.api.InfraManager
+import fr.sncf.osrd.api.api_v2.pathfinding.runPathfindingBlockPostProcessing
+import fr.sncf.osrd.api.api_v2.standalone_sim.parseRawRollingStock
+import fr.sncf.osrd.api.api_v2.timetable.TimetableStore
+import fr.sncf.osrd.conflicts.IncrementalConflictDetector
+import fr.sncf.osrd.graph.Pathfinding
+import fr.sncf.osrd.reporting.exceptions.OSRDError
+import fr.sncf.osrd.reporting.warnings.DiagnosticRecorderImpl
+import fr.sncf.osrd.stdcm.graph.STDCMPreprocessing
+import fr.sncf.osrd.stdcm.graph.findPath
+import fr.sncf.osrd.stdcm.preprocessing.implementation.makeBlockAvailability
+import fr.sncf.osrd.train.RollingStock
+import java.time.Duration.between
+import java.time.Duration.ofMillis
+import java.time.ZonedDateTime
+import org.slf4j.Logger
+import org.slf4j.LoggerFactory
+import org.takes.Request
+import org.takes.Response
+import org.takes.Take
+import org.takes.rq.RqPrint
+import org.takes.rs.RsJson
+import org.takes.rs.RsText
+import org.takes.rs.RsWithBody
+import org.takes.rs.RsWithStatus
+
+private val stdcmBatchLogger: Logger = LoggerFactory.getLogger("STDCMBatch")
+
+/**
+ * Runs several STDCM queries for the same train and timetable. The rolling stock, the timetable
+ * conflict detectors, the pathfinding constraints, the heuristics and the block simulations are
+ * shared by all queries, which then run in parallel.
+ */
+class STDCMBatchEndpoint(
+    private val infraManager: InfraManager,
+    private val timetableStore: TimetableStore,
+) : Take {
+    override fun act(req: Request): Response {
+        val recorder = DiagnosticRecorderImpl(false)
+        return try {
+            // Parse request input
+            val body = RqPrint(req).printBody()
+            val request =
+                stdcmBatchRequestAdapter.fromJson(body)
+                    ?: return RsWithStatus(RsText("missing request body"), 400)
+            stdcmBatchLogger.info("Batch request received: ${request.queries.size} queries")
+
+            val infra = infraManager.getInfra(request.infra, request.expectedVersion, recorder)
+            val results =
+                if (request.queries.isEmpty()) listOf()
+                else {
+                    val context = STDCMBatchContext.make(infra, request, timetableStore)
+                    request.queries.parallelStream().map { runQuery(context, it) }.toList()
+                }
+            RsJson(RsWithBody(stdcmBatchResponseAdapter.toJson(STDCMBatchResponse(results))))
+        } catch (ex: Throwable) {
+            ExceptionHandler.handle(ex)
+        }
+    }
+
+    /** Runs a single query of the batch. Errors only fail the query they come from. */
+    private fun runQuery(context: STDCMBatchContext, query: STDCMQuery): STDCMResponseV2 {
+        return try {
+            val request = context.request
+            val steps = parseSteps(context.infra, query.pathItems, context.referenceTime)
+            val timeStep = request.timeStep!!.seconds
+            val startTime = between(context.referenceTime, query.startTime).toMillis() / 1000.0
+            val path =
+                findPath(
+                    context.infra,
+                    context.rollingStock,
+                    request.comfort,
+                    startTime,
+                    steps,
+                    makeBlockAvailability(
+                        context.spacingConflictDetector,
+                        steps,
+                        gridMarginBeforeTrain = request.timeGapBefore.seconds,
+                        gridMarginAfterTrain = request.timeGapAfter.seconds,
+                        timeStep = timeStep
+                    ),
+                    timeStep,
+                    query.maximumDepartureDelay!!.seconds,
+                    query.maximumRunTime.seconds,
+                    request.speedLimitTag,
+                    parseMarginValue(query.margin),
+                    Pathfinding.TIMEOUT,
+                    context.preprocessing
+                ) ?: return PathNotFound()
+            val pathfindingResponse = runPathfindingBlockPostProcessing(context.infra, path.blocks)
+            val simulationResponse =
+                buildSimResponse(
+                    context.infra,
+                    path,
+                    context.rollingStock,
+                    request.speedLimitTag,
+                    request.comfort
+                )
+            checkForConflicts(
+                context.timetableConflictDetector,
+                simulationResponse,
+                path.departureTime
+            )
+            val departureTime =
+                context.referenceTime.plus(ofMillis((path.departureTime * 1000).toLong()))
+            STDCMSuccess(simulationResponse, pathfindingResponse, departureTime)
+        } catch (ex: OSRDError) {
+            STDCMQueryFailed(ex)
+        } catch (ex: AssertionError) {
+            STDCMQueryFailed(OSRDError.newAssertionWrapper(ex))
+        } catch (ex: Exception) {
+            STDCMQueryFailed(OSRDError.newUnknownError(ex))
+        }
+    }
+}
+
+/**
+ * Inputs shared by all the queries of a batch. Times are expressed in seconds since the reference
+ * time of the conflict detectors, see [makeSTDCMConflictDetectors].
+ */
+private class STDCMBatchContext(
+    val request: STDCMBatchRequest,
+    val infra: FullInfra,
+    val rollingStock: RollingStock,
+    val referenceTime: ZonedDateTime,
+    val spacingConflictDetector: IncrementalConflictDetector,
+    val timetableConflictDetector: IncrementalConflictDetector,
+    val preprocessing: STDCMPreprocessing,
+) {
+    companion object {
+        fun make(
+            infra: FullInfra,
+            request: STDCMBatchRequest,
+            timetableStore: TimetableStore
+        ): STDCMBatchContext {
+            val rollingStock =
+                parseRawRollingStock(
+                    request.rollingStock,
+                    request.rollingStockLoadingGauge,
+                    request.rollingStockSupportedSignalingSystems
+                )
+            // work schedules are relative to the earliest start time of the queries
+            val startTime = request.queries.minBy { it.startTime.toInstant() }.startTime
+            val detectors =
+                makeSTDCMConflictDetectors(
+                    infra,
+                    request.infra,
+                    request.expectedVersion,
+                    timetableStore,
+                    request.timetableId,
+                    request.timetableVersion,
+                    request.trainsRequirements,
+                    request.workSchedules,
+                    startTime,
+                    request.timeGapBefore,
+                    request.timeGapAfter
+                )
+            return STDCMBatchContext(
+                request,
+                infra,
+                rollingStock,
+                detectors.referenceTime,
+                detectors.spacingConflictDetector,
+                detectors.timetableConflictDetector,
+                STDCMPreprocessing(infra, rollingStock)
+            )
+        }
+    }
+}
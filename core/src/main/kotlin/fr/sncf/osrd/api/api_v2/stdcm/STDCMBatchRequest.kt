@@ -0,0 +1,78 @@
+package fr.sncf.osrd.api.api_v2.stdcm
+
+import com.squareup.moshi.Json
+import com.squareup.moshi.JsonAdapter
+import com.squareup.moshi.Moshi
+import com.squareup.moshi.kotlin.reflect.KotlinJsonAdapterFactory
+import fr.sncf.osrd.api.api_v2.WorkSchedule
+import fr.sncf.osrd.api.api_v2.conflicts.TrainRequirementsRequest
+import fr.sncf.osrd.api.api_v2.standalone_sim.MarginValue
+import fr.sncf.osrd.api.api_v2.standalone_sim.MarginValueAdapter
+import fr.sncf.osrd.api.api_v2.standalone_sim.PhysicsRollingStockModel
+import fr.sncf.osrd.railjson.schema.rollingstock.Comfort
+import fr.sncf.osrd.railjson.schema.rollingstock.RJSLoadingGaugeType
+import fr.sncf.osrd.railjson.schema.rollingstock.RJSRollingResistance
+import fr.sncf.osrd.utils.json.UnitAdapterFactory
+import fr.sncf.osrd.utils.units.Duration
+import fr.sncf.osrd.utils.units.TimeDelta
+import fr.sncf.osrd.utils.units.seconds
+import java.time.ZonedDateTime
+
+/**
+ * Several independent STDCM queries for the same train, on the same timetable. Everything but the
+ * queries is shared, so the preprocessing is only done once for the whole batch.
+ */
+class STDCMBatchRequest(
+    var infra: String,
+    @Json(name = "expected_version") var expectedVersion: String,
+
+    // Rolling stock
+    @Json(name = "rolling_stock") val rollingStock: PhysicsRollingStockModel,
+    @Json(name = "rolling_stock_loading_gauge") val rollingStockLoadingGauge: RJSLoadingGaugeType,
+    @Json(name = "rolling_stock_supported_signaling_systems")
+    val rollingStockSupportedSignalingSystems: List<String>,
+
+    // Timetable
+    @Json(name = "trains_requirements")
+    val trainsRequirements: Map<Long, TrainRequirementsRequest> = mapOf(),
+    /// Timetable held by core whose trains are added to trains_requirements, if any
+    @Json(name = "timetable_id") val timetableId: Long? = null,
+    @Json(name = "timetable_version") val timetableVersion: String? = null,
+    /// Work schedule times are relative to the earliest start time of the queries
+    @Json(name = "work_schedules") val workSchedules: Collection<WorkSchedule> = listOf(),
+
+    // Simulation inputs
+    val comfort: Comfort,
+    @Json(name = "speed_limit_tag") val speedLimitTag: String?,
+
+    // STDCM search parameters
+    /// Numerical integration time step. Defaults to 2s.
+    @Json(name = "time_step") val timeStep: Duration? = 2.seconds,
+    /// Gap between the created train and previous trains in milliseconds.
+    @Json(name = "time_gap_before") val timeGapBefore: TimeDelta,
+    /// Gap between the created train and following trains in milliseconds.
+    @Json(name = "time_gap_after") val timeGapAfter: TimeDelta,
+    val queries: List<STDCMQuery>,
+)
+
+/** The part of an STDCM request which is specific to a single query of a batch */
+class STDCMQuery(
+    /// List of waypoints. Each waypoint is a list of track offsets
+    @Json(name = "path_items") val pathItems: List<STDCMPathItem>,
+    @Json(name = "start_time") val startTime: ZonedDateTime,
+    /// Maximum departure delay. Defaults to 2h.
+    @Json(name = "maximum_departure_delay")
+    val maximumDepartureDelay: Duration? = (3600 * 2).seconds,
+    @Json(name = "maximum_run_time") val maximumRunTime: Duration,
+    /// Margin to apply to the whole train.
+    val margin: MarginValue,
+)
+
+val stdcmBatchRequestAdapter: JsonAdapter<STDCMBatchRequest> =
+    Moshi.Builder()
+        .add(MarginValueAdapter())
+        .add(RJSRollingResistance.adapter)
+        .addLast(UnitAdapterFactory())
+        .addLast(KotlinJsonAdapterFactory())
+        .build()
+        .adapter(STDCMBatchRequest::class.java)
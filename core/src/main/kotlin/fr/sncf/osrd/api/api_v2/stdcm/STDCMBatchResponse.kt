@@ -0,0 +1,34 @@
+package fr.sncf.osrd.api.api_v2.stdcm
+
+import com.squareup.moshi.JsonAdapter
+import com.squareup.moshi.Moshi
+import com.squareup.moshi.adapters.PolymorphicJsonAdapterFactory
+import com.squareup.moshi.kotlin.reflect.KotlinJsonAdapterFactory
+import fr.sncf.osrd.api.api_v2.pathfinding.polymorphicPathfindingResponseAdapter
+import fr.sncf.osrd.api.api_v2.standalone_sim.polymorphicElectricalProfileAdapter
+import fr.sncf.osrd.api.api_v2.standalone_sim.polymorphicSimulationResponseAdapter
+import fr.sncf.osrd.api.api_v2.standalone_sim.polymorphicSpeedLimitSourceAdapter
+import fr.sncf.osrd.reporting.exceptions.OSRDError
+import fr.sncf.osrd.utils.json.UnitAdapterFactory
+
+/** Results of a batch, in the order of the queries */
+class STDCMBatchResponse(val results: List<STDCMResponseV2>)
+
+/** A single query of a batch failed, the other queries are unaffected */
+class STDCMQueryFailed(val error: OSRDError) : STDCMResponseV2
+
+val polymorphicSTDCMBatchResultAdapter: PolymorphicJsonAdapterFactory<STDCMResponseV2> =
+    polymorphicSTDCMResponseAdapter.withSubtype(STDCMQueryFailed::class.java, "query_failed")
+
+val stdcmBatchResponseAdapter: JsonAdapter<STDCMBatchResponse> =
+    Moshi.Builder()
+        .add(OSRDError::class.java, OSRDError.adapter)
+        .addLast(polymorphicSTDCMBatchResultAdapter)
+        .addLast(polymorphicSimulationResponseAdapter)
+        .addLast(polymorphicElectricalProfileAdapter)
+        .addLast(polymorphicSpeedLimitSourceAdapter)
+        .addLast(polymorphicPathfindingResponseAdapter)
+        .addLast(UnitAdapterFactory())
+        .addLast(KotlinJsonAdapterFactory())
+        .build()
+        .adapter(STDCMBatchResponse::class.java)
@@ -0,0 +1,124 @@
+package fr.sncf.osrd.api.api_v2.stdcm
+
+import fr.sncf.osrd.api.FullInfra
+import fr.sncf.osrd.api.api_v2.WorkSchedule
+import fr.sncf.osrd.api.api_v2.conflicts.TrainRequirementsRequest
+import fr.sncf.osrd.api.api_v2.convertWorkScheduleCollection
+import fr.sncf.osrd.api.api_v2.parseTrainsRequirements
+import fr.sncf.osrd.api.api_v2.timetable.TimetableStore
+import fr.sncf.osrd.conflicts.IncrementalConflictDetector
+import fr.sncf.osrd.conflicts.Requirements
+import fr.sncf.osrd.conflicts.incrementalConflictDetectorFromRequirements
+import fr.sncf.osrd.stdcm.preprocessing.implementation.makeSpacingConflictDetector
+import fr.sncf.osrd.utils.units.TimeDelta
+import java.time.Duration.between
+import java.time.ZonedDateTime
+
+/**
+ * The conflict detectors of STDCM requests: the spacing detector gives block availability, grid
+ * margins included, and the timetable detector checks the conflicts of the resulting train. Times
+ * are expressed in seconds since [referenceTime].
+ */
+class STDCMConflictDetectors(
+    val referenceTime: ZonedDateTime,
+    val spacingConflictDetector: IncrementalConflictDetector,
+    val timetableConflictDetector: IncrementalConflictDetector,
+)
+
+/** What the detectors of a resident timetable version depend on, besides the version itself */
+private data class STDCMConflictDetectorsKey(
+    val infra: String,
+    val infraVersion: String,
+    // work schedules, relative to the reference time of the timetable
+    val workSchedules: List<WorkSchedule>,
+    val gridMarginBeforeTrain: TimeDelta,
+    val gridMarginAfterTrain: TimeDelta,
+)
+
+/**
+ * Returns the conflict detectors of an STDCM request. Work schedules are relative to [startTime].
+ *
+ * When the request refers to a timetable held by core, and doesn't send trains of its own, the
+ * detectors are built from the resident requirements of the timetable version. They are built once
+ * per version, work schedules and grid margins, and shared by later requests: times are then
+ * relative to the reference time of the timetable, whatever the start time of the request.
+ */
+fun makeSTDCMConflictDetectors(
+    infra: FullInfra,
+    infraId: String,
+    infraVersion: String,
+    timetableStore: TimetableStore,
+    timetableId: Long?,
+    timetableVersion: String?,
+    trainsRequirements: Map<Long, TrainRequirementsRequest>,
+    workSchedules: Collection<WorkSchedule>,
+    startTime: ZonedDateTime,
+    gridMarginBeforeTrain: TimeDelta,
+    gridMarginAfterTrain: TimeDelta,
+): STDCMConflictDetectors {
+    if (timetableId == null || trainsRequirements.isNotEmpty()) {
+        val requestTrainsRequirements =
+            timetableStore.resolveTrainsRequirements(
+                timetableId,
+                timetableVersion,
+                trainsRequirements
+            )
+        val requirements = parseTrainsRequirements(requestTrainsRequirements, startTime)
+        val workSchedulesRequirements = convertWorkScheduleCollection(infra.rawInfra, workSchedules)
+        return buildDetectors(
+            startTime,
+            requirements + workSchedulesRequirements,
+            gridMarginBeforeTrain,
+            gridMarginAfterTrain
+        )
+    }
+
+    val timetable = timetableStore.get(timetableId, timetableVersion)
+    val converted = timetable.converted
+    val referenceTime = converted.referenceTime ?: startTime
+    val timeToAdd = TimeDelta(between(referenceTime, startTime).toMillis())
+    val shiftedWorkSchedules =
+        workSchedules.map {
+            it.copy(startTime = it.startTime + timeToAdd, endTime = it.endTime + timeToAdd)
+        }
+    val key =
+        STDCMConflictDetectorsKey(
+            infraId,
+            infraVersion,
+            shiftedWorkSchedules,
+            gridMarginBeforeTrain,
+            gridMarginAfterTrain
+        )
+    return timetable.getOrDerive(key) {
+        val workSchedulesRequirements =
+            convertWorkScheduleCollection(infra.rawInfra, shiftedWorkSchedules)
+        buildDetectors(
+            referenceTime,
+            converted.requirements + workSchedulesRequirements,
+            gridMarginBeforeTrain,
+            gridMarginAfterTrain
+        )
+    }
+}
+
+private fun buildDetectors(
+    referenceTime: ZonedDateTime,
+    requirements: List<Requirements>,
+    gridMarginBeforeTrain: TimeDelta,
+    gridMarginAfterTrain: TimeDelta,
+): STDCMConflictDetectors {
+    // grid margins are applied in place, requirements may be shared with the timetable
+    val spacingRequirements =
+        requirements.flatMap { it.spacingRequirements }.map { it.withAddedTime(0.0) }
+    val spacingConflictDetector =
+        makeSpacingConflictDetector(
+            spacingRequirements,
+            gridMarginBeforeTrain = gridMarginBeforeTrain.seconds,
+            gridMarginAfterTrain = gridMarginAfterTrain.seconds,
+        )
+    return STDCMConflictDetectors(
+        referenceTime,
+        spacingConflictDetector,
+        incrementalConflictDetectorFromRequirements(requirements)
+    )
+}
@@ -8,6 +8,7 @@ import fr.sncf.osrd.api.api_v2.*
 import fr.sncf.osrd.api.api_v2.pathfinding.findWaypointBlocks
 import fr.sncf.osrd.api.api_v2.pathfinding.runPathfindingBlockPostProcessing
 import fr.sncf.osrd.api.api_v2.standalone_sim.*
+import fr.sncf.osrd.api.api_v2.timetable.TimetableStore
 import fr.sncf.osrd.conflicts.*
 import fr.sncf.osrd.envelope_sim.allowances.utils.AllowanceValue
 import fr.sncf.osrd.envelope_sim.allowances.utils.AllowanceValue.Percentage
@@ -54,7 +55,10 @@ import org.takes.rs.RsText
 import org.takes.rs.RsWithBody
 import org.takes.rs.RsWithStatus
 
-class STDCMEndpointV2(private val infraManager: InfraManager) : Take {
+class STDCMEndpointV2(
+    private val infraManager: InfraManager,
+    private val timetableStore: TimetableStore,
+) : Take {
     @Throws(OSRDError::class)
     override fun act(req: Request): Response {
         val recorder = DiagnosticRecorderImpl(false)
@@ -85,14 +89,24 @@ class STDCMEndpointV2(private val infraManager: InfraManager) : Take {
                     request.rollingStockLoadingGauge,
                     request.rollingStockSupportedSignalingSystems
                 )
-            val trainsRequirements =
-                parseTrainsRequirements(request.trainsRequirements, request.startTime)
-                    .toMutableList()
-            val convertedWorkSchedules =
-                convertWorkScheduleCollection(infra.rawInfra, request.workSchedules)
-            trainsRequirements.add(convertedWorkSchedules)
-            val spacingRequirements = trainsRequirements.flatMap { it.spacingRequirements }
-            val steps = parseSteps(infra, request.pathItems, request.startTime)
+            // the timetable requirements and their detectors are resident, for a given version
+            val detectors =
+                makeSTDCMConflictDetectors(
+                    infra,
+                    request.infra,
+                    request.expectedVersion,
+                    timetableStore,
+                    request.timetableId,
+                    request.timetableVersion,
+                    request.trainsRequirements,
+                    request.workSchedules,
+                    request.startTime,
+                    request.timeGapBefore,
+                    request.timeGapAfter
+                )
+            val referenceTime = detectors.referenceTime
+            val steps = parseSteps(infra, request.pathItems, referenceTime)
+            val timeStep = request.timeStep!!.seconds
 
             // Run the STDCM pathfinding
             val path =
@@ -100,16 +114,16 @@ class STDCMEndpointV2(private val infraManager: InfraManager) : Take {
                     infra,
                     rollingStock,
                     request.comfort,
-                    0.0,
+                    between(referenceTime, request.startTime).toMillis() / 1000.0,
                     steps,
                     makeBlockAvailability(
-                        spacingRequirements,
+                        detectors.spacingConflictDetector,
                         steps,
                         gridMarginBeforeTrain = request.timeGapBefore.seconds,
                         gridMarginAfterTrain = request.timeGapAfter.seconds,
-                        timeStep = request.timeStep!!.seconds
+                        timeStep = timeStep
                     ),
-                    request.timeStep.seconds,
+                    timeStep,
                     request.maximumDepartureDelay!!.seconds,
                     request.maximumRunTime.seconds,
                     request.speedLimitTag,
@@ -126,81 +140,85 @@ class STDCMEndpointV2(private val infraManager: InfraManager) : Take {
                 buildSimResponse(infra, path, rollingStock, request.speedLimitTag, request.comfort)
 
             // Check for conflicts
-            checkForConflicts(trainsRequirements, simulationResponse, path.departureTime)
+            checkForConflicts(
+                detectors.timetableConflictDetector,
+                simulationResponse,
+                path.departureTime
+            )
 
             val departureTime =
-                request.startTime.plus(ofMillis((path.departureTime * 1000).toLong()))
+                referenceTime.plus(ofMillis((path.departureTime * 1000).toLong()))
             val response = STDCMSuccess(simulationResponse, pathfindingResponse, departureTime)
             RsJson(RsWithBody(stdcmResponseAdapter.toJson(response)))
         } catch (ex: Throwable) {
             ExceptionHandler.handle(ex)
         }
     }
+}
 
-    /** Build the simulation part of the response */
-    private fun buildSimResponse(
-        infra: FullInfra,
-        path: STDCMResult,
-        rollingStock: RollingStock,
-        speedLimitTag: String?,
-        comfort: Comfort,
-    ): SimulationSuccess {
-        val reportTrain =
-            runScheduleMetadataExtractor(
-                path.envelope,
-                path.trainPath,
-                path.chunkPath,
-                infra,
-                infra.blockInfra.chunksToRoutes(infra.rawInfra, path.chunkPath.chunks),
-                rollingStock,
-                parseSimulationScheduleItems(path.stopResults),
-                listOf(),
-            )
-
-        // Lighter description of the same simulation result
-        val simpleReportTrain =
-            ReportTrain(
-                reportTrain.positions,
-                reportTrain.times,
-                reportTrain.speeds,
-                reportTrain.energyConsumption,
-                reportTrain.pathItemTimes
-            )
-        val speedLimits = computeMRSP(path.trainPath, rollingStock, false, speedLimitTag)
+/** Build the simulation part of the response */
+fun buildSimResponse(
+    infra: FullInfra,
+    path: STDCMResult,
+    rollingStock: RollingStock,
+    speedLimitTag: String?,
+    comfort: Comfort,
+): SimulationSuccess {
+    val reportTrain =
+        runScheduleMetadataExtractor(
+            path.envelope,
+            path.trainPath,
+            path.chunkPath,
+            infra,
+            infra.blockInfra.chunksToRoutes(infra.rawInfra, path.chunkPath.chunks),
+            rollingStock,
+            parseSimulationScheduleItems(path.stopResults),
+            listOf(),
+        )
 
-        // All simulations are the same for now
-        return SimulationSuccess(
-            base = simpleReportTrain,
-            provisional = simpleReportTrain,
-            finalOutput = reportTrain,
-            mrsp = makeMRSPResponse(speedLimits),
-            electricalProfiles = buildSTDCMElectricalProfiles(infra, path, rollingStock, comfort),
+    // Lighter description of the same simulation result
+    val simpleReportTrain =
+        ReportTrain(
+            reportTrain.positions,
+            reportTrain.times,
+            reportTrain.speeds,
+            reportTrain.energyConsumption,
+            reportTrain.pathItemTimes
         )
-    }
+    val speedLimits = computeMRSP(path.trainPath, rollingStock, false, speedLimitTag)
 
-    /** Build the electrical profiles from the path */
-    private fun buildSTDCMElectricalProfiles(
-        infra: FullInfra,
-        path: STDCMResult,
-        rollingStock: RollingStock,
-        comfort: Comfort
-    ): RangeValues<ElectricalProfileValue> {
-        val envelopeSimPath = EnvelopeTrainPath.from(infra.rawInfra, path.trainPath, null)
-        val electrificationMap =
-            envelopeSimPath.getElectrificationMap(
-                rollingStock.basePowerClass,
-                ImmutableRangeMap.of(),
-                rollingStock.powerRestrictions,
-                false
-            )
-        val curvesAndConditions = rollingStock.mapTractiveEffortCurves(electrificationMap, comfort)
-        val electrificationRanges =
-            ElectrificationRange.from(curvesAndConditions.conditions, electrificationMap)
-        return makeElectricalProfiles(electrificationRanges)
-    }
+    // All simulations are the same for now
+    return SimulationSuccess(
+        base = simpleReportTrain,
+        provisional = simpleReportTrain,
+        finalOutput = reportTrain,
+        mrsp = makeMRSPResponse(speedLimits),
+        electricalProfiles = buildSTDCMElectricalProfiles(infra, path, rollingStock, comfort),
+    )
+}
+
+/** Build the electrical profiles from the path */
+private fun buildSTDCMElectricalProfiles(
+    infra: FullInfra,
+    path: STDCMResult,
+    rollingStock: RollingStock,
+    comfort: Comfort
+): RangeValues<ElectricalProfileValue> {
+    val envelopeSimPath = EnvelopeTrainPath.from(infra.rawInfra, path.trainPath, null)
+    val electrificationMap =
+        envelopeSimPath.getElectrificationMap(
+            rollingStock.basePowerClass,
+            ImmutableRangeMap.of(),
+            rollingStock.powerRestrictions,
+            false
+        )
+    val curvesAndConditions = rollingStock.mapTractiveEffortCurves(electrificationMap, comfort)
+    val electrificationRanges =
+        ElectrificationRange.from(curvesAndConditions.conditions, electrificationMap)
+    return makeElectricalProfiles(electrificationRanges)
 }
 
-private fun parseSteps(
+fun parseSteps(
     infra: FullInfra,
     pathItems: List<STDCMPathItem>,
     startTime: ZonedDateTime
@@ -235,7 +253,7 @@ private fun parseSteps(
         .toList()
 }
 
-private fun parseMarginValue(margin: MarginValue): AllowanceValue? {
+fun parseMarginValue(margin: MarginValue): AllowanceValue? {
     return when (margin) {
         is MarginValue.MinPer100Km -> {
             TimePerDistance(margin.value)
@@ -261,8 +279,8 @@ private fun parseSimulationScheduleItems(
 }
 
 /** Sanity check, we assert that the result is not conflicting with the scheduled timetable */
-private fun checkForConflicts(
-    timetableTrainRequirements: List<Requirements>,
+fun checkForConflicts(
+    conflictDetector: IncrementalConflictDetector,
     simResult: SimulationSuccess,
     departureTime: Double
 ) {
@@ -275,7 +293,6 @@ private fun checkForConflicts(
                 it.endTime + departureTime.seconds
             )
         }
-    val conflictDetector = incrementalConflictDetectorFromRequirements(timetableTrainRequirements)
     val spacingRequirements = parseSpacingRequirements(newTrainSpacingRequirement)
     val conflicts = conflictDetector.checkConflicts(spacingRequirements, listOf())
     assert(conflicts.isEmpty()) { "STDCM result is conflicting with the scheduled timetable" }
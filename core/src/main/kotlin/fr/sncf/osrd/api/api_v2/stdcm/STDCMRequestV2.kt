@@ -32,7 +32,11 @@ class STDCMRequestV2(
     @Json(name = "rolling_stock_loading_gauge") val rollingStockLoadingGauge: RJSLoadingGaugeType,
     @Json(name = "rolling_stock_supported_signaling_systems")
     val rollingStockSupportedSignalingSystems: List<String>,
-    @Json(name = "trains_requirements") val trainsRequirements: Map<Long, TrainRequirementsRequest>,
+    @Json(name = "trains_requirements")
+    val trainsRequirements: Map<Long, TrainRequirementsRequest> = mapOf(),
+    /// Timetable held by core whose trains are added to trains_requirements, if any
+    @Json(name = "timetable_id") val timetableId: Long? = null,
+    @Json(name = "timetable_version") val timetableVersion: String? = null,
 
     // Simulation inputs
     val comfort: Comfort,
@@ -0,0 +1,128 @@
+package fr.sncf.osrd.api.api_v2.timetable
+
+import fr.sncf.osrd.api.ConflictDetectionEndpoint.ConflictDetectionResult.Conflict
+import fr.sncf.osrd.api.api_v2.conflicts.TrainRequirementsRequest
+import fr.sncf.osrd.api.api_v2.parseTrainsRequirements
+import fr.sncf.osrd.conflicts.IncrementalConflictDetector
+import fr.sncf.osrd.conflicts.Requirements
+import fr.sncf.osrd.conflicts.incrementalConflictDetectorFromRequirements
+import fr.sncf.osrd.conflicts.mergeConflicts
+import fr.sncf.osrd.reporting.exceptions.ErrorType
+import fr.sncf.osrd.reporting.exceptions.OSRDError
+import java.time.ZonedDateTime
+
+const val DEFAULT_MAX_TIMETABLES = 64
+const val MAX_DERIVED_VALUES = 8
+
+/** One version of a timetable, described by the requirements of its trains */
+class TimetableRequirements(
+    val version: String,
+    val trainsRequirements: Map<Long, TrainRequirementsRequest>,
+) {
+    /** The conflict detector of this version, built on first use and shared by later requests */
+    val converted: ConvertedTimetable by lazy { ConvertedTimetable(trainsRequirements) }
+
+    // values derived from this version by requests, the least recently used are dropped
+    private val derivedValues =
+        object : LinkedHashMap<Any, Any>(16, 0.75f, true) {
+            override fun removeEldestEntry(eldest: MutableMap.MutableEntry<Any, Any>?): Boolean {
+                return size > MAX_DERIVED_VALUES
+            }
+        }
+
+    /**
+     * Returns a value derived from this version, such as the conflict detectors of STDCM requests,
+     * building it on first use. Values are dropped along with the version: the next version builds
+     * them again. Concurrent requests wait for a value being built, rather than building it again.
+     */
+    @Synchronized
+    fun <T : Any> getOrDerive(key: Any, derive: () -> T): T {
+        @Suppress("UNCHECKED_CAST") return derivedValues.getOrPut(key, derive) as T
+    }
+}
+
+/**
+ * The requirements of the trains of a timetable version, converted once, along with the conflict
+ * detector built from them. Times are relative to [referenceTime].
+ */
+class ConvertedTimetable(trainsRequirements: Map<Long, TrainRequirementsRequest>) {
+    /** The earliest start time of the trains, null if the timetable has no train */
+    val referenceTime: ZonedDateTime? =
+        trainsRequirements.values.minByOrNull { it.startTime }?.startTime
+
+    val requirements: List<Requirements> =
+        if (referenceTime == null) listOf()
+        else parseTrainsRequirements(trainsRequirements, referenceTime)
+
+    val detector: IncrementalConflictDetector =
+        incrementalConflictDetectorFromRequirements(requirements)
+
+    /** The conflicts between the trains of the timetable */
+    val conflicts: List<Conflict> by lazy { mergeConflicts(detector.checkConflicts()) }
+}
+
+/**
+ * Keeps the requirements of timetables in memory, so that requests about a timetable only need to
+ * send what changed since a known version. Only the latest version of each timetable is kept, and
+ * the least recently used timetables are dropped past [maxTimetables].
+ *
+ * Each worker has its own store: callers must be ready to send the full timetable again when a
+ * version isn't known.
+ */
+class TimetableStore(private val maxTimetables: Int = DEFAULT_MAX_TIMETABLES) {
+    private val timetables =
+        object : LinkedHashMap<Long, TimetableRequirements>(16, 0.75f, true) {
+            override fun removeEldestEntry(
+                eldest: MutableMap.MutableEntry<Long, TimetableRequirements>?
+            ): Boolean {
+                return size > maxTimetables
+            }
+        }
+
+    /** Returns the given version of a timetable, or throws if this version isn't known */
+    @Synchronized
+    fun get(timetableId: Long, version: String?): TimetableRequirements {
+        val timetable = timetables[timetableId]
+        if (timetable == null || version == null || timetable.version != version) {
+            val error = OSRDError(ErrorType.TimetableUnknownVersion)
+            error.context["timetable_id"] = timetableId
+            error.context["version"] = version
+            throw error
+        }
+        return timetable
+    }
+
+    /**
+     * Creates a new version of a timetable, by removing and adding or replacing trains from
+     * [baseVersion]. When [baseVersion] is null, the new version starts from an empty timetable.
+     */
+    @Synchronized
+    fun update(
+        timetableId: Long,
+        baseVersion: String?,
+        version: String,
+        upsertedTrains: Map<Long, TrainRequirementsRequest>,
+        removedTrains: Collection<Long>,
+    ): TimetableRequirements {
+        val trains = HashMap<Long, TrainRequirementsRequest>()
+        if (baseVersion != null) trains.putAll(get(timetableId, baseVersion).trainsRequirements)
+        for (trainId in removedTrains) trains.remove(trainId)
+        trains.putAll(upsertedTrains)
+        val timetable = TimetableRequirements(version, trains)
+        timetables[timetableId] = timetable
+        return timetable
+    }
+
+    /**
+     * Returns the trains of a request: the trains of the given timetable version if any, along with
+     * the trains sent with the request, which take precedence.
+     */
+    fun resolveTrainsRequirements(
+        timetableId: Long?,
+        timetableVersion: String?,
+        trainsRequirements: Map<Long, TrainRequirementsRequest>,
+    ): Map<Long, TrainRequirementsRequest> {
+        if (timetableId == null) return trainsRequirements
+        return get(timetableId, timetableVersion).trainsRequirements + trainsRequirements
+    }
+}
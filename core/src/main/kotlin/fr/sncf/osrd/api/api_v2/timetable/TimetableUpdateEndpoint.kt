@@ -0,0 +1,40 @@
+package fr.sncf.osrd.api.api_v2.timetable
+
+import fr.sncf.osrd.api.ExceptionHandler
+import org.takes.Request
+import org.takes.Response
+import org.takes.Take
+import org.takes.rq.RqPrint
+import org.takes.rs.RsJson
+import org.takes.rs.RsText
+import org.takes.rs.RsWithBody
+import org.takes.rs.RsWithStatus
+
+/**
+ * Applies changes to a timetable held by core, so that later conflict detection and STDCM requests
+ * can refer to it instead of sending the requirements of all its trains.
+ */
+class TimetableUpdateEndpoint(private val timetableStore: TimetableStore) : Take {
+    override fun act(req: Request?): Response {
+        return try {
+            val body = RqPrint(req).printBody()
+            val request =
+                timetableUpdateRequestAdapter.fromJson(body)
+                    ?: return RsWithStatus(RsText("missing request body"), 400)
+
+            val timetable =
+                timetableStore.update(
+                    request.timetableId,
+                    request.baseVersion,
+                    request.version,
+                    request.upsertedTrains,
+                    request.removedTrains
+                )
+            val response =
+                TimetableUpdateResponse(timetable.version, timetable.trainsRequirements.size)
+            RsJson(RsWithBody(timetableUpdateResponseAdapter.toJson(response)))
+        } catch (ex: Throwable) {
+            ExceptionHandler.handle(ex)
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package fr.sncf.osrd.api.api_v2.timetable
+
+import com.squareup.moshi.Json
+import com.squareup.moshi.JsonAdapter
+import com.squareup.moshi.Moshi
+import com.squareup.moshi.kotlin.reflect.KotlinJsonAdapterFactory
+import fr.sncf.osrd.api.api_v2.conflicts.TrainRequirementsRequest
+import fr.sncf.osrd.utils.json.UnitAdapterFactory
+
+class TimetableUpdateRequest(
+    /** Timetable ID. */
+    @Json(name = "timetable_id") val timetableId: Long,
+    /**
+     * Version of the timetable the changes apply to. When null, the changes apply to an empty
+     * timetable.
+     */
+    @Json(name = "base_version") val baseVersion: String? = null,
+    /** Version of the timetable once the changes are applied. */
+    val version: String,
+    /** Map of train id -> train requirements, for trains which are added or replaced. */
+    @Json(name = "upserted_trains")
+    val upsertedTrains: Map<Long, TrainRequirementsRequest> = mapOf(),
+    /** Ids of the trains which are removed from the timetable. */
+    @Json(name = "removed_trains") val removedTrains: Collection<Long> = listOf(),
+)
+
+class TimetableUpdateResponse(
+    /** Version of the timetable now held by core. */
+    val version: String,
+    /** Number of trains in this version of the timetable. */
+    @Json(name = "train_count") val trainCount: Int,
+)
+
+val timetableUpdateRequestAdapter: JsonAdapter<TimetableUpdateRequest> =
+    Moshi.Builder()
+        .addLast(UnitAdapterFactory())
+        .addLast(KotlinJsonAdapterFactory())
+        .build()
+        .adapter(TimetableUpdateRequest::class.java)
+
+val timetableUpdateResponseAdapter: JsonAdapter<TimetableUpdateResponse> =
+    Moshi.Builder()
+        .addLast(KotlinJsonAdapterFactory())
+        .build()
+        .adapter(TimetableUpdateResponse::class.java)
@@ -215,6 +215,14 @@ fun runPathfinding(
     }
     val constraints = initConstraints(infra, rollingStocks!!)
 
+    // Without any effective constraint, the contraction hierarchy gives the same shortest paths
+    val routing = UnconstrainedRouting.get(infra)
+    if (routing != null && routing.isUnconstrained(constraints)) {
+        val mrspBuilder = CachedBlockMRSPBuilder(infra.rawInfra, infra.blockInfra, null)
+        val path = routing.findPath(waypoints, mrspBuilder)
+        if (path != null) return path
+    }
+
     // TODO: add the rolling stock global speed limit to the request
     val remainingDistanceEstimators =
         makeHeuristics(infra, waypoints, DEFAULT_MAX_ROLLING_STOCK_SPEED)
@@ -223,90 +231,55 @@ fun runPathfinding(
     return computePaths(infra, waypoints, constraints, remainingDistanceEstimators, timeout)
 }
 
-/** Initialize the heuristics */
+/**
+ * Initialize the heuristics, from the landmark lower bounds of the distances to the next steps.
+ * Locations from which the next steps can't be reached are estimated at infinity, and aren't
+ * explored at all.
+ */
 fun makeHeuristics(
     infra: FullInfra,
     waypoints: List<Collection<PathfindingEdgeLocationId<Block>>>,
     rollingStockMaxSpeed: Double,
 ): ArrayList<AStarHeuristicId<Block>> {
-    // Compute the minimum distance between steps
-    val stepMinDistance = Array(waypoints.size - 1) { 0.meters }
+    val landmarkDistances = LandmarkDistances.from(infra.blockInfra, infra.rawInfra)
+
+    // Compute the minimum distance between steps, then its reversed cumulative sum
+    val stepMinDistance = LongArray(waypoints.size - 1)
     for (i in 0 until waypoints.size - 2) {
         stepMinDistance[i] =
-            minDistanceBetweenSteps(
-                infra.blockInfra,
-                infra.rawInfra,
-                waypoints[i + 1],
-                waypoints[i + 2]
-            )
+            waypoints[i + 1].minOfOrNull {
+                landmarkDistances.lowerBound(it.edge, it.offset, waypoints[i + 2])
+            } ?: Long.MAX_VALUE
     }
-
-    // Reversed cumulative sum
     for (i in stepMinDistance.size - 2 downTo 0) {
-        stepMinDistance[i] += stepMinDistance[i + 1]
+        stepMinDistance[i] = saturatedSum(stepMinDistance[i], stepMinDistance[i + 1])
     }
 
     // Setup estimators foreach intermediate steps
     val remainingDistanceEstimators = ArrayList<AStarHeuristicId<Block>>()
     for (i in 0 until waypoints.size - 1) {
-        val remainingDistanceEstimator =
-            RemainingDistanceEstimator(
-                infra.blockInfra,
-                infra.rawInfra,
-                waypoints[i + 1],
-                stepMinDistance[i]
-            )
+        val targets = waypoints[i + 1]
+        val nextStepsDistance = stepMinDistance[i]
 
         // Now that the cost function is an approximation of the remaining time,
         // we need to return the smallest possible remaining time here
-        remainingDistanceEstimators.add { index, element ->
-            remainingDistanceEstimator.apply(index, element).meters / rollingStockMaxSpeed
+        remainingDistanceEstimators.add { block, offset ->
+            val distance =
+                saturatedSum(
+                    landmarkDistances.lowerBound(block, offset, targets),
+                    nextStepsDistance
+                )
+            if (distance == Long.MAX_VALUE) Double.POSITIVE_INFINITY
+            else distance / 1000.0 / rollingStockMaxSpeed
         }
     }
     return remainingDistanceEstimators
 }
 
-/** Initialize the heuristics */
-fun makeHeuristicsForPathfindingEdges(
-    infra: FullInfra,
-    waypoints: List<Collection<PathfindingEdgeLocationId<Block>>>,
-    rollingStockMaxSpeed: Double,
-): ArrayList<AStarHeuristic<PathfindingEdge, Block>> {
-    // Compute the minimum distance between steps
-    val stepMinDistance = Array(waypoints.size - 1) { 0.meters }
-    for (i in 0 until waypoints.size - 2) {
-        stepMinDistance[i] =
-            minDistanceBetweenSteps(
-                infra.blockInfra,
-                infra.rawInfra,
-                waypoints[i + 1],
-                waypoints[i + 2]
-            )
-    }
-
-    // Reversed cumulative sum
-    for (i in stepMinDistance.size - 2 downTo 0) {
-        stepMinDistance[i] += stepMinDistance[i + 1]
-    }
-
-    // Setup estimators foreach intermediate steps
-    val remainingDistanceEstimators = ArrayList<AStarHeuristic<PathfindingEdge, Block>>()
-    for (i in 0 until waypoints.size - 1) {
-        val remainingDistanceEstimator =
-            RemainingDistanceEstimator(
-                infra.blockInfra,
-                infra.rawInfra,
-                waypoints[i + 1],
-                stepMinDistance[i]
-            )
-
-        // Now that the cost function is an approximation of the remaining time,
-        // we need to return the smallest possible remaining time here
-        remainingDistanceEstimators.add { edge, offset ->
-            remainingDistanceEstimator.apply(edge.block, offset).meters / rollingStockMaxSpeed
-        }
-    }
-    return remainingDistanceEstimators
+/** Sum of distances in millimeters, where `Long.MAX_VALUE` stands for unreachable */
+private fun saturatedSum(a: Long, b: Long): Long {
+    if (a == Long.MAX_VALUE || b == Long.MAX_VALUE) return Long.MAX_VALUE
+    return a + b
 }
 
 @Throws(OSRDError::class)
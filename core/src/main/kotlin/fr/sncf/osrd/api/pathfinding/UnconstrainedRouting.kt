@@ -0,0 +1,253 @@
+package fr.sncf.osrd.api.pathfinding
+
+import com.google.common.cache.Cache
+import com.google.common.cache.CacheBuilder
+import com.google.common.util.concurrent.ThreadFactoryBuilder
+import fr.sncf.osrd.api.FullInfra
+import fr.sncf.osrd.api.pathfinding.constraints.ElectrificationConstraints
+import fr.sncf.osrd.api.pathfinding.constraints.LoadingGaugeConstraints
+import fr.sncf.osrd.api.pathfinding.constraints.SignalingSystemConstraints
+import fr.sncf.osrd.graph.*
+import fr.sncf.osrd.graph.Pathfinding.EdgeRange
+import fr.sncf.osrd.railjson.schema.rollingstock.RJSLoadingGaugeType
+import fr.sncf.osrd.sim_infra.api.*
+import fr.sncf.osrd.utils.CachedBlockMRSPBuilder
+import fr.sncf.osrd.utils.units.Offset
+import fr.sncf.osrd.utils.units.meters
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import kotlin.math.max
+import kotlin.math.roundToLong
+import org.slf4j.Logger
+import org.slf4j.LoggerFactory
+
+/**
+ * Fast path of `/pathfinding/routes` and `/v2/pathfinding/blocks` for requests whose constraints
+ * don't block any block of the infra: a contraction hierarchy over the block graph, with the
+ * default speed block travel times used by the regular pathfinding.
+ *
+ * It also keeps what the constraints depend on (loading gauges, electrifications and signaling
+ * systems found on the infra), to tell whether a request is actually constrained without looking
+ * at every block.
+ */
+class UnconstrainedRouting
+private constructor(
+    private val graph: BlockGraph,
+    private val hierarchy: ContractionHierarchy,
+    // Indexed by RJSLoadingGaugeType ordinal: true if trains of this type can go everywhere
+    private val compatibleLoadingGauges: BooleanArray,
+    private val electrifications: Set<String>,
+    private val signalingSystems: Set<SignalingSystemId>,
+) {
+    /** Returns true if none of the constraints blocks any part of the infra */
+    fun isUnconstrained(constraints: List<PathfindingConstraint<Block>>): Boolean {
+        return constraints.all { constraint ->
+            when (constraint) {
+                is LoadingGaugeConstraints ->
+                    compatibleLoadingGauges[constraint.loadingGaugeType.ordinal]
+                is ElectrificationConstraints ->
+                    constraint.compatibleElectrification.containsAll(electrifications)
+                is SignalingSystemConstraints ->
+                    constraint.rollingStocksSupportedSigSystems.all {
+                        it.containsAll(signalingSystems)
+                    }
+                else -> false
+            }
+        }
+    }
+
+    /**
+     * Returns the shortest path going through one location of each step, in order, or null if
+     * there is none. Costs are the travel times given by the MRSP builder, which must use the
+     * default speed, like the one the hierarchy was built with.
+     */
+    fun findPath(
+        waypoints: List<Collection<PathfindingEdgeLocationId<Block>>>,
+        mrspBuilder: CachedBlockMRSPBuilder,
+    ): PathfindingResultId<Block>? {
+        // Dynamic programming over the steps: the best path to each location of each step
+        val stepLocations = waypoints.map { it.toList() }
+        var locations = stepLocations[0]
+        var costs = LongArray(locations.size)
+        val stepLegs = mutableListOf<Array<Leg?>>()
+        for (i in 1 until waypoints.size) {
+            val nextLocations = stepLocations[i]
+            val nextCosts = LongArray(nextLocations.size) { Long.MAX_VALUE }
+            val legs = arrayOfNulls<Leg>(nextLocations.size)
+            for (j in locations.indices) {
+                if (costs[j] == Long.MAX_VALUE) continue
+                for (k in nextLocations.indices) {
+                    val leg = findLeg(locations[j], nextLocations[k], mrspBuilder) ?: continue
+                    if (costs[j] + leg.cost >= nextCosts[k]) continue
+                    nextCosts[k] = costs[j] + leg.cost
+                    legs[k] = Leg(j, leg.cost, leg.blocks)
+                }
+            }
+            stepLegs.add(legs)
+            locations = nextLocations
+            costs = nextCosts
+        }
+
+        var bestLocation = costs.indices.minByOrNull { costs[it] } ?: return null
+        if (costs[bestLocation] == Long.MAX_VALUE) return null
+        val chosenLegs = ArrayDeque<Leg>()
+        val chosenLocations = ArrayDeque<PathfindingEdgeLocationId<Block>>()
+        chosenLocations.addFirst(stepLocations.last()[bestLocation])
+        for (i in stepLegs.indices.reversed()) {
+            val leg = stepLegs[i][bestLocation]!!
+            chosenLegs.addFirst(leg)
+            bestLocation = leg.previous
+            chosenLocations.addFirst(stepLocations[i][bestLocation])
+        }
+        return buildResult(chosenLocations, chosenLegs, mrspBuilder.blockInfra)
+    }
+
+    /** Path between two consecutive locations. `previous` is the index of the leg start. */
+    private class Leg(val previous: Int, val cost: Long, val blocks: IntArray)
+
+    /** Shortest path between two locations, as the blocks from the start block to the end one */
+    private fun findLeg(
+        from: PathfindingEdgeLocationId<Block>,
+        to: PathfindingEdgeLocationId<Block>,
+        mrspBuilder: CachedBlockMRSPBuilder,
+    ): Leg? {
+        val fromBlock = from.edge.index.toInt()
+        val toBlock = to.edge.index.toInt()
+        val fromTime = toNanos(mrspBuilder.getBlockTime(from.edge, from.offset))
+        val toTime = toNanos(mrspBuilder.getBlockTime(to.edge, to.offset))
+        // Both locations are on the same block, in the right order
+        if (fromBlock == toBlock && from.offset <= to.offset)
+            return Leg(-1, max(0L, toTime - fromTime), intArrayOf(fromBlock))
+
+        val exit = DirDetectorId(graph.getBlockExit(fromBlock).toUInt())
+        val nextBlocks = graph.getBlocksStartingAtDetector(exit)
+        if (nextBlocks.isEmpty()) return null
+        val remainingTime =
+            max(0L, toNanos(mrspBuilder.getBlockTime(from.edge, null)) - fromTime)
+        val path =
+            hierarchy.shortestPath(
+                IntArray(nextBlocks.size) { nextBlocks[it].index.toInt() },
+                LongArray(nextBlocks.size) { remainingTime },
+                intArrayOf(toBlock),
+                longArrayOf(toTime)
+            ) ?: return null
+        return Leg(-1, path.cost, intArrayOf(fromBlock) + path.blocks)
+    }
+
+    companion object {
+        private val logger: Logger = LoggerFactory.getLogger(UnconstrainedRouting::class.java)
+
+        // Indexes must not reference the infra, or it would never be collected. The raw infra is
+        // the key, as speed limits can change while blocks are kept.
+        private val indexes: Cache<RawSignalingInfra, UnconstrainedRouting> =
+            CacheBuilder.newBuilder().weakKeys().build()
+
+        private val executor: ExecutorService =
+            Executors.newSingleThreadExecutor(
+                ThreadFactoryBuilder().setDaemon(true).setNameFormat("routing-index-%d").build()
+            )
+
+        /** Returns the index of the infra, or null if it isn't ready */
+        @JvmStatic
+        fun get(infra: FullInfra): UnconstrainedRouting? {
+            return indexes.getIfPresent(infra.rawInfra)
+        }
+
+        /** Builds the index of the infra in a background thread. Until then, `get` returns null. */
+        @JvmStatic
+        fun buildInBackground(infraId: String, infra: FullInfra) {
+            executor.execute {
+                try {
+                    logger.info("building the routing index of infra {}", infraId)
+                    indexes.put(infra.rawInfra, build(infra))
+                    logger.info("routing index of infra {} is ready", infraId)
+                } catch (e: Throwable) {
+                    logger.error("failed to build the routing index of infra {}", infraId, e)
+                }
+            }
+        }
+
+        /** Builds the index of the infra */
+        @JvmStatic
+        fun build(infra: FullInfra): UnconstrainedRouting {
+            val rawInfra = infra.rawInfra
+            val blockInfra = infra.blockInfra
+            val graph = BlockGraph.from(blockInfra, rawInfra)
+            val mrspBuilder = CachedBlockMRSPBuilder(rawInfra, blockInfra, null)
+            val blockTimes = LongArray(graph.blockCount)
+            val compatibleLoadingGauges = BooleanArray(RJSLoadingGaugeType.values().size) { true }
+            val electrifications = HashSet<String>()
+            val signalingSystems = HashSet<SignalingSystemId>()
+            for (block in blockInfra.blocks) {
+                blockTimes[block.index.toInt()] = toNanos(mrspBuilder.getBlockTime(block, null))
+                signalingSystems.add(blockInfra.getBlockSignalingSystem(block))
+                val path = makePathProps(blockInfra, rawInfra, block)
+                for (entry in path.getLoadingGauge().asList()) {
+                    for (type in RJSLoadingGaugeType.values()) {
+                        val typeId = LoadingGaugeTypeId(type.ordinal.toUInt())
+                        if (!entry.value.isCompatibleWith(typeId))
+                            compatibleLoadingGauges[type.ordinal] = false
+                    }
+                }
+                for (entry in path.getElectrification().asList()) {
+                    if (entry.lower != entry.upper) electrifications.add(entry.value)
+                }
+            }
+            val hierarchy = ContractionHierarchy.build(graph, blockTimes)
+            logger.info(
+                "contracted {} blocks, with {} edges and shortcuts",
+                graph.blockCount,
+                hierarchy.edgeCount
+            )
+            return UnconstrainedRouting(
+                graph,
+                hierarchy,
+                compatibleLoadingGauges,
+                electrifications,
+                signalingSystems
+            )
+        }
+
+        /** Registers an index built synchronously, mostly for tests */
+        @JvmStatic
+        fun register(infra: FullInfra, routing: UnconstrainedRouting) {
+            indexes.put(infra.rawInfra, routing)
+        }
+
+        private fun toNanos(seconds: Double): Long {
+            return (seconds * 1e9).roundToLong()
+        }
+
+        /** Builds a result shaped like the ones of `Pathfinding`, merging ranges per block */
+        private fun buildResult(
+            locations: List<PathfindingEdgeLocationId<Block>>,
+            legs: List<Leg>,
+            blockInfra: BlockInfra,
+        ): PathfindingResultId<Block> {
+            val ranges = ArrayList<EdgeRange<BlockId, Block>>()
+            fun addRange(block: BlockId, start: Offset<Block>, end: Offset<Block>) {
+                val last = ranges.lastOrNull()
+                if (last != null && last.edge == block && last.end == start)
+                    ranges[ranges.size - 1] = EdgeRange(block, last.start, end)
+                else ranges.add(EdgeRange(block, start, end))
+            }
+            val first = locations[0]
+            addRange(first.edge, first.offset, first.offset)
+            for ((i, leg) in legs.withIndex()) {
+                val from = locations[i]
+                val to = locations[i + 1]
+                if (leg.blocks.size == 1) {
+                    addRange(to.edge, from.offset, to.offset)
+                    continue
+                }
+                addRange(from.edge, from.offset, blockInfra.getBlockLength(from.edge))
+                for (j in 1 until leg.blocks.size - 1) {
+                    val block = BlockId(leg.blocks[j].toUInt())
+                    addRange(block, Offset(0.meters), blockInfra.getBlockLength(block))
+                }
+                addRange(to.edge, Offset(0.meters), to.offset)
+            }
+            return Pathfinding.Result(ranges, locations.toList())
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package fr.sncf.osrd.api.pathfinding.constraints
+
+import com.google.common.cache.Cache
+import com.google.common.cache.CacheBuilder
+import fr.sncf.osrd.api.FullInfra
+import fr.sncf.osrd.graph.Pathfinding
+import fr.sncf.osrd.sim_infra.api.Block
+import fr.sncf.osrd.sim_infra.api.BlockId
+import fr.sncf.osrd.sim_infra.api.BlockInfra
+import fr.sncf.osrd.utils.units.Offset
+import fr.sncf.osrd.utils.units.meters
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicLongArray
+
+/**
+ * Blocked ranges of a constraint profile (loading gauge, supported signaling systems, or
+ * electrification modes), shared by all the requests on an infra.
+ *
+ * Blocks are filled lazily, the first time a request looks at them. Blocks which are free or fully
+ * blocked only take a bit in each of two bitsets, the few partially blocked ones keep their ranges.
+ */
+class BlockedRangesIndex(private val blockCount: Int) {
+    private val computed = AtomicLongArray((blockCount + 63) / 64)
+    private val fullyBlocked = AtomicLongArray((blockCount + 63) / 64)
+    private val partiallyBlocked = ConcurrentHashMap<Int, Collection<Pathfinding.Range<Block>>>()
+
+    /** Returns the blocked ranges of the block, calling `compute` if they aren't known yet */
+    fun getBlockedRanges(
+        block: BlockId,
+        blockLength: Offset<Block>,
+        compute: () -> Collection<Pathfinding.Range<Block>>
+    ): Collection<Pathfinding.Range<Block>> {
+        val index = block.index.toInt()
+        // Only test infras can have blocks added after being used
+        if (index >= blockCount) return compute()
+        val fullRange = Pathfinding.Range(Offset<Block>(0.meters), blockLength)
+        if (isSet(computed, index)) {
+            if (isSet(fullyBlocked, index)) return setOf(fullRange)
+            return partiallyBlocked[index] ?: setOf()
+        }
+        val res = compute()
+        if (res.size == 1 && res.first() == fullRange) set(fullyBlocked, index)
+        else if (res.isNotEmpty()) partiallyBlocked[index] = res
+        // Set last, so that other threads see the ranges once the block is marked as computed
+        set(computed, index)
+        return res
+    }
+
+    companion object {
+        // Indexes of each infra, by profile. Neither profiles nor indexes may reference the
+        // infra, or it would never be collected.
+        private val indexes: Cache<Any, ConcurrentHashMap<Any, BlockedRangesIndex>> =
+            CacheBuilder.newBuilder().weakKeys().build()
+
+        /**
+         * Shares blocked ranges between the requests on the infra. Only enabled on infras which
+         * don't change once loaded, unlike some test infras. The raw infra and block infra are
+         * registered separately, as some infra updates keep the blocks.
+         */
+        @JvmStatic
+        fun enable(infra: FullInfra) {
+            indexes.get(infra.rawInfra) { ConcurrentHashMap() }
+            indexes.get(infra.blockInfra) { ConcurrentHashMap() }
+        }
+
+        /**
+         * Returns the index of the profile, on an infra component (raw infra or block infra)
+         * the constraint depends on. Returns null if indexes aren't enabled on the infra.
+         */
+        @JvmStatic
+        fun find(infraComponent: Any, blockInfra: BlockInfra, profile: Any): BlockedRangesIndex? {
+            val profiles = indexes.getIfPresent(infraComponent) ?: return null
+            val blockCount = blockInfra.blocks.size.toInt()
+            return profiles.computeIfAbsent(profile) { BlockedRangesIndex(blockCount) }
+        }
+
+        private fun isSet(bits: AtomicLongArray, index: Int): Boolean {
+            return (bits.get(index ushr 6) and (1L shl index)) != 0L
+        }
+
+        private fun set(bits: AtomicLongArray, index: Int) {
+            val word = index ushr 6
+            while (true) {
+                val value = bits.get(word)
+                val newValue = value or (1L shl index)
+                if (value == newValue || bits.compareAndSet(word, value, newValue)) return
+            }
+        }
+    }
+}
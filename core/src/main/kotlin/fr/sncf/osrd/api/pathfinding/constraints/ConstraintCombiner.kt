@@ -6,11 +6,13 @@ import fr.sncf.osrd.graph.Pathfinding
 import fr.sncf.osrd.graph.PathfindingConstraint
 import fr.sncf.osrd.sim_infra.api.Block
 import fr.sncf.osrd.train.RollingStock
+import java.util.concurrent.ConcurrentHashMap
 
 class ConstraintCombiner<EdgeT, OffsetType>(
     val functions: MutableList<EdgeToRanges<EdgeT, OffsetType>> = ArrayList()
 ) : EdgeToRanges<EdgeT, OffsetType> {
-    private val cache = mutableMapOf<EdgeT, Collection<Pathfinding.Range<OffsetType>>>()
+    // concurrent, as combined constraints can be shared by parallel STDCM searches
+    private val cache = ConcurrentHashMap<EdgeT, Collection<Pathfinding.Range<OffsetType>>>()
 
     override fun apply(edge: EdgeT): Collection<Pathfinding.Range<OffsetType>> {
         val cached = cache[edge]
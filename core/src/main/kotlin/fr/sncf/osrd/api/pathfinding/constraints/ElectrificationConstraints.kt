@@ -17,7 +17,20 @@ data class ElectrificationConstraints(
     val rawInfra: RawSignalingInfra,
     val compatibleElectrification: Collection<String>
 ) : PathfindingConstraint<Block> {
+    // Shared by the requests on the infra with the same electrification modes
+    private val index by lazy {
+        val profile = compatibleElectrification.toSet()
+        BlockedRangesIndex.find(rawInfra, blockInfra, Pair(javaClass, profile))
+    }
+
     override fun apply(edge: BlockId): Collection<Pathfinding.Range<Block>> {
+        val index = index ?: return computeBlockedRanges(edge)
+        return index.getBlockedRanges(edge, blockInfra.getBlockLength(edge)) {
+            computeBlockedRanges(edge)
+        }
+    }
+
+    private fun computeBlockedRanges(edge: BlockId): Collection<Pathfinding.Range<Block>> {
         val path = makePathProps(blockInfra, rawInfra, edge)
         return getBlockedRanges(path, compatibleElectrification)
     }
@@ -14,7 +14,19 @@ data class LoadingGaugeConstraints(
     val infra: RawSignalingInfra,
     val loadingGaugeType: RJSLoadingGaugeType
 ) : PathfindingConstraint<Block> {
+    // Shared by the requests on the infra with the same loading gauge
+    private val index by lazy {
+        BlockedRangesIndex.find(infra, blockInfra, Pair(javaClass, loadingGaugeType))
+    }
+
     override fun apply(edge: BlockId): Collection<Pathfinding.Range<Block>> {
+        val index = index ?: return computeBlockedRanges(edge)
+        return index.getBlockedRanges(edge, blockInfra.getBlockLength(edge)) {
+            computeBlockedRanges(edge)
+        }
+    }
+
+    private fun computeBlockedRanges(edge: BlockId): Collection<Pathfinding.Range<Block>> {
         val res = HashSet<Pathfinding.Range<Block>>()
         val path = makePathProps(blockInfra, infra, edge)
         res.addAll(getBlockedRanges(loadingGaugeType, path))
@@ -15,7 +15,20 @@ data class SignalingSystemConstraints(
     val blockInfra: BlockInfra,
     val rollingStocksSupportedSigSystems: List<List<SignalingSystemId>>
 ) : PathfindingConstraint<Block> {
-    override fun apply(edge: BlockId): MutableCollection<Pathfinding.Range<Block>> {
+    // Shared by the requests on the infra with the same supported signaling systems
+    private val index by lazy {
+        val profile = rollingStocksSupportedSigSystems.map { it.toSet() }
+        BlockedRangesIndex.find(blockInfra, blockInfra, Pair(javaClass, profile))
+    }
+
+    override fun apply(edge: BlockId): Collection<Pathfinding.Range<Block>> {
+        val index = index ?: return computeBlockedRanges(edge)
+        return index.getBlockedRanges(edge, blockInfra.getBlockLength(edge)) {
+            computeBlockedRanges(edge)
+        }
+    }
+
+    private fun computeBlockedRanges(edge: BlockId): MutableCollection<Pathfinding.Range<Block>> {
         val res = HashSet<Pathfinding.Range<Block>>()
         for (rollingStockSigSystems in rollingStocksSupportedSigSystems) {
             val edgeBlockedRanges = getBlockedRanges(edge, blockInfra, rollingStockSigSystems)
@@ -6,6 +6,7 @@ import fr.sncf.osrd.sim_infra.api.RawInfra
 import fr.sncf.osrd.sim_infra.api.TrackChunkId
 import fr.sncf.osrd.utils.DistanceRangeMap
 import fr.sncf.osrd.utils.DistanceRangeMapImpl
+import fr.sncf.osrd.utils.HeapSize
 import fr.sncf.osrd.utils.distanceRangeMapOf
 import fr.sncf.osrd.utils.units.Distance.Companion.fromMeters
 
@@ -41,6 +42,18 @@ class ElectricalProfileMapping {
         }
     }
 
+    /** Estimates the heap retained by the mapping, profile values being shared between ranges */
+    fun estimatedHeapSize(): Long {
+        var size = HeapSize.hashMap(mapping.size)
+        for ((powerClass, trackMapping) in mapping) {
+            size += HeapSize.string(powerClass) + HeapSize.hashMap(trackMapping.size)
+            for ((trackName, ranges) in trackMapping) {
+                size += HeapSize.string(trackName) + HeapSize.rangeMap(ranges) { 0L }
+            }
+        }
+        return size
+    }
+
     /** Returns the electrical profiles encountered on a path */
     fun getProfilesOnPath(
         infra: RawInfra,
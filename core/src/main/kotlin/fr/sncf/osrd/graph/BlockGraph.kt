@@ -0,0 +1,202 @@
+package fr.sncf.osrd.graph
+
+import com.google.common.cache.Cache
+import com.google.common.cache.CacheBuilder
+import fr.sncf.osrd.sim_infra.api.*
+import fr.sncf.osrd.sim_infra.utils.getBlockEntry
+import fr.sncf.osrd.sim_infra.utils.getBlockExit
+import fr.sncf.osrd.utils.IndexedMinHeap
+
+/**
+ * Compact representation of the block graph, where nodes are directed detectors and edges are
+ * blocks. Everything is stored in primitive arrays indexed by block id and directed detector data,
+ * adjacency being in compressed sparse row form: the blocks starting at a detector `d` are
+ * `startingBlocks[startingOffsets[d] ..< startingOffsets[d + 1]]`.
+ *
+ * It is built once per infra (see `BlockGraph.from`), lookups don't allocate or hash anything.
+ */
+class BlockGraph
+private constructor(
+    private val blockEntries: IntArray,
+    private val blockExits: IntArray,
+    private val blockLengths: LongArray,
+    private val startingOffsets: IntArray,
+    private val startingBlocks: IntArray,
+    private val endingOffsets: IntArray,
+    private val endingBlocks: IntArray,
+) {
+    /** Number of blocks in the graph */
+    val blockCount: Int
+        get() = blockLengths.size
+
+    /** Length of the block, in millimeters */
+    fun getBlockLength(block: Int): Long {
+        return blockLengths[block]
+    }
+
+    /** Directed detector at the start of the block, as `DirDetectorId.data` */
+    fun getBlockEntry(block: Int): Int {
+        return blockEntries[block]
+    }
+
+    /** Directed detector at the end of the block, as `DirDetectorId.data` */
+    fun getBlockExit(block: Int): Int {
+        return blockExits[block]
+    }
+
+    /** Returns a read-only view of the blocks starting at the given detector */
+    fun getBlocksStartingAtDetector(detector: DirDetectorId): List<BlockId> {
+        val node = detector.data.toInt()
+        if (node >= startingOffsets.size - 1) return listOf()
+        return BlockIdView(startingBlocks, startingOffsets[node], startingOffsets[node + 1])
+    }
+
+    /**
+     * Returns, for each block, the shortest distance in millimeters from its start to any of the
+     * targets. Blocks that can't reach any target are set to `Long.MAX_VALUE`. The heap can be
+     * given to be reused between calls.
+     */
+    fun distancesToTargets(
+        targets: Collection<PathfindingEdgeLocationId<Block>>,
+        heap: IndexedMinHeap = IndexedMinHeap(blockCount)
+    ): LongArray {
+        assert(heap.capacity >= blockCount)
+        heap.clear()
+        val res = LongArray(blockCount) { Long.MAX_VALUE }
+        for (target in targets) {
+            val block = target.edge.index.toInt()
+            val distance = target.offset.distance.millimeters
+            if (distance < res[block]) {
+                res[block] = distance
+                heap.insertOrDecrease(block, distance)
+            }
+        }
+        // Dijkstra on the reversed graph
+        while (!heap.isEmpty()) {
+            val distance = heap.peekPriority()
+            val block = heap.poll()
+            val entry = blockEntries[block]
+            if (entry >= endingOffsets.size - 1) continue
+            for (i in endingOffsets[entry] until endingOffsets[entry + 1]) {
+                val previous = endingBlocks[i]
+                val previousDistance = distance + blockLengths[previous]
+                if (previousDistance < res[previous]) {
+                    res[previous] = previousDistance
+                    heap.insertOrDecrease(previous, previousDistance)
+                }
+            }
+        }
+        return res
+    }
+
+    /**
+     * Returns, for each block, the shortest distance in millimeters from the start of `source` to
+     * the start of the block. Blocks that can't be reached are set to `Long.MAX_VALUE`.
+     */
+    fun distancesFromBlock(
+        source: Int,
+        heap: IndexedMinHeap = IndexedMinHeap(blockCount)
+    ): LongArray {
+        assert(heap.capacity >= blockCount)
+        heap.clear()
+        val res = LongArray(blockCount) { Long.MAX_VALUE }
+        res[source] = 0
+        heap.insertOrDecrease(source, 0)
+        while (!heap.isEmpty()) {
+            val distance = heap.peekPriority()
+            val block = heap.poll()
+            val exit = blockExits[block]
+            if (exit >= startingOffsets.size - 1) continue
+            val nextDistance = distance + blockLengths[block]
+            for (i in startingOffsets[exit] until startingOffsets[exit + 1]) {
+                val next = startingBlocks[i]
+                if (nextDistance < res[next]) {
+                    res[next] = nextDistance
+                    heap.insertOrDecrease(next, nextDistance)
+                }
+            }
+        }
+        return res
+    }
+
+    /** Hash of the graph structure, used to check that data derived from a graph still applies */
+    val checksum: Long by lazy {
+        val structureHash = 31 * blockEntries.contentHashCode() + blockExits.contentHashCode()
+        val lengthsHash = blockLengths.contentHashCode().toLong() and 0xFFFFFFFFL
+        (structureHash.toLong() shl 32) xor lengthsHash
+    }
+
+    /** Read-only list of block ids, backed by a slice of an int array */
+    private class BlockIdView(
+        private val blocks: IntArray,
+        private val from: Int,
+        private val until: Int,
+    ) : AbstractList<BlockId>() {
+        override val size: Int
+            get() = until - from
+
+        override fun get(index: Int): BlockId {
+            if (index < 0 || index >= size) throw IndexOutOfBoundsException()
+            return BlockId(blocks[from + index].toUInt())
+        }
+    }
+
+    companion object {
+        // Graphs must not reference the infra, or it would never be collected
+        private val graphs: Cache<BlockInfra, BlockGraph> =
+            CacheBuilder.newBuilder().weakKeys().build()
+
+        /** Returns the graph of the given infra, building it on the first call */
+        @JvmStatic
+        fun from(blockInfra: BlockInfra, rawInfra: RawSignalingInfra): BlockGraph {
+            val res = graphs.get(blockInfra) { build(blockInfra, rawInfra) }
+            if (res.blockCount == blockInfra.blocks.size.toInt()) return res
+            // Only test infras can have blocks added after being used
+            val rebuilt = build(blockInfra, rawInfra)
+            graphs.put(blockInfra, rebuilt)
+            return rebuilt
+        }
+
+        private fun build(blockInfra: BlockInfra, rawInfra: RawSignalingInfra): BlockGraph {
+            val blockCount = blockInfra.blocks.size.toInt()
+            val entries = IntArray(blockCount)
+            val exits = IntArray(blockCount)
+            val lengths = LongArray(blockCount)
+            var nodeCount = 0
+            for (block in blockInfra.blocks) {
+                val i = block.index.toInt()
+                entries[i] = blockInfra.getBlockEntry(rawInfra, block).data.toInt()
+                exits[i] = blockInfra.getBlockExit(rawInfra, block).data.toInt()
+                lengths[i] = blockInfra.getBlockLength(block).distance.millimeters
+                nodeCount = maxOf(nodeCount, entries[i] + 1, exits[i] + 1)
+            }
+            val startingOffsets = IntArray(nodeCount + 1)
+            val startingBlocks = groupByNode(entries, startingOffsets)
+            val endingOffsets = IntArray(nodeCount + 1)
+            val endingBlocks = groupByNode(exits, endingOffsets)
+            return BlockGraph(
+                entries,
+                exits,
+                lengths,
+                startingOffsets,
+                startingBlocks,
+                endingOffsets,
+                endingBlocks
+            )
+        }
+
+        /**
+         * Counting sort of the blocks by node. Fills `offsets` and returns the blocks, in
+         * increasing id order for each node.
+         */
+        internal fun groupByNode(blockNodes: IntArray, offsets: IntArray): IntArray {
+            for (node in blockNodes) offsets[node + 1]++
+            for (i in 1 until offsets.size) offsets[i] += offsets[i - 1]
+            val res = IntArray(blockNodes.size)
+            val nextIndex = offsets.copyOf()
+            for (block in blockNodes.indices) res[nextIndex[blockNodes[block]]++] = block
+            return res
+        }
+    }
+}
+
@@ -0,0 +1,420 @@
+package fr.sncf.osrd.graph
+
+import com.carrotsearch.hppc.IntArrayList
+import com.carrotsearch.hppc.LongArrayList
+import fr.sncf.osrd.sim_infra.api.DirDetectorId
+import fr.sncf.osrd.utils.IndexedMinHeap
+import java.util.concurrent.ConcurrentLinkedQueue
+import kotlin.math.max
+import kotlin.math.min
+
+/**
+ * Contraction hierarchy over the block graph, answering shortest path queries with a few
+ * milliseconds of work instead of a full Dijkstra.
+ *
+ * Nodes are blocks, and going from a block to one of its successors costs `blockCosts` of the
+ * former. Blocks are contracted one after the other, from the least to the most important: when a
+ * block is removed, shortcuts are added between its neighbors for the shortest paths which went
+ * through it. Queries then run a bidirectional Dijkstra which only ever goes up the hierarchy, and
+ * shortcuts are unpacked back into block sequences.
+ *
+ * Edges (original and shortcuts) are stored in primitive arrays, shortcuts referencing the two
+ * edges they replace. Query buffers are pooled, so that queries don't allocate per block.
+ */
+class ContractionHierarchy
+private constructor(
+    private val nodeCount: Int,
+    private val edgeTo: IntArray,
+    private val edgeFrom: IntArray,
+    private val edgeWeights: LongArray,
+    // The two edges replaced by each shortcut, -1 for original edges
+    private val edgeFirstChild: IntArray,
+    private val edgeSecondChild: IntArray,
+    // Edges going to a node of higher rank, by source node
+    private val upOffsets: IntArray,
+    private val upEdges: IntArray,
+    // Edges coming from a node of higher rank, by destination node
+    private val downOffsets: IntArray,
+    private val downEdges: IntArray,
+) {
+    /** Shortest path result: its cost, and the blocks from the source to the target */
+    class Path(val cost: Long, val blocks: IntArray)
+
+    private val queryStates = ConcurrentLinkedQueue<QueryState>()
+
+    /** Number of edges in the hierarchy, including shortcuts */
+    val edgeCount: Int
+        get() = edgeTo.size
+
+    /**
+     * Returns the shortest path from any of the sources to any of the targets, or null if none can
+     * be reached. Each source starts with the given cost, and reaching each target costs the given
+     * amount on top of the path to it. Costs must not be negative.
+     */
+    fun shortestPath(
+        sources: IntArray,
+        sourceCosts: LongArray,
+        targets: IntArray,
+        targetCosts: LongArray
+    ): Path? {
+        val state = queryStates.poll() ?: QueryState(nodeCount)
+        try {
+            return state.run(sources, sourceCosts, targets, targetCosts)
+        } finally {
+            state.clear()
+            queryStates.offer(state)
+        }
+    }
+
+    /** Buffers of a bidirectional query, reset after use by only clearing the touched nodes */
+    private inner class QueryState(nodeCount: Int) {
+        val forwardDistances = LongArray(nodeCount) { Long.MAX_VALUE }
+        val backwardDistances = LongArray(nodeCount) { Long.MAX_VALUE }
+        // Edge through which each node was reached, -1 for sources and targets
+        val forwardParents = IntArray(nodeCount)
+        val backwardParents = IntArray(nodeCount)
+        val forwardHeap = IndexedMinHeap(nodeCount)
+        val backwardHeap = IndexedMinHeap(nodeCount)
+        val touched = IntArrayList()
+
+        fun run(
+            sources: IntArray,
+            sourceCosts: LongArray,
+            targets: IntArray,
+            targetCosts: LongArray
+        ): Path? {
+            for (i in sources.indices)
+                reach(sources[i], sourceCosts[i], -1, forwardDistances, forwardParents, forwardHeap)
+            for (i in targets.indices)
+                reach(
+                    targets[i],
+                    targetCosts[i],
+                    -1,
+                    backwardDistances,
+                    backwardParents,
+                    backwardHeap
+                )
+
+            var best = Long.MAX_VALUE
+            var meetingNode = -1
+            while (true) {
+                val forwardMin =
+                    if (forwardHeap.isEmpty()) Long.MAX_VALUE else forwardHeap.peekPriority()
+                val backwardMin =
+                    if (backwardHeap.isEmpty()) Long.MAX_VALUE else backwardHeap.peekPriority()
+                if (min(forwardMin, backwardMin) >= best) break
+                val forward = forwardMin <= backwardMin
+                val heap = if (forward) forwardHeap else backwardHeap
+                val distance = heap.peekPriority()
+                val node = heap.poll()
+                val otherDistance =
+                    if (forward) backwardDistances[node] else forwardDistances[node]
+                if (otherDistance != Long.MAX_VALUE && distance + otherDistance < best) {
+                    best = distance + otherDistance
+                    meetingNode = node
+                }
+                if (forward) {
+                    for (i in upOffsets[node] until upOffsets[node + 1]) {
+                        val edge = upEdges[i]
+                        val next = edgeTo[edge]
+                        val nextDistance = distance + edgeWeights[edge]
+                        reach(next, nextDistance, edge, forwardDistances, forwardParents, heap)
+                    }
+                } else {
+                    for (i in downOffsets[node] until downOffsets[node + 1]) {
+                        val edge = downEdges[i]
+                        val previous = edgeFrom[edge]
+                        val previousDistance = distance + edgeWeights[edge]
+                        reach(
+                            previous,
+                            previousDistance,
+                            edge,
+                            backwardDistances,
+                            backwardParents,
+                            heap
+                        )
+                    }
+                }
+            }
+            if (meetingNode < 0) return null
+            return Path(best, unpack(meetingNode))
+        }
+
+        private fun reach(
+            node: Int,
+            distance: Long,
+            parent: Int,
+            distances: LongArray,
+            parents: IntArray,
+            heap: IndexedMinHeap
+        ) {
+            if (distance >= distances[node]) return
+            val untouched =
+                forwardDistances[node] == Long.MAX_VALUE &&
+                    backwardDistances[node] == Long.MAX_VALUE
+            if (untouched) touched.add(node)
+            distances[node] = distance
+            parents[node] = parent
+            heap.insertOrDecrease(node, distance)
+        }
+
+        /** Lists the blocks of the path going through the meeting node, expanding shortcuts */
+        private fun unpack(meetingNode: Int): IntArray {
+            val upEdgePath = IntArrayList()
+            var node = meetingNode
+            while (forwardParents[node] >= 0) {
+                upEdgePath.add(forwardParents[node])
+                node = edgeFrom[forwardParents[node]]
+            }
+            val res = IntArrayList()
+            res.add(node)
+            for (i in upEdgePath.size() - 1 downTo 0) unpackEdge(upEdgePath.get(i), res)
+            node = meetingNode
+            while (backwardParents[node] >= 0) {
+                unpackEdge(backwardParents[node], res)
+                node = edgeTo[backwardParents[node]]
+            }
+            return res.toArray()
+        }
+
+        fun clear() {
+            for (i in 0 until touched.size()) {
+                val node = touched.get(i)
+                forwardDistances[node] = Long.MAX_VALUE
+                backwardDistances[node] = Long.MAX_VALUE
+            }
+            touched.clear()
+            forwardHeap.clear()
+            backwardHeap.clear()
+        }
+    }
+
+    /** Appends the destinations of the original edges replaced by the given edge */
+    private fun unpackEdge(edge: Int, res: IntArrayList) {
+        val stack = IntArrayList()
+        stack.add(edge)
+        while (!stack.isEmpty()) {
+            val current = stack.removeAt(stack.size() - 1)
+            if (edgeFirstChild[current] < 0) {
+                res.add(edgeTo[current])
+            } else {
+                stack.add(edgeSecondChild[current])
+                stack.add(edgeFirstChild[current])
+            }
+        }
+    }
+
+    companion object {
+        // Witness searches are cut after settling this many nodes, which may add useless shortcuts
+        // but never skips a needed one
+        private const val WITNESS_SETTLE_LIMIT = 200
+
+        /**
+         * Contracts the block graph, where leaving a block costs its `blockCosts` value. Costs must
+         * not be negative.
+         */
+        @JvmStatic
+        fun build(graph: BlockGraph, blockCosts: LongArray): ContractionHierarchy {
+            assert(blockCosts.size == graph.blockCount)
+            return Builder(graph, blockCosts).build()
+        }
+    }
+
+    /** Mutable graph being contracted */
+    private class Builder(graph: BlockGraph, blockCosts: LongArray) {
+        val nodeCount = graph.blockCount
+        val edgeFrom = IntArrayList()
+        val edgeTo = IntArrayList()
+        val edgeWeights = LongArrayList()
+        val edgeFirstChild = IntArrayList()
+        val edgeSecondChild = IntArrayList()
+        val outEdges = Array(nodeCount) { IntArrayList(2) }
+        val inEdges = Array(nodeCount) { IntArrayList(2) }
+        val ranks = IntArray(nodeCount) { -1 }
+        val contractedNeighbors = IntArray(nodeCount)
+
+        // Witness search buffers
+        val witnessHeap = IndexedMinHeap(nodeCount)
+        val witnessDistances = LongArray(nodeCount) { Long.MAX_VALUE }
+        val witnessTouched = IntArrayList()
+
+        init {
+            for (block in 0 until nodeCount) {
+                val exit = DirDetectorId(graph.getBlockExit(block).toUInt())
+                for (next in graph.getBlocksStartingAtDetector(exit)) {
+                    val nextIndex = next.index.toInt()
+                    if (nextIndex != block) addOrImproveEdge(block, nextIndex, blockCosts[block])
+                }
+            }
+        }
+
+        fun build(): ContractionHierarchy {
+            val queue = IndexedMinHeap(nodeCount)
+            for (node in 0 until nodeCount) queue.insertOrDecrease(node, priority(node))
+            var rank = 0
+            while (!queue.isEmpty()) {
+                val node = queue.poll()
+                // Lazy updates: priorities change as neighbors get contracted
+                val priority = priority(node)
+                if (!queue.isEmpty() && priority > queue.peekPriority()) {
+                    queue.insertOrDecrease(node, priority)
+                    continue
+                }
+                contract(node, true)
+                ranks[node] = rank++
+            }
+            return finish()
+        }
+
+        /** Lower priorities get contracted first */
+        private fun priority(node: Int): Long {
+            val shortcuts = contract(node, false)
+            val edges = liveEdgeCount(outEdges[node], true) + liveEdgeCount(inEdges[node], false)
+            return (shortcuts - edges + contractedNeighbors[node]).toLong()
+        }
+
+        private fun liveEdgeCount(edges: IntArrayList, outgoing: Boolean): Int {
+            var res = 0
+            for (i in 0 until edges.size()) if (ranks[neighbor(edges.get(i), outgoing)] < 0) res++
+            return res
+        }
+
+        private fun neighbor(edge: Int, outgoing: Boolean): Int {
+            return if (outgoing) edgeTo.get(edge) else edgeFrom.get(edge)
+        }
+
+        /**
+         * Finds the shortcuts needed to remove the node, and adds them if `apply` is set. Returns
+         * the number of shortcuts.
+         */
+        private fun contract(node: Int, apply: Boolean): Int {
+            val ins = inEdges[node]
+            val outs = outEdges[node]
+            var maxOutWeight = 0L
+            for (i in 0 until outs.size()) {
+                val edge = outs.get(i)
+                if (ranks[edgeTo.get(edge)] < 0)
+                    maxOutWeight = max(maxOutWeight, edgeWeights.get(edge))
+            }
+            var shortcuts = 0
+            for (i in 0 until ins.size()) {
+                val inEdge = ins.get(i)
+                val source = edgeFrom.get(inEdge)
+                if (ranks[source] >= 0 || source == node) continue
+                val inWeight = edgeWeights.get(inEdge)
+                witnessSearch(source, node, inWeight + maxOutWeight)
+                for (j in 0 until outs.size()) {
+                    val outEdge = outs.get(j)
+                    val target = edgeTo.get(outEdge)
+                    if (ranks[target] >= 0 || target == source || target == node) continue
+                    val weight = inWeight + edgeWeights.get(outEdge)
+                    if (witnessDistances[target] <= weight) continue
+                    shortcuts++
+                    if (apply) addOrImproveEdge(source, target, weight, inEdge, outEdge)
+                }
+                clearWitnessSearch()
+            }
+            if (apply) {
+                for (i in 0 until ins.size()) contractedNeighbors[edgeFrom.get(ins.get(i))]++
+                for (i in 0 until outs.size()) contractedNeighbors[edgeTo.get(outs.get(i))]++
+            }
+            return shortcuts
+        }
+
+        /** Dijkstra from the source, avoiding `ignored` and contracted nodes */
+        private fun witnessSearch(source: Int, ignored: Int, maxDistance: Long) {
+            witnessDistances[source] = 0
+            witnessTouched.add(source)
+            witnessHeap.insertOrDecrease(source, 0)
+            var settled = 0
+            while (!witnessHeap.isEmpty() && settled++ < WITNESS_SETTLE_LIMIT) {
+                val distance = witnessHeap.peekPriority()
+                if (distance > maxDistance) break
+                val node = witnessHeap.poll()
+                val outs = outEdges[node]
+                for (i in 0 until outs.size()) {
+                    val edge = outs.get(i)
+                    val next = edgeTo.get(edge)
+                    if (next == ignored || ranks[next] >= 0) continue
+                    val nextDistance = distance + edgeWeights.get(edge)
+                    if (nextDistance >= witnessDistances[next]) continue
+                    if (witnessDistances[next] == Long.MAX_VALUE) witnessTouched.add(next)
+                    witnessDistances[next] = nextDistance
+                    witnessHeap.insertOrDecrease(next, nextDistance)
+                }
+            }
+        }
+
+        private fun clearWitnessSearch() {
+            for (i in 0 until witnessTouched.size())
+                witnessDistances[witnessTouched.get(i)] = Long.MAX_VALUE
+            witnessTouched.clear()
+            witnessHeap.clear()
+        }
+
+        /** Adds an edge, or lowers the weight of the existing edge between the same nodes */
+        private fun addOrImproveEdge(
+            from: Int,
+            to: Int,
+            weight: Long,
+            firstChild: Int = -1,
+            secondChild: Int = -1
+        ) {
+            val outs = outEdges[from]
+            for (i in 0 until outs.size()) {
+                val edge = outs.get(i)
+                if (edgeTo.get(edge) != to) continue
+                if (weight < edgeWeights.get(edge)) {
+                    edgeWeights.set(edge, weight)
+                    edgeFirstChild.set(edge, firstChild)
+                    edgeSecondChild.set(edge, secondChild)
+                }
+                return
+            }
+            val edge = edgeTo.size()
+            edgeFrom.add(from)
+            edgeTo.add(to)
+            edgeWeights.add(weight)
+            edgeFirstChild.add(firstChild)
+            edgeSecondChild.add(secondChild)
+            outs.add(edge)
+            inEdges[to].add(edge)
+        }
+
+        /** Sorts edges by direction in the hierarchy, in compressed sparse row form */
+        private fun finish(): ContractionHierarchy {
+            val from = edgeFrom.toArray()
+            val to = edgeTo.toArray()
+            val upOffsets = IntArray(nodeCount + 1)
+            val downOffsets = IntArray(nodeCount + 1)
+            for (edge in from.indices) {
+                if (ranks[to[edge]] > ranks[from[edge]]) upOffsets[from[edge] + 1]++
+                else downOffsets[to[edge] + 1]++
+            }
+            for (i in 1..nodeCount) {
+                upOffsets[i] += upOffsets[i - 1]
+                downOffsets[i] += downOffsets[i - 1]
+            }
+            val upEdges = IntArray(upOffsets[nodeCount])
+            val downEdges = IntArray(downOffsets[nodeCount])
+            val nextUp = upOffsets.copyOf()
+            val nextDown = downOffsets.copyOf()
+            for (edge in from.indices) {
+                if (ranks[to[edge]] > ranks[from[edge]]) upEdges[nextUp[from[edge]]++] = edge
+                else downEdges[nextDown[to[edge]]++] = edge
+            }
+            return ContractionHierarchy(
+                nodeCount,
+                to,
+                from,
+                edgeWeights.toArray(),
+                edgeFirstChild.toArray(),
+                edgeSecondChild.toArray(),
+                upOffsets,
+                upEdges,
+                downOffsets,
+                downEdges
+            )
+        }
+    }
+}
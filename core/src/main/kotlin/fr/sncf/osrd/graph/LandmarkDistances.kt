@@ -0,0 +1,250 @@
+package fr.sncf.osrd.graph
+
+import com.google.common.cache.Cache
+import com.google.common.cache.CacheBuilder
+import fr.sncf.osrd.graph.Pathfinding.EdgeLocation
+import fr.sncf.osrd.sim_infra.api.Block
+import fr.sncf.osrd.sim_infra.api.BlockId
+import fr.sncf.osrd.sim_infra.api.BlockInfra
+import fr.sncf.osrd.sim_infra.api.RawSignalingInfra
+import fr.sncf.osrd.utils.HeapSize
+import fr.sncf.osrd.utils.IndexedMinHeap
+import fr.sncf.osrd.utils.units.Offset
+import fr.sncf.osrd.utils.units.meters
+import java.io.DataInput
+import java.io.DataOutput
+import kotlin.math.max
+import kotlin.math.min
+import org.slf4j.Logger
+import org.slf4j.LoggerFactory
+
+/**
+ * Lower bounds of block graph distances, for A* heuristics (ALT: A*, landmarks, triangle
+ * inequality).
+ *
+ * A few blocks are picked as landmarks, and the distances from and to each landmark are stored for
+ * all blocks. For any landmark L, `d(L, to) - d(L, from)` and `d(from, L) - d(to, L)` are lower
+ * bounds of `d(from, to)`. Unlike geographic estimations, these follow the tracks: they stay tight
+ * on meandering lines, and they prove that some blocks can't reach each other at all.
+ *
+ * Distances are measured between block starts, and stored as centimeters in int arrays, rounded
+ * down.
+ */
+class LandmarkDistances
+private constructor(
+    /** Checksum of the graph the distances were computed on */
+    val graphChecksum: Long,
+    private val landmarks: IntArray,
+    // fromLandmarks[i][block] = distance from the start of the i-th landmark to the start of block
+    private val fromLandmarks: Array<IntArray>,
+    // toLandmarks[i][block] = distance from the start of block to the start of the i-th landmark
+    private val toLandmarks: Array<IntArray>,
+) {
+    val landmarkCount: Int
+        get() = landmarks.size
+
+    /** Returns the landmark blocks */
+    fun getLandmarks(): List<BlockId> {
+        return landmarks.map { BlockId(it.toUInt()) }
+    }
+
+    /**
+     * Lower bound of the distance in millimeters from the start of block `from` to the start of
+     * block `to`. Returns `Long.MAX_VALUE` when `to` can't be reached from `from`.
+     */
+    fun lowerBound(from: Int, to: Int): Long {
+        if (from == to) return 0
+        var res = 0L
+        for (i in landmarks.indices) {
+            val fromLandmark = fromLandmarks[i]
+            val landmarkToFrom = fromLandmark[from]
+            if (landmarkToFrom != UNREACHABLE) {
+                val landmarkToTo = fromLandmark[to]
+                // d(L, to) <= d(L, from) + d(from, to)
+                if (landmarkToTo == UNREACHABLE) return Long.MAX_VALUE
+                res = max(res, landmarkToTo.toLong() - landmarkToFrom)
+            }
+            val toLandmark = toLandmarks[i]
+            val toToLandmark = toLandmark[to]
+            if (toToLandmark != UNREACHABLE) {
+                val fromToLandmark = toLandmark[from]
+                // d(from, L) <= d(from, to) + d(to, L)
+                if (fromToLandmark == UNREACHABLE) return Long.MAX_VALUE
+                res = max(res, fromToLandmark.toLong() - toToLandmark)
+            }
+        }
+        // Each stored value is rounded down by less than a centimeter
+        return max(0L, res - 1) * 10
+    }
+
+    /**
+     * Lower bound of the distance in millimeters from the location to the closest target. Returns
+     * `Long.MAX_VALUE` when no target can be reached.
+     */
+    fun lowerBound(
+        block: BlockId,
+        offset: Offset<Block>,
+        targets: Collection<PathfindingEdgeLocationId<Block>>
+    ): Long {
+        val offsetMillimeters = offset.distance.millimeters
+        var res = Long.MAX_VALUE
+        for (target in targets) {
+            val targetOffset = target.offset.distance.millimeters
+            if (target.edge == block && targetOffset >= offsetMillimeters) {
+                res = min(res, targetOffset - offsetMillimeters)
+                continue
+            }
+            val blockDistance = lowerBound(block.index.toInt(), target.edge.index.toInt())
+            if (blockDistance == Long.MAX_VALUE) continue
+            res = min(res, max(0L, blockDistance - offsetMillimeters + targetOffset))
+        }
+        return res
+    }
+
+    /** Estimates the heap retained by the distances, in bytes */
+    fun estimatedHeapSize(): Long {
+        val blockCount = fromLandmarks.firstOrNull()?.size ?: 0
+        val arrays = 1L + 2 * landmarks.size
+        return HeapSize.OBJECT_HEADER +
+            arrays * HeapSize.ARRAY_HEADER +
+            landmarks.size * (1L + 2L * blockCount) * Int.SIZE_BYTES
+    }
+
+    /** Writes the distances, to be read with `LandmarkDistances.read` */
+    fun write(output: DataOutput) {
+        output.writeLong(graphChecksum)
+        output.writeInt(fromLandmarks.firstOrNull()?.size ?: 0)
+        output.writeInt(landmarks.size)
+        for (i in landmarks.indices) {
+            output.writeInt(landmarks[i])
+            for (value in fromLandmarks[i]) output.writeInt(value)
+            for (value in toLandmarks[i]) output.writeInt(value)
+        }
+    }
+
+    companion object {
+        /** Number of landmarks picked by default. Each takes 8 bytes per block. */
+        const val DEFAULT_LANDMARK_COUNT = 8
+
+        private const val UNREACHABLE = Int.MAX_VALUE
+
+        private val logger: Logger = LoggerFactory.getLogger(LandmarkDistances::class.java)
+
+        // Distances must not reference the infra, or it would never be collected
+        private val distances: Cache<BlockInfra, LandmarkDistances> =
+            CacheBuilder.newBuilder().weakKeys().build()
+
+        /** Returns the distances of the given infra, computing them if they weren't registered */
+        @JvmStatic
+        fun from(blockInfra: BlockInfra, rawInfra: RawSignalingInfra): LandmarkDistances {
+            val graph = BlockGraph.from(blockInfra, rawInfra)
+            val res = distances.get(blockInfra) { build(graph) }
+            if (res.graphChecksum == graph.checksum) return res
+            // Only test infras can have blocks added after being used
+            val rebuilt = build(graph)
+            distances.put(blockInfra, rebuilt)
+            return rebuilt
+        }
+
+        /** Sets the distances to use for the given infra, typically read from the infra cache */
+        @JvmStatic
+        fun register(blockInfra: BlockInfra, landmarkDistances: LandmarkDistances) {
+            distances.put(blockInfra, landmarkDistances)
+        }
+
+        /**
+         * Reads distances written by `write`. Returns null if they were computed on a different
+         * graph.
+         */
+        @JvmStatic
+        fun read(input: DataInput, graph: BlockGraph): LandmarkDistances? {
+            val checksum = input.readLong()
+            val blockCount = input.readInt()
+            if (checksum != graph.checksum || blockCount != graph.blockCount) return null
+            val landmarkCount = input.readInt()
+            val landmarks = IntArray(landmarkCount)
+            val fromLandmarks = Array(landmarkCount) { IntArray(0) }
+            val toLandmarks = Array(landmarkCount) { IntArray(0) }
+            for (i in 0 until landmarkCount) {
+                landmarks[i] = input.readInt()
+                fromLandmarks[i] = IntArray(blockCount) { input.readInt() }
+                toLandmarks[i] = IntArray(blockCount) { input.readInt() }
+            }
+            return LandmarkDistances(checksum, landmarks, fromLandmarks, toLandmarks)
+        }
+
+        /**
+         * Picks the landmarks and computes their distances. Each new landmark is the block that is
+         * the furthest away from the previous ones, so that landmarks end up at the edges of the
+         * network, "behind" most origins and destinations. When a large part of the graph can't
+         * reach nor be reached by any landmark yet, a landmark is placed there first.
+         */
+        @JvmStatic
+        @JvmOverloads
+        fun build(
+            graph: BlockGraph,
+            landmarkCount: Int = DEFAULT_LANDMARK_COUNT
+        ): LandmarkDistances {
+            val blockCount = graph.blockCount
+            val heap = IndexedMinHeap(blockCount)
+            val landmarks = mutableListOf<Int>()
+            val fromLandmarks = mutableListOf<IntArray>()
+            val toLandmarks = mutableListOf<IntArray>()
+            // Distance between each block and the closest landmark, in any direction
+            val coverage = LongArray(blockCount) { Long.MAX_VALUE }
+            if (blockCount > 0) updateCoverage(coverage, graph.distancesFromBlock(0, heap))
+
+            while (landmarks.size < min(landmarkCount, blockCount)) {
+                val landmark = pickLandmark(coverage) ?: break
+                val fromLandmark = graph.distancesFromBlock(landmark, heap)
+                val toLandmark =
+                    graph.distancesToTargets(
+                        listOf(EdgeLocation(BlockId(landmark.toUInt()), Offset(0.meters))),
+                        heap
+                    )
+                updateCoverage(coverage, fromLandmark)
+                updateCoverage(coverage, toLandmark)
+                landmarks.add(landmark)
+                fromLandmarks.add(toCentimeters(fromLandmark))
+                toLandmarks.add(toCentimeters(toLandmark))
+            }
+            logger.info("picked {} landmarks over {} blocks", landmarks.size, blockCount)
+            return LandmarkDistances(
+                graph.checksum,
+                landmarks.toIntArray(),
+                fromLandmarks.toTypedArray(),
+                toLandmarks.toTypedArray()
+            )
+        }
+
+        private fun updateCoverage(coverage: LongArray, distances: LongArray) {
+            for (i in coverage.indices) coverage[i] = min(coverage[i], distances[i])
+        }
+
+        /** Returns the next landmark, or null if every block is already a landmark */
+        private fun pickLandmark(coverage: LongArray): Int? {
+            var uncovered = 0
+            var firstUncovered = -1
+            var furthest = -1
+            for (i in coverage.indices) {
+                if (coverage[i] == Long.MAX_VALUE) {
+                    if (uncovered++ == 0) firstUncovered = i
+                } else if (furthest < 0 || coverage[i] > coverage[furthest]) {
+                    furthest = i
+                }
+            }
+            // Small isolated parts of the graph aren't worth a landmark
+            if (uncovered * 10 >= coverage.size) return firstUncovered
+            if (furthest < 0 || coverage[furthest] == 0L) return null
+            return furthest
+        }
+
+        private fun toCentimeters(distances: LongArray): IntArray {
+            return IntArray(distances.size) {
+                val distance = distances[it]
+                if (distance == Long.MAX_VALUE) UNREACHABLE
+                else min(distance / 10, UNREACHABLE - 1L).toInt()
+            }
+        }
+    }
+}
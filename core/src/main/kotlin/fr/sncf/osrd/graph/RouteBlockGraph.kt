@@ -0,0 +1,145 @@
+package fr.sncf.osrd.graph
+
+import com.google.common.cache.Cache
+import com.google.common.cache.CacheBuilder
+import fr.sncf.osrd.sim_infra.api.*
+import fr.sncf.osrd.sim_infra.utils.getRouteBlocks
+import fr.sncf.osrd.utils.indexing.StaticIdxList
+
+/**
+ * Route-following view of a `BlockGraph`. Trains go through blocks along routes: which block can
+ * follow a given one depends on the route the train is on. Nodes are *positions*, that is blocks
+ * on a given route, stored in compressed sparse row form like the block graph: the positions of
+ * route `r` are `routeOffsets[r] ..< routeOffsets[r + 1]`, and position `p` is on the block
+ * `positionBlocks[p]`.
+ *
+ * The position after `p` is `p + 1` within its route. At the end of a route, it's the first
+ * position of any route starting at its exit. Lookups don't allocate or hash anything.
+ */
+class RouteBlockGraph
+private constructor(
+    val blockGraph: BlockGraph,
+    private val routeOffsets: IntArray,
+    private val positionBlocks: IntArray,
+    private val positionRoutes: IntArray,
+    // Routes starting at each route's exit, in compressed sparse row form by directed detector
+    private val routeExits: IntArray,
+    private val startingOffsets: IntArray,
+    private val startingRoutes: IntArray,
+    // Positions of each block, in compressed sparse row form by block
+    private val blockPositionOffsets: IntArray,
+    private val blockPositions: IntArray,
+) {
+    /** Number of routes */
+    val routeCount: Int
+        get() = routeOffsets.size - 1
+
+    /** Number of positions, that is the sum of the number of blocks of all routes */
+    val positionCount: Int
+        get() = positionBlocks.size
+
+    /** Block at the given position */
+    fun getBlock(position: Int): Int {
+        return positionBlocks[position]
+    }
+
+    /** Route of the given position */
+    fun getRoute(position: Int): Int {
+        return positionRoutes[position]
+    }
+
+    /** First position of the route */
+    fun getRouteStart(route: Int): Int {
+        return routeOffsets[route]
+    }
+
+    /** Position after the last one of the route */
+    fun getRouteEnd(route: Int): Int {
+        return routeOffsets[route + 1]
+    }
+
+    /** Number of routes starting at the exit of the given route */
+    fun getNextRouteCount(route: Int): Int {
+        val exit = routeExits[route]
+        if (exit >= startingOffsets.size - 1) return 0
+        return startingOffsets[exit + 1] - startingOffsets[exit]
+    }
+
+    /** The i-th route starting at the exit of the given route */
+    fun getNextRoute(route: Int, i: Int): Int {
+        return startingRoutes[startingOffsets[routeExits[route]] + i]
+    }
+
+    /** Number of positions on the block, that is the number of routes going through it */
+    fun getBlockPositionCount(block: Int): Int {
+        return blockPositionOffsets[block + 1] - blockPositionOffsets[block]
+    }
+
+    /** The i-th position on the block */
+    fun getBlockPosition(block: Int, i: Int): Int {
+        return blockPositions[blockPositionOffsets[block] + i]
+    }
+
+    companion object {
+        // Graphs must not reference the infra, or it would never be collected
+        private val graphs: Cache<BlockInfra, RouteBlockGraph> =
+            CacheBuilder.newBuilder().weakKeys().build()
+
+        /** Returns the graph of the given infra, building it on the first call */
+        @JvmStatic
+        fun from(blockInfra: BlockInfra, rawInfra: RawInfra): RouteBlockGraph {
+            val blockGraph = BlockGraph.from(blockInfra, rawInfra)
+            val res = graphs.get(blockInfra) { build(blockGraph, blockInfra, rawInfra) }
+            if (res.blockGraph === blockGraph) return res
+            // Only test infras can have blocks added after being used
+            val rebuilt = build(blockGraph, blockInfra, rawInfra)
+            graphs.put(blockInfra, rebuilt)
+            return rebuilt
+        }
+
+        private fun build(
+            blockGraph: BlockGraph,
+            blockInfra: BlockInfra,
+            rawInfra: RawInfra
+        ): RouteBlockGraph {
+            val routeCount = rawInfra.routes.size.toInt()
+            val routeOffsets = IntArray(routeCount + 1)
+            val routeBlocks = ArrayList<StaticIdxList<Block>>(routeCount)
+            val routeEntries = IntArray(routeCount)
+            val routeExits = IntArray(routeCount)
+            var nodeCount = 0
+            for (route in rawInfra.routes) {
+                val i = route.index.toInt()
+                val blocks = blockInfra.getRouteBlocks(rawInfra, route)
+                routeBlocks.add(blocks)
+                routeOffsets[i + 1] = routeOffsets[i] + blocks.size
+                routeEntries[i] = rawInfra.getRouteEntry(route).data.toInt()
+                routeExits[i] = rawInfra.getRouteExit(route).data.toInt()
+                nodeCount = maxOf(nodeCount, routeEntries[i] + 1, routeExits[i] + 1)
+            }
+            val positionBlocks = IntArray(routeOffsets[routeCount])
+            val positionRoutes = IntArray(positionBlocks.size)
+            for (route in 0 until routeCount) {
+                for ((i, block) in routeBlocks[route].withIndex()) {
+                    positionBlocks[routeOffsets[route] + i] = block.index.toInt()
+                    positionRoutes[routeOffsets[route] + i] = route
+                }
+            }
+            val startingOffsets = IntArray(nodeCount + 1)
+            val startingRoutes = BlockGraph.groupByNode(routeEntries, startingOffsets)
+            val blockPositionOffsets = IntArray(blockGraph.blockCount + 1)
+            val blockPositions = BlockGraph.groupByNode(positionBlocks, blockPositionOffsets)
+            return RouteBlockGraph(
+                blockGraph,
+                routeOffsets,
+                positionBlocks,
+                positionRoutes,
+                routeExits,
+                startingOffsets,
+                startingRoutes,
+                blockPositionOffsets,
+                blockPositions
+            )
+        }
+    }
+}
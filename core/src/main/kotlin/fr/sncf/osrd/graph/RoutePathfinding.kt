@@ -0,0 +1,336 @@
+package fr.sncf.osrd.graph
+
+import fr.sncf.osrd.graph.Pathfinding.EdgeRange
+import fr.sncf.osrd.reporting.exceptions.ErrorType
+import fr.sncf.osrd.reporting.exceptions.OSRDError
+import fr.sncf.osrd.sim_infra.api.Block
+import fr.sncf.osrd.sim_infra.api.BlockId
+import fr.sncf.osrd.utils.CachedBlockMRSPBuilder
+import fr.sncf.osrd.utils.IndexedMinHeap
+import fr.sncf.osrd.utils.units.Offset
+import java.time.Duration
+import java.time.Instant
+import kotlin.math.max
+import kotlin.math.roundToLong
+
+/**
+ * Shortest path search following routes, over a `RouteBlockGraph`. It finds the fastest path going
+ * through one location of each step, in order, like `Pathfinding` over `InfraExplorer` edges.
+ *
+ * Nodes are (number of reached steps, position) pairs, labelled with the travel time in nanoseconds
+ * until the end of their block. Labels, predecessors and the A* queue are primitive arrays
+ * allocated once per search: nothing is allocated nor hashed per explored block. The heuristic is
+ * the block graph distance to the next steps, at the maximum speed of the rolling stock.
+ *
+ * Like `InfraExplorer`, routes are followed from their entry to their exit, or to the block of a
+ * destination where the path ends. Routes going through a block blocked by the constraints are
+ * never taken. Unlike it, paths aren't checked for loops: they are reported when validating the
+ * path.
+ */
+class RoutePathfinding(
+    private val graph: RouteBlockGraph,
+    private val mrspBuilder: CachedBlockMRSPBuilder,
+    private val constraints: List<PathfindingConstraint<Block>>,
+    private val rollingStockMaxSpeed: Double,
+    private val timeout: Double = Pathfinding.TIMEOUT,
+) {
+    private val blockGraph = graph.blockGraph
+    private val positionCount = graph.positionCount
+
+    // Travel time through each block, in nanoseconds, or -1 if not computed yet
+    private val blockTimes = LongArray(blockGraph.blockCount) { -1 }
+
+    // Whether each route can be taken from its entry: 0 if unknown, 1 if it can, 2 if it's blocked
+    private val usableRoutes = ByteArray(graph.routeCount)
+
+    private lateinit var steps: List<List<PathfindingEdgeLocationId<Block>>>
+    private var legCount = 0
+
+    // Targets of each leg, by block: firstTargets[leg][block] is the index of the first location
+    // of `steps[leg + 1]` on the block, nextTargets[leg][i] the index of the next one.
+    private lateinit var firstTargets: Array<IntArray>
+    private lateinit var nextTargets: Array<IntArray>
+
+    // Distances in millimeters from the start of each block to the locations of each leg, and the
+    // sum of the minimum distances of the following legs
+    private lateinit var distancesToSteps: Array<LongArray>
+    private lateinit var nextStepsDistances: LongArray
+
+    // Node `leg * positionCount + position`: time at the end of the block, and how it was reached.
+    // Predecessors are either a node, whose exit is the entry of the block, or `-(entry + 2)`.
+    private lateinit var labels: LongArray
+    private lateinit var predecessors: IntArray
+    private lateinit var heap: IndexedMinHeap
+
+    /**
+     * Location where the path enters a block other than at its start: a start location or a
+     * reached step. `predecessor` is a node, an earlier entry encoded as `-(entry + 2)`, or -1 for
+     * start locations.
+     */
+    private class Entry(
+        val position: Int,
+        val location: PathfindingEdgeLocationId<Block>,
+        val predecessor: Int,
+    )
+
+    private val entries = ArrayList<Entry>()
+    private var bestTime = Long.MAX_VALUE
+    private var bestEntry = -1
+
+    /**
+     * Runs the pathfinding. Each step is given as a collection of locations, the first ones are
+     * start locations. Returns the path, shaped like the results of `Pathfinding`, or null if
+     * there is none.
+     */
+    fun runPathfinding(
+        waypoints: List<Collection<PathfindingEdgeLocationId<Block>>>
+    ): PathfindingResultId<Block>? {
+        steps = waypoints.map { it.toList() }
+        legCount = steps.size - 1
+        initTargets()
+        initDistances()
+        val nodeCount = legCount * positionCount
+        labels = LongArray(nodeCount) { Long.MAX_VALUE }
+        predecessors = IntArray(nodeCount)
+        heap = IndexedMinHeap(nodeCount)
+
+        for (location in steps[0]) {
+            val block = location.edge.index.toInt()
+            for (i in 0 until graph.getBlockPositionCount(block)) {
+                val position = graph.getBlockPosition(block, i)
+                if (!isUsable(position, location.offset)) continue
+                val entry = addEntry(position, location, -1)
+                enter(0, position, location.offset, 0, -(entry + 2))
+            }
+        }
+
+        val start = Instant.now()
+        var iterations = 0
+        while (!heap.isEmpty() && heap.peekPriority() < bestTime) {
+            if (++iterations % TIMEOUT_CHECK_INTERVAL == 0) {
+                if (Duration.between(start, Instant.now()).toSeconds() >= timeout)
+                    throw OSRDError(ErrorType.PathfindingTimeoutError)
+            }
+            val node = heap.poll()
+            val leg = node / positionCount
+            val position = node % positionCount
+            val time = labels[node]
+            val route = graph.getRoute(position)
+            if (position + 1 < graph.getRouteEnd(route)) {
+                enter(leg, position + 1, Offset.zero(), time, node)
+                continue
+            }
+            for (i in 0 until graph.getNextRouteCount(route)) {
+                val nextRoute = graph.getNextRoute(route, i)
+                if (!isUsable(nextRoute)) continue
+                enter(leg, graph.getRouteStart(nextRoute), Offset.zero(), time, node)
+            }
+        }
+        if (bestEntry < 0) return null
+        return buildResult()
+    }
+
+    /** Indexes the locations of each leg by block */
+    private fun initTargets() {
+        firstTargets = Array(legCount) { IntArray(blockGraph.blockCount) { -1 } }
+        nextTargets = Array(legCount) { IntArray(steps[it + 1].size) }
+        for (leg in 0 until legCount) {
+            val locations = steps[leg + 1]
+            // Iterate backwards, so that lists are in the order of the step locations
+            for (i in locations.indices.reversed()) {
+                val block = locations[i].edge.index.toInt()
+                nextTargets[leg][i] = firstTargets[leg][block]
+                firstTargets[leg][block] = i
+            }
+        }
+    }
+
+    /** Computes the distances used by the heuristic, see `remainingTimeLowerBound` */
+    private fun initDistances() {
+        val blockHeap = IndexedMinHeap(blockGraph.blockCount)
+        distancesToSteps =
+            Array(legCount) { blockGraph.distancesToTargets(steps[it + 1], blockHeap) }
+
+        // Compute the minimum distance between steps, then its reversed cumulative sum
+        nextStepsDistances = LongArray(legCount)
+        for (leg in 0 until legCount - 1) {
+            nextStepsDistances[leg] =
+                steps[leg + 1].minOfOrNull {
+                    val distance = distancesToSteps[leg + 1][it.edge.index.toInt()]
+                    if (distance == Long.MAX_VALUE) distance
+                    else max(0L, distance - it.offset.distance.millimeters)
+                } ?: Long.MAX_VALUE
+        }
+        for (leg in legCount - 2 downTo 0) {
+            nextStepsDistances[leg] =
+                saturatedSum(nextStepsDistances[leg], nextStepsDistances[leg + 1])
+        }
+    }
+
+    /**
+     * The path enters the block of the position at the given offset and time, from `predecessor`.
+     * Reaches the locations of the current step on the rest of the block, then labels the node.
+     */
+    private fun enter(
+        leg: Int,
+        position: Int,
+        offset: Offset<Block>,
+        time: Long,
+        predecessor: Int
+    ) {
+        val block = graph.getBlock(position)
+        var target = firstTargets[leg][block]
+        while (target >= 0) {
+            val location = steps[leg + 1][target]
+            target = nextTargets[leg][target]
+            // The previous location is further on the block
+            if (location.offset < offset) continue
+            val arrival = time + travelTime(block, offset, location.offset)
+            if (arrival >= bestTime) continue
+            val entry = addEntry(position, location, predecessor)
+            if (leg + 1 == legCount) {
+                bestTime = arrival
+                bestEntry = entry
+            } else {
+                enter(leg + 1, position, location.offset, arrival, -(entry + 2))
+            }
+        }
+
+        // The path can't go any further than the block of a destination
+        if (firstTargets[legCount - 1][block] >= 0) return
+        val node = leg * positionCount + position
+        val exitTime = time + travelTime(block, offset, null)
+        if (exitTime >= labels[node]) return
+        val remainingTime = remainingTimeLowerBound(leg, block)
+        if (remainingTime == Long.MAX_VALUE) return
+        labels[node] = exitTime
+        predecessors[node] = predecessor
+        heap.insertOrDecrease(node, exitTime + remainingTime)
+    }
+
+    private fun addEntry(
+        position: Int,
+        location: PathfindingEdgeLocationId<Block>,
+        predecessor: Int
+    ): Int {
+        entries.add(Entry(position, location, predecessor))
+        return entries.size - 1
+    }
+
+    /**
+     * Lower bound of the time from the end of the block to the last step, in nanoseconds.
+     * `Long.MAX_VALUE` if the next step can't be reached from there.
+     */
+    private fun remainingTimeLowerBound(leg: Int, block: Int): Long {
+        val distanceToStep = distancesToSteps[leg][block]
+        if (distanceToStep == Long.MAX_VALUE) return Long.MAX_VALUE
+        val distanceFromExit = max(0L, distanceToStep - blockGraph.getBlockLength(block))
+        val distance = saturatedSum(distanceFromExit, nextStepsDistances[leg])
+        if (distance == Long.MAX_VALUE) return Long.MAX_VALUE
+        return (distance * 1e6 / rollingStockMaxSpeed).toLong()
+    }
+
+    /** Time in nanoseconds to go from `from` to `to` on the block, or to its end if `to` is null */
+    private fun travelTime(block: Int, from: Offset<Block>, to: Offset<Block>?): Long {
+        if (from == Offset.zero<Block>() && to == null) {
+            if (blockTimes[block] < 0)
+                blockTimes[block] = toNanos(mrspBuilder.getBlockTime(BlockId(block.toUInt()), null))
+            return blockTimes[block]
+        }
+        val blockId = BlockId(block.toUInt())
+        val time = mrspBuilder.getBlockTime(blockId, to) - mrspBuilder.getBlockTime(blockId, from)
+        return max(0L, toNanos(time))
+    }
+
+    /** Whether routes can be taken from their entry, see `isUsable(Int, Offset)` */
+    private fun isUsable(route: Int): Boolean {
+        if (usableRoutes[route] == UNKNOWN) {
+            val start = graph.getRouteStart(route)
+            val usable = start < graph.getRouteEnd(route) && isUsable(start, null)
+            usableRoutes[route] = if (usable) USABLE else BLOCKED
+        }
+        return usableRoutes[route] == USABLE
+    }
+
+    /**
+     * Whether the route of the position can be taken from the position, entering its block at
+     * `startOffset` (or from its start if null), like `InfraExplorer.extend` tells. The blocks of
+     * the route must not be blocked until its end, or until the block of a destination.
+     */
+    private fun isUsable(position: Int, startOffset: Offset<Block>?): Boolean {
+        if (constraints.isEmpty()) return true
+        val destinations = firstTargets[legCount - 1]
+        for (p in position until graph.getRouteEnd(graph.getRoute(position))) {
+            val block = graph.getBlock(p)
+            val blockId = BlockId(block.toUInt())
+            val destination = destinations[block]
+            val endLocation = if (destination >= 0) steps.last()[destination] else null
+            for (constraint in constraints) {
+                for (range in constraint.apply(blockId)) {
+                    val blocked =
+                        if (p == position && startOffset != null) startOffset < range.end
+                        else if (endLocation != null) endLocation.offset > range.start
+                        else true
+                    if (blocked) return false
+                }
+            }
+            if (endLocation != null) break
+        }
+        return true
+    }
+
+    /** Builds the result from the best final entry, merging consecutive ranges of a block */
+    private fun buildResult(): PathfindingResultId<Block> {
+        val ranges = ArrayList<PathfindingEdgeRangeId<Block>>()
+        val locations = ArrayList<PathfindingEdgeLocationId<Block>>()
+        val lastEntry = entries[bestEntry]
+        locations.add(lastEntry.location)
+        var block = BlockId(graph.getBlock(lastEntry.position).toUInt())
+        var end = lastEntry.location.offset
+        var predecessor = lastEntry.predecessor
+        while (true) {
+            if (predecessor >= 0) {
+                // The block was entered from its start, at the end of the block of the node
+                ranges.add(EdgeRange(block, Offset.zero(), end))
+                block = BlockId(graph.getBlock(predecessor % positionCount).toUInt())
+                end = mrspBuilder.blockInfra.getBlockLength(block)
+                predecessor = predecessors[predecessor]
+                continue
+            }
+            val entry = entries[-predecessor - 2]
+            ranges.add(EdgeRange(block, entry.location.offset, end))
+            locations.add(entry.location)
+            if (entry.predecessor == -1) break
+            end = entry.location.offset
+            predecessor = entry.predecessor
+        }
+        ranges.reverse()
+        locations.reverse()
+
+        val res = ArrayList<PathfindingEdgeRangeId<Block>>()
+        for (range in ranges) {
+            val last = res.lastOrNull()
+            if (last != null && last.edge == range.edge && last.end == range.start)
+                res[res.size - 1] = EdgeRange(range.edge, last.start, range.end)
+            else res.add(range)
+        }
+        return Pathfinding.Result(res, locations)
+    }
+
+    companion object {
+        private const val TIMEOUT_CHECK_INTERVAL = 1024
+        private const val UNKNOWN: Byte = 0
+        private const val USABLE: Byte = 1
+        private const val BLOCKED: Byte = 2
+
+        private fun toNanos(seconds: Double): Long {
+            return (seconds * 1e9).roundToLong()
+        }
+
+        /** Sum of distances in millimeters, where `Long.MAX_VALUE` stands for unreachable */
+        private fun saturatedSum(a: Long, b: Long): Long {
+            if (a == Long.MAX_VALUE || b == Long.MAX_VALUE) return Long.MAX_VALUE
+            return a + b
+        }
+    }
+}
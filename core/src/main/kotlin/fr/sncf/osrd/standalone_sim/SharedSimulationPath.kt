@@ -0,0 +1,71 @@
+package fr.sncf.osrd.standalone_sim
+
+import fr.sncf.osrd.api.FullInfra
+import fr.sncf.osrd.envelope.Envelope
+import fr.sncf.osrd.envelope_sim.EnvelopeSimPath
+import fr.sncf.osrd.envelope_sim_infra.EnvelopeTrainPath
+import fr.sncf.osrd.envelope_sim_infra.computeMRSP
+import fr.sncf.osrd.external_generated_inputs.ElectricalProfileMapping
+import fr.sncf.osrd.sim_infra.api.PathProperties
+import fr.sncf.osrd.sim_infra.api.Route
+import fr.sncf.osrd.sim_infra.impl.ChunkPath
+import fr.sncf.osrd.train.RollingStock
+import fr.sncf.osrd.utils.DistanceRangeMap
+import fr.sncf.osrd.utils.indexing.StaticIdxList
+import fr.sncf.osrd.utils.units.Speed
+import java.util.concurrent.ConcurrentHashMap
+
+/**
+ * A path, with what the simulations of trains on it have in common: the envelope path, and the
+ * MRSPs by rolling stock, speed limit tag and safety speed ranges. Rolling stocks are compared by
+ * identity. Simulations of several trains on the path can run concurrently.
+ */
+class SharedSimulationPath(
+    val infra: FullInfra,
+    val pathProps: PathProperties,
+    val chunkPath: ChunkPath,
+    val routes: StaticIdxList<Route>,
+    electricalProfileMap: ElectricalProfileMapping?,
+) {
+    val envelopeSimPath: EnvelopeSimPath by lazy {
+        EnvelopeTrainPath.from(infra.rawInfra, pathProps, electricalProfileMap)
+    }
+
+    private data class MRSPKey(
+        val rollingStock: RollingStock,
+        val addRollingStockLength: Boolean,
+        val speedLimitTag: String?,
+        val safetySpeedRanges: List<DistanceRangeMap.RangeMapEntry<Speed>>,
+    )
+
+    private val mrsps = ConcurrentHashMap<MRSPKey, Envelope>()
+
+    /** Returns the MRSP of the rolling stock on the path, computing it the first time */
+    fun getMRSP(
+        rollingStock: RollingStock,
+        addRollingStockLength: Boolean,
+        speedLimitTag: String?,
+        safetySpeedRanges: DistanceRangeMap<Speed>?,
+    ): Envelope {
+        val key =
+            MRSPKey(
+                rollingStock,
+                addRollingStockLength,
+                speedLimitTag,
+                safetySpeedRanges?.asList() ?: listOf()
+            )
+        return mrsps.computeIfAbsent(key) {
+            val mrsp =
+                computeMRSP(
+                    pathProps,
+                    rollingStock,
+                    addRollingStockLength,
+                    speedLimitTag,
+                    safetySpeedRanges
+                )
+            // Envelopes fill their time caches on first use, fill them before sharing the MRSP
+            mrsp.totalTime
+            mrsp
+        }
+    }
+}
@@ -20,9 +20,7 @@ import fr.sncf.osrd.envelope_sim.allowances.utils.AllowanceRange
 import fr.sncf.osrd.envelope_sim.allowances.utils.AllowanceValue.*
 import fr.sncf.osrd.envelope_sim.pipelines.MaxEffortEnvelope
 import fr.sncf.osrd.envelope_sim.pipelines.MaxSpeedEnvelope
-import fr.sncf.osrd.envelope_sim_infra.EnvelopeTrainPath
 import fr.sncf.osrd.envelope_sim_infra.HasMissingSpeedTag
-import fr.sncf.osrd.envelope_sim_infra.computeMRSP
 import fr.sncf.osrd.external_generated_inputs.ElectricalProfileMapping
 import fr.sncf.osrd.railjson.schema.rollingstock.Comfort
 import fr.sncf.osrd.railjson.schema.schedule.RJSAllowanceDistribution
@@ -62,15 +60,54 @@ fun runStandaloneSimulation(
     margins: RangeValues<MarginValue>,
     pathItemPositions: List<Offset<Path>>
 ): SimulationSuccess {
+    return runStandaloneSimulation(
+        SharedSimulationPath(infra, pathProps, chunkPath, routes, electricalProfileMap),
+        rollingStock,
+        comfort,
+        constraintDistribution,
+        speedLimitTag,
+        powerRestrictions,
+        useElectricalProfiles,
+        timeStep,
+        schedule,
+        initialSpeed,
+        margins,
+        pathItemPositions,
+    )
+}
+
+/**
+ * Run a simulation for a single train, on a path which may be shared with the simulations of other
+ * trains.
+ */
+fun runStandaloneSimulation(
+    path: SharedSimulationPath,
+    rollingStock: RollingStock,
+    comfort: Comfort,
+    constraintDistribution: RJSAllowanceDistribution,
+    speedLimitTag: String?,
+    powerRestrictions: DistanceRangeMap<String>,
+    useElectricalProfiles: Boolean,
+    timeStep: Double,
+    schedule: List<SimulationScheduleItem>,
+    initialSpeed: Double,
+    margins: RangeValues<MarginValue>,
+    pathItemPositions: List<Offset<Path>>
+): SimulationSuccess {
+    val infra = path.infra
+    val pathProps = path.pathProps
+    val chunkPath = path.chunkPath
+    val routes = path.routes
+
     // MRSP & SpeedLimits
     val safetySpeedRanges = makeSafetySpeedRanges(infra, chunkPath, routes, schedule)
-    val mrsp = computeMRSP(pathProps, rollingStock, true, speedLimitTag, safetySpeedRanges)
+    val mrsp = path.getMRSP(rollingStock, true, speedLimitTag, safetySpeedRanges)
     // We don't use speed safety ranges in the MRSP displayed in the front
     // (just like we don't add the train length)
-    val speedLimits = computeMRSP(pathProps, rollingStock, false, speedLimitTag)
+    val speedLimits = path.getMRSP(rollingStock, false, speedLimitTag, null)
 
     // Build paths and contexts
-    val envelopeSimPath = EnvelopeTrainPath.from(infra.rawInfra, pathProps, electricalProfileMap)
+    val envelopeSimPath = path.envelopeSimPath
     val powerRestrictionsLegacyMap = powerRestrictions.toRangeMap()
     val electrificationMap =
         envelopeSimPath.getElectrificationMap(
@@ -1,6 +1,7 @@
 package fr.sncf.osrd.stdcm
 
 import fr.sncf.osrd.envelope_sim.PhysicsRollingStock
+import fr.sncf.osrd.graph.LandmarkDistances
 import fr.sncf.osrd.sim_infra.api.Block
 import fr.sncf.osrd.sim_infra.api.BlockId
 import fr.sncf.osrd.sim_infra.api.BlockInfra
@@ -34,6 +35,13 @@ typealias STDCMAStarHeuristic = (STDCMEdge, Offset<Block>?, Int) -> Double
  * been reached.
  *
  * Because it's optimistic, we know that we still find the best (fastest) solution.
+ *
+ * The cached values only depend on the infra, the rolling stock speed class and the steps after the
+ * origin, they are kept across requests in STDCMHeuristicCache. The search covers blocks from which
+ * the destination can be reached within the maximum running time.
+ *
+ * Blocks that can't be on a path shorter than the maximum running time are then pruned for each
+ * request: their time from the origin is bounded using landmark distances.
  */
 class STDCMHeuristicBuilder(
     private val blockInfra: BlockInfra,
@@ -44,46 +52,26 @@ class STDCMHeuristicBuilder(
 ) {
     private val logger: Logger = LoggerFactory.getLogger("STDCMHeuristic")
     private val mrspBuilder = CachedBlockMRSPBuilder(rawInfra, blockInfra, rollingStock)
+    private val landmarkDistances = LandmarkDistances.from(blockInfra, rawInfra)
 
     /** Runs all the pre-processing and initialize the STDCM A* heuristic. */
     @WithSpan(value = "Initializing STDCM heuristic", kind = SpanKind.SERVER)
     fun build(): Pair<STDCMAStarHeuristic, Double> {
-        logger.info("Start building STDCM heuristic...")
-        // One map per number of reached pathfinding step
-        // maps[n][block] = min time it takes to go from the start of the block to the destination,
-        // if we're at the n-th step of the path
-        val remainingTimeEstimations = mutableListOf<MutableMap<BlockId, Double>>()
-        for (i in 0 until steps.size - 1) remainingTimeEstimations.add(mutableMapOf())
-
-        // Build the cached values
-        // We run a kind of Dijkstra, but starting from the end
-        val pendingBlocks = initFirstBlocks()
-        while (true) {
-            val block = pendingBlocks.poll() ?: break
-            val index = max(0, block.stepIndex - 1)
-            if (remainingTimeEstimations[index].contains(block.block)) {
-                continue
+        val remainingTimeEstimations =
+            STDCMHeuristicCache.getOrBuild(
+                rawInfra,
+                blockInfra,
+                STDCMHeuristicCache.SpeedClass(rollingStock),
+                steps,
+                maxRunningTime
+            ) {
+                buildTables()
             }
-            for (i in index until remainingTimeEstimations.size) {
-                remainingTimeEstimations[i][block.block] =
-                    min(
-                        block.remainingTimeAtBlockStart,
-                        remainingTimeEstimations[i].getOrDefault(
-                            block.block,
-                            Double.POSITIVE_INFINITY
-                        )
-                    )
-            }
-            if (block.stepIndex > 0) {
-                pendingBlocks.addAll(getPredecessors(block))
-            }
-        }
         val bestTravelTime =
-            steps.first().locations.minOfOrNull {
-                remainingTimeEstimations.first()[it.edge] ?: Double.POSITIVE_INFINITY
-            } ?: Double.POSITIVE_INFINITY
+            steps.first().locations.minOfOrNull { remainingTimeEstimations[0, it.edge] }
+                ?: Double.POSITIVE_INFINITY
         logger.info(
-            "STDCM heuristic built, best theoretical travel time = ${bestTravelTime.toInt()} seconds"
+            "STDCM heuristic ready, best theoretical travel time = ${bestTravelTime.toInt()}s"
         )
 
         val heuristic: STDCMAStarHeuristic = res@{ edge, offset, nPassedSteps ->
@@ -105,9 +93,13 @@ class STDCMHeuristicBuilder(
                     nPassedSteps
                 )
 
-            val timeAfterStartOfLastBlock =
-                remainingTimeEstimations[expectedIndex][allBlocks.last()]
-                    ?: return@res Double.POSITIVE_INFINITY
+            val lastBlock = allBlocks.last()
+            val timeAfterStartOfLastBlock = remainingTimeEstimations[expectedIndex, lastBlock]
+            if (timeAfterStartOfLastBlock == Double.POSITIVE_INFINITY)
+                return@res Double.POSITIVE_INFINITY
+            // Tables don't depend on the origin, blocks too far from it are pruned here
+            if (timeAfterStartOfLastBlock + minTimeFromOrigin(lastBlock) > maxRunningTime)
+                return@res Double.POSITIVE_INFINITY
 
             // Compute the time it takes from the current point until the start
             // of the last block of the lookahead, then from that point the destination.
@@ -124,10 +116,41 @@ class STDCMHeuristicBuilder(
         return Pair(heuristic, bestTravelTime)
     }
 
+    /**
+     * Builds the remaining time tables. We run a kind of Dijkstra, but starting from the end. Each
+     * table is a primitive array indexed by block, unreached blocks are set to positive infinity.
+     */
+    private fun buildTables(): RemainingTimeTables {
+        logger.info("Start building STDCM heuristic...")
+        // One table per number of reached pathfinding step
+        // tables[n][block] = min time it takes to go from the start of the block to the
+        // destination, if we're at the n-th step of the path
+        val blockCount = blockInfra.blocks.size.toInt()
+        val remainingTimeEstimations =
+            Array(steps.size - 1) { DoubleArray(blockCount) { Double.POSITIVE_INFINITY } }
+
+        val pendingBlocks = initFirstBlocks()
+        while (true) {
+            val block = pendingBlocks.poll() ?: break
+            val index = block.stepIndex - 1
+            val blockIndex = block.block.index.toInt()
+            if (remainingTimeEstimations[index][blockIndex] != Double.POSITIVE_INFINITY) {
+                continue
+            }
+            for (i in index until remainingTimeEstimations.size) {
+                remainingTimeEstimations[i][blockIndex] =
+                    min(block.remainingTimeAtBlockStart, remainingTimeEstimations[i][blockIndex])
+            }
+            pendingBlocks.addAll(getPredecessors(block))
+        }
+        logger.info("STDCM heuristic built")
+        return RemainingTimeTables(maxRunningTime, remainingTimeEstimations)
+    }
+
     /** Describes a pending block, ready to be added to the cached blocks. */
     private data class PendingBlock(
         val block: BlockId,
-        val stepIndex: Int, // Number of steps that have been reached
+        val stepIndex: Int, // Number of steps that have been reached, the origin included
         val remainingTimeAtBlockStart: Double,
     ) : Comparable<PendingBlock> {
         /** Used to find the lowest remaining time at block start in a priority queue. */
@@ -148,18 +171,34 @@ class STDCMHeuristicBuilder(
         val blocks = blockInfra.getBlocksEndingAtDetector(detector)
         val res = mutableListOf<PendingBlock>()
         for (block in blocks) {
-            val newBlock =
+            res.add(
                 makePendingBlock(
                     block,
                     null,
                     pendingBlock.stepIndex,
                     pendingBlock.remainingTimeAtBlockStart
                 )
-            res.add(newBlock)
+            )
         }
         return res
     }
 
+    /**
+     * Lower bound of the time it takes to reach the start of the block from the origin, at the
+     * maximum speed of the rolling stock. Positive infinity if it can't be reached.
+     */
+    private fun minTimeFromOrigin(block: BlockId): Double {
+        var distance = Long.MAX_VALUE
+        for (origin in steps.first().locations) {
+            val blockDistance =
+                landmarkDistances.lowerBound(origin.edge.index.toInt(), block.index.toInt())
+            if (blockDistance == Long.MAX_VALUE) continue
+            distance = min(distance, max(0L, blockDistance - origin.offset.distance.millimeters))
+        }
+        if (distance == Long.MAX_VALUE) return Double.POSITIVE_INFINITY
+        return distance / 1000.0 / rollingStock.maxSpeed
+    }
+
     /** Initialize the priority queue with the blocks that contain the destination. */
     private fun initFirstBlocks(): PriorityQueue<PendingBlock> {
         val res = PriorityQueue<PendingBlock>()
@@ -180,7 +219,8 @@ class STDCMHeuristicBuilder(
         var newIndex = currentIndex
         val actualOffset = offset ?: blockInfra.getBlockLength(block)
         var remainingTimeWithStops = remainingTime
-        while (newIndex > 0) {
+        // The origin is always reached: tables don't depend on it
+        while (newIndex > 1) {
             val step = steps[newIndex - 1]
             if (step.locations.none { it.edge == block && it.offset <= actualOffset }) {
                 break
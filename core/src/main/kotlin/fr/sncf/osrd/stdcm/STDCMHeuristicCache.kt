@@ -0,0 +1,115 @@
+package fr.sncf.osrd.stdcm
+
+import com.google.common.cache.Cache
+import com.google.common.cache.CacheBuilder
+import com.google.common.util.concurrent.ExecutionError
+import com.google.common.util.concurrent.UncheckedExecutionException
+import fr.sncf.osrd.envelope_sim.PhysicsRollingStock
+import fr.sncf.osrd.graph.PathfindingEdgeLocationId
+import fr.sncf.osrd.sim_infra.api.Block
+import fr.sncf.osrd.sim_infra.api.BlockId
+import fr.sncf.osrd.sim_infra.api.BlockInfra
+import fr.sncf.osrd.sim_infra.api.RawInfra
+import fr.sncf.osrd.utils.CachedBlockMRSPBuilder
+import java.util.concurrent.ExecutionException
+
+/**
+ * Lower bounds of the time it takes to reach the destination from the start of each block, for
+ * each number of reached steps. Blocks that can't reach the destination within maxRunningTime are
+ * set to positive infinity.
+ */
+class RemainingTimeTables(val maxRunningTime: Double, private val tables: Array<DoubleArray>) {
+    operator fun get(stepIndex: Int, block: BlockId): Double {
+        return tables[stepIndex][block.index.toInt()]
+    }
+
+    /** Number of stored values, used to weigh cache entries */
+    val valueCount: Int
+        get() = tables.sumOf { it.size }
+}
+
+/**
+ * Keeps STDCM heuristic tables across requests. Tables depend on the infra, on the rolling stock
+ * parameters used to compute block MRSPs (its speed class), and on the steps of the path after the
+ * origin: requests from different origins to the same destination share them. Infras are weakly
+ * referenced, their tables are dropped when they are unloaded.
+ *
+ * Concurrent requests for the same tables wait for the first one to build them, instead of
+ * building them again.
+ */
+object STDCMHeuristicCache {
+    // Maximum number of table values kept for each infra, 8 bytes each
+    private const val MAX_VALUES_PER_INFRA = 1L shl 23
+
+    /** Rolling stock parameters that heuristic tables depend on */
+    data class SpeedClass(val maxSpeed: Double, val length: Double) {
+        constructor(
+            rollingStock: PhysicsRollingStock?
+        ) : this(
+            rollingStock?.maxSpeed ?: CachedBlockMRSPBuilder.DEFAULT_MAX_ROLLING_STOCK_SPEED,
+            rollingStock?.length ?: 0.0
+        )
+    }
+
+    private data class StepKey(
+        val locations: Collection<PathfindingEdgeLocationId<Block>>,
+        val duration: Double?,
+        val stop: Boolean,
+    )
+
+    private data class TableKey(
+        val blockCount: UInt,
+        val speedClass: SpeedClass,
+        // steps after the origin
+        val steps: List<StepKey>,
+    )
+
+    // Values must not reference the infra, or it would never be collected
+    private val infraCaches: Cache<RawInfra, Cache<TableKey, RemainingTimeTables>> =
+        CacheBuilder.newBuilder().weakKeys().build()
+
+    /**
+     * Returns tables for the given infra, speed class and steps, built with a max running time at
+     * least as large as the given one. Values below the max running time don't depend on it. Tables
+     * built with a larger max running time set fewer blocks to positive infinity: their extra
+     * values are still lower bounds, so the heuristic stays admissible, but it prunes fewer blocks.
+     */
+    fun getOrBuild(
+        rawInfra: RawInfra,
+        blockInfra: BlockInfra,
+        speedClass: SpeedClass,
+        steps: List<STDCMStep>,
+        maxRunningTime: Double,
+        build: () -> RemainingTimeTables
+    ): RemainingTimeTables {
+        val tableCache =
+            infraCaches.get(rawInfra) {
+                CacheBuilder.newBuilder()
+                    .maximumWeight(MAX_VALUES_PER_INFRA)
+                    .weigher<TableKey, RemainingTimeTables> { _, tables -> tables.valueCount }
+                    .build()
+            }
+        val stepKeys = steps.drop(1).map { StepKey(it.locations, it.duration, it.stop) }
+        val key = TableKey(blockInfra.blocks.size, speedClass, stepKeys)
+        while (true) {
+            val tables =
+                try {
+                    tableCache.get(key) { build() }
+                } catch (e: ExecutionException) {
+                    throw e.cause ?: e
+                } catch (e: UncheckedExecutionException) {
+                    throw e.cause ?: e
+                } catch (e: ExecutionError) {
+                    throw e.cause ?: e
+                }
+            if (tables.maxRunningTime >= maxRunningTime) return tables
+            // built for a shorter max running time: build them again, unless it's already done
+            tableCache.asMap().remove(key, tables)
+        }
+    }
+
+    /** Drops all cached tables */
+    fun clear() {
+        infraCaches.invalidateAll()
+    }
+}
@@ -55,10 +55,6 @@ class BacktrackingManager(private val graph: STDCMGraph) {
         val oldEnvelope =
             graph.stdcmSimulations.simulateBlock(
                 graph.rawInfra,
-                graph.rollingStock,
-                graph.comfort,
-                graph.timeStep,
-                graph.tag,
                 old.infraExplorer,
                 BlockSimulationParameters(
                     old.infraExplorer.getCurrentBlock(),
@@ -0,0 +1,127 @@
+package fr.sncf.osrd.stdcm.graph
+
+import com.google.common.cache.Cache
+import com.google.common.cache.CacheBuilder
+import com.google.common.cache.CacheLoader.InvalidCacheLoadException
+import com.google.common.util.concurrent.ExecutionError
+import com.google.common.util.concurrent.UncheckedExecutionException
+import fr.sncf.osrd.envelope.Envelope
+import fr.sncf.osrd.railjson.schema.rollingstock.Comfort
+import fr.sncf.osrd.sim_infra.api.RawSignalingInfra
+import fr.sncf.osrd.train.RollingStock
+import io.opentelemetry.api.GlobalOpenTelemetry
+import java.util.concurrent.atomic.LongAdder
+
+/**
+ * Everything a block simulation depends on, apart from the infra and the block simulation
+ * parameters. Rolling stocks are compared by their physical characteristics, so that the same
+ * rolling stock sent by different requests shares its simulations.
+ */
+class BlockSimulationSettings(
+    val rollingStock: RollingStock,
+    val comfort: Comfort?,
+    val timeStep: Double,
+    val tag: String?,
+) {
+    private val rollingStockKey = rollingStock.simulationKey
+    // Rolling stock keys are large, the hash is only computed once
+    private val hash = listOf(rollingStockKey, comfort, timeStep, tag).hashCode()
+
+    override fun equals(other: Any?): Boolean {
+        if (this === other) return true
+        if (other !is BlockSimulationSettings) return false
+        return hash == other.hash &&
+            comfort == other.comfort &&
+            timeStep == other.timeStep &&
+            tag == other.tag &&
+            rollingStockKey == other.rollingStockKey
+    }
+
+    override fun hashCode(): Int {
+        return hash
+    }
+}
+
+/**
+ * Process-wide cache of block envelopes, shared by all the STDCM searches of the worker. Envelopes
+ * are kept per infra, which is weakly referenced: they are dropped when the infra is unloaded. The
+ * cache of each infra is bounded by the total number of envelope points it holds.
+ */
+object BlockSimulationCache {
+    // Envelope points take about 40 bytes each
+    private const val MAX_POINTS_PER_INFRA = 1L shl 22
+
+    private data class Key(
+        val settings: BlockSimulationSettings,
+        val blockParams: BlockSimulationParameters,
+    )
+
+    // Values must not reference the infra, or it would never be collected
+    private val infraCaches: Cache<RawSignalingInfra, Cache<Key, Envelope>> =
+        CacheBuilder.newBuilder().weakKeys().build()
+
+    private val hits = LongAdder()
+    private val misses = LongAdder()
+
+    init {
+        val meter = GlobalOpenTelemetry.getMeter("fr.sncf.osrd.stdcm")
+        meter
+            .counterBuilder("stdcm.block_simulation_cache.hits")
+            .buildWithCallback { it.record(hitCount) }
+        meter
+            .counterBuilder("stdcm.block_simulation_cache.misses")
+            .buildWithCallback { it.record(missCount) }
+    }
+
+    /** Number of envelopes that were found in the cache, since the start of the process */
+    val hitCount: Long
+        get() = hits.sum()
+
+    /** Number of envelopes that had to be simulated, since the start of the process */
+    val missCount: Long
+        get() = misses.sum()
+
+    /**
+     * Returns the cached envelope for the given parameters, or simulates it. Failed simulations
+     * (null envelopes) aren't cached.
+     */
+    fun getOrSimulate(
+        rawInfra: RawSignalingInfra,
+        settings: BlockSimulationSettings,
+        blockParams: BlockSimulationParameters,
+        simulate: () -> Envelope?
+    ): Envelope? {
+        val infraCache =
+            infraCaches.get(rawInfra) {
+                CacheBuilder.newBuilder()
+                    .maximumWeight(MAX_POINTS_PER_INFRA)
+                    .weigher<Key, Envelope> { _, envelope -> envelope.positionPointsCount() }
+                    .softValues()
+                    .build()
+            }
+        val key = Key(settings, blockParams)
+        var simulated = false
+        val envelope =
+            try {
+                // Concurrent searches wait for an envelope being simulated, rather than simulating
+                // it again. A null envelope is reported as an invalid load, and isn't cached.
+                infraCache.get(key) {
+                    simulated = true
+                    simulate()
+                }
+            } catch (e: InvalidCacheLoadException) {
+                null
+            } catch (e: UncheckedExecutionException) {
+                throw e.cause ?: e
+            } catch (e: ExecutionError) {
+                throw e.cause ?: e
+            }
+        if (simulated) misses.increment() else hits.increment()
+        return envelope
+    }
+
+    /** Drops all cached envelopes. Exported counters are monotonic, they are never reset. */
+    fun clear() {
+        infraCaches.invalidateAll()
+    }
+}
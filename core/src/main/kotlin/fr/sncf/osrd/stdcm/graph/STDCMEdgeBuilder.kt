@@ -86,10 +86,6 @@ internal constructor(
             envelope =
                 graph.stdcmSimulations.simulateBlock(
                     graph.rawInfra,
-                    graph.rollingStock,
-                    graph.comfort,
-                    graph.timeStep,
-                    graph.tag,
                     infraExplorer,
                     BlockSimulationParameters(
                         infraExplorer.getCurrentBlock(),
@@ -8,7 +8,6 @@ import fr.sncf.osrd.envelope_sim.allowances.utils.AllowanceValue.FixedTime
 import fr.sncf.osrd.graph.Graph
 import fr.sncf.osrd.railjson.schema.rollingstock.Comfort
 import fr.sncf.osrd.stdcm.STDCMAStarHeuristic
-import fr.sncf.osrd.stdcm.STDCMHeuristicBuilder
 import fr.sncf.osrd.stdcm.STDCMStep
 import fr.sncf.osrd.stdcm.infra_exploration.InfraExplorerWithEnvelope
 import fr.sncf.osrd.stdcm.preprocessing.interfaces.BlockAvailabilityInterface
@@ -37,11 +36,13 @@ class STDCMGraph(
     minScheduleTimeStart: Double,
     val steps: List<STDCMStep>,
     val tag: String?,
-    val standardAllowance: AllowanceValue?
+    val standardAllowance: AllowanceValue?,
+    preprocessing: STDCMPreprocessing = STDCMPreprocessing(fullInfra, rollingStock),
 ) : Graph<STDCMNode, STDCMEdge, STDCMEdge> {
     val rawInfra = fullInfra.rawInfra!!
     val blockInfra = fullInfra.blockInfra!!
-    var stdcmSimulations: STDCMSimulations = STDCMSimulations()
+    var stdcmSimulations: STDCMSimulations =
+        STDCMSimulations(BlockSimulationSettings(rollingStock, comfort, timeStep, tag))
     val delayManager: DelayManager =
         DelayManager(minScheduleTimeStart, maxRunTime, blockAvailability, this, timeStep)
     val allowanceManager: EngineeringAllowanceManager = EngineeringAllowanceManager(this)
@@ -59,15 +60,7 @@ class STDCMGraph(
         assert(standardAllowance !is FixedTime) {
             "Standard allowance cannot be a flat time for STDCM trains"
         }
-        val heuristicBuilderResult =
-            STDCMHeuristicBuilder(
-                    fullInfra.blockInfra,
-                    fullInfra.rawInfra,
-                    steps,
-                    maxRunTime,
-                    rollingStock
-                )
-                .build()
+        val heuristicBuilderResult = preprocessing.getHeuristic(steps, maxRunTime)
         remainingTimeEstimator = heuristicBuilderResult.first
         bestPossibleTime = heuristicBuilderResult.second
     }
@@ -101,20 +94,23 @@ class STDCMGraph(
                 node.remainingTimeEstimation,
             )
         if (node.locationOnEdge != null) {
-            val explorer = node.infraExplorer.clone()
             visitedNodesParameters.fingerprint =
                 VisitedNodes.Fingerprint(
-                    explorer.getLastEdgeIdentifier(),
+                    node.infraExplorer.getLastEdgeIdentifier(),
                     node.waypointIndex,
                     node.locationOnEdge.distance
                 )
             if (visitedNodes.isVisited(visitedNodesParameters)) return listOf()
             visitedNodes.markAsVisited(visitedNodesParameters)
-            res.addAll(STDCMEdgeBuilder.fromNode(this, node, explorer).makeAllEdges())
+            // The edge builder doesn't mutate the explorer, it clones it when adding the envelope
+            res.addAll(STDCMEdgeBuilder.fromNode(this, node, node.infraExplorer).makeAllEdges())
         } else {
-            val extended = extendLookaheadUntil(node.infraExplorer.clone(), 3)
-            for (newPath in extended) {
-                if (newPath.getLookahead().size == 0) continue
+            val extended = extendLookaheadUntil(node.infraExplorer, 3)
+            for (extendedPath in extended) {
+                if (extendedPath.getLookahead().size == 0) continue
+                // Extended paths are already copies, unless the lookahead was long enough
+                val newPath =
+                    if (extendedPath === node.infraExplorer) extendedPath.clone() else extendedPath
                 newPath.moveForward()
                 visitedNodesParameters.fingerprint =
                     VisitedNodes.Fingerprint(
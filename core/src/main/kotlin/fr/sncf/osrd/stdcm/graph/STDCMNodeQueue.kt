@@ -0,0 +1,155 @@
+package fr.sncf.osrd.stdcm.graph
+
+import fr.sncf.osrd.envelope_sim.TrainPhysicsIntegrator.areTimesEqual
+
+/**
+ * Priority queue of the nodes to explore, from the best path to the worst path.
+ *
+ * Queued nodes are referenced by int handles. The values used to order them are computed once, when
+ * the node is added, and stored in primitive arrays indexed by handle: sifting through the binary
+ * heap of handles reads a few doubles, without dereferencing nodes nor unboxing values. Handles of
+ * polled nodes are reused, so the arrays are only as large as the queue has ever been.
+ */
+class STDCMNodeQueue(initialCapacity: Int = 1024) {
+    private var nodes = arrayOfNulls<STDCMNode>(initialCapacity)
+    private var runTimeEstimations = DoubleArray(initialCapacity)
+    // NaN when the node doesn't have any planned timing data
+    private var plannedRelativeTimeDiffs = DoubleArray(initialCapacity)
+    // NaN when no previous node has planned timing data
+    private var previousPlannedRelativeTimeDiffs = DoubleArray(initialCapacity)
+    private var timesSinceDeparture = DoubleArray(initialCapacity)
+    private var earliestReachableTimes = DoubleArray(initialCapacity)
+    private var waypointIndexes = IntArray(initialCapacity)
+
+    // Binary heap of handles
+    private var heap = IntArray(initialCapacity)
+    private var size = 0
+
+    // Handles of polled nodes, available for new ones
+    private var freeHandles = IntArray(initialCapacity)
+    private var freeHandleCount = 0
+    private var handleCount = 0
+
+    fun isEmpty(): Boolean {
+        return size == 0
+    }
+
+    fun add(node: STDCMNode) {
+        val handle = allocateHandle()
+        nodes[handle] = node
+        runTimeEstimations[handle] = node.timeData.totalRunningTime + node.remainingTimeEstimation
+        plannedRelativeTimeDiffs[handle] = node.getRelativeTimeDiff(node.timeData) ?: Double.NaN
+        previousPlannedRelativeTimeDiffs[handle] =
+            node.previousPlannedNodeRelativeTimeDiff ?: Double.NaN
+        timesSinceDeparture[handle] = node.timeData.timeSinceDeparture
+        earliestReachableTimes[handle] = node.timeData.earliestReachableTime
+        waypointIndexes[handle] = node.waypointIndex
+        if (size == heap.size) heap = heap.copyOf(size * 2)
+        siftUp(size++, handle)
+    }
+
+    fun addAll(newNodes: Collection<STDCMNode>) {
+        for (node in newNodes) add(node)
+    }
+
+    /** Removes and returns the best node, or null if the queue is empty */
+    fun poll(): STDCMNode? {
+        if (size == 0) return null
+        val handle = heap[0]
+        val last = heap[--size]
+        if (size > 0) siftDown(0, last)
+        val res = nodes[handle]
+        nodes[handle] = null
+        if (freeHandleCount == freeHandles.size)
+            freeHandles = freeHandles.copyOf(freeHandleCount * 2)
+        freeHandles[freeHandleCount++] = handle
+        return res
+    }
+
+    private fun allocateHandle(): Int {
+        if (freeHandleCount > 0) return freeHandles[--freeHandleCount]
+        if (handleCount == nodes.size) {
+            val capacity = handleCount * 2
+            nodes = nodes.copyOf(capacity)
+            runTimeEstimations = runTimeEstimations.copyOf(capacity)
+            plannedRelativeTimeDiffs = plannedRelativeTimeDiffs.copyOf(capacity)
+            previousPlannedRelativeTimeDiffs = previousPlannedRelativeTimeDiffs.copyOf(capacity)
+            timesSinceDeparture = timesSinceDeparture.copyOf(capacity)
+            earliestReachableTimes = earliestReachableTimes.copyOf(capacity)
+            waypointIndexes = waypointIndexes.copyOf(capacity)
+        }
+        return handleCount++
+    }
+
+    private fun siftUp(from: Int, handle: Int) {
+        var position = from
+        while (position > 0) {
+            val parent = (position - 1) ushr 1
+            if (compare(heap[parent], handle) <= 0) break
+            heap[position] = heap[parent]
+            position = parent
+        }
+        heap[position] = handle
+    }
+
+    private fun siftDown(from: Int, handle: Int) {
+        var position = from
+        while (true) {
+            var child = 2 * position + 1
+            if (child >= size) break
+            if (child + 1 < size && compare(heap[child + 1], heap[child]) < 0) child++
+            if (compare(handle, heap[child]) <= 0) break
+            heap[position] = heap[child]
+            position = child
+        }
+        heap[position] = handle
+    }
+
+    /**
+     * Defines the estimated better path between 2 nodes, in the following priority:
+     * - lowest total run time, excluding stops
+     * - closest planned arrival time, taking the tolerance into account, using the current node's
+     * - planned timing data, then the last planned node's timing data
+     * - total run time, including stops
+     * - earliest departure time
+     * - highest number of reached targets
+     *
+     * If the result is negative, the first node has a better path, and should be explored first.
+     */
+    private fun compare(a: Int, b: Int): Int {
+        // First, minimize the total run time:
+        // highest priority node takes the least time to complete the path
+        if (!areTimesEqual(runTimeEstimations[a], runTimeEstimations[b]))
+            return runTimeEstimations[a].compareTo(runTimeEstimations[b])
+
+        // If equal, minimise the difference with the planned arrival times
+        val plannedA = plannedRelativeTimeDiffs[a]
+        val plannedB = plannedRelativeTimeDiffs[b]
+        if (!plannedA.isNaN() && !plannedB.isNaN() && plannedA != plannedB)
+            return plannedA.compareTo(plannedB)
+
+        // If equal, minimise the difference with the planned arrival times at the last planned node
+        val previousPlannedA = previousPlannedRelativeTimeDiffs[a]
+        val previousPlannedB = previousPlannedRelativeTimeDiffs[b]
+        if (
+            !previousPlannedA.isNaN() &&
+                !previousPlannedB.isNaN() &&
+                previousPlannedA != previousPlannedB
+        )
+            return previousPlannedA.compareTo(previousPlannedB)
+
+        // If equal, take the train which has the smallest time since its departure.
+        // Unlike the first check, this includes stop time.
+        if (!areTimesEqual(timesSinceDeparture[a], timesSinceDeparture[b]))
+            return timesSinceDeparture[a].compareTo(timesSinceDeparture[b])
+
+        // If equal, take the train which departs first
+        if (earliestReachableTimes[a] != earliestReachableTimes[b])
+            return earliestReachableTimes[a].compareTo(earliestReachableTimes[b])
+
+        // In the end, prioritize the highest number of reached targets.
+        // This doesn't define the priority between different paths,
+        // it just minimizes the chance of evaluating redundant nodes
+        return waypointIndexes[b] - waypointIndexes[a]
+    }
+}
@@ -1,8 +1,6 @@
 package fr.sncf.osrd.stdcm.graph
 
 import fr.sncf.osrd.api.FullInfra
-import fr.sncf.osrd.api.pathfinding.constraints.ConstraintCombiner
-import fr.sncf.osrd.api.pathfinding.constraints.initConstraints
 import fr.sncf.osrd.envelope_sim.allowances.utils.AllowanceValue
 import fr.sncf.osrd.graph.Pathfinding
 import fr.sncf.osrd.graph.PathfindingConstraint
@@ -54,7 +52,8 @@ fun findPath(
     maxRunTime: Double,
     tag: String?,
     standardAllowance: AllowanceValue?,
-    pathfindingTimeout: Double
+    pathfindingTimeout: Double,
+    preprocessing: STDCMPreprocessing = STDCMPreprocessing(fullInfra, rollingStock),
 ): STDCMResult? {
     return STDCMPathfinding(
             fullInfra,
@@ -68,7 +67,8 @@ fun findPath(
             maxRunTime,
             tag,
             standardAllowance,
-            pathfindingTimeout
+            pathfindingTimeout,
+            preprocessing
         )
         .findPath()
 }
@@ -85,7 +85,8 @@ class STDCMPathfinding(
     private val maxRunTime: Double,
     tag: String?,
     standardAllowance: AllowanceValue?,
-    private val pathfindingTimeout: Double = Pathfinding.TIMEOUT
+    private val pathfindingTimeout: Double = Pathfinding.TIMEOUT,
+    private val preprocessing: STDCMPreprocessing = STDCMPreprocessing(fullInfra, rollingStock),
 ) {
 
     private var starts: Set<STDCMNode> = HashSet()
@@ -101,21 +102,25 @@ class STDCMPathfinding(
             startTime,
             steps,
             tag,
-            standardAllowance
+            standardAllowance,
+            preprocessing
         )
 
     @WithSpan(value = "STDCM pathfinding", kind = SpanKind.SERVER)
     fun findPath(): STDCMResult? {
         runInputSanityChecks()
 
-        val constraints =
-            ConstraintCombiner(initConstraints(fullInfra, listOf(rollingStock)).toMutableList())
+        val constraints = preprocessing.constraints
 
         assert(steps.last().stop) { "The last stop is supposed to be an actual stop" }
         val stops = steps.filter { it.stop }.map { it.locations }
         assert(stops.isNotEmpty())
         starts = getStartNodes(stops, listOf(constraints))
         val path = findPathImpl()
+        val simulations = graph.stdcmSimulations
+        logger.info(
+            "Block simulation cache: ${simulations.hitCount} hits, ${simulations.missCount} misses"
+        )
         if (path == null) {
             logger.info("Failed to find a path")
             return null
@@ -173,13 +178,11 @@ class STDCMPathfinding(
     }
 
     private fun findPathImpl(): Result? {
-        val queue = PriorityQueue<STDCMNode>()
+        val queue = STDCMNodeQueue()
 
         val progressLogger = ProgressLogger(graph)
 
-        for (location in starts) {
-            queue.add(location)
-        }
+        queue.addAll(starts)
         val start = Instant.now()
         while (true) {
             if (Duration.between(start, Instant.now()).toSeconds() >= pathfindingTimeout)
@@ -191,7 +194,7 @@ class STDCMPathfinding(
             if (endNode.waypointIndex >= graph.steps.size - 1) {
                 return buildResult(endNode)
             }
-            queue += getAdjacentNodes(endNode)
+            queue.addAll(getAdjacentNodes(endNode))
         }
     }
 
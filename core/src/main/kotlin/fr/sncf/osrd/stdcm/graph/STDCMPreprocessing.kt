@@ -0,0 +1,39 @@
+package fr.sncf.osrd.stdcm.graph
+
+import fr.sncf.osrd.api.FullInfra
+import fr.sncf.osrd.api.pathfinding.constraints.ConstraintCombiner
+import fr.sncf.osrd.api.pathfinding.constraints.initConstraints
+import fr.sncf.osrd.stdcm.STDCMAStarHeuristic
+import fr.sncf.osrd.stdcm.STDCMHeuristicBuilder
+import fr.sncf.osrd.stdcm.STDCMStep
+import fr.sncf.osrd.train.RollingStock
+
+/**
+ * Everything STDCM computes before the search that doesn't depend on the timetable or on the search
+ * time window. A single instance can be shared by several queries for the same train, including
+ * queries running concurrently.
+ */
+class STDCMPreprocessing(val fullInfra: FullInfra, val rollingStock: RollingStock) {
+    /** Constraints used to determine whether a block can be explored or not */
+    val constraints =
+        ConstraintCombiner(initConstraints(fullInfra, listOf(rollingStock)).toMutableList())
+
+    /**
+     * Returns the A* heuristic and the best possible travel time for the given steps. The heuristic
+     * tables are kept in STDCMHeuristicCache, queries which only differ by their timing or their
+     * origin share them.
+     */
+    fun getHeuristic(
+        steps: List<STDCMStep>,
+        maxRunTime: Double
+    ): Pair<STDCMAStarHeuristic, Double> {
+        return STDCMHeuristicBuilder(
+                fullInfra.blockInfra,
+                fullInfra.rawInfra,
+                steps,
+                maxRunTime,
+                rollingStock
+            )
+            .build()
+    }
+}
@@ -29,42 +29,50 @@ import fr.sncf.osrd.utils.SelfTypeHolder
 import fr.sncf.osrd.utils.units.Distance
 import fr.sncf.osrd.utils.units.Offset
 import fr.sncf.osrd.utils.units.meters
-import java.lang.ref.SoftReference
+import java.util.concurrent.atomic.LongAdder
 
-/** This class contains all the methods used to simulate the train behavior. */
-class STDCMSimulations {
-    private var simulatedEnvelopes: HashMap<BlockSimulationParameters, SoftReference<Envelope>?> =
-        HashMap()
+/**
+ * This class contains all the methods used to simulate the train behavior. Envelopes are kept in
+ * the process-wide `BlockSimulationCache`, they are shared with any search using the same settings.
+ * Each search has its own instance, which counts the cache hits and misses of this search.
+ */
+class STDCMSimulations(private val settings: BlockSimulationSettings) {
+    private val requests = LongAdder()
+    private val simulations = LongAdder()
+
+    /** Number of envelopes this search found in the cache */
+    val hitCount: Long
+        get() = requests.sum() - simulations.sum()
+
+    /** Number of envelopes this search had to simulate */
+    val missCount: Long
+        get() = simulations.sum()
 
     /**
-     * Returns the corresponding envelope if the block's envelope has already been computed in
-     * simulatedEnvelopes, otherwise computes the matching envelope and adds it to the STDCMGraph.
+     * Returns the corresponding envelope if the block's envelope has already been computed,
+     * otherwise computes the matching envelope and adds it to the cache. The rolling stock,
+     * comfort, time step and train tag are those of the settings of this search.
      */
     fun simulateBlock(
         rawInfra: RawSignalingInfra,
-        rollingStock: RollingStock,
-        comfort: Comfort?,
-        timeStep: Double,
-        trainTag: String?,
         infraExplorer: InfraExplorer,
         blockParams: BlockSimulationParameters
     ): Envelope? {
-        val cached = simulatedEnvelopes.getOrDefault(blockParams, null)?.get()
-        if (cached != null) return cached
-        val simulatedEnvelope =
+        requests.increment()
+        return BlockSimulationCache.getOrSimulate(rawInfra, settings, blockParams) {
+            simulations.increment()
             simulateBlock(
                 rawInfra,
                 infraExplorer,
                 blockParams.initialSpeed,
                 blockParams.start,
-                rollingStock,
-                comfort,
-                timeStep,
+                settings.rollingStock,
+                settings.comfort,
+                settings.timeStep,
                 blockParams.stop,
-                trainTag
+                settings.tag
             )
-        simulatedEnvelopes[blockParams] = SoftReference(simulatedEnvelope)
-        return simulatedEnvelope
+        }
     }
 }
 
@@ -1,12 +1,11 @@
 package fr.sncf.osrd.stdcm.graph
 
-import com.google.common.collect.Range
-import com.google.common.collect.RangeMap
-import com.google.common.collect.TreeRangeMap
-import com.google.common.collect.TreeRangeSet
+import com.carrotsearch.hppc.LongObjectHashMap
+import com.carrotsearch.hppc.ObjectIntHashMap
 import fr.sncf.osrd.envelope_sim.TrainPhysicsIntegrator.areTimesEqual
 import fr.sncf.osrd.stdcm.infra_exploration.EdgeIdentifier
 import fr.sncf.osrd.utils.units.Distance
+import kotlin.math.max
 import kotlin.math.min
 
 /**
@@ -25,15 +24,18 @@ import kotlin.math.min
  * already been covered?
  *
  * The time check is where most complexity lies: we often pass by the same places at different
- * times, but in ways that have been fully covered by previously seen nodes. We have a range map of
- * "conditionally visited ranges". We may consider that a range is already visited if, for example,
- * we need to add more than 42 seconds of stop duration to reach it.
+ * times, but in ways that have been fully covered by previously seen nodes. We have sorted arrays
+ * of "conditionally visited ranges". We may consider that a range is already visited if, for
+ * example, we need to add more than 42 seconds of stop duration to reach it.
  *
  * Currently, there are 3 range types: unconditionally visited, visited if adding less than x
  * seconds of stop duration, and visited if adding less than x seconds of margin. *When we add a
  * criteria to chose one path over another, we likely need to add an extra visited range type*.
  * Otherwise, we may consider that a range is visited despite being better according to the new
  * criteria.
+ *
+ * This is called for every explored edge, the data is stored in primitive arrays and maps to avoid
+ * allocating in the hot path.
  */
 data class VisitedNodes(val minDelay: Double) {
 
@@ -57,134 +59,26 @@ data class VisitedNodes(val minDelay: Double) {
         val nodeCost = timeData.totalRunningTime + remainingTimeEstimation
     }
 
-    /** Any class that implements this interface may be added to the visited ranges. */
-    private sealed interface ConditionallyVisitedRange {
-        /** Is the given (sub)range covered by `this`? */
-        fun isVisited(
-            range: Range<Double>,
-            parameters: Parameters,
-        ): Boolean
-
-        /**
-         * Returns the range that is most likely to define elements as "already visited". Used to
-         * merge overlapping ranges in the range map.
-         */
-        fun mergeWith(other: ConditionallyVisitedRange?): ConditionallyVisitedRange
-    }
-
-    /**
-     * The given range is already visited by changing departure time. Such ranges are *always*
-     * already visited.
-     */
-    private data object VisitedWithDepartureTimeChange : ConditionallyVisitedRange {
-        override fun isVisited(
-            range: Range<Double>,
-            parameters: Parameters,
-        ): Boolean {
-            // If the other option were better, it would have been visited first
-            return true
-        }
-
-        override fun mergeWith(other: ConditionallyVisitedRange?): ConditionallyVisitedRange {
-            return this
-        }
-    }
-
-    /**
-     * The given range is already visited by adding stop durations. A candidate is already visited
-     * if their cost is higher or equal, or for equal cost if they add at least as much stop time as
-     * this.
-     */
-    private data class VisitedWithAddedStopTime(
-        // the time t is visited at f(t) seconds of total stop duration
-        private val visitedWithStopTime: LinearFunction,
-        // If the cost is higher, we don't even consider stop time
-        private val baseCost: Double,
-    ) : ConditionallyVisitedRange {
-        override fun isVisited(
-            range: Range<Double>,
-            parameters: Parameters,
-        ): Boolean {
-            if (parameters.nodeCost > baseCost) return true
-            val stopDurationForVisited = visitedWithStopTime.apply(range.lowerEndpoint())
-            return stopDurationForVisited <= parameters.timeData.totalStopDuration
-        }
-
-        override fun mergeWith(other: ConditionallyVisitedRange?): ConditionallyVisitedRange {
-            if (other is VisitedWithDepartureTimeChange) return other
-            if (other is VisitedWithAddedStopTime) {
-                if (!areTimesEqual(baseCost, other.baseCost))
-                    return if (baseCost < other.baseCost) this else other
-                return if (visitedWithStopTime < other.visitedWithStopTime) this else other
-            }
-            return this
-        }
-    }
-
-    /**
-     * The given range is already visited by adding margins. A candidate is already visited if their
-     * cost is higher or equal (accounting for any extra travel time).
-     */
-    private data class VisitedWithAddedTravelTime(
-        // the time t is visited at f(t) seconds of total running time duration
-        private val visitedWithTravelTime: LinearFunction,
-    ) : ConditionallyVisitedRange {
-        override fun isVisited(
-            range: Range<Double>,
-            parameters: Parameters,
-        ): Boolean {
-            val runningTimeForVisited = visitedWithTravelTime.apply(range.lowerEndpoint())
-            return runningTimeForVisited <= parameters.nodeCost
-        }
-
-        override fun mergeWith(other: ConditionallyVisitedRange?): ConditionallyVisitedRange {
-            if (other is VisitedWithAddedTravelTime) {
-                return if (visitedWithTravelTime < other.visitedWithTravelTime) this else other
-            }
-            return other ?: this
-        }
-    }
-
-    private val visitedRangesPerLocation =
-        mutableMapOf<Fingerprint, RangeMap<Double, ConditionallyVisitedRange>>()
+    private val identifierIndexes = ObjectIntHashMap<EdgeIdentifier>()
+    private val visitedRangesPerKey = LongObjectHashMap<VisitedRanges>()
+    // Used for fingerprints that don't fit in a packed key, which shouldn't happen in practice
+    private val visitedRangesPerFingerprint = mutableMapOf<Fingerprint, VisitedRanges>()
+    // Buffer reused when merging ranges, swapped with the merged ranges
+    private var mergeBuffer = VisitedRanges()
 
     /** Returns true if the input has already been visited */
     fun isVisited(
         parameters: Parameters,
     ): Boolean {
-        val visitedRanges = visitedRangesPerLocation[parameters.fingerprint!!] ?: return false
-        val timeData = parameters.timeData
-
-        val visitingRange =
-            Range.closedOpen(
-                timeData.earliestReachableTime,
-                timeData.earliestReachableTime + timeData.maxDepartureDelayingWithoutConflict
-            )
-        if (visitingRange.isEmpty) {
-            // Special case for empty range, `subRangeMap` returns an empty list
-            val value = visitedRanges.get(timeData.earliestReachableTime) ?: return false
-            return value.isVisited(visitingRange, parameters)
-        }
-        val subMap = visitedRanges.subRangeMap(visitingRange)
-
-        // Keep track of any range that isn't covered by the map
-        val uncovered = TreeRangeSet.create<Double>()
-        uncovered.add(visitingRange)
-        for (entry in subMap.asMapOfRanges()) {
-            uncovered.remove(entry.key)
-            // Value isn't visited: we can early return "false"
-            if (!entry.value.isVisited(entry.key, parameters)) return false
-        }
-        // If any area is left uncovered, we still return "false"
-        return uncovered.isEmpty
+        val visitedRanges = getVisitedRanges(parameters.fingerprint!!, false) ?: return false
+        return visitedRanges.isVisited(parameters)
     }
 
     /** Marks the input as visited */
     fun markAsVisited(
         parameters: Parameters,
     ) {
-        val visitedRanges =
-            visitedRangesPerLocation.getOrPut(parameters.fingerprint!!) { TreeRangeMap.create() }
+        val visitedRanges = getVisitedRanges(parameters.fingerprint!!, true)!!
 
         val timeData = parameters.timeData
         val startTime = timeData.earliestReachableTime
@@ -202,10 +96,10 @@ data class VisitedNodes(val minDelay: Double) {
             startTime + timeData.maxDepartureDelayingWithoutConflict + minDelay
         val endRangeExtraTravelTime = endRangeExtraStopTime + parameters.maxMarginDuration
 
-        fun putRange(start: Double, end: Double, value: ConditionallyVisitedRange) {
+        fun putRange(start: Double, end: Double, kind: Byte, y0: Double, baseCost: Double) {
             if (start < end) {
-                val range = Range.closedOpen(start, end)
-                visitedRanges.merge(range, value) { a, b -> a.mergeWith(b) }
+                visitedRanges.merge(start, end, kind, y0, baseCost, mergeBuffer)
+                mergeBuffer = visitedRanges.swapContent(mergeBuffer)
             }
         }
 
@@ -214,31 +108,250 @@ data class VisitedNodes(val minDelay: Double) {
         putRange(
             startTime,
             endRangeDepartureTimeChange,
-            VisitedWithDepartureTimeChange,
+            VISITED_WITH_DEPARTURE_TIME_CHANGE,
+            0.0,
+            0.0,
         )
         // Visited with extra stop duration, starting from the end of the previous range
         putRange(
             endRangeDepartureTimeChange,
             endRangeExtraStopTime,
-            VisitedWithAddedStopTime(
-                LinearFunction(timeData.totalStopDuration - endRangeDepartureTimeChange),
-                parameters.nodeCost,
-            )
+            VISITED_WITH_ADDED_STOP_TIME,
+            timeData.totalStopDuration - endRangeDepartureTimeChange,
+            parameters.nodeCost,
         )
         // Visited with extra margins, starting from the end of the previous range
         putRange(
             endRangeExtraStopTime,
             endRangeExtraTravelTime,
-            VisitedWithAddedTravelTime(LinearFunction(parameters.nodeCost - endRangeExtraStopTime))
+            VISITED_WITH_ADDED_TRAVEL_TIME,
+            parameters.nodeCost - endRangeExtraStopTime,
+            0.0,
         )
     }
+
+    /**
+     * Returns the visited ranges of the given location. Fingerprints are packed in a single long
+     * when possible: 24 bits for the interned edge identifier, 8 for the waypoint index, and 32 for
+     * the start offset in millimeters.
+     */
+    private fun getVisitedRanges(fingerprint: Fingerprint, create: Boolean): VisitedRanges? {
+        val millimeters = fingerprint.startOffset.millimeters
+        if (
+            fingerprint.waypointIndex !in 0 until (1 shl 8) || millimeters !in 0 until (1L shl 32)
+        )
+            return getVisitedRangesFallback(fingerprint, create)
+        var identifierIndex = identifierIndexes.getOrDefault(fingerprint.identifier, -1)
+        if (identifierIndex == -1) {
+            if (!create) return null
+            identifierIndex = identifierIndexes.size()
+            identifierIndexes.put(fingerprint.identifier, identifierIndex)
+        }
+        if (identifierIndex >= (1 shl 24)) return getVisitedRangesFallback(fingerprint, create)
+        val key =
+            (identifierIndex.toLong() shl 40) or
+                (fingerprint.waypointIndex.toLong() shl 32) or
+                millimeters
+        var res = visitedRangesPerKey.get(key)
+        if (res == null && create) {
+            res = VisitedRanges()
+            visitedRangesPerKey.put(key, res)
+        }
+        return res
+    }
+
+    private fun getVisitedRangesFallback(
+        fingerprint: Fingerprint,
+        create: Boolean
+    ): VisitedRanges? {
+        if (!create) return visitedRangesPerFingerprint[fingerprint]
+        return visitedRangesPerFingerprint.getOrPut(fingerprint) { VisitedRanges() }
+    }
 }
 
-/** Linear function with slope of 1. Used to represent the cost to reach a given time with margin */
-private data class LinearFunction(private val y0: Double) : Comparable<LinearFunction> {
-    fun apply(x: Double): Double = y0 + x
+/**
+ * The range is visited by changing departure time, such ranges are *always* already visited. If the
+ * other option were better, it would have been visited first.
+ */
+private const val VISITED_WITH_DEPARTURE_TIME_CHANGE: Byte = 0
+
+/**
+ * The range is visited by adding stop durations: the time t is visited at `y0 + t` seconds of total
+ * stop duration. A candidate is already visited if their cost is higher than `baseCost`, or for
+ * equal cost if they add at least as much stop time.
+ */
+private const val VISITED_WITH_ADDED_STOP_TIME: Byte = 1
+
+/**
+ * The range is visited by adding margins: the time t is visited at `y0 + t` seconds of total
+ * running time. A candidate is already visited if their cost is higher or equal.
+ */
+private const val VISITED_WITH_ADDED_TRAVEL_TIME: Byte = 2
+
+/**
+ * Sorted and disjoint `[start, end)` time ranges, each with a conditionally visited range type and
+ * its parameters, stored in primitive arrays. Adjacent ranges are never coalesced: the conditions
+ * are evaluated at the start of each range, as they were when they were inserted.
+ */
+private class VisitedRanges {
+    private var starts = DoubleArray(INITIAL_CAPACITY)
+    private var ends = DoubleArray(INITIAL_CAPACITY)
+    private var kinds = ByteArray(INITIAL_CAPACITY)
+    private var y0s = DoubleArray(INITIAL_CAPACITY)
+    private var baseCosts = DoubleArray(INITIAL_CAPACITY)
+    private var size = 0
+
+    /** Returns true if the whole visiting range of the parameters is covered and visited */
+    fun isVisited(parameters: VisitedNodes.Parameters): Boolean {
+        val timeData = parameters.timeData
+        val visitingStart = timeData.earliestReachableTime
+        val visitingEnd = visitingStart + timeData.maxDepartureDelayingWithoutConflict
+        var i = firstRangeEndingAfter(visitingStart)
+        if (visitingEnd <= visitingStart) {
+            // Empty range: only the range containing its start is relevant
+            if (i == size || starts[i] > visitingStart) return false
+            return isRangeVisited(i, visitingStart, parameters)
+        }
+        var cursor = visitingStart
+        while (i < size && starts[i] < visitingEnd) {
+            // Any area left uncovered means the range isn't visited
+            if (starts[i] > cursor) return false
+            if (!isRangeVisited(i, max(starts[i], visitingStart), parameters)) return false
+            cursor = ends[i]
+            i++
+        }
+        return cursor >= visitingEnd
+    }
+
+    /** Is the range at index i visited, evaluated at the given time? */
+    private fun isRangeVisited(
+        i: Int,
+        time: Double,
+        parameters: VisitedNodes.Parameters
+    ): Boolean {
+        return when (kinds[i]) {
+            VISITED_WITH_ADDED_STOP_TIME -> {
+                if (parameters.nodeCost > baseCosts[i]) return true
+                y0s[i] + time <= parameters.timeData.totalStopDuration
+            }
+            VISITED_WITH_ADDED_TRAVEL_TIME -> y0s[i] + time <= parameters.nodeCost
+            else -> true
+        }
+    }
+
+    /**
+     * Writes into `out` the ranges of `this` with the given range merged in. Gaps get the new
+     * value, overlapping ranges are split at the bounds of the new range and their intersection
+     * gets the result of `mergeWith`.
+     */
+    fun merge(
+        start: Double,
+        end: Double,
+        kind: Byte,
+        y0: Double,
+        baseCost: Double,
+        out: VisitedRanges
+    ) {
+        out.size = 0
+        var i = firstRangeEndingAfter(start)
+        out.addAll(this, 0, i)
+        var cursor = start
+        while (i < size && starts[i] < end) {
+            val rangeStart = starts[i]
+            val rangeEnd = ends[i]
+            if (rangeStart < cursor) out.add(rangeStart, cursor, this, i)
+            if (rangeStart > cursor) out.add(cursor, rangeStart, kind, y0, baseCost)
+            val overlapStart = max(rangeStart, cursor)
+            val overlapEnd = min(rangeEnd, end)
+            if (mergeWith(i, kind, y0, baseCost)) out.add(overlapStart, overlapEnd, this, i)
+            else out.add(overlapStart, overlapEnd, kind, y0, baseCost)
+            if (rangeEnd > end) out.add(end, rangeEnd, this, i)
+            cursor = overlapEnd
+            i++
+        }
+        if (cursor < end) out.add(cursor, end, kind, y0, baseCost)
+        out.addAll(this, i, size)
+    }
+
+    /**
+     * Returns true if the existing range at index i is more likely to define elements as "already
+     * visited" than the given value, false if the new value should be used.
+     */
+    private fun mergeWith(i: Int, kind: Byte, y0: Double, baseCost: Double): Boolean {
+        return when (kinds[i]) {
+            VISITED_WITH_DEPARTURE_TIME_CHANGE -> true
+            VISITED_WITH_ADDED_STOP_TIME ->
+                when (kind) {
+                    VISITED_WITH_DEPARTURE_TIME_CHANGE -> false
+                    VISITED_WITH_ADDED_STOP_TIME -> {
+                        if (!areTimesEqual(baseCosts[i], baseCost)) baseCosts[i] < baseCost
+                        else y0s[i] < y0
+                    }
+                    else -> true
+                }
+            else -> kind == VISITED_WITH_ADDED_TRAVEL_TIME && y0s[i] < y0
+        }
+    }
+
+    /** Swaps the content of both instances, returns `other` */
+    fun swapContent(other: VisitedRanges): VisitedRanges {
+        starts = other.starts.also { other.starts = starts }
+        ends = other.ends.also { other.ends = ends }
+        kinds = other.kinds.also { other.kinds = kinds }
+        y0s = other.y0s.also { other.y0s = y0s }
+        baseCosts = other.baseCosts.also { other.baseCosts = baseCosts }
+        size = other.size.also { other.size = size }
+        return other
+    }
+
+    /** Returns the index of the first range whose end is strictly after the given time */
+    private fun firstRangeEndingAfter(time: Double): Int {
+        var low = 0
+        var high = size
+        while (low < high) {
+            val mid = (low + high) ushr 1
+            if (ends[mid] <= time) low = mid + 1 else high = mid
+        }
+        return low
+    }
+
+    private fun add(start: Double, end: Double, kind: Byte, y0: Double, baseCost: Double) {
+        ensureCapacity(size + 1)
+        starts[size] = start
+        ends[size] = end
+        kinds[size] = kind
+        y0s[size] = y0
+        baseCosts[size] = baseCost
+        size++
+    }
+
+    private fun add(start: Double, end: Double, from: VisitedRanges, i: Int) {
+        add(start, end, from.kinds[i], from.y0s[i], from.baseCosts[i])
+    }
+
+    private fun addAll(from: VisitedRanges, fromIndex: Int, toIndex: Int) {
+        val count = toIndex - fromIndex
+        if (count <= 0) return
+        ensureCapacity(size + count)
+        from.starts.copyInto(starts, size, fromIndex, toIndex)
+        from.ends.copyInto(ends, size, fromIndex, toIndex)
+        from.kinds.copyInto(kinds, size, fromIndex, toIndex)
+        from.y0s.copyInto(y0s, size, fromIndex, toIndex)
+        from.baseCosts.copyInto(baseCosts, size, fromIndex, toIndex)
+        size += count
+    }
+
+    private fun ensureCapacity(capacity: Int) {
+        if (capacity <= starts.size) return
+        val newCapacity = max(capacity, starts.size * 2)
+        starts = starts.copyOf(newCapacity)
+        ends = ends.copyOf(newCapacity)
+        kinds = kinds.copyOf(newCapacity)
+        y0s = y0s.copyOf(newCapacity)
+        baseCosts = baseCosts.copyOf(newCapacity)
+    }
 
-    override fun compareTo(other: LinearFunction): Int {
-        return y0.compareTo(other.y0)
+    companion object {
+        private const val INITIAL_CAPACITY = 4
     }
 }
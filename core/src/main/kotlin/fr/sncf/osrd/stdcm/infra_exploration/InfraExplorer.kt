@@ -12,10 +12,10 @@ import fr.sncf.osrd.sim_infra.api.*
 import fr.sncf.osrd.sim_infra.utils.PathPropertiesView
 import fr.sncf.osrd.sim_infra.utils.getRouteBlocks
 import fr.sncf.osrd.sim_infra.utils.routesOnBlock
-import fr.sncf.osrd.utils.AppendOnlyLinkedList
 import fr.sncf.osrd.utils.AppendOnlyMap
-import fr.sncf.osrd.utils.appendOnlyLinkedListOf
+import fr.sncf.osrd.utils.AppendOnlyVector
 import fr.sncf.osrd.utils.appendOnlyMapOf
+import fr.sncf.osrd.utils.appendOnlyVectorOf
 import fr.sncf.osrd.utils.indexing.StaticIdx
 import fr.sncf.osrd.utils.indexing.StaticIdxList
 import fr.sncf.osrd.utils.indexing.mutableStaticIdxArrayListOf
@@ -85,7 +85,7 @@ interface InfraExplorer {
     fun getPredecessorLength(): Length<Path>
 
     /** Returns all the blocks before the current one */
-    fun getPredecessorBlocks(): AppendOnlyLinkedList<BlockId>
+    fun getPredecessorBlocks(): AppendOnlyVector<BlockId>
 
     /** Returns all the blocks after the current one */
     fun getLookahead(): StaticIdxList<Block>
@@ -128,8 +128,8 @@ fun initInfraExplorer(
             InfraExplorerImpl(
                 rawInfra,
                 blockInfra,
-                appendOnlyLinkedListOf(),
-                appendOnlyLinkedListOf(),
+                appendOnlyVectorOf(),
+                appendOnlyVectorOf(),
                 appendOnlyMapOf(),
                 incrementalPath,
                 blockToPathProperties,
@@ -145,8 +145,8 @@ fun initInfraExplorer(
 private class InfraExplorerImpl(
     private val rawInfra: RawInfra,
     private val blockInfra: BlockInfra,
-    private var blocks: AppendOnlyLinkedList<BlockId>,
-    private var routes: AppendOnlyLinkedList<RouteId>,
+    private var blocks: AppendOnlyVector<BlockId>,
+    private var routes: AppendOnlyVector<RouteId>,
     private var blockRoutes: AppendOnlyMap<BlockId, RouteId>,
     private var incrementalPath: IncrementalPath,
     private var pathPropertiesCache: MutableMap<BlockId, PathProperties>,
@@ -237,7 +237,7 @@ private class InfraExplorerImpl(
         return predecessorLength
     }
 
-    override fun getPredecessorBlocks(): AppendOnlyLinkedList<BlockId> {
+    override fun getPredecessorBlocks(): AppendOnlyVector<BlockId> {
         return blocks.subList(currentIndex)
     }
 
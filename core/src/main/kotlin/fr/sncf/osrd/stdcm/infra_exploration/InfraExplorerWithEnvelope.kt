@@ -13,7 +13,7 @@ import fr.sncf.osrd.sim_infra.api.Path
 import fr.sncf.osrd.standalone_sim.result.ResultTrain
 import fr.sncf.osrd.stdcm.graph.TimeData
 import fr.sncf.osrd.train.TrainStop
-import fr.sncf.osrd.utils.appendOnlyLinkedListOf
+import fr.sncf.osrd.utils.appendOnlyVectorOf
 import fr.sncf.osrd.utils.units.Length
 import fr.sncf.osrd.utils.units.Offset
 
@@ -74,7 +74,9 @@ interface InfraExplorerWithEnvelope : InfraExplorer {
     fun getSimulatedLength(): Length<Path>
 
     /**
-     * Only shallow copies are made. Used to enable backtracking by cloning explorers at each step.
+     * Used to enable backtracking by cloning explorers at each step. Block and envelope lists are
+     * shared with the copy. The spacing requirement automaton and the stops are shared too, and
+     * only copied when either explorer modifies them.
      */
     override fun clone(): InfraExplorerWithEnvelope
 
@@ -101,7 +103,7 @@ fun initInfraExplorerWithEnvelope(
         .map { explorer ->
             InfraExplorerWithEnvelopeImpl(
                 explorer,
-                appendOnlyLinkedListOf(),
+                appendOnlyVectorOf(),
                 SpacingRequirementAutomaton(
                     fullInfra.rawInfra,
                     fullInfra.loadedSignalInfra,
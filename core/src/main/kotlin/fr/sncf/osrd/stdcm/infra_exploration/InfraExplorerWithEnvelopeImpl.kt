@@ -15,8 +15,8 @@ import fr.sncf.osrd.standalone_sim.result.ResultTrain.SpacingRequirement
 import fr.sncf.osrd.stdcm.graph.TimeData
 import fr.sncf.osrd.stdcm.preprocessing.interfaces.BlockAvailabilityInterface
 import fr.sncf.osrd.train.TrainStop
-import fr.sncf.osrd.utils.AppendOnlyLinkedList
-import fr.sncf.osrd.utils.appendOnlyLinkedListOf
+import fr.sncf.osrd.utils.AppendOnlyVector
+import fr.sncf.osrd.utils.appendOnlyVectorOf
 import fr.sncf.osrd.utils.units.Distance
 import fr.sncf.osrd.utils.units.Length
 import fr.sncf.osrd.utils.units.Offset
@@ -25,29 +25,49 @@ import java.lang.ref.SoftReference
 
 data class InfraExplorerWithEnvelopeImpl(
     private val infraExplorer: InfraExplorer,
-    private val envelopes: AppendOnlyLinkedList<LocatedEnvelope>,
-    private val spacingRequirementAutomaton: SpacingRequirementAutomaton,
+    private val envelopes: AppendOnlyVector<LocatedEnvelope>,
+    private var spacingRequirementAutomaton: SpacingRequirementAutomaton,
     private val rollingStock: PhysicsRollingStock,
     private var stops: MutableList<TrainStop> = mutableListOf(),
 
     // Soft references tell the JVM that the values may be cleared when running out of memory
     private var spacingRequirementsCache: SoftReference<List<SpacingRequirement>>? = null,
     private var envelopeCache: SoftReference<EnvelopeInterpolate>? = null,
+
+    // Copy-on-write: when true, the automaton or the stops may be shared with other explorers, and
+    // must be copied before being modified
+    private var automatonShared: Boolean = false,
+    private var stopsShared: Boolean = false,
 ) : InfraExplorer by infraExplorer, InfraExplorerWithEnvelope {
 
     override fun cloneAndExtendLookahead(): Collection<InfraExplorerWithEnvelope> {
+        automatonShared = true
+        stopsShared = true
         return infraExplorer.cloneAndExtendLookahead().map { explorer ->
             InfraExplorerWithEnvelopeImpl(
                 explorer,
                 envelopes.shallowCopy(),
-                spacingRequirementAutomaton.clone(),
+                spacingRequirementAutomaton,
                 rollingStock,
-                stops.toMutableList(),
+                stops,
                 spacingRequirementsCache,
+                automatonShared = true,
+                stopsShared = true,
             )
         }
     }
 
+    /** Returns the stops, copying them first if they're shared with other explorers */
+    private fun getMutableStops(): MutableList<TrainStop> {
+        if (stopsShared) {
+            stops = stops.toMutableList()
+            stopsShared = false
+            // The cached envelope refers to the previous list
+            envelopeCache = null
+        }
+        return stops
+    }
+
     override fun getFullEnvelope(): EnvelopeInterpolate {
         val cached = envelopeCache?.get()
         if (cached != null) return cached
@@ -72,9 +92,10 @@ data class InfraExplorerWithEnvelopeImpl(
     }
 
     override fun withReplacedEnvelope(envelope: Envelope): InfraExplorerWithEnvelope {
+        stopsShared = true
         return copy(
             envelopes =
-                appendOnlyLinkedListOf(
+                appendOnlyVectorOf(
                     LocatedEnvelope(envelope, 0.0, 0.0),
                 ),
             spacingRequirementAutomaton =
@@ -92,6 +113,8 @@ data class InfraExplorerWithEnvelopeImpl(
                 ),
             spacingRequirementsCache = null,
             envelopeCache = null,
+            automatonShared = false,
+            stopsShared = true,
         )
     }
 
@@ -99,7 +122,7 @@ data class InfraExplorerWithEnvelopeImpl(
         val position = getFullEnvelope().endPos
         // We tolerate duplicates and filter them
         if (stops.isEmpty() || stops.last().position != position) {
-            stops.add(
+            getMutableStops().add(
                 TrainStop(
                     position,
                     stopDuration,
@@ -122,11 +145,11 @@ data class InfraExplorerWithEnvelopeImpl(
             assert(i < updatedTimeData.stopTimeData.size)
             val updatedStop = updatedTimeData.stopTimeData[i]
             if (updatedStop.currentDuration != stop.duration) {
-                stops[i] =
+                getMutableStops()[i] =
                     TrainStop(
-                        stops[i].position,
+                        stop.position,
                         updatedStop.currentDuration,
-                        stops[i].receptionSignal,
+                        stop.receptionSignal,
                     )
             }
         }
@@ -147,15 +170,23 @@ data class InfraExplorerWithEnvelopeImpl(
             // This case can happen when we start right at the end of a block
             return listOf()
         }
-        spacingRequirementAutomaton.incrementalPath = getIncrementalPath()
         // Path is complete and has been completely simulated
         val simulationComplete = getIncrementalPath().pathComplete && getLookahead().size == 0
-        spacingRequirementAutomaton.callbacks =
+        val callbacks =
             IncrementalRequirementEnvelopeAdapter(
                 rollingStock,
                 getFullEnvelope(),
                 simulationComplete
             )
+        if (automatonShared) {
+            // The path and callbacks of the shared automaton are replaced, they aren't copied
+            spacingRequirementAutomaton =
+                spacingRequirementAutomaton.clone(callbacks, getIncrementalPath())
+            automatonShared = false
+        } else {
+            spacingRequirementAutomaton.incrementalPath = getIncrementalPath()
+            spacingRequirementAutomaton.callbacks = callbacks
+        }
         val updatedRequirements =
             spacingRequirementAutomaton.processPathUpdate() as? SpacingRequirements
                 ?: throw BlockAvailabilityInterface.NotEnoughLookaheadError()
@@ -199,13 +230,18 @@ data class InfraExplorerWithEnvelopeImpl(
     }
 
     override fun clone(): InfraExplorerWithEnvelope {
+        // The automaton and the stops are only copied once either explorer modifies them
+        automatonShared = true
+        stopsShared = true
         return InfraExplorerWithEnvelopeImpl(
             infraExplorer.clone(),
             envelopes.shallowCopy(),
-            spacingRequirementAutomaton.clone(),
+            spacingRequirementAutomaton,
             rollingStock,
-            stops.toMutableList(),
-            spacingRequirementsCache
+            stops,
+            spacingRequirementsCache,
+            automatonShared = true,
+            stopsShared = true,
         )
     }
 }
@@ -360,22 +360,53 @@ fun makeBlockAvailability(
     gridMarginAfterTrain: Double = 0.0,
     timeStep: Double = 2.0,
 ): BlockAvailabilityInterface {
-    if (gridMarginAfterTrain != 0.0 || gridMarginBeforeTrain != 0.0) {
-        // The margin expected *after* the new train is added *before* the other train resource uses
-        requirements.forEach {
-            it.beginTime -= gridMarginAfterTrain
-            it.endTime += gridMarginBeforeTrain
-        }
-    }
-    val trainRequirements = listOf(TrainRequirements(0L, requirements, listOf()))
+    return makeBlockAvailability(
+        makeSpacingConflictDetector(requirements, gridMarginBeforeTrain, gridMarginAfterTrain),
+        steps,
+        gridMarginBeforeTrain,
+        gridMarginAfterTrain,
+        timeStep
+    )
+}
 
+/**
+ * Build a block availability from a conflict detector built by makeSpacingConflictDetector. The
+ * detector is read-only, it can be shared by availabilities of queries running concurrently.
+ */
+fun makeBlockAvailability(
+    spacingConflictDetector: IncrementalConflictDetector,
+    steps: List<STDCMStep>,
+    gridMarginBeforeTrain: Double,
+    gridMarginAfterTrain: Double,
+    timeStep: Double,
+): BlockAvailabilityInterface {
     // Only keep steps with planned timing data
     val plannedSteps = steps.filter { it.plannedTimingData != null }
     return BlockAvailability(
-        incrementalConflictDetector(trainRequirements),
+        spacingConflictDetector,
         plannedSteps,
         gridMarginBeforeTrain,
         gridMarginAfterTrain,
         timeStep
     )
 }
+
+/**
+ * Build the conflict detector used to evaluate block availability. Grid margins are applied to the
+ * given requirements, which are modified in place.
+ */
+fun makeSpacingConflictDetector(
+    requirements: Collection<SpacingRequirement>,
+    gridMarginBeforeTrain: Double = 0.0,
+    gridMarginAfterTrain: Double = 0.0,
+): IncrementalConflictDetector {
+    if (gridMarginAfterTrain != 0.0 || gridMarginBeforeTrain != 0.0) {
+        // The margin expected *after* the new train is added *before* the other train resource uses
+        requirements.forEach {
+            it.beginTime -= gridMarginAfterTrain
+            it.endTime += gridMarginBeforeTrain
+        }
+    }
+    val trainRequirements = listOf(TrainRequirements(0L, requirements, listOf()))
+    return incrementalConflictDetector(trainRequirements)
+}
@@ -10,15 +10,19 @@ import fr.sncf.osrd.sim_infra.api.BlockInfra
 import fr.sncf.osrd.sim_infra.api.RawInfra
 import fr.sncf.osrd.utils.units.Offset
 import fr.sncf.osrd.utils.units.meters
+import java.util.concurrent.ConcurrentHashMap
 
-/** Used to compute block MRSPs and min time required to reach a point, with proper caching */
+/**
+ * Used to compute block MRSPs and min time required to reach a point, with proper caching. The
+ * cache is thread-safe, so a single builder can be shared by concurrent STDCM searches.
+ */
 data class CachedBlockMRSPBuilder(
     val rawInfra: RawInfra,
     val blockInfra: BlockInfra,
     private val rsMaxSpeed: Double,
     private val rsLength: Double,
 ) {
-    private val mrspCache = mutableMapOf<BlockId, Envelope>()
+    private val mrspCache = ConcurrentHashMap<BlockId, Envelope>()
 
     constructor(
         rawInfra: RawInfra,
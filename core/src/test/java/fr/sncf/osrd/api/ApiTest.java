@@ -18,7 +18,7 @@ import org.mockito.junit.jupiter.MockitoExtension;
 public class ApiTest {
     public InfraManager infraManager;
 
-    ElectricalProfileSetManager electricalProfileSetManager = null;
+    public ElectricalProfileSetManager electricalProfileSetManager = null;
 
     private static OkHttpClient mockHttpClient(String regex) throws IOException {
         final OkHttpClient okHttpClient = mock(OkHttpClient.class);
@@ -3,6 +3,7 @@ package fr.sncf.osrd.api;
 import static fr.sncf.osrd.utils.takes.TakesUtils.readBodyResponse;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import fr.sncf.osrd.reporting.warnings.DiagnosticRecorderImpl;
 import java.io.IOException;
@@ -37,4 +38,62 @@ public class InfraCacheStatusTest extends ApiTest {
         var response = res.get("tiny_infra/infra.json");
         assertEquals(InfraManager.InfraStatus.CACHED, response.status);
     }
+
+    @Test
+    public void leastRecentlyUsedInfraIsEvicted() throws Exception {
+        var recorder = new DiagnosticRecorderImpl(false);
+        // only fits one infra at a time
+        infraManager.setCacheMemoryBudget(1);
+        infraManager.load("tiny_infra/infra.json", "1", recorder);
+        infraManager.load("small_infra/infra.json", "1", recorder);
+
+        var res = runInfraCacheStatus(new InfraCacheStatusEndpoint.InfraCacheRequest(null));
+        var tinyInfra = res.get("tiny_infra/infra.json");
+        assertEquals(InfraManager.InfraStatus.EVICTED, tinyInfra.status);
+        assertEquals(1, tinyInfra.evictions);
+        assertEquals(InfraManager.InfraStatus.CACHED, res.get("small_infra/infra.json").status);
+
+        // evicted infras get loaded again when used
+        assertNotNull(infraManager.getInfra("tiny_infra/infra.json", "1", recorder));
+        assertEquals(InfraManager.InfraStatus.CACHED, infraManager.getInfraCache("tiny_infra/infra.json").status);
+        assertEquals(InfraManager.InfraStatus.EVICTED, infraManager.getInfraCache("small_infra/infra.json").status);
+    }
+
+    @Test
+    public void pinnedInfraIsNotEvicted() throws Exception {
+        var recorder = new DiagnosticRecorderImpl(false);
+        infraManager.setCacheMemoryBudget(1);
+        infraManager.pinInfra("tiny_infra/infra.json");
+        infraManager.load("tiny_infra/infra.json", "1", recorder);
+        infraManager.load("small_infra/infra.json", "1", recorder);
+
+        var tinyInfra = infraManager.getInfraCache("tiny_infra/infra.json");
+        assertEquals(InfraManager.InfraStatus.CACHED, tinyInfra.status);
+        assertEquals(0, tinyInfra.evictions);
+        assertTrue(tinyInfra.estimatedSize > 0);
+    }
+
+    @Test
+    public void sharedBudgetUsersCauseEvictions() throws Exception {
+        var recorder = new DiagnosticRecorderImpl(false);
+        infraManager.setCacheMemoryBudget(Long.MAX_VALUE / 2);
+        infraManager.load("tiny_infra/infra.json", "1", recorder);
+        infraManager.load("small_infra/infra.json", "1", recorder);
+        assertEquals(InfraManager.InfraStatus.CACHED, infraManager.getInfraCache("tiny_infra/infra.json").status);
+
+        // electrical profile sets filling the budget leave room for the infra in use only
+        infraManager.shareMemoryBudget(() -> Long.MAX_VALUE / 2);
+        infraManager.load("small_infra/infra.json", "1", recorder);
+        assertEquals(InfraManager.InfraStatus.EVICTED, infraManager.getInfraCache("tiny_infra/infra.json").status);
+        assertEquals(InfraManager.InfraStatus.CACHED, infraManager.getInfraCache("small_infra/infra.json").status);
+    }
+
+    @Test
+    public void estimatedSizeGrowsWithTheInfra() throws Exception {
+        var recorder = new DiagnosticRecorderImpl(false);
+        var tinyInfra = infraManager.load("tiny_infra/infra.json", "1", recorder);
+        var smallInfra = infraManager.load("small_infra/infra.json", "1", recorder);
+        assertTrue(InfraManager.estimateRetainedSize(tinyInfra) > 0);
+        assertTrue(InfraManager.estimateRetainedSize(smallInfra) > InfraManager.estimateRetainedSize(tinyInfra));
+    }
 }
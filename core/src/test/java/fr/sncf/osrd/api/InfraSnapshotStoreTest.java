@@ -0,0 +1,88 @@
+package fr.sncf.osrd.api;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class InfraSnapshotStoreTest {
+    @TempDir
+    Path snapshotDir;
+
+    @Test
+    public void snapshotRoundTrip() throws IOException {
+        var store = new InfraSnapshotStore(snapshotDir);
+        store.writeSnapshot("42", "3", output -> output.writeUTF("{\"version\": \"3.4.12\"}"));
+
+        assertEquals("{\"version\": \"3.4.12\"}", store.readSnapshot("42", "3", DataInputStream::readUTF));
+        // the snapshot can be read several times
+        assertEquals("{\"version\": \"3.4.12\"}", store.readSnapshot("42", "3", DataInputStream::readUTF));
+    }
+
+    @Test
+    public void obsoleteOrMissingSnapshotsAreIgnored() throws IOException {
+        var store = new InfraSnapshotStore(snapshotDir);
+        store.writeSnapshot("42", "3", output -> output.writeInt(1));
+
+        assertNull(store.readSnapshot("42", "4", DataInputStream::readInt));
+        assertNull(store.readSnapshot("43", "3", DataInputStream::readInt));
+        assertEquals(1, store.<Integer>readSnapshot("42", "3", DataInputStream::readInt));
+    }
+
+    @Test
+    public void snapshotsCantBeReadWithoutAVersion() throws IOException {
+        var store = new InfraSnapshotStore(snapshotDir);
+        store.writeSnapshot("42", "3", output -> output.writeInt(1));
+
+        assertThrows(NullPointerException.class, () -> store.readSnapshot("42", null, DataInputStream::readInt));
+    }
+
+    @Test
+    public void newerSnapshotReplacesOlderOne() throws IOException {
+        var store = new InfraSnapshotStore(snapshotDir);
+        store.writeSnapshot("42", "3", output -> output.writeUTF("old"));
+        store.writeSnapshot("42", "4", output -> output.writeUTF("new"));
+
+        assertNull(store.readSnapshot("42", "3", DataInputStream::readUTF));
+        assertEquals("new", store.readSnapshot("42", "4", DataInputStream::readUTF));
+    }
+
+    @Test
+    public void failedSnapshotsAreDiscarded() throws IOException {
+        var store = new InfraSnapshotStore(snapshotDir);
+        store.writeSnapshot("42", "3", output -> {
+            output.writeInt(1);
+            throw new IOException("failed to serialize the infra");
+        });
+        assertNull(store.readSnapshot("42", "3", DataInputStream::readInt));
+        try (var files = Files.list(snapshotDir)) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    @Test
+    public void truncatedSnapshotsAreIgnored() throws IOException {
+        var store = new InfraSnapshotStore(snapshotDir);
+        store.writeSnapshot("42", "3", output -> output.writeShort(1));
+
+        assertNull(store.readSnapshot("42", "3", DataInputStream::readLong));
+    }
+
+    @Test
+    public void attachmentsFollowTheInfraVersion() throws IOException {
+        var store = new InfraSnapshotStore(snapshotDir);
+        store.writeAttachment("42", "3", "landmarks", output -> output.writeInt(1234));
+
+        assertEquals(1234, store.<Integer>readAttachment("42", "3", "landmarks", DataInputStream::readInt));
+        assertNull(store.readAttachment("42", "4", "landmarks", DataInputStream::readInt));
+        assertNull(store.readAttachment("43", "3", "landmarks", DataInputStream::readInt));
+        assertNull(store.readAttachment("42", "3", "other", DataInputStream::readInt));
+
+        // a rejected attachment reads as null
+        assertNull(store.readAttachment("42", "3", "landmarks", input -> null));
+    }
+}
@@ -35,6 +35,8 @@ import fr.sncf.osrd.utils.Helpers;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.Random;
 import java.util.stream.LongStream;
 import java.util.stream.Stream;
 import org.junit.jupiter.api.Test;
@@ -576,6 +578,39 @@ public class ConflictDetectionTest {
                 .isEqualTo(expectedConflicts);
     }
 
+    @Test
+    public void parallelDetectionMatchesSequentialDetection() {
+        var random = new Random(42);
+        var requirements = new ArrayList<Requirements>();
+        for (int trainId = 0; trainId < 200; trainId++) {
+            var spacingRequirements = new ArrayList<ResultTrain.SpacingRequirement>();
+            var routingRequirements = new ArrayList<ResultTrain.RoutingRequirement>();
+            var time = random.nextDouble() * 3600;
+            for (int i = 0; i < 10; i++) {
+                var zone = "zone" + random.nextInt(30);
+                var duration = 30 + random.nextDouble() * 120;
+                spacingRequirements.add(new ResultTrain.SpacingRequirement(zone, time, time + duration, true));
+                var switches = Map.of("switch" + zone, random.nextBoolean() ? "LEFT" : "RIGHT");
+                var zoneRequirement =
+                        new ResultTrain.RoutingZoneRequirement(zone, "entry", "exit", switches, time + duration);
+                routingRequirements.add(
+                        new ResultTrain.RoutingRequirement("route" + zone, time, List.of(zoneRequirement)));
+                time += duration / 2;
+            }
+            var type = trainId % 20 == 0 ? RequirementType.WORK_SCHEDULE : RequirementType.TRAIN;
+            requirements.add(new Requirements(
+                    new RequirementId(trainId, type),
+                    spacingRequirements,
+                    type == RequirementType.TRAIN ? routingRequirements : List.of()));
+        }
+
+        var sequential = ConflictsKt.detectRequirementConflicts(requirements, false);
+        var parallel = ConflictsKt.detectRequirementConflicts(requirements, true);
+
+        assertFalse(sequential.isEmpty());
+        assertThat(parallel).usingRecursiveComparison().isEqualTo(sequential);
+    }
+
     static Stream<Arguments> workScheduleArgs() {
         // Non conflicting train requirements
         var reqTrainA = new Requirements(
@@ -1,6 +1,6 @@
 package fr.sncf.osrd.utils.graph
 
-import fr.sncf.osrd.api.pathfinding.RemainingDistanceEstimator
+import fr.sncf.osrd.api.pathfinding.makeHeuristics
 import fr.sncf.osrd.geom.Point
 import fr.sncf.osrd.graph.AStarHeuristic
 import fr.sncf.osrd.graph.GraphAdapter
@@ -96,13 +96,13 @@ class AStarTests {
         val origin = mutableSetOf(PathfindingEdgeLocationId(startBlock, Offset(0.meters)))
         val destination = mutableSetOf(PathfindingEdgeLocationId(endBlock, Offset(100.meters)))
 
-        val remainingDistanceEstimator =
-            RemainingDistanceEstimator(
-                fullDummyInfra.blockInfra,
-                fullDummyInfra.rawInfra,
-                destination,
-                0.meters
-            )
+        val heuristic =
+            makeHeuristics(
+                    fullDummyInfra,
+                    listOf(origin, destination),
+                    DEFAULT_MAX_ROLLING_STOCK_SPEED
+                )
+                .first()
         val seenWithHeuristic = HashSet<BlockId>()
         val seenWithoutHeuristic = HashSet<BlockId>()
         val mrspBuilder =
@@ -117,8 +117,7 @@ class AStarTests {
                 listOf(
                     AStarHeuristic { block, offset ->
                         seenWithHeuristic.add(block)
-                        remainingDistanceEstimator.apply(block, offset).meters /
-                            DEFAULT_MAX_ROLLING_STOCK_SPEED
+                        heuristic.apply(block, offset)
                     }
                 )
             )
@@ -0,0 +1,74 @@
+package fr.sncf.osrd.utils.graph
+
+import fr.sncf.osrd.graph.BlockGraph
+import fr.sncf.osrd.graph.Pathfinding.EdgeLocation
+import fr.sncf.osrd.sim_infra.utils.getBlockExit
+import fr.sncf.osrd.utils.DummyInfra
+import fr.sncf.osrd.utils.units.Offset
+import fr.sncf.osrd.utils.units.meters
+import org.junit.jupiter.api.Assertions
+import org.junit.jupiter.api.Test
+
+class BlockGraphTests {
+    @Test
+    fun adjacencyMatchesBlockInfra() {
+        val infra = DummyInfra()
+        infra.addBlock("a", "b")
+        infra.addBlock("b", "c")
+        infra.addBlock("b", "d")
+        infra.addBlock("c", "e")
+        infra.addBlock("d", "e")
+        infra.addBlock("e", "a")
+        val graph = BlockGraph.from(infra, infra)
+        Assertions.assertEquals(6, graph.blockCount)
+        for (block in infra.blocks) {
+            val exit = infra.getBlockExit(infra, block)
+            Assertions.assertEquals(exit.data.toInt(), graph.getBlockExit(block.index.toInt()))
+            Assertions.assertEquals(
+                infra.getBlocksStartingAtDetector(exit).toSet(),
+                graph.getBlocksStartingAtDetector(exit).toSet()
+            )
+            Assertions.assertEquals(
+                infra.getBlockLength(block).distance.millimeters,
+                graph.getBlockLength(block.index.toInt())
+            )
+        }
+    }
+
+    @Test
+    fun graphIsRebuiltWhenBlocksAreAdded() {
+        val infra = DummyInfra()
+        infra.addBlock("a", "b")
+        Assertions.assertEquals(1, BlockGraph.from(infra, infra).blockCount)
+        infra.addBlock("b", "c")
+        Assertions.assertEquals(2, BlockGraph.from(infra, infra).blockCount)
+    }
+
+    @Test
+    fun distancesToTargets() {
+        /*
+         *        c
+         *      /   \
+         * a - b     e - f     g - h
+         *      \   /
+         *        d
+         */
+        val infra = DummyInfra()
+        val ab = infra.addBlock("a", "b", 100.meters)
+        val bc = infra.addBlock("b", "c", 100.meters)
+        val bd = infra.addBlock("b", "d", 50.meters)
+        val ce = infra.addBlock("c", "e", 100.meters)
+        val de = infra.addBlock("d", "e", 300.meters)
+        val ef = infra.addBlock("e", "f", 100.meters)
+        val gh = infra.addBlock("g", "h", 100.meters)
+        val graph = BlockGraph.from(infra, infra)
+        val distances = graph.distancesToTargets(listOf(EdgeLocation(ef, Offset(20.meters))))
+        Assertions.assertEquals(20_000, distances[ef.index.toInt()])
+        Assertions.assertEquals(120_000, distances[ce.index.toInt()])
+        Assertions.assertEquals(320_000, distances[de.index.toInt()])
+        Assertions.assertEquals(220_000, distances[bc.index.toInt()])
+        Assertions.assertEquals(370_000, distances[bd.index.toInt()])
+        Assertions.assertEquals(320_000, distances[ab.index.toInt()])
+        Assertions.assertEquals(Long.MAX_VALUE, distances[gh.index.toInt()])
+    }
+}
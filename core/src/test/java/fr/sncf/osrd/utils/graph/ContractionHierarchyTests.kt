@@ -0,0 +1,93 @@
+package fr.sncf.osrd.utils.graph
+
+import fr.sncf.osrd.graph.BlockGraph
+import fr.sncf.osrd.graph.ContractionHierarchy
+import fr.sncf.osrd.sim_infra.api.DirDetectorId
+import fr.sncf.osrd.utils.DummyInfra
+import fr.sncf.osrd.utils.units.meters
+import kotlin.random.Random
+import org.junit.jupiter.api.Assertions
+import org.junit.jupiter.api.Test
+
+class ContractionHierarchyTests {
+    /** Builds a random directed graph, with some parts that can't reach each other */
+    private fun makeRandomGraph(seed: Int): BlockGraph {
+        val random = Random(seed)
+        val infra = DummyInfra()
+        for (i in 0 until 200) {
+            val component = if (random.nextInt(5) == 0) "b" else "a"
+            val entry = "$component${random.nextInt(40)}"
+            val exit = "$component${random.nextInt(40)}"
+            infra.addBlock(entry, exit, random.nextInt(10, 5_000).meters)
+        }
+        return BlockGraph.from(infra, infra)
+    }
+
+    private fun blockLengths(graph: BlockGraph): LongArray {
+        return LongArray(graph.blockCount) { graph.getBlockLength(it) }
+    }
+
+    @Test
+    fun shortestPathsMatchDijkstra() {
+        for (seed in 0 until 5) {
+            val graph = makeRandomGraph(seed)
+            val costs = blockLengths(graph)
+            val hierarchy = ContractionHierarchy.build(graph, costs)
+            for (from in 0 until graph.blockCount) {
+                val exactDistances = graph.distancesFromBlock(from)
+                for (to in 0 until graph.blockCount) {
+                    val path =
+                        hierarchy.shortestPath(
+                            intArrayOf(from),
+                            longArrayOf(0),
+                            intArrayOf(to),
+                            longArrayOf(0)
+                        )
+                    if (exactDistances[to] == Long.MAX_VALUE) {
+                        Assertions.assertNull(path)
+                        continue
+                    }
+                    Assertions.assertEquals(exactDistances[to], path!!.cost)
+                    Assertions.assertEquals(from, path.blocks.first())
+                    Assertions.assertEquals(to, path.blocks.last())
+                    checkPath(graph, costs, path)
+                }
+            }
+        }
+    }
+
+    @Test
+    fun sourceAndTargetCosts() {
+        val graph = makeRandomGraph(42)
+        val hierarchy = ContractionHierarchy.build(graph, blockLengths(graph))
+        val targets = intArrayOf(3, 7)
+        val targetCosts = longArrayOf(1_000, 250)
+        val sources = intArrayOf(0, 1)
+        val sourceCosts = longArrayOf(500, 0)
+        var expected = Long.MAX_VALUE
+        for (i in sources.indices) {
+            val distances = graph.distancesFromBlock(sources[i])
+            for (j in targets.indices) {
+                if (distances[targets[j]] == Long.MAX_VALUE) continue
+                val cost = sourceCosts[i] + distances[targets[j]] + targetCosts[j]
+                expected = minOf(expected, cost)
+            }
+        }
+        val path = hierarchy.shortestPath(sources, sourceCosts, targets, targetCosts)
+        if (expected == Long.MAX_VALUE) Assertions.assertNull(path)
+        else Assertions.assertEquals(expected, path!!.cost)
+    }
+
+    /** Checks that the unpacked blocks follow each other and add up to the path cost */
+    private fun checkPath(graph: BlockGraph, costs: LongArray, path: ContractionHierarchy.Path) {
+        var cost = 0L
+        for (i in 0 until path.blocks.size - 1) {
+            val block = path.blocks[i]
+            val exit = DirDetectorId(graph.getBlockExit(block).toUInt())
+            val nextBlocks = graph.getBlocksStartingAtDetector(exit).map { it.index.toInt() }
+            Assertions.assertTrue(nextBlocks.contains(path.blocks[i + 1]))
+            cost += costs[block]
+        }
+        Assertions.assertEquals(path.cost, cost)
+    }
+}
@@ -0,0 +1,97 @@
+package fr.sncf.osrd.utils.graph
+
+import fr.sncf.osrd.graph.BlockGraph
+import fr.sncf.osrd.graph.LandmarkDistances
+import fr.sncf.osrd.graph.Pathfinding.EdgeLocation
+import fr.sncf.osrd.sim_infra.api.Block
+import fr.sncf.osrd.sim_infra.api.BlockId
+import fr.sncf.osrd.utils.DummyInfra
+import fr.sncf.osrd.utils.units.Offset
+import fr.sncf.osrd.utils.units.meters
+import java.io.ByteArrayOutputStream
+import java.io.DataInputStream
+import java.io.DataOutputStream
+import kotlin.random.Random
+import org.junit.jupiter.api.Assertions
+import org.junit.jupiter.api.Test
+
+class LandmarkDistancesTests {
+    /** Builds a random directed graph, with some parts that can't reach each other */
+    private fun makeRandomInfra(seed: Int): DummyInfra {
+        val random = Random(seed)
+        val infra = DummyInfra()
+        for (i in 0 until 150) {
+            val component = if (random.nextInt(5) == 0) "b" else "a"
+            val entry = "$component${random.nextInt(30)}"
+            val exit = "$component${random.nextInt(30)}"
+            infra.addBlock(entry, exit, random.nextDouble(10.0, 5_000.0).meters)
+        }
+        return infra
+    }
+
+    @Test
+    fun lowerBoundsAreAdmissible() {
+        for (seed in 0 until 5) {
+            val infra = makeRandomInfra(seed)
+            val graph = BlockGraph.from(infra, infra)
+            val landmarks = LandmarkDistances.build(graph, 4)
+            Assertions.assertEquals(4, landmarks.landmarkCount)
+            var tightBounds = 0
+            for (to in 0 until graph.blockCount) {
+                val target = EdgeLocation(BlockId(to.toUInt()), Offset<Block>(0.meters))
+                val exactDistances = graph.distancesToTargets(listOf(target))
+                for (from in 0 until graph.blockCount) {
+                    val exact = exactDistances[from]
+                    val lowerBound = landmarks.lowerBound(from, to)
+                    Assertions.assertTrue(lowerBound <= exact)
+                    if (exact != Long.MAX_VALUE && exact - lowerBound <= 20) tightBounds++
+                }
+            }
+            // Landmarks give exact values (up to rounding) for more than trivial pairs
+            Assertions.assertTrue(tightBounds > graph.blockCount)
+        }
+    }
+
+    @Test
+    fun locationLowerBounds() {
+        val infra = DummyInfra()
+        val ab = infra.addBlock("a", "b", 100.meters)
+        val bc = infra.addBlock("b", "c", 100.meters)
+        val cd = infra.addBlock("c", "d", 100.meters)
+        val landmarks = LandmarkDistances.from(infra, infra)
+        val targets = listOf(EdgeLocation(cd, Offset(50.meters)))
+        Assertions.assertEquals(0L, landmarks.lowerBound(cd, Offset(50.meters), targets))
+        Assertions.assertEquals(20_000L, landmarks.lowerBound(cd, Offset(30.meters), targets))
+        Assertions.assertTrue(landmarks.lowerBound(bc, Offset(20.meters), targets) <= 130_000L)
+        Assertions.assertTrue(landmarks.lowerBound(ab, Offset(0.meters), targets) <= 250_000L)
+        Assertions.assertEquals(
+            Long.MAX_VALUE,
+            landmarks.lowerBound(cd, Offset(10.meters), listOf(EdgeLocation(ab, Offset(0.meters))))
+        )
+    }
+
+    @Test
+    fun serializationRoundTrip() {
+        val infra = makeRandomInfra(42)
+        val graph = BlockGraph.from(infra, infra)
+        val landmarks = LandmarkDistances.build(graph)
+        val buffer = ByteArrayOutputStream()
+        landmarks.write(DataOutputStream(buffer))
+
+        val input = DataInputStream(buffer.toByteArray().inputStream())
+        val read = LandmarkDistances.read(input, graph)
+        Assertions.assertNotNull(read)
+        Assertions.assertEquals(landmarks.getLandmarks(), read!!.getLandmarks())
+        for (from in 0 until graph.blockCount) {
+            for (to in 0 until graph.blockCount) {
+                Assertions.assertEquals(landmarks.lowerBound(from, to), read.lowerBound(from, to))
+            }
+        }
+
+        // Distances computed on another graph are rejected
+        val otherInfra = makeRandomInfra(43)
+        val otherGraph = BlockGraph.from(otherInfra, otherInfra)
+        val otherInput = DataInputStream(buffer.toByteArray().inputStream())
+        Assertions.assertNull(LandmarkDistances.read(otherInput, otherGraph))
+    }
+}
@@ -0,0 +1,206 @@
+package fr.sncf.osrd.api.api_v2.standalone_sim
+
+import com.squareup.moshi.JsonAdapter
+import com.squareup.moshi.Moshi
+import com.squareup.moshi.Types
+import fr.sncf.osrd.api.ApiTest
+import fr.sncf.osrd.api.api_v2.RangeValues
+import fr.sncf.osrd.api.api_v2.TrackLocation
+import fr.sncf.osrd.api.api_v2.pathfinding.*
+import fr.sncf.osrd.envelope_sim.PhysicsRollingStock.GammaType
+import fr.sncf.osrd.railjson.schema.rollingstock.Comfort
+import fr.sncf.osrd.railjson.schema.rollingstock.RJSLoadingGaugeType
+import fr.sncf.osrd.utils.Helpers
+import fr.sncf.osrd.utils.takes.TakesUtils
+import fr.sncf.osrd.utils.units.Duration
+import fr.sncf.osrd.utils.units.Length
+import fr.sncf.osrd.utils.units.Offset
+import fr.sncf.osrd.utils.units.meters
+import fr.sncf.osrd.utils.units.seconds
+import kotlin.test.assertEquals
+import kotlin.test.assertTrue
+import org.junit.jupiter.api.Test
+import org.takes.Response
+import org.takes.rq.RqFake
+
+class SimulationBatchEndpointTest : ApiTest() {
+    private val lineAdapter: JsonAdapter<Map<String, Any?>> =
+        Moshi.Builder()
+            .build()
+            .adapter(
+                Types.newParameterizedType(Map::class.java, String::class.java, Any::class.java)
+            )
+
+    private val emptyPath = SimulationPath(listOf(), listOf(), listOf(), listOf())
+
+    /** Finds a path on tiny infra, using the pathfinding endpoint */
+    private fun makePath(): SimulationPath {
+        val waypoints =
+            listOf(
+                listOf(TrackLocation("ne.micro.foo_b", Offset(50.meters))),
+                listOf(TrackLocation("ne.micro.bar_a", Offset(100.meters)))
+            )
+        val requestBody =
+            pathfindingRequestAdapter.toJson(
+                PathfindingBlockRequest(
+                    rollingStockLoadingGauge = RJSLoadingGaugeType.G1,
+                    rollingStockIsThermal = true,
+                    rollingStockSupportedElectrifications = listOf(),
+                    rollingStockSupportedSignalingSystems = listOf("BAL"),
+                    rollingStockMaximumSpeed = 320.0,
+                    rollingStockLength = 0.0,
+                    timeout = null,
+                    infra = "tiny_infra/infra.json",
+                    expectedVersion = "1",
+                    pathItems = waypoints,
+                )
+            )
+        val rawResponse =
+            PathfindingBlocksEndpointV2(infraManager)
+                .act(RqFake("POST", "/v2/pathfinding/blocks", requestBody))
+        val response = TakesUtils.readBodyResponse(rawResponse)
+        val path = pathfindingResponseAdapter.fromJson(response) as PathfindingBlockSuccess
+        return SimulationPath(
+            path.blocks,
+            path.routes,
+            path.trackSectionRanges,
+            path.pathItemPositions
+        )
+    }
+
+    private fun makeRollingStock(): PhysicsRollingStockModel {
+        val rjsRollingStock = Helpers.getExampleRollingStock("fast_rolling_stock.json")
+        return PhysicsRollingStockModel(
+            EffortCurve(
+                rjsRollingStock.effortCurves.modes,
+                rjsRollingStock.effortCurves.defaultMode
+            ),
+            rjsRollingStock.basePowerClass,
+            Length(rjsRollingStock.length.meters),
+            rjsRollingStock.maxSpeed,
+            rjsRollingStock.startUpTime.seconds,
+            rjsRollingStock.startUpAcceleration,
+            rjsRollingStock.comfortAcceleration,
+            Gamma(GammaType.valueOf(rjsRollingStock.gamma.type.name), rjsRollingStock.gamma.value),
+            rjsRollingStock.inertiaCoefficient,
+            rjsRollingStock.mass.toLong(),
+            rjsRollingStock.rollingResistance,
+            rjsRollingStock.powerRestrictions ?: mapOf(),
+            rjsRollingStock.electricalPowerStartUpTime?.seconds,
+            rjsRollingStock.raisePantographTime?.seconds,
+        )
+    }
+
+    private fun makeTrain(path: String, rollingStock: String): SimulationBatchTrain {
+        return SimulationBatchTrain(
+            path,
+            rollingStock,
+            listOf(),
+            RangeValues(listOf(), listOf()),
+            0.0,
+            Comfort.STANDARD,
+            AllowanceDistribution.MARECO,
+            null,
+            listOf(),
+            TrainScheduleOptions(false)
+        )
+    }
+
+    private fun makeRequest(
+        paths: Map<String, SimulationPath>,
+        rollingStocks: Map<String, PhysicsRollingStockModel>,
+        trains: List<SimulationBatchTrain>,
+        timeStep: Duration = 2.seconds,
+    ): String {
+        val request =
+            SimulationBatchRequest(
+                "tiny_infra/infra.json",
+                "1",
+                null,
+                paths,
+                rollingStocks,
+                timeStep,
+                trains
+            )
+        // Nulls are sent explicitly, as a client would
+        return simulationBatchRequestAdapter.serializeNulls().toJson(request)
+    }
+
+    private fun run(requestBody: String): Response {
+        return SimulationBatchEndpoint(infraManager, electricalProfileSetManager)
+            .act(RqFake("POST", "/v2/standalone_simulation/batch", requestBody))
+    }
+
+    private fun getStatusCode(response: Response): String {
+        return TakesUtils.readHeadResponse(response).first().split(" ")[1]
+    }
+
+    @Test
+    fun resultsAreStreamedAsJsonLines() {
+        // The second path is empty: preparing it fails, which must only fail its train
+        val paths = mapOf("path" to makePath(), "empty" to emptyPath)
+        val trains =
+            listOf(
+                makeTrain("path", "rolling_stock"),
+                makeTrain("empty", "rolling_stock"),
+                makeTrain("path", "rolling_stock")
+            )
+        val response =
+            run(makeRequest(paths, mapOf("rolling_stock" to makeRollingStock()), trains))
+        assertEquals("200", getStatusCode(response))
+        assertTrue(
+            TakesUtils.readHeadResponse(response).contains("Content-Type: application/x-ndjson")
+        )
+
+        val body = TakesUtils.readBodyResponse(response)
+        assertTrue(body.endsWith("\n"))
+        val lines = body.removeSuffix("\n").split("\n").map { lineAdapter.fromJson(it)!! }
+        assertEquals(3, lines.size)
+
+        // Lines come in any order, each one gives the position of its train in the request
+        val statusByIndex =
+            lines.associate { line ->
+                val result = line["result"] as Map<*, *>
+                (line["index"] as Double).toInt() to result["status"]
+            }
+        assertEquals(mapOf(0 to "success", 1 to "train_failed", 2 to "success"), statusByIndex)
+    }
+
+    @Test
+    fun unknownPathsAreRejected() {
+        val request =
+            makeRequest(
+                mapOf("path" to emptyPath),
+                mapOf(),
+                listOf(makeTrain("other_path", "rolling_stock"))
+            )
+        assertEquals("400", getStatusCode(run(request)))
+    }
+
+    @Test
+    fun unknownRollingStocksAreRejected() {
+        val request =
+            makeRequest(
+                mapOf("path" to emptyPath),
+                mapOf("rolling_stock" to makeRollingStock()),
+                listOf(makeTrain("path", "other_rolling_stock"))
+            )
+        assertEquals("400", getStatusCode(run(request)))
+    }
+
+    @Test
+    fun nullTimeStepIsRejected() {
+        val request =
+            makeRequest(
+                mapOf("path" to emptyPath),
+                mapOf("rolling_stock" to makeRollingStock()),
+                listOf(makeTrain("path", "rolling_stock")),
+            )
+        // A client may still send an explicit null
+        val fields = lineAdapter.fromJson(request)!!.toMutableMap()
+        fields["time_step"] = null
+        val response = run(lineAdapter.serializeNulls().toJson(fields))
+        assertEquals("400", getStatusCode(response))
+        assertTrue("time_step" in TakesUtils.readBodyResponse(response))
+    }
+}
@@ -0,0 +1,129 @@
+package fr.sncf.osrd.api.api_v2.timetable
+
+import fr.sncf.osrd.api.api_v2.SpacingRequirement
+import fr.sncf.osrd.api.api_v2.conflicts.TrainRequirementsRequest
+import fr.sncf.osrd.reporting.exceptions.ErrorType
+import fr.sncf.osrd.reporting.exceptions.OSRDError
+import fr.sncf.osrd.utils.units.seconds
+import java.time.ZonedDateTime
+import kotlin.test.Test
+import kotlin.test.assertEquals
+import kotlin.test.assertNotSame
+import kotlin.test.assertSame
+import org.junit.jupiter.api.assertThrows
+
+class TimetableStoreTest {
+    private fun makeTrain(startTime: String): TrainRequirementsRequest {
+        return TrainRequirementsRequest(ZonedDateTime.parse(startTime), listOf(), listOf())
+    }
+
+    @Test
+    fun updatesApplyToTheBaseVersion() {
+        val store = TimetableStore()
+        val train1 = makeTrain("2024-01-01T08:00:00Z")
+        val train2 = makeTrain("2024-01-01T09:00:00Z")
+        val train3 = makeTrain("2024-01-01T10:00:00Z")
+        store.update(1, null, "v1", mapOf(1L to train1, 2L to train2), listOf())
+        store.update(1, "v1", "v2", mapOf(3L to train3, 1L to train2), listOf(2L))
+
+        val timetable = store.get(1, "v2")
+        assertEquals(mapOf(1L to train2, 3L to train3), timetable.trainsRequirements)
+    }
+
+    @Test
+    fun unknownVersionsAreRejected() {
+        val store = TimetableStore()
+        store.update(1, null, "v1", mapOf(1L to makeTrain("2024-01-01T08:00:00Z")), listOf())
+
+        // only the latest version of a timetable is kept
+        store.update(1, "v1", "v2", mapOf(), listOf())
+        val error = assertThrows<OSRDError> { store.update(1, "v1", "v3", mapOf(), listOf()) }
+        assertEquals(ErrorType.TimetableUnknownVersion.type, error.type)
+        assertThrows<OSRDError> { store.get(2, "v1") }
+    }
+
+    @Test
+    fun requestTrainsTakePrecedence() {
+        val store = TimetableStore()
+        val timetableTrain = makeTrain("2024-01-01T08:00:00Z")
+        val candidateTrain = makeTrain("2024-01-01T09:00:00Z")
+        store.update(1, null, "v1", mapOf(1L to timetableTrain, 2L to timetableTrain), listOf())
+
+        val trains = store.resolveTrainsRequirements(1, "v1", mapOf(2L to candidateTrain))
+        assertEquals(mapOf(1L to timetableTrain, 2L to candidateTrain), trains)
+        assertEquals(
+            mapOf(2L to candidateTrain),
+            store.resolveTrainsRequirements(null, null, mapOf(2L to candidateTrain))
+        )
+    }
+
+    @Test
+    fun derivedValuesAreBuiltOncePerVersion() {
+        val store = TimetableStore()
+        store.update(1, null, "v1", mapOf(), listOf())
+        var builds = 0
+        val derive = {
+            builds++
+            Any()
+        }
+        val value = store.get(1, "v1").getOrDerive("key", derive)
+        assertSame(value, store.get(1, "v1").getOrDerive("key", derive))
+        assertEquals(1, builds)
+
+        store.update(1, "v1", "v2", mapOf(), listOf())
+        assertNotSame(value, store.get(1, "v2").getOrDerive("key", derive))
+        assertEquals(2, builds)
+    }
+
+    @Test
+    fun leastRecentlyUsedTimetablesAreDropped() {
+        val store = TimetableStore(maxTimetables = 2)
+        store.update(1, null, "v1", mapOf(), listOf())
+        store.update(2, null, "v1", mapOf(), listOf())
+        store.get(1, "v1")
+        store.update(3, null, "v1", mapOf(), listOf())
+
+        store.get(1, "v1")
+        store.get(3, "v1")
+        assertThrows<OSRDError> { store.get(2, "v1") }
+    }
+
+    @Test
+    fun missingVersionsReportTheTimetable() {
+        val store = TimetableStore()
+        store.update(1, null, "v1", mapOf(), listOf())
+        val error = assertThrows<OSRDError> { store.resolveTrainsRequirements(1, null, mapOf()) }
+        assertEquals(ErrorType.TimetableUnknownVersion.type, error.type)
+        assertEquals(1L, error.context["timetable_id"])
+    }
+
+    @Test
+    fun conflictsAreDetectedOncePerVersion() {
+        val store = TimetableStore()
+        val zoneRequirement = listOf(SpacingRequirement("zone", 0.seconds, 600.seconds))
+        val train1 =
+            TrainRequirementsRequest(
+                ZonedDateTime.parse("2024-01-01T08:00:00Z"),
+                zoneRequirement,
+                listOf()
+            )
+        val train2 =
+            TrainRequirementsRequest(
+                ZonedDateTime.parse("2024-01-01T08:05:00Z"),
+                zoneRequirement,
+                listOf()
+            )
+        store.update(1, null, "v1", mapOf(1L to train1, 2L to train2), listOf())
+
+        val converted = store.get(1, "v1").converted
+        assertSame(converted, store.get(1, "v1").converted)
+        assertEquals(train1.startTime, converted.referenceTime)
+        assertEquals(1, converted.conflicts.size)
+        assertEquals(listOf(1L, 2L), converted.conflicts.first().trainIds.sorted())
+
+        store.update(1, "v1", "v2", mapOf(), listOf(2L))
+        val nextConverted = store.get(1, "v2").converted
+        assertNotSame(converted, nextConverted)
+        assertEquals(0, nextConverted.conflicts.size)
+    }
+}
@@ -0,0 +1,73 @@
+package fr.sncf.osrd.cli
+
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+import kotlin.concurrent.thread
+import kotlin.test.assertEquals
+import kotlin.test.assertFalse
+import kotlin.test.assertTrue
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.assertThrows
+
+class InFlightBudgetTest {
+    @Test
+    fun budgetIsReleasedOnceTasksComplete() {
+        val budget = InFlightBudget(100)
+        val first = budget.reserve(40) {}
+        val second = budget.reserve(60) {}
+        assertEquals(100, budget.inFlightBytes())
+        first.run()
+        assertEquals(60, budget.inFlightBytes())
+        second.run()
+        assertEquals(0, budget.inFlightBytes())
+    }
+
+    @Test
+    fun budgetIsReleasedWhenTasksFail() {
+        val budget = InFlightBudget(100)
+        val task = budget.reserve(80) { throw RuntimeException("request failed") }
+        assertThrows<RuntimeException> { task.run() }
+        assertEquals(0, budget.inFlightBytes())
+
+        // The budget is available again: this must not block
+        budget.reserve(80) {}.run()
+        assertEquals(0, budget.inFlightBytes())
+    }
+
+    @Test
+    fun oversizedRequestIsLetThroughWhenNothingIsInFlight() {
+        val budget = InFlightBudget(100)
+        val task = budget.reserve(1000) {}
+        assertEquals(1000, budget.inFlightBytes())
+        task.run()
+        assertEquals(0, budget.inFlightBytes())
+    }
+
+    @Test
+    fun acquireBlocksUntilEnoughBudgetIsReleased() {
+        val budget = InFlightBudget(100)
+        val first = budget.reserve(70) {}
+        val acquired = CountDownLatch(1)
+        val waiting = thread {
+            // Oversized requests wait for the others to complete too
+            budget.acquire(500)
+            acquired.countDown()
+        }
+        assertFalse(acquired.await(100, TimeUnit.MILLISECONDS))
+        first.run()
+        assertTrue(acquired.await(10, TimeUnit.SECONDS))
+        waiting.join()
+        assertEquals(500, budget.inFlightBytes())
+        budget.release(500)
+        assertEquals(0, budget.inFlightBytes())
+    }
+
+    @Test
+    fun zeroBudgetNeverBlocks() {
+        val budget = InFlightBudget(0)
+        val tasks = (0 until 10).map { budget.reserve(1L shl 30) {} }
+        assertEquals(10L shl 30, budget.inFlightBytes())
+        tasks.forEach { it.run() }
+        assertEquals(0, budget.inFlightBytes())
+    }
+}
@@ -0,0 +1,25 @@
+package fr.sncf.osrd.cli
+
+import fr.sncf.osrd.cli.WorkerCommand.Companion.parsePrefetch
+import kotlin.test.assertEquals
+import org.junit.jupiter.api.Test
+
+class WorkerCommandTest {
+    @Test
+    fun prefetchDefaultsWhenUnset() {
+        assertEquals(4, parsePrefetch(null, 4))
+    }
+
+    @Test
+    fun positivePrefetchIsKept() {
+        assertEquals(1, parsePrefetch(1, 4))
+        assertEquals(32, parsePrefetch(32, 4))
+    }
+
+    @Test
+    fun nonPositivePrefetchFallsBackToDefault() {
+        // 0 would mean no limit to RabbitMQ
+        assertEquals(4, parsePrefetch(0, 4))
+        assertEquals(4, parsePrefetch(-3, 4))
+    }
+}
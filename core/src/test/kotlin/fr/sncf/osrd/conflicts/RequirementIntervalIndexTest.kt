@@ -0,0 +1,53 @@
+package fr.sncf.osrd.conflicts
+
+import kotlin.random.Random
+import kotlin.test.Test
+import kotlin.test.assertEquals
+
+class RequirementIntervalIndexTest {
+    private data class TestRequirement(
+        override val beginTime: Double,
+        override val endTime: Double,
+    ) : ResourceRequirement
+
+    @Test
+    fun emptyIndex() {
+        val index = RequirementIntervalIndex(listOf<TestRequirement>())
+        assertEquals(listOf(), index.overlapping(0.0, 10.0))
+        assertEquals(listOf(), index.beginningAtOrAfter(0.0))
+    }
+
+    @Test
+    fun boundsAreExcluded() {
+        val requirements = listOf(TestRequirement(0.0, 10.0), TestRequirement(20.0, 30.0))
+        val index = RequirementIntervalIndex(requirements)
+        assertEquals(listOf(), index.overlapping(10.0, 20.0))
+        assertEquals(requirements, index.overlapping(9.0, 21.0))
+        assertEquals(listOf(requirements[1]), index.beginningAtOrAfter(20.0))
+    }
+
+    @Test
+    fun matchesLinearScan() {
+        val random = Random(42)
+        for (size in listOf(1, 2, 3, 17, 200)) {
+            val requirements =
+                List(size) {
+                    val beginTime = random.nextInt(1000).toDouble()
+                    TestRequirement(beginTime, beginTime + random.nextInt(1, 100))
+                }
+            val index = RequirementIntervalIndex(requirements)
+            repeat(100) {
+                val beginTime = random.nextInt(-50, 1100).toDouble()
+                val endTime = beginTime + random.nextInt(1, 200)
+                assertEquals(
+                    requirements.filter { it.beginTime < endTime && it.endTime > beginTime },
+                    index.overlapping(beginTime, endTime)
+                )
+                assertEquals(
+                    requirements.filter { it.beginTime >= endTime }.sortedBy { it.beginTime },
+                    index.beginningAtOrAfter(endTime)
+                )
+            }
+        }
+    }
+}
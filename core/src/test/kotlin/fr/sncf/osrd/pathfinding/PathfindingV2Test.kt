@@ -4,9 +4,11 @@ import fr.sncf.osrd.api.ApiTest
 import fr.sncf.osrd.api.api_v2.DirectionalTrackRange
 import fr.sncf.osrd.api.api_v2.TrackLocation
 import fr.sncf.osrd.api.api_v2.pathfinding.*
+import fr.sncf.osrd.api.pathfinding.UnconstrainedRouting
 import fr.sncf.osrd.graph.Pathfinding
 import fr.sncf.osrd.railjson.schema.common.graph.EdgeDirection
 import fr.sncf.osrd.railjson.schema.rollingstock.RJSLoadingGaugeType
+import fr.sncf.osrd.reporting.warnings.DiagnosticRecorderImpl
 import fr.sncf.osrd.utils.takes.TakesUtils
 import fr.sncf.osrd.utils.units.Offset
 import fr.sncf.osrd.utils.units.meters
@@ -74,6 +76,72 @@ class PathfindingV2Test : ApiTest() {
         )
     }
 
+    @Test
+    fun tinyInfraIntermediateStepTest() {
+        val waypointStart = TrackLocation("ne.micro.foo_b", Offset(50.meters))
+        val waypointStep = TrackLocation("ne.micro.foo_to_bar", Offset(5_000.meters))
+        val waypointEnd = TrackLocation("ne.micro.bar_a", Offset(100.meters))
+        val waypoints = listOf(listOf(waypointStart), listOf(waypointStep), listOf(waypointEnd))
+        val requestBody =
+            pathfindingRequestAdapter.toJson(
+                PathfindingBlockRequest(
+                    rollingStockLoadingGauge = RJSLoadingGaugeType.G1,
+                    rollingStockIsThermal = true,
+                    rollingStockSupportedElectrifications = listOf(),
+                    rollingStockSupportedSignalingSystems = listOf("BAL"),
+                    rollingStockMaximumSpeed = 320.0,
+                    rollingStockLength = 0.0,
+                    timeout = null,
+                    infra = "tiny_infra/infra.json",
+                    expectedVersion = "1",
+                    pathItems = waypoints,
+                )
+            )
+        val rawResponse =
+            PathfindingBlocksEndpointV2(infraManager)
+                .act(RqFake("POST", "/v2/pathfinding/blocks", requestBody))
+        val response = TakesUtils.readBodyResponse(rawResponse)
+        val parsed = (pathfindingResponseAdapter.fromJson(response) as? PathfindingBlockSuccess)!!
+        // The step doesn't change the path, it only adds a path item position
+        AssertionsForClassTypes.assertThat(parsed.length.distance).isEqualTo(10250.meters)
+        assertEquals(3, parsed.pathItemPositions.size)
+        assertEquals(0.meters, parsed.pathItemPositions[0].distance)
+        assertEquals(5150.meters, parsed.pathItemPositions[1].distance)
+        assertEquals(parsed.length.distance, parsed.pathItemPositions[2].distance)
+        assertEquals(3, parsed.blocks.size)
+        assertEquals(2, parsed.routes.size)
+    }
+
+    @Test
+    fun unconstrainedRoutingTinyInfraTest() {
+        val infra =
+            infraManager.getInfra("tiny_infra/infra.json", "1", DiagnosticRecorderImpl(false))
+        UnconstrainedRouting.register(infra, UnconstrainedRouting.build(infra))
+        val request =
+            PathfindingBlockRequest(
+                rollingStockLoadingGauge = RJSLoadingGaugeType.G1,
+                rollingStockIsThermal = true,
+                rollingStockSupportedElectrifications = listOf(),
+                rollingStockSupportedSignalingSystems = listOf("BAL"),
+                rollingStockMaximumSpeed = 320.0,
+                rollingStockLength = 0.0,
+                timeout = null,
+                infra = "tiny_infra/infra.json",
+                expectedVersion = "1",
+                pathItems =
+                    listOf(
+                        listOf(TrackLocation("ne.micro.foo_b", Offset(50.meters))),
+                        listOf(TrackLocation("ne.micro.bar_a", Offset(100.meters)))
+                    ),
+            )
+        // The request is unconstrained on tiny_infra, the contraction hierarchy finds the path
+        val parsed = runPathfinding(infra, request) as PathfindingBlockSuccess
+        AssertionsForClassTypes.assertThat(parsed.length.distance).isEqualTo(10250.meters)
+        assertEquals(2, parsed.pathItemPositions.size)
+        assertEquals(3, parsed.blocks.size)
+        assertEquals(2, parsed.routes.size)
+    }
+
     @Test
     fun incompatibleElectrification() {
         val waypointStart = TrackLocation("ne.micro.foo_b", Offset(50.meters))
@@ -0,0 +1,81 @@
+package fr.sncf.osrd.pathfinding
+
+import fr.sncf.osrd.api.pathfinding.UnconstrainedRouting
+import fr.sncf.osrd.api.pathfinding.constraints.ElectrificationConstraints
+import fr.sncf.osrd.api.pathfinding.constraints.initConstraints
+import fr.sncf.osrd.graph.GraphAdapter
+import fr.sncf.osrd.graph.Pathfinding
+import fr.sncf.osrd.graph.Pathfinding.EdgeLocation
+import fr.sncf.osrd.graph.PathfindingEdgeLocationId
+import fr.sncf.osrd.graph.PathfindingResultId
+import fr.sncf.osrd.sim_infra.api.Block
+import fr.sncf.osrd.sim_infra.api.BlockId
+import fr.sncf.osrd.utils.CachedBlockMRSPBuilder
+import fr.sncf.osrd.utils.Helpers
+import fr.sncf.osrd.utils.units.Offset
+import fr.sncf.osrd.utils.units.meters
+import kotlin.random.Random
+import org.junit.jupiter.api.Assertions
+import org.junit.jupiter.api.Test
+
+class UnconstrainedRoutingTest {
+    @Test
+    fun sameCostsAsPathfinding() {
+        val infra = Helpers.smallInfra
+        val routing = UnconstrainedRouting.build(infra)
+        val mrspBuilder = CachedBlockMRSPBuilder(infra.rawInfra, infra.blockInfra, null)
+        val blockCount = infra.blockInfra.blocks.size.toInt()
+        val random = Random(0)
+
+        fun randomLocation(): PathfindingEdgeLocationId<Block> {
+            val block = BlockId(random.nextInt(blockCount).toUInt())
+            val length = infra.blockInfra.getBlockLength(block).distance.meters
+            return EdgeLocation(block, Offset(random.nextDouble(0.0, length).meters))
+        }
+
+        for (i in 0 until 100) {
+            val waypoints =
+                listOf(
+                    setOf(randomLocation(), randomLocation()),
+                    setOf(randomLocation()),
+                    setOf(randomLocation())
+                )
+            val expected =
+                Pathfinding(GraphAdapter(infra.blockInfra, infra.rawInfra))
+                    .setEdgeToLength { block -> infra.blockInfra.getBlockLength(block) }
+                    .setRangeCost { range ->
+                        mrspBuilder.getBlockTime(range.edge, range.end) -
+                            mrspBuilder.getBlockTime(range.edge, range.start)
+                    }
+                    .runPathfinding(waypoints)
+            val path = routing.findPath(waypoints, mrspBuilder)
+            if (expected == null) {
+                Assertions.assertNull(path)
+                continue
+            }
+            Assertions.assertEquals(cost(expected, mrspBuilder), cost(path!!, mrspBuilder), 1e-3)
+            Assertions.assertEquals(expected.waypoints.size, path.waypoints.size)
+            for (range in path.ranges) Assertions.assertTrue(range.start <= range.end)
+        }
+    }
+
+    @Test
+    fun constraintsOnSmallInfra() {
+        val infra = Helpers.smallInfra
+        val routing = UnconstrainedRouting.build(infra)
+        Assertions.assertTrue(routing.isUnconstrained(initConstraints(infra, listOf())))
+        // small_infra has electrified tracks, which trains without any mode can't use
+        val noElectrification =
+            ElectrificationConstraints(infra.blockInfra, infra.rawInfra, listOf())
+        Assertions.assertFalse(routing.isUnconstrained(listOf(noElectrification)))
+    }
+
+    private fun cost(
+        path: PathfindingResultId<Block>,
+        mrspBuilder: CachedBlockMRSPBuilder
+    ): Double {
+        return path.ranges.sumOf {
+            mrspBuilder.getBlockTime(it.edge, it.end) - mrspBuilder.getBlockTime(it.edge, it.start)
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package fr.sncf.osrd.pathfinding.constraints
+
+import fr.sncf.osrd.api.pathfinding.constraints.BlockedRangesIndex
+import fr.sncf.osrd.api.pathfinding.constraints.ElectrificationConstraints
+import fr.sncf.osrd.graph.Pathfinding
+import fr.sncf.osrd.sim_infra.api.Block
+import fr.sncf.osrd.sim_infra.api.BlockId
+import fr.sncf.osrd.train.TestTrains
+import fr.sncf.osrd.utils.Helpers
+import fr.sncf.osrd.utils.units.Offset
+import fr.sncf.osrd.utils.units.meters
+import org.junit.jupiter.api.Assertions
+import org.junit.jupiter.api.Test
+
+class BlockedRangesIndexTest {
+    @Test
+    fun rangesAreComputedOnce() {
+        val index = BlockedRangesIndex(3)
+        val length = Offset<Block>(100.meters)
+        val results =
+            listOf(
+                setOf(),
+                setOf(Pathfinding.Range(Offset(0.meters), length)),
+                setOf(Pathfinding.Range(Offset<Block>(10.meters), Offset(20.meters)))
+            )
+        var calls = 0
+        for (i in 0 until 2) {
+            for (block in 0 until 3) {
+                val ranges =
+                    index.getBlockedRanges(BlockId(block.toUInt()), length) {
+                        calls++
+                        results[block]
+                    }
+                Assertions.assertEquals(results[block], ranges)
+            }
+        }
+        Assertions.assertEquals(3, calls)
+    }
+
+    @Test
+    fun sharedBetweenRequests() {
+        val infra = Helpers.smallInfra
+        val modes = TestTrains.FAST_ELECTRIC_TRAIN.modeNames
+        val first = ElectrificationConstraints(infra.blockInfra, infra.rawInfra, modes)
+        val expected = infra.blockInfra.blocks.map { first.apply(it) }
+        // Another request with the same modes reads the ranges computed for the first one
+        val second = ElectrificationConstraints(infra.blockInfra, infra.rawInfra, modes.toList())
+        Assertions.assertEquals(expected, infra.blockInfra.blocks.map { second.apply(it) })
+    }
+}
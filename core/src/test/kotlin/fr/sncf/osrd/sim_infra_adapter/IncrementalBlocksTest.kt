@@ -0,0 +1,182 @@
+package fr.sncf.osrd.sim_infra_adapter
+
+import com.squareup.moshi.JsonReader
+import com.squareup.moshi.JsonWriter
+import fr.sncf.osrd.RJSInfraCollection
+import fr.sncf.osrd.RJSInfraFingerprint
+import fr.sncf.osrd.StreamingRJSInfraObjects
+import fr.sncf.osrd.api.makeSignalingSimulator
+import fr.sncf.osrd.parseRJSInfra
+import fr.sncf.osrd.sim_infra.api.BlockInfra
+import fr.sncf.osrd.sim_infra.api.RawInfra
+import fr.sncf.osrd.sim_infra.impl.BlockInfraImpl
+import fr.sncf.osrd.utils.Helpers
+import java.nio.file.Files
+import kotlin.test.Test
+import kotlin.test.assertEquals
+import kotlin.test.assertFalse
+import kotlin.test.assertNotNull
+import kotlin.test.assertTrue
+import okio.Buffer
+
+class IncrementalBlocksTest {
+    private val signalingSimulator = makeSignalingSimulator()
+
+    private class LoadedInfra(
+        val rawInfra: RawInfra,
+        val fingerprint: RJSInfraFingerprint,
+        val blockInfra: BlockInfra,
+    )
+
+    private fun load(json: Map<String, Any?>): LoadedInfra {
+        val buffer = Buffer()
+        JsonWriter.of(buffer).use { it.jsonValue(json) }
+        val fingerprint = RJSInfraFingerprint()
+        val rawInfra = parseRJSInfra(StreamingRJSInfraObjects(buffer, fingerprint))
+        val loadedSignalInfra = signalingSimulator.loadSignals(rawInfra)
+        return LoadedInfra(
+            rawInfra,
+            fingerprint,
+            signalingSimulator.buildBlocks(rawInfra, loadedSignalInfra)
+        )
+    }
+
+    private fun readSmallInfraJson(): MutableMap<String, Any?> {
+        val infraPath = Helpers.getResourcePath("infras/small_infra/infra.json")
+        val json = Buffer().write(Files.readAllBytes(infraPath))
+        @Suppress("UNCHECKED_CAST")
+        return JsonReader.of(json).readJsonValue() as MutableMap<String, Any?>
+    }
+
+    @Suppress("UNCHECKED_CAST")
+    private fun MutableMap<String, Any?>.objects(
+        collection: String
+    ): MutableList<MutableMap<String, Any?>> {
+        return this[collection] as MutableList<MutableMap<String, Any?>>
+    }
+
+    /** Rebuilds the blocks of [next] from those of [previous], and compares them to a full build */
+    private fun assertRebuildMatchesBuild(previous: LoadedInfra, next: LoadedInfra) {
+        val delta = next.fingerprint.diff(previous.fingerprint)
+        val rebuilt =
+            signalingSimulator.rebuildBlocks(
+                next.rawInfra,
+                signalingSimulator.loadSignals(next.rawInfra),
+                previous.rawInfra,
+                previous.blockInfra,
+                delta.affectedTrackSections,
+                delta.changedRoutes
+            )
+        assertNotNull(rebuilt)
+        val expected = next.blockInfra
+        assertEquals(expected.blocks.size, rebuilt.blocks.size)
+        for (block in expected.blocks) {
+            assertEquals(expected.getBlockName(block), rebuilt.getBlockName(block))
+            assertEquals(expected.getBlockPath(block), rebuilt.getBlockPath(block))
+            assertEquals(expected.getBlockSignals(block), rebuilt.getBlockSignals(block))
+            assertEquals(expected.getSignalsPositions(block), rebuilt.getSignalsPositions(block))
+            assertEquals(expected.getBlockLength(block), rebuilt.getBlockLength(block))
+            assertEquals(
+                expected.blockStartAtBufferStop(block),
+                rebuilt.blockStartAtBufferStop(block)
+            )
+            assertEquals(
+                expected.blockStopAtBufferStop(block),
+                rebuilt.blockStopAtBufferStop(block)
+            )
+        }
+        assertEquals(
+            (expected as BlockInfraImpl).routeBlocks,
+            (rebuilt as BlockInfraImpl).routeBlocks
+        )
+    }
+
+    @Test
+    fun unchangedInfraHasAnEmptyDelta() {
+        val previous = load(readSmallInfraJson())
+        val next = load(readSmallInfraJson())
+        val delta = next.fingerprint.diff(previous.fingerprint)
+        assertTrue(delta.isEmpty)
+        assertTrue(delta.affectedTrackSections.isEmpty())
+        assertRebuildMatchesBuild(previous, next)
+    }
+
+    @Test
+    fun trackPropertiesDontChangeBlocks() {
+        val previous = load(readSmallInfraJson())
+        val json = readSmallInfraJson()
+        for (trackSection in json.objects("track_sections")) trackSection["slopes"] = listOf<Any>()
+        json.objects("speed_sections").removeAt(0)
+        json.objects("operational_points").removeAt(0)
+        val next = load(json)
+        assertTrue(next.fingerprint.diff(previous.fingerprint).isEmpty)
+        assertRebuildMatchesBuild(previous, next)
+    }
+
+    @Test
+    fun movedSignalsAreRebuilt() {
+        val previous = load(readSmallInfraJson())
+        val json = readSmallInfraJson()
+        val signal = json.objects("signals").first()
+        signal["position"] = signal["position"] as Double - 1.0
+        val next = load(json)
+
+        val delta = next.fingerprint.diff(previous.fingerprint)
+        assertEquals(setOf(signal["id"]), delta.changed(RJSInfraCollection.SIGNALS))
+        assertEquals(setOf(signal["track"]), delta.affectedTrackSections)
+        assertTrue(delta.isLocal)
+        assertRebuildMatchesBuild(previous, next)
+    }
+
+    @Test
+    fun removedDetectorsAreRebuilt() {
+        val previous = load(readSmallInfraJson())
+        val json = readSmallInfraJson()
+        // Routes which start or end at the detector have to go too
+        val detector = json.objects("detectors").removeAt(0)
+        json.objects("routes").removeIf { route ->
+            listOf("entry_point", "exit_point").any {
+                (route[it] as Map<*, *>)["id"] == detector["id"]
+            }
+        }
+        val next = load(json)
+
+        val delta = next.fingerprint.diff(previous.fingerprint)
+        assertEquals(setOf(detector["id"]), delta.changed(RJSInfraCollection.DETECTORS))
+        assertTrue(delta.changedRoutes.isNotEmpty())
+        assertTrue(detector["track"] in delta.affectedTrackSections)
+        assertRebuildMatchesBuild(previous, next)
+    }
+
+    @Test
+    fun changedRoutesAreRebuilt() {
+        val previous = load(readSmallInfraJson())
+        val json = readSmallInfraJson()
+        val route = json.objects("routes").removeAt(0)
+        val next = load(json)
+
+        val delta = next.fingerprint.diff(previous.fingerprint)
+        assertEquals(setOf(route["id"]), delta.changedRoutes)
+        assertTrue(delta.affectedTrackSections.isEmpty())
+        assertRebuildMatchesBuild(previous, next)
+    }
+
+    @Test
+    fun switchTypeChangesAreNotLocal() {
+        val previous = load(readSmallInfraJson())
+        val json = readSmallInfraJson()
+        json["extended_switch_types"] =
+            listOf(
+                mapOf(
+                    "id" to "custom_switch",
+                    "ports" to listOf("A", "B"),
+                    "groups" to mapOf("STATIC" to listOf(mapOf("src" to "A", "dst" to "B")))
+                )
+            )
+        val next = load(json)
+
+        val delta = next.fingerprint.diff(previous.fingerprint)
+        assertEquals(setOf("custom_switch"), delta.changed(RJSInfraCollection.SWITCH_TYPES))
+        assertFalse(delta.isLocal)
+    }
+}
@@ -0,0 +1,130 @@
+package fr.sncf.osrd.sim_infra_adapter
+
+import fr.sncf.osrd.api.makeSignalingSimulator
+import fr.sncf.osrd.parseRJSInfra
+import fr.sncf.osrd.signaling.bal.BAL
+import fr.sncf.osrd.signaling.impl.SigSystemManagerImpl
+import fr.sncf.osrd.sim_infra.api.decreasing
+import fr.sncf.osrd.sim_infra.api.increasing
+import fr.sncf.osrd.sim_infra.impl.*
+import fr.sncf.osrd.utils.Helpers
+import java.io.ByteArrayInputStream
+import java.io.ByteArrayOutputStream
+import java.io.DataInputStream
+import java.io.DataOutputStream
+import java.io.IOException
+import kotlin.test.Test
+import kotlin.test.assertEquals
+import kotlin.test.assertFailsWith
+
+class InfraSerializationTest {
+    private val signalingSimulator = makeSignalingSimulator()
+
+    private fun roundTrip(infraPath: String) {
+        val rawInfra = parseRJSInfra(Helpers.getExampleInfra(infraPath)) as RawInfraImpl
+        val loadedSignalInfra =
+            signalingSimulator.loadSignals(rawInfra) as LoadedSignalingInfraImpl
+        val blockInfra =
+            signalingSimulator.buildBlocks(rawInfra, loadedSignalInfra) as BlockInfraImpl
+
+        val buffer = ByteArrayOutputStream()
+        val output = DataOutputStream(buffer)
+        writeRawInfra(output, rawInfra)
+        writeLoadedSignalInfra(output, loadedSignalInfra, signalingSimulator.sigModuleManager)
+        writeBlockInfra(output, blockInfra)
+
+        val input = DataInputStream(ByteArrayInputStream(buffer.toByteArray()))
+        val readRaw = readRawInfra(input)
+        val readSignals = readLoadedSignalInfra(input, signalingSimulator.sigModuleManager)
+        val readBlocks = readBlockInfra(input, readRaw, readSignals)
+        assertEquals(-1, input.read())
+
+        assertEquals(rawInfra.trackSections.size, readRaw.trackSections.size)
+        for (track in rawInfra.trackSections) {
+            assertEquals(rawInfra.getTrackSectionName(track), readRaw.getTrackSectionName(track))
+            for (chunk in rawInfra.getTrackSectionChunks(track)) {
+                assertEquals(
+                    rawInfra.getTrackChunkLength(chunk),
+                    readRaw.getTrackChunkLength(chunk)
+                )
+                assertEquals(
+                    rawInfra.getTrackChunkGeom(chunk).points,
+                    readRaw.getTrackChunkGeom(chunk).points
+                )
+                assertEquals(
+                    rawInfra.getTrackChunkSlope(chunk.increasing).asList(),
+                    readRaw.getTrackChunkSlope(chunk.increasing).asList()
+                )
+                assertEquals(
+                    rawInfra.getTrackChunkSlope(chunk.decreasing).asList(),
+                    readRaw.getTrackChunkSlope(chunk.decreasing).asList()
+                )
+            }
+        }
+        assertEquals(rawInfra.zones.size, readRaw.zones.size)
+        for (zone in rawInfra.zones)
+            assertEquals(rawInfra.getZoneName(zone), readRaw.getZoneName(zone))
+        assertEquals(rawInfra.routes.size, readRaw.routes.size)
+        for (route in rawInfra.routes) {
+            assertEquals(rawInfra.getRouteName(route), readRaw.getRouteName(route))
+            assertEquals(rawInfra.getRouteLength(route), readRaw.getRouteLength(route))
+            assertEquals(route, readRaw.getRouteFromName(rawInfra.getRouteName(route)))
+        }
+
+        assertEquals(loadedSignalInfra.logicalSignals.size, readSignals.logicalSignals.size)
+        for (signal in loadedSignalInfra.logicalSignals) {
+            assertEquals(
+                loadedSignalInfra.getSettings(signal),
+                readSignals.getSettings(signal),
+            )
+            assertEquals(
+                loadedSignalInfra.getDrivers(signal),
+                readSignals.getDrivers(signal),
+            )
+            assertEquals(
+                loadedSignalInfra.isBlockDelimiter(signal),
+                readSignals.isBlockDelimiter(signal),
+            )
+        }
+
+        assertEquals(blockInfra.blocks.size, readBlocks.blocks.size)
+        for (block in blockInfra.blocks) {
+            assertEquals(blockInfra.getBlockName(block), readBlocks.getBlockName(block))
+            assertEquals(blockInfra.getBlockPath(block), readBlocks.getBlockPath(block))
+            assertEquals(blockInfra.getBlockSignals(block), readBlocks.getBlockSignals(block))
+            assertEquals(blockInfra.getBlockLength(block), readBlocks.getBlockLength(block))
+        }
+    }
+
+    @Test
+    fun tinyInfraRoundTrip() {
+        roundTrip("tiny_infra/infra.json")
+    }
+
+    @Test
+    fun smallInfraRoundTrip() {
+        roundTrip("small_infra/infra.json")
+    }
+
+    @Test
+    fun otherSignalingSystemsAreRejected() {
+        val rawInfra = parseRJSInfra(Helpers.getExampleInfra("tiny_infra/infra.json"))
+        val loadedSignalInfra =
+            signalingSimulator.loadSignals(rawInfra) as LoadedSignalingInfraImpl
+        val buffer = ByteArrayOutputStream()
+        writeLoadedSignalInfra(
+            DataOutputStream(buffer),
+            loadedSignalInfra,
+            signalingSimulator.sigModuleManager
+        )
+
+        val otherSigSystemManager = SigSystemManagerImpl()
+        otherSigSystemManager.addSignalingSystem(BAL)
+        assertFailsWith<IOException> {
+            readLoadedSignalInfra(
+                DataInputStream(ByteArrayInputStream(buffer.toByteArray())),
+                otherSigSystemManager
+            )
+        }
+    }
+}
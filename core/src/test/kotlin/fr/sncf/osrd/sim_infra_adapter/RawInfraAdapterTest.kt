@@ -1,6 +1,11 @@
 package fr.sncf.osrd.sim_infra_adapter
 
+import com.squareup.moshi.JsonReader
+import com.squareup.moshi.JsonWriter
+import fr.sncf.osrd.RJSInfraCollection
+import fr.sncf.osrd.StreamingRJSInfraObjects
 import fr.sncf.osrd.parseRJSInfra
+import fr.sncf.osrd.railjson.parser.RJSParser
 import fr.sncf.osrd.railjson.builder.begin
 import fr.sncf.osrd.railjson.builder.buildParseRJSInfra
 import fr.sncf.osrd.railjson.builder.end
@@ -12,13 +17,19 @@ import fr.sncf.osrd.railjson.schema.infra.trackobjects.RJSTrainDetector
 import fr.sncf.osrd.sim_infra.api.*
 import fr.sncf.osrd.utils.Direction
 import fr.sncf.osrd.utils.Helpers
+import fr.sncf.osrd.utils.indexing.DirStaticIdx
 import fr.sncf.osrd.utils.indexing.StaticIdx
 import fr.sncf.osrd.utils.indexing.mutableStaticIdxArrayListOf
 import fr.sncf.osrd.utils.units.Offset
 import fr.sncf.osrd.utils.units.meters
 import fr.sncf.osrd.utils.units.mutableOffsetArrayListOf
+import java.nio.file.Files
 import kotlin.test.Test
 import kotlin.test.assertEquals
+import kotlin.test.assertFailsWith
+import kotlin.test.assertNotEquals
+import kotlin.test.assertTrue
+import okio.Buffer
 import org.junit.jupiter.params.ParameterizedTest
 import org.junit.jupiter.params.provider.ValueSource
 
@@ -100,6 +111,173 @@ class RawInfraAdapterTest {
         parseRJSInfra(rjsInfra)
     }
 
+    @ParameterizedTest
+    @ValueSource(strings = ["tiny_infra/infra.json", "small_infra/infra.json"])
+    fun streamingParserMatchesInMemoryParser(infraPath: String) {
+        val expected = parseRJSInfra(Helpers.getExampleInfra(infraPath))
+        val path = Helpers.getResourcePath("infras/$infraPath").toString()
+        val streamed = RJSParser.streamRailJSONFromFile(path).use { parseRJSInfra(it) }
+
+        assertSameInfra(expected, streamed)
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = ["tiny_infra/infra.json", "small_infra/infra.json"])
+    fun parallelParserMatchesSequentialParser(infraPath: String) {
+        val expected = parseRJSInfra(Helpers.getExampleInfra(infraPath), false)
+        val actual = parseRJSInfra(Helpers.getExampleInfra(infraPath), true)
+        assertSameInfra(expected, actual)
+    }
+
+    private fun readSmallInfraJson(): MutableMap<String, Any?> {
+        val infraPath = Helpers.getResourcePath("infras/small_infra/infra.json")
+        val json = Buffer().write(Files.readAllBytes(infraPath))
+        @Suppress("UNCHECKED_CAST")
+        return JsonReader.of(json).readJsonValue() as MutableMap<String, Any?>
+    }
+
+    private fun writeJson(json: Any?): Buffer {
+        val buffer = Buffer()
+        JsonWriter.of(buffer).use { it.jsonValue(json) }
+        return buffer
+    }
+
+    @Suppress("UNCHECKED_CAST")
+    private fun MutableMap<String, Any?>.objects(
+        collection: String
+    ): MutableList<MutableMap<String, Any?>> {
+        return this[collection] as MutableList<MutableMap<String, Any?>>
+    }
+
+    @Test
+    fun streamingParserReadsCollectionsInAnyOrder() {
+        val json = readSmallInfraJson()
+        val expected = parseRJSInfra(StreamingRJSInfraObjects(writeJson(json)))
+        val reversed = LinkedHashMap<String, Any?>()
+        for (key in json.keys.reversed()) reversed[key] = json[key]
+        assertSameInfra(expected, parseRJSInfra(StreamingRJSInfraObjects(writeJson(reversed))))
+    }
+
+    @Test
+    fun streamingParserVisitsCollectionsOnce() {
+        val railjson = StreamingRJSInfraObjects(writeJson(readSmallInfraJson()))
+        var routeCount = 0
+        railjson.forEach(RJSInfraCollection.ROUTES) { routeCount++ }
+        assertTrue(routeCount > 0)
+        assertFailsWith<IllegalStateException> { railjson.forEach(RJSInfraCollection.ROUTES) {} }
+    }
+
+    @Test
+    fun streamingParserDoesNotBufferEditoastRailjson() {
+        val json = readSmallInfraJson()
+        val expected = parseRJSInfra(StreamingRJSInfraObjects(writeJson(json)))
+
+        // The order of the collections of the railjson sent by editoast
+        val editoastOrder =
+            listOf(
+                "version",
+                "detectors",
+                "buffer_stops",
+                "track_sections",
+                "electrifications",
+                "neutral_sections",
+                "speed_sections",
+                "operational_points",
+                "extended_switch_types",
+                "switches",
+                "routes",
+                "signals",
+            )
+        val ordered = LinkedHashMap<String, Any?>()
+        for (key in editoastOrder) ordered[key] = json[key] ?: listOf<Any>()
+        val railjson = StreamingRJSInfraObjects(writeJson(ordered))
+        assertSameInfra(expected, parseRJSInfra(railjson))
+        assertEquals(0, railjson.peakPendingObjects)
+
+        // Any other order keeps objects until they are needed
+        val reversed = LinkedHashMap<String, Any?>()
+        for (key in editoastOrder.reversed()) reversed[key] = ordered[key]
+        val reversedRailjson = StreamingRJSInfraObjects(writeJson(reversed))
+        parseRJSInfra(reversedRailjson)
+        assertTrue(reversedRailjson.peakPendingObjects > 0)
+    }
+
+    @Test
+    fun changesOutsideOfTheSignalingTopologyKeepIdentifiers() {
+        val json = readSmallInfraJson()
+        val previous = parseRJSInfra(StreamingRJSInfraObjects(writeJson(json)))
+        for (trackSection in json.objects("track_sections")) trackSection["slopes"] = listOf<Any>()
+        json.objects("speed_sections").removeAt(0)
+        json.objects("operational_points").removeAt(0)
+        val next = parseRJSInfra(StreamingRJSInfraObjects(writeJson(json)))
+
+        // Identifiers are kept, while the changed properties are those of the new version
+        assertSameIdentifiers(previous, next)
+        assertSameInfra(parseRJSInfra(RJSInfra.adapter.fromJson(writeJson(json))!!), next)
+        val previousProperties = getTrackChunkProperties(previous)
+        val nextProperties = getTrackChunkProperties(next)
+        for (kind in listOf("slopes", "speed limits", "operational points")) {
+            assertNotEquals(
+                previousProperties.map { it[kind] },
+                nextProperties.map { it[kind] },
+                "$kind didn't change"
+            )
+        }
+    }
+
+    private fun assertSameInfra(expected: RawInfra, actual: RawInfra) {
+        assertSameIdentifiers(expected, actual)
+        assertEquals(getTrackChunkProperties(expected), getTrackChunkProperties(actual))
+    }
+
+    /** Slopes, speed limits and operational points of each track chunk, in both directions */
+    private fun getTrackChunkProperties(infra: RawInfra): List<Map<String, Any>> {
+        return infra.trackSections
+            .flatMap { infra.getTrackSectionChunks(it) }
+            .map { chunk ->
+                val dirChunks = Direction.entries.map { DirStaticIdx(chunk, it) }
+                mapOf(
+                    "slopes" to dirChunks.map { infra.getTrackChunkSlope(it).asList() },
+                    "speed limits" to
+                        dirChunks.map {
+                            infra.getTrackChunkSpeedLimitProperties(it, null, null).asList()
+                        },
+                    "operational points" to
+                        infra.getTrackChunkOperationalPointParts(chunk).map {
+                            infra.getOperationalPointPartOpId(it)
+                        },
+                )
+            }
+    }
+
+    private fun assertSameIdentifiers(expected: RawInfra, actual: RawInfra) {
+        assertEquals(
+            expected.trackSections.map { expected.getTrackSectionName(it) },
+            actual.trackSections.map { actual.getTrackSectionName(it) }
+        )
+        for (track in expected.trackSections) {
+            assertEquals(
+                expected.getTrackSectionChunks(track).map { expected.getTrackChunkLength(it) },
+                actual.getTrackSectionChunks(track).map { actual.getTrackChunkLength(it) }
+            )
+        }
+        assertEquals(
+            expected.zones.map { expected.getZoneName(it) },
+            actual.zones.map { actual.getZoneName(it) }
+        )
+        assertEquals(
+            expected.routes.map { expected.getRouteName(it) },
+            actual.routes.map { actual.getRouteName(it) }
+        )
+        for (route in expected.routes) {
+            assertEquals(expected.getRoutePath(route), actual.getRoutePath(route))
+        }
+        assertEquals(
+            expected.physicalSignals.map { expected.getPhysicalSignalName(it) },
+            actual.physicalSignals.map { actual.getPhysicalSignalName(it) }
+        )
+    }
+
     /**
      * Checks that we can load a route that starts at the edge of a track section, an edge case that
      * happens when loading a real infra but not on our generated infras
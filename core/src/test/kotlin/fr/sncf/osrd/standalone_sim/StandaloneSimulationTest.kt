@@ -89,6 +89,63 @@ class StandaloneSimulationTest {
         println(res)
     }
 
+    /** Simulations on a shared path reuse its MRSPs, and give the same results */
+    @Test
+    fun testSharedPath() {
+        val sharedPath =
+            SharedSimulationPath(
+                infra,
+                pathProps,
+                chunkPath,
+                routes.toIdxList(),
+                ElectricalProfileMapping()
+            )
+        val firstMRSP = sharedPath.getMRSP(rollingStock, false, null, null)
+        assert(sharedPath.getMRSP(rollingStock, false, null, null) === firstMRSP)
+        assert(sharedPath.getMRSP(rollingStock, true, null, null) !== firstMRSP)
+
+        val margins = RangeValues(listOf(), listOf(MarginValue.Percentage(10.0)))
+        val results =
+            listOf(sharedPath, sharedPath, null).map { path ->
+                if (path != null)
+                    runStandaloneSimulation(
+                        path,
+                        rollingStock,
+                        Comfort.STANDARD,
+                        RJSAllowanceDistribution.MARECO,
+                        null,
+                        distanceRangeMapOf(),
+                        false,
+                        2.0,
+                        listOf(),
+                        0.0,
+                        margins,
+                        listOf(),
+                    )
+                else
+                    runStandaloneSimulation(
+                        infra,
+                        pathProps,
+                        chunkPath,
+                        routes.toIdxList(),
+                        ElectricalProfileMapping(),
+                        rollingStock,
+                        Comfort.STANDARD,
+                        RJSAllowanceDistribution.MARECO,
+                        null,
+                        distanceRangeMapOf(),
+                        false,
+                        2.0,
+                        listOf(),
+                        0.0,
+                        margins,
+                        listOf(),
+                    )
+            }
+        assertEquals(results[2].finalOutput.times, results[0].finalOutput.times)
+        assertEquals(results[2].finalOutput.times, results[1].finalOutput.times)
+    }
+
     data class TestCase(
         val allowanceDistribution: RJSAllowanceDistribution = RJSAllowanceDistribution.LINEAR,
         val schedule: List<SimulationScheduleItem> = listOf(),
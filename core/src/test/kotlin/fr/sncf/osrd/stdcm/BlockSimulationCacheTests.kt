@@ -0,0 +1,62 @@
+package fr.sncf.osrd.stdcm
+
+import fr.sncf.osrd.envelope.Envelope
+import fr.sncf.osrd.envelope.EnvelopeTestUtils
+import fr.sncf.osrd.envelope.MRSPEnvelopeBuilder.LimitKind
+import fr.sncf.osrd.railjson.schema.rollingstock.Comfort
+import fr.sncf.osrd.stdcm.graph.BlockSimulationCache
+import fr.sncf.osrd.stdcm.graph.BlockSimulationParameters
+import fr.sncf.osrd.stdcm.graph.BlockSimulationSettings
+import fr.sncf.osrd.train.TestTrains
+import fr.sncf.osrd.utils.DummyInfra
+import fr.sncf.osrd.utils.units.Offset
+import fr.sncf.osrd.utils.units.meters
+import kotlin.test.assertEquals
+import kotlin.test.assertNull
+import kotlin.test.assertSame
+import org.junit.jupiter.api.Test
+
+class BlockSimulationCacheTests {
+    @Test
+    fun envelopesAreSharedAcrossSearches() {
+        val infra = DummyInfra()
+        val block = infra.addBlock("a", "b")
+        val params = BlockSimulationParameters(block, 0.0, Offset(0.meters), null)
+        val envelope =
+            Envelope.make(EnvelopeTestUtils.makeFlatPart(LimitKind.SPEED_LIMIT, 0.0, 100.0, 10.0))
+        var simulationCount = 0
+        val simulate = {
+            simulationCount++
+            envelope
+        }
+        fun settings(comfort: Comfort) =
+            BlockSimulationSettings(TestTrains.REALISTIC_FAST_TRAIN, comfort, 2.0, null)
+
+        BlockSimulationCache.clear()
+        val hitCount = BlockSimulationCache.hitCount
+        val missCount = BlockSimulationCache.missCount
+        val first =
+            BlockSimulationCache.getOrSimulate(infra, settings(Comfort.STANDARD), params, simulate)
+        // Settings built by another search with the same values share the simulation
+        val second =
+            BlockSimulationCache.getOrSimulate(infra, settings(Comfort.STANDARD), params, simulate)
+        assertSame(first, second)
+        assertEquals(1, simulationCount)
+        assertEquals(hitCount + 1, BlockSimulationCache.hitCount)
+        assertEquals(missCount + 1, BlockSimulationCache.missCount)
+
+        // Different settings can't use it
+        BlockSimulationCache.getOrSimulate(infra, settings(Comfort.HEATING), params, simulate)
+        assertEquals(2, simulationCount)
+
+        // Failed simulations aren't cached
+        val otherParams = params.copy(initialSpeed = 1.0)
+        assertNull(
+            BlockSimulationCache.getOrSimulate(infra, settings(Comfort.STANDARD), otherParams) {
+                null
+            }
+        )
+        BlockSimulationCache.getOrSimulate(infra, settings(Comfort.STANDARD), otherParams, simulate)
+        assertEquals(3, simulationCount)
+    }
+}
@@ -0,0 +1,102 @@
+package fr.sncf.osrd.stdcm
+
+import fr.sncf.osrd.graph.PathfindingEdgeLocationId
+import fr.sncf.osrd.stdcm.graph.STDCMNode
+import fr.sncf.osrd.stdcm.graph.STDCMNodeQueue
+import fr.sncf.osrd.stdcm.graph.TimeData
+import fr.sncf.osrd.stdcm.infra_exploration.InfraExplorerWithEnvelope
+import fr.sncf.osrd.stdcm.infra_exploration.initInfraExplorerWithEnvelope
+import fr.sncf.osrd.train.TestTrains.REALISTIC_FAST_TRAIN
+import fr.sncf.osrd.utils.DummyInfra
+import fr.sncf.osrd.utils.units.Offset
+import fr.sncf.osrd.utils.units.meters
+import kotlin.random.Random
+import kotlin.test.assertEquals
+import kotlin.test.assertNull
+import kotlin.test.assertSame
+import kotlin.test.assertTrue
+import org.junit.jupiter.api.Test
+
+class STDCMNodeQueueTests {
+    private val explorer: InfraExplorerWithEnvelope
+
+    init {
+        val infra = DummyInfra()
+        val block = infra.addBlock("a", "b")
+        explorer =
+            initInfraExplorerWithEnvelope(
+                    infra.fullInfra(),
+                    PathfindingEdgeLocationId(block, Offset(0.meters)),
+                    rollingStock = REALISTIC_FAST_TRAIN
+                )
+                .first()
+    }
+
+    private fun makeNode(
+        totalRunningTime: Double,
+        remainingTimeEstimation: Double,
+        earliestReachableTime: Double = 0.0,
+        waypointIndex: Int = 0,
+    ): STDCMNode {
+        return STDCMNode(
+            TimeData(
+                earliestReachableTime = earliestReachableTime,
+                maxDepartureDelayingWithoutConflict = 0.0,
+                departureTime = 0.0,
+                timeOfNextConflictAtLocation = 0.0,
+                totalRunningTime = totalRunningTime,
+                stopTimeData = listOf(),
+            ),
+            0.0,
+            explorer,
+            null,
+            waypointIndex,
+            null,
+            null,
+            null,
+            null,
+            remainingTimeEstimation,
+        )
+    }
+
+    private fun runTimeEstimation(node: STDCMNode): Double {
+        return node.timeData.totalRunningTime + node.remainingTimeEstimation
+    }
+
+    @Test
+    fun pollsLowestRunTimeEstimationFirst() {
+        val random = Random(0)
+        val queue = STDCMNodeQueue(initialCapacity = 4)
+        val expected = mutableListOf<Double>()
+        // Interleave additions and polls, so that handles are reused and arrays grow
+        repeat(10) {
+            repeat(100) {
+                val node = makeNode(random.nextDouble(0.0, 1000.0), random.nextDouble(0.0, 1000.0))
+                queue.add(node)
+                expected.add(runTimeEstimation(node))
+            }
+            expected.sort()
+            repeat(50) { assertEquals(expected.removeAt(0), runTimeEstimation(queue.poll()!!)) }
+        }
+        while (!queue.isEmpty()) {
+            assertEquals(expected.removeAt(0), runTimeEstimation(queue.poll()!!))
+        }
+        assertTrue(expected.isEmpty())
+        assertNull(queue.poll())
+    }
+
+    @Test
+    fun tiesAreBrokenByDepartureThenWaypoints() {
+        val queue = STDCMNodeQueue()
+        val late = makeNode(100.0, 50.0, earliestReachableTime = 20.0, waypointIndex = 1)
+        val early = makeNode(100.0, 50.0, earliestReachableTime = 10.0, waypointIndex = 0)
+        val earlyFurther = makeNode(100.0, 50.0, earliestReachableTime = 10.0, waypointIndex = 2)
+        val faster = makeNode(90.0, 50.0, earliestReachableTime = 30.0)
+        queue.addAll(listOf(late, early, earlyFurther, faster))
+        assertSame(faster, queue.poll())
+        assertSame(earlyFurther, queue.poll())
+        assertSame(early, queue.poll())
+        assertSame(late, queue.poll())
+        assertTrue(queue.isEmpty())
+    }
+}
@@ -9,6 +9,7 @@ import fr.sncf.osrd.graph.PathfindingEdgeLocationId
 import fr.sncf.osrd.railjson.schema.rollingstock.Comfort
 import fr.sncf.osrd.sim_infra.api.Block
 import fr.sncf.osrd.sim_infra.api.BlockId
+import fr.sncf.osrd.stdcm.graph.STDCMPreprocessing
 import fr.sncf.osrd.stdcm.graph.findPath
 import fr.sncf.osrd.stdcm.preprocessing.DummyBlockAvailability
 import fr.sncf.osrd.stdcm.preprocessing.OccupancySegment
@@ -42,6 +43,7 @@ data class STDCMPathfindingBuilder(
     var tag: String = "",
     var standardAllowance: AllowanceValue? = null,
     var blockAvailability: BlockAvailabilityInterface? = null,
+    var preprocessing: STDCMPreprocessing? = null,
 ) {
     // endregion OPTIONAL
     // region SETTERS
@@ -142,6 +144,12 @@ data class STDCMPathfindingBuilder(
         this.blockAvailability = availability
         return this
     }
+
+    /** Sets the preprocessing shared with other runs. Must use the same infra and rolling stock */
+    fun setPreprocessing(preprocessing: STDCMPreprocessing): STDCMPathfindingBuilder {
+        this.preprocessing = preprocessing
+        return this
+    }
     // endregion SETTERS
     /** Runs the pathfinding request with the given parameters */
     fun run(): STDCMResult? {
@@ -164,7 +172,8 @@ data class STDCMPathfindingBuilder(
             maxRunTime,
             tag,
             standardAllowance,
-            pathfindingTimeout
+            pathfindingTimeout,
+            preprocessing ?: STDCMPreprocessing(infra!!, rollingStock)
         )
     }
 }
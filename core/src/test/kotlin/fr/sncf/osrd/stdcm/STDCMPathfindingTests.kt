@@ -3,6 +3,7 @@ package fr.sncf.osrd.stdcm
 import com.google.common.collect.ImmutableMultimap
 import fr.sncf.osrd.graph.Pathfinding.EdgeLocation
 import fr.sncf.osrd.sim_infra.api.BlockId
+import fr.sncf.osrd.stdcm.graph.STDCMPreprocessing
 import fr.sncf.osrd.stdcm.preprocessing.OccupancySegment
 import fr.sncf.osrd.utils.DummyInfra
 import fr.sncf.osrd.utils.units.Offset
@@ -807,4 +808,43 @@ class STDCMPathfindingTests {
 
         assertEquals(totalDelay, res.departureTime)
     }
+
+    /** Queries sharing their preprocessing, in parallel, find the same paths as separate queries */
+    @Test
+    fun sharedPreprocessingInParallel() {
+        /*
+        a --> b --> c --> d
+         */
+        val infra = DummyInfra()
+        val firstBlock = infra.addBlock("a", "b")
+        infra.addBlock("b", "c")
+        val lastBlock = infra.addBlock("c", "d")
+        val occupancyGraph =
+            ImmutableMultimap.of(
+                firstBlock,
+                OccupancySegment(300.0, 600.0, 0.meters, 100.meters),
+                lastBlock,
+                OccupancySegment(1000.0, 1200.0, 0.meters, 100.meters)
+            )
+        val fullInfra = infra.fullInfra()
+        val builder =
+            STDCMPathfindingBuilder()
+                .setInfra(fullInfra)
+                .setStartLocations(setOf(EdgeLocation(firstBlock, Offset(0.meters))))
+                .setEndLocations(setOf(EdgeLocation(lastBlock, Offset(50.meters))))
+                .setUnavailableTimes(occupancyGraph)
+        val startTimes = (0 until 16).map { it * 100.0 }
+        val expected = startTimes.map { builder.copy().setStartTime(it).run()!! }
+
+        val preprocessing = STDCMPreprocessing(fullInfra, builder.rollingStock)
+        val shared =
+            startTimes
+                .parallelStream()
+                .map { builder.copy().setStartTime(it).setPreprocessing(preprocessing).run()!! }
+                .toList()
+        for ((expectedRes, sharedRes) in expected.zip(shared)) {
+            assertEquals(expectedRes.departureTime, sharedRes.departureTime)
+            assertEquals(expectedRes.envelope.totalTime, sharedRes.envelope.totalTime)
+        }
+    }
 }
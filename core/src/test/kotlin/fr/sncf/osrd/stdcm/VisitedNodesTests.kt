@@ -278,4 +278,40 @@ class VisitedNodesTests {
         visitedNodes.markAsVisited(params1)
         assertEquals(increaseRemainingTime, visitedNodes.isVisited(params2))
     }
+
+    @Test
+    fun distinctFingerprintsTest() {
+        val visitedNodes = VisitedNodes(0.0)
+        val fingerprints =
+            listOf(
+                fingerprint,
+                fingerprint.copy(identifier = DummyEdgeIdentifier(2)),
+                fingerprint.copy(waypointIndex = 2),
+                fingerprint.copy(startOffset = 1.meters),
+                // Fingerprints that don't fit in a packed key
+                fingerprint.copy(waypointIndex = 1_000),
+                fingerprint.copy(startOffset = 10_000_000.meters),
+            )
+        val params =
+            VisitedNodes.Parameters(
+                fingerprint = null,
+                timeData =
+                    TimeData(
+                        earliestReachableTime = 0.0,
+                        maxDepartureDelayingWithoutConflict = 42.0,
+                        timeOfNextConflictAtLocation = 42.0,
+                        totalRunningTime = 0.0,
+                        departureTime = 0.0,
+                        stopTimeData = listOf(),
+                    ),
+                maxMarginDuration = 0.0,
+            )
+        for (visited in fingerprints) {
+            visitedNodes.markAsVisited(params.copy(fingerprint = visited))
+            for (other in fingerprints) {
+                val expected = fingerprints.indexOf(other) <= fingerprints.indexOf(visited)
+                assertEquals(expected, visitedNodes.isVisited(params.copy(fingerprint = other)))
+            }
+        }
+    }
 }
@@ -198,6 +198,40 @@ class InfraExplorerWithEnvelopeTests {
         )
     }
 
+    @Test
+    fun testCloneStops() {
+        /*
+        a --> b
+         */
+        val infra = DummyInfra()
+        val block = infra.addBlock("a", "b")
+        val explorer =
+            initInfraExplorerWithEnvelope(
+                    infra.fullInfra(),
+                    PathfindingEdgeLocationId(block, Offset(0.meters)),
+                    rollingStock = REALISTIC_FAST_TRAIN
+                )
+                .first()
+        explorer.addEnvelope(
+            Envelope.make(
+                EnvelopePart.generateTimes(
+                    listOf(EnvelopeProfile.CONSTANT_SPEED),
+                    doubleArrayOf(0.0, 100.0),
+                    doubleArrayOf(30.0, 30.0)
+                )
+            )
+        )
+
+        // Stops are shared by the clones until either explorer adds one
+        val cloned = explorer.clone()
+        cloned.addStop(10.0)
+        assertEquals(0, explorer.getStops().size)
+        assertEquals(1, cloned.getStops().size)
+        explorer.addStop(20.0)
+        assertEquals(20.0, explorer.getStops().single().duration)
+        assertEquals(10.0, cloned.getStops().single().duration)
+    }
+
     /**
      * Test that the envelope bounds are equal, then iterate by an arbitrary step length to test for
      * interpolateDepartureFrom/ArrivalAt equality (respectively with/without stop duration).
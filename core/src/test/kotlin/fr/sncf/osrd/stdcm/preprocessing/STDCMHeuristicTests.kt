@@ -4,7 +4,9 @@ import fr.sncf.osrd.envelope_sim.SimpleRollingStock
 import fr.sncf.osrd.graph.PathfindingEdgeLocationId
 import fr.sncf.osrd.sim_infra.api.BlockId
 import fr.sncf.osrd.stdcm.STDCMAStarHeuristic
+import fr.sncf.osrd.stdcm.RemainingTimeTables
 import fr.sncf.osrd.stdcm.STDCMHeuristicBuilder
+import fr.sncf.osrd.stdcm.STDCMHeuristicCache
 import fr.sncf.osrd.stdcm.STDCMStep
 import fr.sncf.osrd.stdcm.graph.STDCMEdge
 import fr.sncf.osrd.stdcm.graph.STDCMNode
@@ -15,8 +17,12 @@ import fr.sncf.osrd.utils.units.Distance
 import fr.sncf.osrd.utils.units.Length
 import fr.sncf.osrd.utils.units.Offset
 import fr.sncf.osrd.utils.units.meters
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executors
+import java.util.concurrent.atomic.AtomicInteger
 import kotlin.test.Test
 import kotlin.test.assertEquals
+import kotlin.test.assertSame
 
 class STDCMHeuristicTests {
 
@@ -189,6 +195,102 @@ class STDCMHeuristicTests {
         )
     }
 
+    @Test
+    fun tablesAreCachedAcrossRequests() {
+        val infra = DummyInfra()
+        val block = infra.addBlock("a", "b", allowedSpeed = 1.0)
+        val steps =
+            listOf(
+                STDCMStep(listOf(PathfindingEdgeLocationId(block, Offset(0.meters))), null, false),
+                STDCMStep(listOf(PathfindingEdgeLocationId(block, Offset(50.meters))), 1.0, true),
+            )
+        val speedClass = STDCMHeuristicCache.SpeedClass(SimpleRollingStock.STANDARD_TRAIN)
+        var buildCount = 0
+        val build = {
+            buildCount++
+            RemainingTimeTables(3600.0, arrayOf(doubleArrayOf(50.0)))
+        }
+
+        val first = STDCMHeuristicCache.getOrBuild(infra, infra, speedClass, steps, 3600.0, build)
+        val second = STDCMHeuristicCache.getOrBuild(infra, infra, speedClass, steps, 1800.0, build)
+        assertEquals(1, buildCount)
+        assertSame(first, second)
+
+        // Tables built with a shorter max running time can't be used
+        STDCMHeuristicCache.getOrBuild(infra, infra, speedClass, steps, 7200.0, build)
+        assertEquals(2, buildCount)
+
+        // Neither can tables built for another rolling stock speed class
+        val otherSpeedClass = STDCMHeuristicCache.SpeedClass(speedClass.maxSpeed / 2, 0.0)
+        STDCMHeuristicCache.getOrBuild(infra, infra, otherSpeedClass, steps, 3600.0, build)
+        assertEquals(3, buildCount)
+        assertEquals(50.0, first[0, block])
+    }
+
+    @Test
+    fun tablesAreSharedByOrigins() {
+        val infra = DummyInfra()
+        val firstBlock = infra.addBlock("a", "b", allowedSpeed = 1.0)
+        val secondBlock = infra.addBlock("b", "c", allowedSpeed = 1.0)
+        val destination =
+            STDCMStep(listOf(PathfindingEdgeLocationId(secondBlock, Offset(50.meters))), 1.0, true)
+        val speedClass = STDCMHeuristicCache.SpeedClass(SimpleRollingStock.STANDARD_TRAIN)
+        var buildCount = 0
+        val build = {
+            buildCount++
+            RemainingTimeTables(3600.0, arrayOf(doubleArrayOf(150.0, 50.0)))
+        }
+
+        for (origin in listOf(firstBlock, secondBlock)) {
+            val steps =
+                listOf(
+                    STDCMStep(listOf(PathfindingEdgeLocationId(origin, Offset(0.meters))), null),
+                    destination
+                )
+            STDCMHeuristicCache.getOrBuild(infra, infra, speedClass, steps, 3600.0, build)
+        }
+        assertEquals(1, buildCount)
+    }
+
+    @Test
+    fun concurrentRequestsBuildTablesOnce() {
+        val infra = DummyInfra()
+        val block = infra.addBlock("a", "b", allowedSpeed = 1.0)
+        val steps =
+            listOf(
+                STDCMStep(listOf(PathfindingEdgeLocationId(block, Offset(0.meters))), null, false),
+                STDCMStep(listOf(PathfindingEdgeLocationId(block, Offset(50.meters))), 1.0, true),
+            )
+        val speedClass = STDCMHeuristicCache.SpeedClass(SimpleRollingStock.STANDARD_TRAIN)
+        val buildCount = AtomicInteger()
+        val started = CountDownLatch(1)
+        val release = CountDownLatch(1)
+        val build = {
+            buildCount.incrementAndGet()
+            started.countDown()
+            release.await()
+            RemainingTimeTables(3600.0, arrayOf(doubleArrayOf(50.0)))
+        }
+
+        val executor = Executors.newFixedThreadPool(2)
+        try {
+            val first =
+                executor.submit<RemainingTimeTables> {
+                    STDCMHeuristicCache.getOrBuild(infra, infra, speedClass, steps, 3600.0, build)
+                }
+            started.await()
+            val second =
+                executor.submit<RemainingTimeTables> {
+                    STDCMHeuristicCache.getOrBuild(infra, infra, speedClass, steps, 3600.0, build)
+                }
+            release.countDown()
+            assertSame(first.get(), second.get())
+            assertEquals(1, buildCount.get())
+        } finally {
+            executor.shutdown()
+        }
+    }
+
     /**
      * Returns the estimated remaining time at the given location. The instantiated stdcm edge
      * starts at edgeStart, the edgeOffset references this edge.
@@ -97,21 +97,23 @@ async fn get_railjson(
         })
         .collect();
 
-    // Here we avoid the deserialization of the whole RailJson object
+    // Here we avoid the deserialization of the whole RailJson object.
+    // Objects are listed in the order core parses them, so that core can build the infra as it
+    // reads the railjson, without having to keep collections around until they are needed.
     let railjson = format!(
         r#"{{
             "version": "{version}",
+            "detectors": {detectors},
+            "buffer_stops": {buffer_stops},
             "track_sections": {track_sections},
-            "signals": {signals},
+            "electrifications": {electrifications},
+            "neutral_sections": {neutral_sections},
             "speed_sections": {speed_sections},
-            "detectors": {detectors},
-            "switches": {switches},
+            "operational_points": {operational_points},
             "extended_switch_types": {switch_types},
-            "buffer_stops": {buffer_stops},
+            "switches": {switches},
             "routes": {routes},
-            "operational_points": {operational_points},
-            "electrifications": {electrifications},
-            "neutral_sections": {neutral_sections}
+            "signals": {signals}
         }}"#,
         version = infra_meta.railjson_version,
         track_sections = res[ObjectType::TrackSection],